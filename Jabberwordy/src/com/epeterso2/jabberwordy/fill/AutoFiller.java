@@ -0,0 +1,238 @@
+/**
+ * Copyright (c) 2010 Eric Peterson
+ * For contact information, visit http://www.epeterso2.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.epeterso2.jabberwordy.fill;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.epeterso2.jabberwordy.model.PuzzleModel;
+import com.epeterso2.jabberwordy.serialization.puz.PUZPuzzle;
+import com.epeterso2.jabberwordy.serialization.puz.PUZSolution;
+import com.epeterso2.jabberwordy.util.Coordinate;
+import com.epeterso2.jabberwordy.util.GridSlotTable;
+import com.epeterso2.jabberwordy.util.GridSlotTableCache;
+
+/**
+ * Fills the empty cells of a grid, or of a region of it, with words from a {@link WordList}.
+ * <p>
+ * A slot is filled if it has an empty cell in the region and each of its other cells is empty or holds a single letter;
+ * letters already in the grid are kept, and no word is used twice or repeats a word already complete in the grid.
+ * Only cells of the region are written: an empty cell outside it is left empty and matches any letter of the words
+ * crossing it, so {@link FillResult#getWord(int)} may report more of a word than the grid shows.
+ * Slots holding a rebus or other value are left as they are and do not constrain the slots that cross them. The
+ * search keeps the candidates of every slot arc consistent, fills the most constrained slot first and backjumps over
+ * assignments that did not cause a dead end. It gives up when its time budget runs out.
+ * <p>
+ * Given an executor, the filler runs a portfolio of searches that try words in slightly different orders, one per
+ * thread, and takes the first that finishes; a search that proves the grid cannot be filled also ends the run. The
+ * filler runs entirely on the word list it is given and may be used by several threads at once.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+public class AutoFiller {
+	
+	/**
+	 * The default time budget of a fill, in milliseconds
+	 */
+	public static final long DEFAULT_TIME_BUDGET = 10000;
+	
+	private WordList words = null;
+	
+	private ExecutorService executor = null;
+	
+	private int parallelism = 1;
+	
+	private volatile long timeBudget = DEFAULT_TIME_BUDGET;
+	
+	/**
+	 * Creates a filler that runs one search on the calling thread
+	 * @param words The word list
+	 */
+	public AutoFiller( WordList words )
+	{
+		this( words, null, 1 );
+	}
+	
+	/**
+	 * Creates a filler that runs a portfolio of searches
+	 * @param words The word list
+	 * @param executor The executor that runs the searches, or <tt>null</tt> to run one search on the calling thread
+	 * @param parallelism The number of searches, usually the number of threads of the executor
+	 */
+	public AutoFiller( WordList words, ExecutorService executor, int parallelism )
+	{
+		if ( parallelism < 1 )
+		{
+			throw new IllegalArgumentException( "Parallelism must be positive: " + parallelism );
+		}
+		
+		this.words = words;
+		this.executor = executor;
+		this.parallelism = executor == null ? 1 : parallelism;
+	}
+	
+	public WordList getWordList()
+	{
+		return words;
+	}
+	
+	public long getTimeBudget() {
+		return timeBudget;
+	}
+	
+	/**
+	 * Sets the time after which a fill gives up
+	 * @param timeBudget The budget in milliseconds
+	 */
+	public void setTimeBudget( long timeBudget ) {
+		this.timeBudget = timeBudget;
+	}
+	
+	/**
+	 * Fills a grid
+	 * @param slots The slot table of the grid
+	 * @param letters The value of each cell in row-major order: a letter, 0 for an empty cell or a block, or any other
+	 * character for a value that is not a single letter. Lower-case letters are taken as upper case.
+	 * @param region The cells that may be filled, or <tt>null</tt> for the whole grid
+	 * @return The result
+	 * @throws InterruptedException If the thread was interrupted while waiting for a portfolio
+	 */
+	public FillResult fill( GridSlotTable slots, char[] letters, BitSet region ) throws InterruptedException
+	{
+		if ( letters.length != slots.getCellCount() )
+		{
+			throw new IllegalArgumentException( "Grid has " + slots.getCellCount() + " cells, letters given for " + letters.length );
+		}
+		
+		char[] normalized = new char[ letters.length ];
+		
+		for ( int cell = 0; cell < letters.length; ++cell )
+		{
+			normalized[ cell ] = slots.isBlock( cell ) ? 0 : Character.toUpperCase( letters[ cell ] );
+		}
+		
+		long deadline = System.nanoTime() + timeBudget * 1000000;
+		AtomicBoolean stop = new AtomicBoolean();
+		
+		if ( parallelism == 1 )
+		{
+			return new FillSearch( words, slots, normalized, region, deadline, stop, 0 ).call();
+		}
+		
+		CompletionService<FillResult> searches = new ExecutorCompletionService<FillResult>( executor );
+		List<Future<FillResult>> futures = new ArrayList<Future<FillResult>>( parallelism );
+		FillResult result = null;
+		
+		try
+		{
+			for ( int search = 0; search < parallelism; ++search )
+			{
+				futures.add( searches.submit( new FillSearch( words, slots, normalized, region, deadline, stop, search ) ) );
+			}
+			
+			for ( int done = 0; done < parallelism && ( result == null || result.getStatus() == FillResult.Status.TIMED_OUT ); ++done )
+			{
+				result = searches.take().get();
+			}
+		}
+		
+		catch ( ExecutionException e )
+		{
+			if ( e.getCause() instanceof RuntimeException )
+			{
+				throw (RuntimeException) e.getCause();
+			}
+			
+			throw new IllegalStateException( e.getCause() );
+		}
+		
+		finally
+		{
+			stop.set( true );
+			
+			for ( Future<FillResult> future : futures )
+			{
+				future.cancel( false );
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Fills the solution of a puzzle model, such as one being constructed
+	 * @param model The model; cells whose solution is {@link PuzzleModel#EMPTY} are empty
+	 * @param region The cells that may be filled, or <tt>null</tt> for the whole grid
+	 * @return The result
+	 * @throws InterruptedException If the thread was interrupted while waiting for a portfolio
+	 */
+	public FillResult fill( PuzzleModel model, BitSet region ) throws InterruptedException
+	{
+		char[] letters = new char[ model.getCellCount() ];
+		
+		for ( int cell = 0; cell < letters.length; ++cell )
+		{
+			char code = model.getSolutionCode( cell );
+			letters[ cell ] = PuzzleModel.isRebusCode( code ) ? '?' : code;
+		}
+		
+		return fill( model.getSlotTable(), letters, region );
+	}
+	
+	/**
+	 * Fills the solution of a PUZ puzzle. Cells with no solution, or a solution of '-' or a space, are empty; cell
+	 * indexes are in row-major order, starting at 0.
+	 * @param puzzle The puzzle
+	 * @param region The cells that may be filled, or <tt>null</tt> for the whole grid
+	 * @return The result
+	 * @throws InterruptedException If the thread was interrupted while waiting for a portfolio
+	 */
+	public FillResult fill( PUZPuzzle puzzle, BitSet region ) throws InterruptedException
+	{
+		int cols = puzzle.getWidth();
+		boolean[] blocks = new boolean[ puzzle.getNumberOfCells() ];
+		char[] letters = new char[ blocks.length ];
+		
+		for ( Coordinate coord : puzzle.getCoordinates() )
+		{
+			int cell = ( coord.getY() - 1 ) * cols + coord.getX() - 1;
+			PUZSolution solution = puzzle.getSolutions().get( coord );
+			blocks[ cell ] = puzzle.getCellStyles().get( coord ).isBlock();
+			
+			if ( ! blocks[ cell ] && solution != null )
+			{
+				letters[ cell ] = solution.getRebus() != null ? '?' : solution.getLetter() == '-' || solution.getLetter() == ' ' ? 0 : solution.getLetter();
+			}
+		}
+		
+		return fill( GridSlotTableCache.getDefault().get( cols, puzzle.getHeight(), blocks ), letters, region );
+	}
+	
+}
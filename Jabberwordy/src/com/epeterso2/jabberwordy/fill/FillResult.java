@@ -0,0 +1,130 @@
+/**
+ * Copyright (c) 2010 Eric Peterson
+ * For contact information, visit http://www.epeterso2.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.epeterso2.jabberwordy.fill;
+
+/**
+ * The outcome of an {@link AutoFiller} run. Cells are identified by their index in row-major order, starting at 0, and
+ * slots by their index in the {@link com.epeterso2.jabberwordy.util.GridSlotTable} of the grid.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+public class FillResult {
+	
+	/**
+	 * The ways a fill can end
+	 */
+	public enum Status
+	{
+		/**
+		 * Every slot to be filled holds a word of the list, and no word is used twice
+		 */
+		FILLED,
+		
+		/**
+		 * The search proved that the slots cannot be filled from the list
+		 */
+		UNSATISFIABLE,
+		
+		/**
+		 * The time budget ran out before the search finished
+		 */
+		TIMED_OUT
+	}
+	
+	private Status status = null;
+	
+	private char[] letters = null;
+	
+	private String[] words = null;
+	
+	private long nodeCount = 0;
+	
+	private long elapsedMillis = 0;
+	
+	FillResult( Status status, char[] letters, String[] words, long nodeCount, long elapsedMillis )
+	{
+		this.status = status;
+		this.letters = letters;
+		this.words = words;
+		this.nodeCount = nodeCount;
+		this.elapsedMillis = elapsedMillis;
+	}
+	
+	public Status getStatus() {
+		return status;
+	}
+	
+	public boolean isFilled()
+	{
+		return status == Status.FILLED;
+	}
+	
+	/**
+	 * Returns the letter of a cell
+	 * @param cell The cell index
+	 * @return The letter the fill placed or the grid already held, or 0 for a block or a cell left empty. Cells hold
+	 * only the letters they were given unless the grid was filled.
+	 */
+	public char getLetter( int cell )
+	{
+		return letters[ cell ];
+	}
+	
+	/**
+	 * Returns a copy of the letters of the grid
+	 * @return An array of cell letters in row-major order, as described by {@link #getLetter(int)}
+	 */
+	public char[] getLetters()
+	{
+		return letters.clone();
+	}
+	
+	/**
+	 * Returns the word placed in a slot
+	 * @param slot The slot index
+	 * @return The word, or <tt>null</tt> if the slot was not filled
+	 */
+	public String getWord( int slot )
+	{
+		return words[ slot ];
+	}
+	
+	/**
+	 * Returns the number of slot assignments the search tried
+	 * @return The number of search nodes
+	 */
+	public long getNodeCount() {
+		return nodeCount;
+	}
+	
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+	
+	public String toString()
+	{
+		return new StringBuilder().append( status ).append( " after " ).append( nodeCount ).append( " nodes in " )
+			.append( elapsedMillis ).append( " ms" ).toString();
+	}
+	
+}
@@ -0,0 +1,552 @@
+/**
+ * Copyright (c) 2010 Eric Peterson
+ * For contact information, visit http://www.epeterso2.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.epeterso2.jabberwordy.fill;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.epeterso2.jabberwordy.util.ClueDirection;
+import com.epeterso2.jabberwordy.util.GridSlotTable;
+
+/**
+ * One search for a fill, run by an {@link AutoFiller}. Each slot to be filled is a variable whose domain is a bitset of
+ * the words of its length. Domains are kept arc consistent across crossing cells, the slot with the fewest candidates
+ * is filled first, and a dead end jumps back to the most recent slot that contributed to it rather than to the slot
+ * filled just before.
+ * <p>
+ * Domains and conflict sets are never changed in place: a change replaces them and records the old ones on a trail,
+ * which is unwound when the search backs up.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+class FillSearch implements Callable<FillResult> {
+	
+	private static final int ALL_LETTERS = ( 1 << 26 ) - 1;
+	
+	// Returned in place of a conflict set when the search must stop
+	private static final BitSet STOPPED = new BitSet();
+	
+	private WordList words = null;
+	
+	private GridSlotTable slots = null;
+	
+	private char[] letters = null;
+	
+	private long deadline = 0;
+	
+	private AtomicBoolean stop = null;
+	
+	private Random random = null;
+	
+	private BitSet region = null;
+	
+	private int[] varSlots = null;
+	
+	private WordList.Bucket[] buckets = null;
+	
+	private int[][] cells = null;
+	
+	// For each variable and position, the crossing variable and its position there, or -1
+	private int[][] crossVars = null;
+	
+	private int[][] crossPositions = null;
+	
+	private long[][] domains = null;
+	
+	private int[] sizes = null;
+	
+	private BitSet[] conflicts = null;
+	
+	private int[] depths = null;
+	
+	private List<TrailEntry> trail = new ArrayList<TrailEntry>();
+	
+	private int[] queue = null;
+	
+	private boolean[] queued = null;
+	
+	private int queueHead = 0;
+	
+	private int queueSize = 0;
+	
+	private long[] scratch = null;
+	
+	private long[] mask = null;
+	
+	private String[] solution = null;
+	
+	private long nodes = 0;
+	
+	private boolean unsatisfiable = false;
+	
+	/**
+	 * Prepares a search
+	 * @param words The word list
+	 * @param slots The slot table of the grid
+	 * @param letters The letters of the grid: 'A' to 'Z' for a letter, 0 for an empty cell, anything else for a
+	 * value that is not a single letter
+	 * @param region The cells that may be filled, or <tt>null</tt> for the whole grid
+	 * @param deadline The value of {@link System#nanoTime()} at which to give up
+	 * @param stop Set to stop the search early
+	 * @param seed 0 to try words in list order, or a seed to vary the order
+	 */
+	FillSearch( WordList words, GridSlotTable slots, char[] letters, BitSet region, long deadline, AtomicBoolean stop, long seed )
+	{
+		this.words = words;
+		this.slots = slots;
+		this.letters = letters.clone();
+		this.deadline = deadline;
+		this.stop = stop;
+		this.random = seed == 0 ? null : new Random( seed );
+		this.region = region == null ? null : (BitSet) region.clone();
+		
+		// A slot is filled if it has an empty cell in the region and every value it already holds is a letter
+		int[] slotVars = new int[ slots.getSlotCount() ];
+		List<Integer> variables = new ArrayList<Integer>();
+		BitSet used = new BitSet();
+		
+		for ( int slot = 0; slot < slots.getSlotCount(); ++slot )
+		{
+			boolean empty = false;
+			boolean lettered = slots.getLength( slot ) <= WordList.MAX_LENGTH;
+			
+			for ( int i = 0; i < slots.getLength( slot ); ++i )
+			{
+				int cell = slots.getCell( slot, i );
+				empty |= letters[ cell ] == 0 && ( region == null || region.get( cell ) );
+				lettered &= letters[ cell ] == 0 || isLetter( letters[ cell ] );
+			}
+			
+			slotVars[ slot ] = empty && lettered ? variables.size() : -1;
+			
+			if ( slotVars[ slot ] >= 0 )
+			{
+				variables.add( slot );
+			}
+		}
+		
+		int count = variables.size();
+		varSlots = new int[ count ];
+		buckets = new WordList.Bucket[ count ];
+		cells = new int[ count ][];
+		crossVars = new int[ count ][];
+		crossPositions = new int[ count ][];
+		domains = new long[ count ][];
+		sizes = new int[ count ];
+		conflicts = new BitSet[ count ];
+		depths = new int[ count ];
+		queue = new int[ count ];
+		queued = new boolean[ count ];
+		solution = new String[ slots.getSlotCount() ];
+		int span = 0;
+		
+		for ( int var = 0; var < count; ++var )
+		{
+			int slot = variables.get( var );
+			int length = slots.getLength( slot );
+			varSlots[ var ] = slot;
+			buckets[ var ] = words.getBucket( length );
+			cells[ var ] = new int[ length ];
+			crossVars[ var ] = new int[ length ];
+			crossPositions[ var ] = new int[ length ];
+			domains[ var ] = buckets[ var ].all.clone();
+			conflicts[ var ] = new BitSet();
+			depths[ var ] = -1;
+			span = Math.max( span, buckets[ var ].span );
+			ClueDirection crossing = slots.getDirection( slot ) == ClueDirection.ACROSS ? ClueDirection.DOWN : ClueDirection.ACROSS;
+			
+			for ( int i = 0; i < length; ++i )
+			{
+				int cell = slots.getCell( slot, i );
+				int other = slots.getSlot( cell, crossing );
+				cells[ var ][ i ] = cell;
+				crossVars[ var ][ i ] = other < 0 ? -1 : slotVars[ other ];
+				crossPositions[ var ][ i ] = other < 0 ? -1 : slots.getOffset( cell, crossing );
+				
+				if ( isLetter( letters[ cell ] ) )
+				{
+					buckets[ var ].and( domains[ var ], i, letters[ cell ] - 'A' );
+				}
+			}
+		}
+		
+		scratch = new long[ span ];
+		mask = new long[ span ];
+		
+		// Words already complete in the grid may not be used again
+		for ( int slot = 0; slot < slots.getSlotCount(); ++slot )
+		{
+			if ( slotVars[ slot ] < 0 )
+			{
+				String word = readWord( slot );
+				int index = word == null ? -1 : words.indexOf( word );
+				
+				for ( int var = 0; index >= 0 && var < count; ++var )
+				{
+					if ( buckets[ var ].length == word.length() )
+					{
+						domains[ var ][ index >>> 6 ] &= ~( 1L << index );
+					}
+				}
+			}
+		}
+		
+		for ( int var = 0; var < count; ++var )
+		{
+			sizes[ var ] = cardinality( domains[ var ] );
+			unsatisfiable |= sizes[ var ] == 0;
+			enqueue( var );
+		}
+	}
+	
+	private static boolean isLetter( char letter )
+	{
+		return letter >= 'A' && letter <= 'Z';
+	}
+	
+	private String readWord( int slot )
+	{
+		char[] word = new char[ slots.getLength( slot ) ];
+		
+		for ( int i = 0; i < word.length; ++i )
+		{
+			word[ i ] = letters[ slots.getCell( slot, i ) ];
+			
+			if ( ! isLetter( word[ i ] ) )
+			{
+				return null;
+			}
+		}
+		
+		return new String( word );
+	}
+	
+	private static int cardinality( long[] set )
+	{
+		int count = 0;
+		
+		for ( long bits : set )
+		{
+			count += Long.bitCount( bits );
+		}
+		
+		return count;
+	}
+	
+	@Override
+	public FillResult call()
+	{
+		long start = System.nanoTime();
+		BitSet conflict = unsatisfiable ? new BitSet() : propagate();
+		conflict = conflict == null ? search( 0 ) : conflict;
+		
+		FillResult.Status status = conflict == null ? FillResult.Status.FILLED : conflict == STOPPED ? FillResult.Status.TIMED_OUT : FillResult.Status.UNSATISFIABLE;
+		
+		if ( status == FillResult.Status.FILLED )
+		{
+			for ( int var = 0; var < varSlots.length; ++var )
+			{
+				for ( int i = 0; i < cells[ var ].length; ++i )
+				{
+					int cell = cells[ var ][ i ];
+					
+					// Empty cells outside the region are left empty; the slots crossing there are not constrained by the fill
+					if ( region == null || region.get( cell ) )
+					{
+						letters[ cell ] = solution[ varSlots[ var ] ].charAt( i );
+					}
+				}
+			}
+		}
+		
+		return new FillResult( status, letters, status == FillResult.Status.FILLED ? solution : new String[ solution.length ], nodes, ( System.nanoTime() - start ) / 1000000 );
+	}
+	
+	/**
+	 * Fills the remaining variables
+	 * @return <tt>null</tt> if they were filled, otherwise the depths of the assignments that caused the failure
+	 */
+	private BitSet search( int depth )
+	{
+		if ( ( ++nodes & 63 ) == 0 && ( System.nanoTime() - deadline > 0 || stop.get() ) )
+		{
+			return STOPPED;
+		}
+		
+		int var = choose();
+		
+		if ( var < 0 )
+		{
+			for ( int v = 0; v < varSlots.length; ++v )
+			{
+				solution[ varSlots[ v ] ] = words.getWord( buckets[ v ].length, firstWord( domains[ v ] ) );
+			}
+			
+			return null;
+		}
+		
+		BitSet failure = new BitSet();
+		int[] candidates = order( domains[ var ], sizes[ var ] );
+		depths[ var ] = depth;
+		
+		for ( int word : candidates )
+		{
+			int mark = trail.size();
+			BitSet conflict = assign( var, word, depth );
+			conflict = conflict == null ? search( depth + 1 ) : conflict;
+			
+			if ( conflict == null || conflict == STOPPED )
+			{
+				return conflict;
+			}
+			
+			undo( mark );
+			
+			if ( ! conflict.get( depth ) )
+			{
+				// This assignment played no part in the failure, so trying its other words cannot help
+				depths[ var ] = -1;
+				return conflict;
+			}
+			
+			failure.or( conflict );
+		}
+		
+		depths[ var ] = -1;
+		failure.or( conflicts[ var ] );
+		failure.clear( depth );
+		return failure;
+	}
+	
+	/**
+	 * Chooses the unassigned variable with the fewest candidates, preferring the one with the most crossings
+	 */
+	private int choose()
+	{
+		int best = -1;
+		
+		for ( int var = 0; var < varSlots.length; ++var )
+		{
+			if ( depths[ var ] < 0 && ( best < 0 || sizes[ var ] < sizes[ best ] || sizes[ var ] == sizes[ best ] && crossVars[ var ].length > crossVars[ best ].length ) )
+			{
+				best = var;
+			}
+		}
+		
+		return best;
+	}
+	
+	private static int firstWord( long[] set )
+	{
+		for ( int i = 0; i < set.length; ++i )
+		{
+			if ( set[ i ] != 0 )
+			{
+				return i * 64 + Long.numberOfTrailingZeros( set[ i ] );
+			}
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * Lists the candidates of a domain in the order to try them: list order, or nearly list order if the search has a
+	 * seed
+	 */
+	private int[] order( long[] domain, int size )
+	{
+		int[] candidates = new int[ size ];
+		int count = 0;
+		
+		for ( int i = 0; i < domain.length; ++i )
+		{
+			for ( long bits = domain[ i ]; bits != 0; bits &= bits - 1 )
+			{
+				candidates[ count++ ] = i * 64 + Long.numberOfTrailingZeros( bits );
+			}
+		}
+		
+		for ( int i = 0; random != null && i < count - 1; ++i )
+		{
+			int j = i + random.nextInt( Math.min( 8, count - i ) );
+			int swap = candidates[ i ];
+			candidates[ i ] = candidates[ j ];
+			candidates[ j ] = swap;
+		}
+		
+		return candidates;
+	}
+	
+	/**
+	 * Places a word in a variable, removes it from the other variables and propagates the change
+	 * @return <tt>null</tt>, or the conflict set of a variable left with no candidates
+	 */
+	private BitSet assign( int var, int word, int depth )
+	{
+		long[] single = new long[ domains[ var ].length ];
+		single[ word >>> 6 ] = 1L << word;
+		BitSet cause = (BitSet) conflicts[ var ].clone();
+		cause.set( depth );
+		replace( var, single, cause, 1 );
+		enqueue( var );
+		
+		for ( int other = 0; other < varSlots.length; ++other )
+		{
+			if ( other != var && buckets[ other ] == buckets[ var ] && ( domains[ other ][ word >>> 6 ] & 1L << word ) != 0 )
+			{
+				long[] domain = domains[ other ].clone();
+				domain[ word >>> 6 ] &= ~( 1L << word );
+				BitSet reason = (BitSet) conflicts[ other ].clone();
+				reason.set( depth );
+				replace( other, domain, reason, sizes[ other ] - 1 );
+				
+				if ( sizes[ other ] == 0 )
+				{
+					return reason;
+				}
+				
+				enqueue( other );
+			}
+		}
+		
+		return propagate();
+	}
+	
+	/**
+	 * Makes the queued variables arc consistent with their crossings
+	 * @return <tt>null</tt>, or the conflict set of a variable left with no candidates
+	 */
+	private BitSet propagate()
+	{
+		while ( queueSize > 0 )
+		{
+			int var = queue[ queueHead ];
+			queued[ var ] = false;
+			queueHead = ( queueHead + 1 ) % queue.length;
+			--queueSize;
+			
+			for ( int i = 0; i < cells[ var ].length; ++i )
+			{
+				int other = crossVars[ var ][ i ];
+				
+				if ( other < 0 )
+				{
+					continue;
+				}
+				
+				int allowed = buckets[ var ].lettersAt( domains[ var ], i );
+				
+				if ( allowed == ALL_LETTERS )
+				{
+					continue;
+				}
+				
+				WordList.Bucket bucket = buckets[ other ];
+				System.arraycopy( domains[ other ], 0, scratch, 0, bucket.span );
+				
+				if ( bucket.restrict( scratch, crossPositions[ var ][ i ], allowed, mask ) )
+				{
+					long[] domain = new long[ bucket.span ];
+					System.arraycopy( scratch, 0, domain, 0, bucket.span );
+					BitSet reason = (BitSet) conflicts[ other ].clone();
+					reason.or( conflicts[ var ] );
+					replace( other, domain, reason, cardinality( domain ) );
+					
+					if ( sizes[ other ] == 0 )
+					{
+						clearQueue();
+						return reason;
+					}
+					
+					enqueue( other );
+				}
+			}
+		}
+		
+		return null;
+	}
+	
+	private void enqueue( int var )
+	{
+		if ( ! queued[ var ] )
+		{
+			queued[ var ] = true;
+			queue[ ( queueHead + queueSize ) % queue.length ] = var;
+			++queueSize;
+		}
+	}
+	
+	private void clearQueue()
+	{
+		for ( ; queueSize > 0; --queueSize )
+		{
+			queued[ queue[ queueHead ] ] = false;
+			queueHead = ( queueHead + 1 ) % queue.length;
+		}
+	}
+	
+	private void replace( int var, long[] domain, BitSet conflict, int size )
+	{
+		trail.add( new TrailEntry( var, domains[ var ], conflicts[ var ], sizes[ var ] ) );
+		domains[ var ] = domain;
+		conflicts[ var ] = conflict;
+		sizes[ var ] = size;
+	}
+	
+	private void undo( int mark )
+	{
+		while ( trail.size() > mark )
+		{
+			TrailEntry entry = trail.remove( trail.size() - 1 );
+			domains[ entry.var ] = entry.domain;
+			conflicts[ entry.var ] = entry.conflict;
+			sizes[ entry.var ] = entry.size;
+		}
+		
+		clearQueue();
+	}
+	
+	private static class TrailEntry
+	{
+		private int var = 0;
+		
+		private long[] domain = null;
+		
+		private BitSet conflict = null;
+		
+		private int size = 0;
+		
+		TrailEntry( int var, long[] domain, BitSet conflict, int size )
+		{
+			this.var = var;
+			this.domain = domain;
+			this.conflict = conflict;
+			this.size = size;
+		}
+	}
+	
+}
@@ -0,0 +1,461 @@
+/**
+ * Copyright (c) 2010 Eric Peterson
+ * For contact information, visit http://www.epeterso2.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.epeterso2.jabberwordy.fill;
+
+import java.util.BitSet;
+
+import com.epeterso2.jabberwordy.model.PuzzleModel;
+import com.epeterso2.jabberwordy.util.ClueDirection;
+import com.epeterso2.jabberwordy.util.GridSlotTable;
+import com.epeterso2.jabberwordy.util.GridSlotTableCache;
+
+/**
+ * Keeps, for every slot of a grid under construction, the number of words of a {@link WordList} that still fit it, as
+ * the constructor enters letters and blocks.
+ * <p>
+ * Each slot holds two bitsets of words: those matching its letters, and of those, the candidates whose letter at every
+ * empty cell is also possible for the crossing slot there. A slot with no candidates is dead; so is a complete slot
+ * whose word is not in the list. A letter changes the matches of the two slots through its cell, and the candidates of
+ * those slots and of the slots that cross them; only they are recomputed. A block also changes the layout of the grid:
+ * slots that kept their cells keep their matches, and only the new slots and their crossings are recomputed.
+ * <p>
+ * Instances of this class are not safe for use by several threads.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+public class SlotCandidateTracker {
+	
+	private static final int ALL_LETTERS = ( 1 << 26 ) - 1;
+	
+	private WordList words = null;
+	
+	private GridSlotTable slots = null;
+	
+	private char[] letters = null;
+	
+	private long[][] matches = null;
+	
+	private long[][] candidates = null;
+	
+	// For each slot and position, the letters found there among the matches of the slot
+	private int[][] matchLetters = null;
+	
+	private int[] counts = null;
+	
+	private int deadCount = 0;
+	
+	private long[] scratch = new long[ 0 ];
+	
+	/**
+	 * Creates a tracker
+	 * @param words The word list
+	 * @param slots The slot table of the grid
+	 * @param letters The letter of each cell in row-major order, or 0 for an empty cell or a block. The array is copied.
+	 */
+	public SlotCandidateTracker( WordList words, GridSlotTable slots, char[] letters )
+	{
+		if ( letters.length != slots.getCellCount() )
+		{
+			throw new IllegalArgumentException( "Grid has " + slots.getCellCount() + " cells, letters given for " + letters.length );
+		}
+		
+		this.words = words;
+		this.letters = new char[ letters.length ];
+		
+		for ( int cell = 0; cell < letters.length; ++cell )
+		{
+			this.letters[ cell ] = slots.isBlock( cell ) ? 0 : normalize( letters[ cell ] );
+		}
+		
+		refresh( layOut( slots, null, null, null ), new BitSet() );
+	}
+	
+	/**
+	 * Creates a tracker for the solution of a puzzle model; cells whose solution is a rebus are taken as empty
+	 * @param words The word list
+	 * @param model The model
+	 */
+	public SlotCandidateTracker( WordList words, PuzzleModel model )
+	{
+		this( words, model.getSlotTable(), solutionLetters( model ) );
+	}
+	
+	private static char[] solutionLetters( PuzzleModel model )
+	{
+		char[] letters = new char[ model.getCellCount() ];
+		
+		for ( int cell = 0; cell < letters.length; ++cell )
+		{
+			char code = Character.toUpperCase( model.getSolutionCode( cell ) );
+			letters[ cell ] = code >= 'A' && code <= 'Z' ? code : 0;
+		}
+		
+		return letters;
+	}
+	
+	private static char normalize( char letter )
+	{
+		char upper = Character.toUpperCase( letter );
+		
+		if ( letter != 0 && ( upper < 'A' || upper > 'Z' ) )
+		{
+			throw new IllegalArgumentException( "Not a letter: " + letter );
+		}
+		
+		return upper;
+	}
+	
+	public GridSlotTable getSlotTable()
+	{
+		return slots;
+	}
+	
+	public char getLetter( int cell )
+	{
+		return letters[ cell ];
+	}
+	
+	/**
+	 * Returns the number of words that fit a slot given its letters and the letters possible in its crossings
+	 * @param slot The slot index
+	 * @return The number of candidates
+	 */
+	public int getCandidateCount( int slot )
+	{
+		return counts[ slot ];
+	}
+	
+	/**
+	 * Returns the number of words that match the letters of a slot, ignoring its crossings
+	 * @param slot The slot index
+	 * @return The number of matching words
+	 */
+	public int getMatchCount( int slot )
+	{
+		return cardinality( matches[ slot ] );
+	}
+	
+	/**
+	 * Determines if no word fits a slot
+	 * @param slot The slot index
+	 * @return <tt>true</tt> if the slot has no candidates
+	 */
+	public boolean isDead( int slot )
+	{
+		return counts[ slot ] == 0;
+	}
+	
+	/**
+	 * Returns the number of slots no word fits
+	 * @return The number of dead slots
+	 */
+	public int getDeadCount()
+	{
+		return deadCount;
+	}
+	
+	/**
+	 * Lists the candidates of a slot, most preferred first
+	 * @param slot The slot index
+	 * @param results Receives the indexes of the candidates among the words of the length of the slot; see
+	 * {@link WordList#getWord(int, int)}
+	 * @return The number of indexes stored, at most the length of the array
+	 */
+	public int getCandidates( int slot, int[] results )
+	{
+		long[] set = candidates[ slot ];
+		int found = 0;
+		
+		for ( int i = 0; i < set.length && found < results.length; ++i )
+		{
+			for ( long bits = set[ i ]; bits != 0 && found < results.length; bits &= bits - 1 )
+			{
+				results[ found++ ] = i * 64 + Long.numberOfTrailingZeros( bits );
+			}
+		}
+		
+		return found;
+	}
+	
+	/**
+	 * Enters or clears the letter of a cell
+	 * @param cell The cell index
+	 * @param letter The letter, or 0 to clear the cell
+	 * @return The slots whose candidate count changed
+	 */
+	public BitSet setLetter( int cell, char letter )
+	{
+		char normalized = normalize( letter );
+		
+		if ( slots.isBlock( cell ) )
+		{
+			throw new IllegalArgumentException( "Cell " + cell + " is a block" );
+		}
+		
+		BitSet changed = new BitSet();
+		
+		if ( letters[ cell ] == normalized )
+		{
+			return changed;
+		}
+		
+		letters[ cell ] = normalized;
+		BitSet dirty = new BitSet();
+		
+		for ( ClueDirection direction : ClueDirection.values() )
+		{
+			int slot = slots.getSlot( cell, direction );
+			
+			if ( slot >= 0 )
+			{
+				match( slot );
+				markWithCrossings( slot, dirty );
+			}
+		}
+		
+		refresh( dirty, changed );
+		return changed;
+	}
+	
+	/**
+	 * Places or removes a block. A cell that becomes a block loses its letter.
+	 * @param cell The cell index
+	 * @param block <tt>true</tt> to place a block, <tt>false</tt> to open the cell
+	 * @return The slots of the new layout whose candidate count changed or that are new; a slot that kept its cells may
+	 * still have a new index
+	 */
+	public BitSet setBlock( int cell, boolean block )
+	{
+		BitSet changed = new BitSet();
+		
+		if ( slots.isBlock( cell ) == block )
+		{
+			return changed;
+		}
+		
+		boolean[] blocks = slots.getBlocks();
+		blocks[ cell ] = block;
+		letters[ cell ] = 0;
+		
+		refresh( layOut( GridSlotTableCache.getDefault().get( slots.getCols(), slots.getRows(), blocks ), slots, matches, matchLetters ), changed );
+		return changed;
+	}
+	
+	/**
+	 * Installs a slot layout, keeping the matches of the slots that have the same cells as before
+	 * @return The slots whose candidates must be recomputed
+	 */
+	private BitSet layOut( GridSlotTable table, GridSlotTable previous, long[][] previousMatches, int[][] previousLetters )
+	{
+		int count = table.getSlotCount();
+		long[][] nextCandidates = new long[ count ][];
+		int[] nextCounts = new int[ count ];
+		BitSet dirty = new BitSet();
+		BitSet kept = new BitSet();
+		
+		slots = table;
+		matches = new long[ count ][];
+		matchLetters = new int[ count ][];
+		
+		for ( int slot = 0; slot < count; ++slot )
+		{
+			int same = previous == null ? -1 : previous.getSlot( table.getStart( slot ), table.getDirection( slot ) );
+			
+			if ( same >= 0 && previous.getStart( same ) == table.getStart( slot ) && previous.getLength( same ) == table.getLength( slot ) )
+			{
+				matches[ slot ] = previousMatches[ same ];
+				matchLetters[ slot ] = previousLetters[ same ];
+				nextCandidates[ slot ] = candidates[ same ];
+				nextCounts[ slot ] = counts[ same ];
+				kept.set( same );
+			}
+			
+			else
+			{
+				match( slot );
+				markWithCrossings( slot, dirty );
+			}
+		}
+		
+		// The slots that crossed a slot that is gone may have lost a crossing
+		for ( int slot = 0; previous != null && slot < previous.getSlotCount(); ++slot )
+		{
+			for ( int i = 0; ! kept.get( slot ) && i < previous.getLength( slot ); ++i )
+			{
+				markCell( previous.getCell( slot, i ), dirty );
+			}
+		}
+		
+		candidates = nextCandidates;
+		counts = nextCounts;
+		deadCount = 0;
+		
+		for ( int slot = 0; slot < count; ++slot )
+		{
+			deadCount += candidates[ slot ] != null && counts[ slot ] == 0 ? 1 : 0;
+		}
+		
+		return dirty;
+	}
+	
+	private void markWithCrossings( int slot, BitSet dirty )
+	{
+		dirty.set( slot );
+		
+		for ( int i = 0; i < slots.getLength( slot ); ++i )
+		{
+			markCell( slots.getCell( slot, i ), dirty );
+		}
+	}
+	
+	private void markCell( int cell, BitSet dirty )
+	{
+		if ( ! slots.isBlock( cell ) )
+		{
+			for ( ClueDirection direction : ClueDirection.values() )
+			{
+				int slot = slots.getSlot( cell, direction );
+				
+				if ( slot >= 0 )
+				{
+					dirty.set( slot );
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Recomputes the words matching the letters of a slot
+	 */
+	private void match( int slot )
+	{
+		int length = slots.getLength( slot );
+		
+		if ( words.getCount( length ) == 0 )
+		{
+			matches[ slot ] = new long[ 0 ];
+			matchLetters[ slot ] = new int[ length ];
+			return;
+		}
+		
+		WordList.Bucket bucket = words.getBucket( length );
+		long[] set = bucket.all.clone();
+		int[] found = new int[ length ];
+		
+		for ( int i = 0; i < length; ++i )
+		{
+			char letter = letters[ slots.getCell( slot, i ) ];
+			
+			if ( letter != 0 )
+			{
+				bucket.and( set, i, letter - 'A' );
+			}
+		}
+		
+		for ( int i = 0; i < length; ++i )
+		{
+			char letter = letters[ slots.getCell( slot, i ) ];
+			found[ i ] = letter != 0 ? ( isEmpty( set ) ? 0 : 1 << ( letter - 'A' ) ) : bucket.lettersAt( set, i );
+		}
+		
+		matches[ slot ] = set;
+		matchLetters[ slot ] = found;
+	}
+	
+	/**
+	 * Recomputes the candidates of the dirty slots from their matches and the letters possible in their crossings
+	 */
+	private void refresh( BitSet dirty, BitSet changed )
+	{
+		for ( int slot = dirty.nextSetBit( 0 ); slot >= 0; slot = dirty.nextSetBit( slot + 1 ) )
+		{
+			int before = candidates[ slot ] == null ? -1 : counts[ slot ];
+			long[] set = matches[ slot ];
+			int length = slots.getLength( slot );
+			ClueDirection crossing = slots.getDirection( slot ) == ClueDirection.ACROSS ? ClueDirection.DOWN : ClueDirection.ACROSS;
+			
+			for ( int i = 0; i < length && ! isEmpty( set ); ++i )
+			{
+				int cell = slots.getCell( slot, i );
+				int other = slots.getSlot( cell, crossing );
+				
+				if ( letters[ cell ] != 0 || other < 0 )
+				{
+					continue;
+				}
+				
+				int allowed = matchLetters[ other ][ slots.getOffset( cell, crossing ) ];
+				
+				if ( allowed != ALL_LETTERS && ( matchLetters[ slot ][ i ] & ~allowed ) != 0 )
+				{
+					if ( set == matches[ slot ] )
+					{
+						set = set.clone();
+					}
+					
+					if ( scratch.length < set.length )
+					{
+						scratch = new long[ set.length ];
+					}
+					
+					words.getBucket( length ).restrict( set, i, allowed, scratch );
+				}
+			}
+			
+			candidates[ slot ] = set;
+			counts[ slot ] = cardinality( set );
+			deadCount += ( counts[ slot ] == 0 ? 1 : 0 ) - ( before == 0 ? 1 : 0 );
+			
+			if ( before != counts[ slot ] )
+			{
+				changed.set( slot );
+			}
+		}
+	}
+	
+	private static boolean isEmpty( long[] set )
+	{
+		for ( long bits : set )
+		{
+			if ( bits != 0 )
+			{
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	private static int cardinality( long[] set )
+	{
+		int count = 0;
+		
+		for ( long bits : set )
+		{
+			count += Long.bitCount( bits );
+		}
+		
+		return count;
+	}
+	
+}
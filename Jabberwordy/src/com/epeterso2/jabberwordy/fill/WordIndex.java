@@ -0,0 +1,397 @@
+/**
+ * Copyright (c) 2010 Eric Peterson
+ * For contact information, visit http://www.epeterso2.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.epeterso2.jabberwordy.fill;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A read-only index of words answering pattern queries such as "?A?PLE", loaded from a memory-mapped file written by
+ * a {@link WordIndexBuilder}.
+ * <p>
+ * The file holds the words of each length in one section: their letters, an optional score column, and for each block
+ * of 64 words and each position and letter, a bitmap of the words in the block with that letter at that position. A
+ * query reads the bitmaps of its fixed letters for each block and ANDs them, so it touches only the blocks of one
+ * length and allocates nothing; the matching words are passed to a {@link WordIndexHandler} or stored in an array of
+ * indexes, and can be read into a caller's buffer with {@link #getWord(int, int, char[], int)}.
+ * <p>
+ * The file is mapped rather than read, so the operating system shares and pages it. Queries may be made by any number
+ * of threads at once.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+public class WordIndex implements Closeable {
+	
+	/**
+	 * The character that matches any letter in a pattern
+	 */
+	public static final char WILDCARD = '?';
+	
+	static final int MAGIC = 0x4A574958;
+	
+	static final int VERSION = 1;
+	
+	static final int SCORED = 1;
+	
+	static final int HEADER_LENGTH = 16;
+	
+	static final int TABLE_ENTRY_LENGTH = 12;
+	
+	private RandomAccessFile file = null;
+	
+	private boolean scored = false;
+	
+	private int size = 0;
+	
+	private Section[] sections = null;
+	
+	/**
+	 * Opens an index file
+	 * @param indexFile The file
+	 * @throws IOException If the file cannot be read or is not an index
+	 */
+	public WordIndex( File indexFile ) throws IOException
+	{
+		this.file = new RandomAccessFile( indexFile, "r" );
+		
+		try
+		{
+			FileChannel channel = file.getChannel();
+			ByteBuffer header = channel.map( FileChannel.MapMode.READ_ONLY, 0, Math.min( channel.size(), HEADER_LENGTH ) );
+			
+			if ( header.limit() < HEADER_LENGTH || header.getInt( 0 ) != MAGIC || header.getInt( 4 ) != VERSION )
+			{
+				throw new IOException( "Not a word index: " + indexFile );
+			}
+			
+			scored = ( header.getInt( 8 ) & SCORED ) != 0;
+			int maxLength = header.getInt( 12 );
+			
+			if ( maxLength < 0 || maxLength > WordList.MAX_LENGTH || HEADER_LENGTH + ( maxLength + 1L ) * TABLE_ENTRY_LENGTH > channel.size() )
+			{
+				throw new IOException( "Corrupt word index: " + indexFile );
+			}
+			
+			ByteBuffer table = channel.map( FileChannel.MapMode.READ_ONLY, HEADER_LENGTH, ( maxLength + 1 ) * TABLE_ENTRY_LENGTH );
+			sections = new Section[ maxLength + 1 ];
+			
+			for ( int length = 0; length <= maxLength; ++length )
+			{
+				int count = table.getInt( length * TABLE_ENTRY_LENGTH );
+				long offset = table.getLong( length * TABLE_ENTRY_LENGTH + 4 );
+				
+				if ( count > 0 )
+				{
+					long sectionLength = getSectionLength( length, count, scored );
+					
+					if ( length < 2 || offset < 0 || offset + sectionLength > channel.size() || sectionLength > Integer.MAX_VALUE )
+					{
+						throw new IOException( "Corrupt word index: " + indexFile );
+					}
+					
+					sections[ length ] = new Section( length, count, scored, channel.map( FileChannel.MapMode.READ_ONLY, offset, sectionLength ) );
+					size += count;
+				}
+			}
+		}
+		
+		catch ( IOException e )
+		{
+			file.close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Returns the length in bytes of the section of one length in the file
+	 */
+	static long getSectionLength( int length, int count, boolean scored )
+	{
+		long span = ( count + 63 ) >>> 6;
+		return align( (long) count * length ) + ( scored ? align( count * 4L ) : 0 ) + span * length * 26 * 8;
+	}
+	
+	private static long align( long bytes )
+	{
+		return ( bytes + 7 ) & ~7L;
+	}
+	
+	/**
+	 * Returns the number of words held
+	 * @return The number of words of all lengths
+	 */
+	public int size()
+	{
+		return size;
+	}
+	
+	/**
+	 * Determines if the index holds a score for each word
+	 * @return <tt>true</tt> if the index has a score column
+	 */
+	public boolean hasScores()
+	{
+		return scored;
+	}
+	
+	/**
+	 * Returns the number of words of a length
+	 * @param length The length
+	 * @return The number of words
+	 */
+	public int getCount( int length )
+	{
+		Section section = getSection( length );
+		return section == null ? 0 : section.count;
+	}
+	
+	/**
+	 * Returns a letter of a word
+	 * @param length The length of the word
+	 * @param index The index of the word among the words of its length
+	 * @param position The position of the letter, starting at 0
+	 * @return The letter, from 'A' to 'Z'
+	 */
+	public char getLetter( int length, int index, int position )
+	{
+		return (char) sections[ length ].buffer.get( index * length + position );
+	}
+	
+	/**
+	 * Reads a word into a buffer
+	 * @param length The length of the word
+	 * @param index The index of the word among the words of its length
+	 * @param buffer The buffer
+	 * @param offset The offset in the buffer of the first letter
+	 */
+	public void getWord( int length, int index, char[] buffer, int offset )
+	{
+		ByteBuffer letters = sections[ length ].buffer;
+		
+		for ( int i = 0, at = index * length; i < length; ++i )
+		{
+			buffer[ offset + i ] = (char) letters.get( at + i );
+		}
+	}
+	
+	/**
+	 * Returns a word
+	 * @param length The length of the word
+	 * @param index The index of the word among the words of its length
+	 * @return The word
+	 */
+	public String getWord( int length, int index )
+	{
+		char[] word = new char[ length ];
+		getWord( length, index, word, 0 );
+		return new String( word );
+	}
+	
+	/**
+	 * Returns the score of a word
+	 * @param length The length of the word
+	 * @param index The index of the word among the words of its length
+	 * @return The score, or 0 if the index has no scores
+	 */
+	public int getScore( int length, int index )
+	{
+		Section section = sections[ length ];
+		return scored ? section.buffer.getInt( section.scores + index * 4 ) : 0;
+	}
+	
+	/**
+	 * Counts the words matching a pattern
+	 * @param pattern The pattern: one letter or {@link #WILDCARD} for each letter of the word
+	 * @return The number of matching words
+	 */
+	public int count( CharSequence pattern )
+	{
+		return scan( pattern, null, null );
+	}
+	
+	/**
+	 * Finds the words matching a pattern, in index order
+	 * @param pattern The pattern: one letter or {@link #WILDCARD} for each letter of the word
+	 * @param handler Receives each matching word
+	 * @return The number of words passed to the handler
+	 */
+	public int find( CharSequence pattern, WordIndexHandler handler )
+	{
+		return scan( pattern, handler, null );
+	}
+	
+	/**
+	 * Finds the first words matching a pattern, in index order
+	 * @param pattern The pattern: one letter or {@link #WILDCARD} for each letter of the word
+	 * @param results Receives the indexes of the matching words among the words of the length of the pattern
+	 * @return The number of indexes stored, at most the length of the array
+	 */
+	public int find( CharSequence pattern, int[] results )
+	{
+		return scan( pattern, null, results );
+	}
+	
+	private int scan( CharSequence pattern, WordIndexHandler handler, int[] results )
+	{
+		int length = pattern.length();
+		Section section = getSection( length );
+		
+		for ( int i = 0; i < length; ++i )
+		{
+			char letter = pattern.charAt( i );
+			
+			if ( letter != WILDCARD && ( letter < 'A' || letter > 'Z' ) && ( letter < 'a' || letter > 'z' ) )
+			{
+				throw new IllegalArgumentException( "Invalid pattern: " + pattern );
+			}
+		}
+		
+		if ( section == null || results != null && results.length == 0 )
+		{
+			return 0;
+		}
+		
+		int found = 0;
+		int stride = length * 26 * 8;
+		
+		for ( int block = 0, base = section.bitmaps; block < section.span; ++block, base += stride )
+		{
+			long bits = block == section.span - 1 ? section.lastBlock : -1L;
+			
+			for ( int position = 0; position < length && bits != 0; ++position )
+			{
+				char letter = pattern.charAt( position );
+				
+				if ( letter != WILDCARD )
+				{
+					bits &= section.buffer.getLong( base + ( position * 26 + ( letter & 0x1F ) - 1 ) * 8 );
+				}
+			}
+			
+			if ( handler == null && results == null )
+			{
+				found += Long.bitCount( bits );
+				continue;
+			}
+			
+			for ( ; bits != 0; bits &= bits - 1 )
+			{
+				int index = block * 64 + Long.numberOfTrailingZeros( bits );
+				
+				if ( results != null )
+				{
+					results[ found++ ] = index;
+					
+					if ( found == results.length )
+					{
+						return found;
+					}
+				}
+				
+				else
+				{
+					++found;
+					
+					if ( ! handler.match( length, index ) )
+					{
+						return found;
+					}
+				}
+			}
+		}
+		
+		return found;
+	}
+	
+	/**
+	 * Builds a {@link WordList} for the {@link AutoFiller} from the words of the index, keeping their order
+	 * @param minimumScore The lowest score of the words to keep; ignored if the index has no scores
+	 * @return The word list
+	 */
+	public WordList toWordList( int minimumScore )
+	{
+		List<String> words = new ArrayList<String>( size );
+		
+		for ( int length = 0; length < sections.length; ++length )
+		{
+			for ( int index = 0; index < getCount( length ); ++index )
+			{
+				if ( ! scored || getScore( length, index ) >= minimumScore )
+				{
+					words.add( getWord( length, index ) );
+				}
+			}
+		}
+		
+		return new WordList( words );
+	}
+	
+	private Section getSection( int length )
+	{
+		return length < sections.length ? sections[ length ] : null;
+	}
+	
+	/**
+	 * Closes the file. The mapping is released when the index is garbage collected.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		file.close();
+	}
+	
+	/**
+	 * The mapped section of the words of one length
+	 */
+	private static class Section
+	{
+		private int count = 0;
+		
+		private int span = 0;
+		
+		private int scores = 0;
+		
+		private int bitmaps = 0;
+		
+		private long lastBlock = 0;
+		
+		private ByteBuffer buffer = null;
+		
+		Section( int length, int count, boolean scored, ByteBuffer buffer )
+		{
+			this.count = count;
+			this.span = ( count + 63 ) >>> 6;
+			this.scores = (int) align( (long) count * length );
+			this.bitmaps = scores + ( scored ? (int) align( count * 4L ) : 0 );
+			this.lastBlock = count % 64 == 0 ? -1L : ( 1L << ( count % 64 ) ) - 1;
+			this.buffer = buffer;
+		}
+	}
+	
+}
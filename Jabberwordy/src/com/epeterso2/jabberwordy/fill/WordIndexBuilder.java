@@ -0,0 +1,348 @@
+/**
+ * Copyright (c) 2010 Eric Peterson
+ * For contact information, visit http://www.epeterso2.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.epeterso2.jabberwordy.fill;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.epeterso2.jabberwordy.serialization.json.JSONPuzzle;
+import com.epeterso2.jabberwordy.serialization.puz.PUZPuzzle;
+import com.epeterso2.jabberwordy.serialization.puz.PUZSolution;
+import com.epeterso2.jabberwordy.serialization.xpf.XPFClue;
+import com.epeterso2.jabberwordy.serialization.xpf.XPFPuzzle;
+import com.epeterso2.jabberwordy.util.Coordinate;
+import com.epeterso2.jabberwordy.util.GridSlotTable;
+import com.epeterso2.jabberwordy.util.GridSlotTableCache;
+
+/**
+ * Collects words from word lists and puzzle answers and writes them as a {@link WordIndex} file.
+ * <p>
+ * Words are normalized as by {@link WordList#normalize(String)}. Each word has a score, and the scores of a word
+ * added more than once are summed, so a corpus of puzzles gives each answer the number of times it was used. In the
+ * file, the words of each length are ordered by decreasing score and then alphabetically. The score column is written
+ * only if some word has a score other than 0.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+public class WordIndexBuilder {
+	
+	private Map<String, Integer> scores = new HashMap<String, Integer>();
+	
+	/**
+	 * Adds a word
+	 * @param word The word
+	 * @param score The score to add to the word
+	 * @return This builder
+	 */
+	public WordIndexBuilder add( String word, int score )
+	{
+		String normalized = WordList.normalize( word );
+		
+		if ( normalized.length() >= 2 && normalized.length() <= WordList.MAX_LENGTH )
+		{
+			Integer total = scores.get( normalized );
+			scores.put( normalized, total == null ? score : total + score );
+		}
+		
+		return this;
+	}
+	
+	/**
+	 * Adds the words of a list in the format read by {@link WordList#read(Reader, int)}
+	 * @param reader The source of the list
+	 * @return This builder
+	 * @throws IOException If the list cannot be read
+	 */
+	public WordIndexBuilder read( Reader reader ) throws IOException
+	{
+		BufferedReader lines = new BufferedReader( reader );
+		String line = null;
+		
+		while ( ( line = lines.readLine() ) != null )
+		{
+			int separator = line.indexOf( ';' );
+			
+			try
+			{
+				add( separator < 0 ? line : line.substring( 0, separator ), separator < 0 ? 0 : Integer.parseInt( line.substring( separator + 1 ).trim() ) );
+			}
+			
+			catch ( NumberFormatException e )
+			{
+				throw new IOException( "Invalid score in word list: " + line );
+			}
+		}
+		
+		return this;
+	}
+	
+	/**
+	 * Adds the answers of a PUZ puzzle, read from its solution, with a score of 1 each. Slots with an unfilled cell are
+	 * skipped.
+	 * @param puzzle The puzzle
+	 * @return This builder
+	 */
+	public WordIndexBuilder addAnswers( PUZPuzzle puzzle )
+	{
+		int cols = puzzle.getWidth();
+		boolean[] blocks = new boolean[ puzzle.getNumberOfCells() ];
+		String[] values = new String[ blocks.length ];
+		
+		for ( Coordinate coord : puzzle.getCoordinates() )
+		{
+			int cell = ( coord.getY() - 1 ) * cols + coord.getX() - 1;
+			PUZSolution solution = puzzle.getSolutions().get( coord );
+			blocks[ cell ] = puzzle.getCellStyles().get( coord ).isBlock();
+			values[ cell ] = solution == null ? null : solution.getRebus() != null ? solution.getRebus() : String.valueOf( solution.getLetter() );
+			
+			// An unfilled cell holds '-' or a space
+			if ( values[ cell ] != null && ( values[ cell ].trim().length() == 0 || values[ cell ].equals( "-" ) ) )
+			{
+				values[ cell ] = null;
+			}
+		}
+		
+		GridSlotTable slots = GridSlotTableCache.getDefault().get( cols, puzzle.getHeight(), blocks );
+		
+		for ( int slot = 0; slot < slots.getSlotCount(); ++slot )
+		{
+			StringBuilder answer = new StringBuilder();
+			
+			for ( int i = 0; answer != null && i < slots.getLength( slot ); ++i )
+			{
+				String value = values[ slots.getCell( slot, i ) ];
+				answer = value == null ? null : answer.append( value );
+			}
+			
+			if ( answer != null )
+			{
+				add( answer.toString(), 1 );
+			}
+		}
+		
+		return this;
+	}
+	
+	/**
+	 * Adds the answers of the clues of an XPF puzzle with a score of 1 each
+	 * @param puzzle The puzzle
+	 * @return This builder
+	 */
+	public WordIndexBuilder addAnswers( XPFPuzzle puzzle )
+	{
+		for ( XPFClue clue : puzzle.getClues() )
+		{
+			if ( clue.getAnswer() != null )
+			{
+				add( clue.getAnswer(), 1 );
+			}
+		}
+		
+		return this;
+	}
+	
+	/**
+	 * Adds the answers of a JSON puzzle with a score of 1 each
+	 * @param puzzle The puzzle
+	 * @return This builder
+	 */
+	public WordIndexBuilder addAnswers( JSONPuzzle puzzle )
+	{
+		if ( puzzle.getAnswers() != null )
+		{
+			addAll( puzzle.getAnswers().getAcross() );
+			addAll( puzzle.getAnswers().getDown() );
+		}
+		
+		return this;
+	}
+	
+	private void addAll( String[] answers )
+	{
+		for ( int i = 0; answers != null && i < answers.length; ++i )
+		{
+			if ( answers[ i ] != null )
+			{
+				add( answers[ i ], 1 );
+			}
+		}
+	}
+	
+	/**
+	 * Returns the number of distinct words added
+	 * @return The number of words
+	 */
+	public int size()
+	{
+		return scores.size();
+	}
+	
+	/**
+	 * Writes the index to a file
+	 * @param file The file, which is replaced
+	 * @throws IOException If the file cannot be written
+	 */
+	public void write( File file ) throws IOException
+	{
+		OutputStream out = new BufferedOutputStream( new FileOutputStream( file ) );
+		
+		try
+		{
+			write( out );
+		}
+		
+		finally
+		{
+			out.close();
+		}
+	}
+	
+	/**
+	 * Writes the index to a stream in the format read by {@link WordIndex}
+	 * @param stream The stream, which is not closed
+	 * @throws IOException If the index cannot be written
+	 */
+	public void write( OutputStream stream ) throws IOException
+	{
+		List<List<String>> byLength = new ArrayList<List<String>>();
+		boolean scored = false;
+		int maxLength = 0;
+		
+		for ( int length = 0; length <= WordList.MAX_LENGTH; ++length )
+		{
+			byLength.add( new ArrayList<String>() );
+		}
+		
+		for ( Map.Entry<String, Integer> entry : scores.entrySet() )
+		{
+			byLength.get( entry.getKey().length() ).add( entry.getKey() );
+			scored |= entry.getValue() != 0;
+			maxLength = Math.max( maxLength, entry.getKey().length() );
+		}
+		
+		Comparator<String> order = new Comparator<String>()
+		{
+			@Override
+			public int compare( String first, String second )
+			{
+				int difference = scores.get( second ).compareTo( scores.get( first ) );
+				return difference != 0 ? difference : first.compareTo( second );
+			}
+		};
+		
+		// The header, then a table giving the word count and section offset of each length
+		DataOutputStream out = new DataOutputStream( stream );
+		long offset = WordIndex.HEADER_LENGTH + ( maxLength + 1 ) * WordIndex.TABLE_ENTRY_LENGTH;
+		out.writeInt( WordIndex.MAGIC );
+		out.writeInt( WordIndex.VERSION );
+		out.writeInt( scored ? WordIndex.SCORED : 0 );
+		out.writeInt( maxLength );
+		
+		for ( int length = 0; length <= maxLength; ++length )
+		{
+			int count = byLength.get( length ).size();
+			out.writeInt( count );
+			out.writeLong( count == 0 ? 0 : offset );
+			offset += count == 0 ? 0 : WordIndex.getSectionLength( length, count, scored );
+		}
+		
+		for ( int length = 2; length <= maxLength; ++length )
+		{
+			List<String> words = byLength.get( length );
+			
+			if ( ! words.isEmpty() )
+			{
+				Collections.sort( words, order );
+				writeSection( out, length, words, scored );
+			}
+		}
+		
+		out.flush();
+	}
+	
+	private void writeSection( DataOutputStream out, int length, List<String> words, boolean scored ) throws IOException
+	{
+		int count = words.size();
+		int span = ( count + 63 ) >>> 6;
+		
+		for ( String word : words )
+		{
+			out.writeBytes( word );
+		}
+		
+		pad( out, count * length );
+		
+		if ( scored )
+		{
+			for ( String word : words )
+			{
+				out.writeInt( scores.get( word ) );
+			}
+			
+			pad( out, count * 4 );
+		}
+		
+		// Bitmaps are grouped by block of 64 words, so that a query reads each block from one place
+		long[] bitmaps = new long[ length * 26 ];
+		
+		for ( int block = 0; block < span; ++block )
+		{
+			Arrays.fill( bitmaps, 0 );
+			
+			for ( int index = block * 64; index < Math.min( count, block * 64 + 64 ); ++index )
+			{
+				for ( int position = 0; position < length; ++position )
+				{
+					bitmaps[ position * 26 + words.get( index ).charAt( position ) - 'A' ] |= 1L << index;
+				}
+			}
+			
+			for ( long bitmap : bitmaps )
+			{
+				out.writeLong( bitmap );
+			}
+		}
+	}
+	
+	private void pad( DataOutputStream out, int written ) throws IOException
+	{
+		for ( int i = written; i % 8 != 0; ++i )
+		{
+			out.writeByte( 0 );
+		}
+	}
+	
+}
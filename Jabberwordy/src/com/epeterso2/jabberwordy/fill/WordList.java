@@ -0,0 +1,385 @@
+/**
+ * Copyright (c) 2010 Eric Peterson
+ * For contact information, visit http://www.epeterso2.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.epeterso2.jabberwordy.fill;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A list of fill words, indexed for the {@link AutoFiller}.
+ * <p>
+ * Words are reduced to the letters A to Z and grouped by length. Within a length, each word has an index, and words
+ * that come earlier in the list are preferred. For every position and letter, the list holds a bitset of the words
+ * with that letter at that position, so that the words matching a pattern are found by intersecting bitsets a
+ * <tt>long</tt> at a time. Lists are read from any local source, such as a text file of one word per line; nothing is
+ * fetched from the network.
+ * <p>
+ * Instances of this class are immutable and may be shared by any number of threads.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+public class WordList {
+	
+	/**
+	 * The longest word held
+	 */
+	public static final int MAX_LENGTH = 64;
+	
+	private Bucket[] buckets = new Bucket[ MAX_LENGTH + 1 ];
+	
+	private int size = 0;
+	
+	/**
+	 * Creates a word list
+	 * @param words The words, most preferred first. Letters are converted to upper case, other characters are removed,
+	 * and words that are shorter than 2 or longer than {@link #MAX_LENGTH} letters, or repeat an earlier word, are
+	 * skipped.
+	 */
+	public WordList( Collection<String> words )
+	{
+		List<List<String>> byLength = new ArrayList<List<String>>();
+		Set<String> seen = new HashSet<String>();
+		
+		for ( int length = 0; length <= MAX_LENGTH; ++length )
+		{
+			byLength.add( new ArrayList<String>() );
+		}
+		
+		for ( String word : words )
+		{
+			String normalized = normalize( word );
+			
+			if ( normalized.length() >= 2 && normalized.length() <= MAX_LENGTH && seen.add( normalized ) )
+			{
+				byLength.get( normalized.length() ).add( normalized );
+			}
+		}
+		
+		for ( int length = 2; length <= MAX_LENGTH; ++length )
+		{
+			buckets[ length ] = new Bucket( length, byLength.get( length ) );
+			size += buckets[ length ].count;
+		}
+	}
+	
+	/**
+	 * Reads a word list of one word per line. A line may give a score after a semicolon, as in "AREA;50", in which case
+	 * words are preferred in order of decreasing score; lines with no score have a score of 0. Blank lines are skipped.
+	 * @param reader The source of the list
+	 * @param minimumScore The lowest score of the words to keep
+	 * @return The word list
+	 * @throws IOException If the list cannot be read
+	 */
+	public static WordList read( Reader reader, final int minimumScore ) throws IOException
+	{
+		BufferedReader lines = new BufferedReader( reader );
+		List<ScoredWord> scored = new ArrayList<ScoredWord>();
+		String line = null;
+		
+		while ( ( line = lines.readLine() ) != null )
+		{
+			int separator = line.indexOf( ';' );
+			int score = 0;
+			
+			try
+			{
+				score = separator < 0 ? 0 : Integer.parseInt( line.substring( separator + 1 ).trim() );
+			}
+			
+			catch ( NumberFormatException e )
+			{
+				throw new IOException( "Invalid score in word list: " + line );
+			}
+			
+			if ( score >= minimumScore )
+			{
+				scored.add( new ScoredWord( separator < 0 ? line : line.substring( 0, separator ), score, scored.size() ) );
+			}
+		}
+		
+		ScoredWord[] sorted = scored.toArray( new ScoredWord[ scored.size() ] );
+		Arrays.sort( sorted );
+		List<String> words = new ArrayList<String>( sorted.length );
+		
+		for ( ScoredWord word : sorted )
+		{
+			words.add( word.word );
+		}
+		
+		return new WordList( words );
+	}
+	
+	/**
+	 * Reduces a word to upper-case letters A to Z
+	 * @param word The word
+	 * @return The normalized word
+	 */
+	public static String normalize( String word )
+	{
+		StringBuilder builder = new StringBuilder( word.length() );
+		
+		for ( int i = 0; i < word.length(); ++i )
+		{
+			char letter = Character.toUpperCase( word.charAt( i ) );
+			
+			if ( letter >= 'A' && letter <= 'Z' )
+			{
+				builder.append( letter );
+			}
+		}
+		
+		return builder.toString();
+	}
+	
+	/**
+	 * Returns the number of words held
+	 * @return The number of words of all lengths
+	 */
+	public int size()
+	{
+		return size;
+	}
+	
+	/**
+	 * Returns the number of words of a length
+	 * @param length The length
+	 * @return The number of words
+	 */
+	public int getCount( int length )
+	{
+		return length < 2 || length > MAX_LENGTH ? 0 : buckets[ length ].count;
+	}
+	
+	/**
+	 * Returns a word
+	 * @param length The length of the word
+	 * @param index The index of the word among the words of its length
+	 * @return The word
+	 */
+	public String getWord( int length, int index )
+	{
+		Bucket bucket = buckets[ length ];
+		char[] word = new char[ length ];
+		
+		for ( int i = 0; i < length; ++i )
+		{
+			word[ i ] = (char) ( 'A' + bucket.letters[ index * length + i ] );
+		}
+		
+		return new String( word );
+	}
+	
+	/**
+	 * Returns a letter of a word
+	 * @param length The length of the word
+	 * @param index The index of the word among the words of its length
+	 * @param position The position of the letter, starting at 0
+	 * @return The letter, from 'A' to 'Z'
+	 */
+	public char getLetter( int length, int index, int position )
+	{
+		return (char) ( 'A' + buckets[ length ].letters[ index * length + position ] );
+	}
+	
+	/**
+	 * Finds a word
+	 * @param word The word, which is normalized first
+	 * @return The index of the word among the words of its length, or -1 if the list does not hold it
+	 */
+	public int indexOf( String word )
+	{
+		String normalized = normalize( word );
+		
+		if ( normalized.length() < 2 || normalized.length() > MAX_LENGTH )
+		{
+			return -1;
+		}
+		
+		Bucket bucket = buckets[ normalized.length() ];
+		long[] matches = bucket.all.clone();
+		
+		for ( int i = 0; i < normalized.length(); ++i )
+		{
+			bucket.and( matches, i, normalized.charAt( i ) - 'A' );
+		}
+		
+		for ( int i = 0; i < matches.length; ++i )
+		{
+			if ( matches[ i ] != 0 )
+			{
+				return i * 64 + Long.numberOfTrailingZeros( matches[ i ] );
+			}
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * Returns the index of the words of a length
+	 */
+	Bucket getBucket( int length )
+	{
+		return buckets[ length ];
+	}
+	
+	/**
+	 * The words of one length, with a bitset of the words for each position and letter
+	 */
+	static class Bucket
+	{
+		final int length;
+		
+		final int count;
+		
+		// The number of longs in a bitset of the words
+		final int span;
+		
+		final byte[] letters;
+		
+		final long[] masks;
+		
+		final long[] all;
+		
+		Bucket( int length, List<String> words )
+		{
+			this.length = length;
+			this.count = words.size();
+			this.span = ( count + 63 ) >>> 6;
+			this.letters = new byte[ count * length ];
+			this.masks = new long[ length * 26 * span ];
+			this.all = new long[ span ];
+			
+			for ( int index = 0; index < count; ++index )
+			{
+				all[ index >>> 6 ] |= 1L << index;
+				
+				for ( int position = 0; position < length; ++position )
+				{
+					int letter = words.get( index ).charAt( position ) - 'A';
+					letters[ index * length + position ] = (byte) letter;
+					masks[ ( position * 26 + letter ) * span + ( index >>> 6 ) ] |= 1L << index;
+				}
+			}
+		}
+		
+		/**
+		 * Removes from a bitset the words that do not have a letter at a position
+		 */
+		void and( long[] words, int position, int letter )
+		{
+			int offset = ( position * 26 + letter ) * span;
+			
+			for ( int i = 0; i < span; ++i )
+			{
+				words[ i ] &= masks[ offset + i ];
+			}
+		}
+		
+		/**
+		 * Returns the letters found at a position among a set of words, as bits 0 (A) to 25 (Z)
+		 */
+		int lettersAt( long[] words, int position )
+		{
+			int result = 0;
+			
+			for ( int letter = 0; letter < 26; ++letter )
+			{
+				int offset = ( position * 26 + letter ) * span;
+				
+				for ( int i = 0; i < span; ++i )
+				{
+					if ( ( words[ i ] & masks[ offset + i ] ) != 0 )
+					{
+						result |= 1 << letter;
+						break;
+					}
+				}
+			}
+			
+			return result;
+		}
+		
+		/**
+		 * Keeps in a bitset only the words that have one of a set of letters at a position
+		 * @return <tt>true</tt> if a word was removed
+		 */
+		boolean restrict( long[] words, int position, int allowed, long[] scratch )
+		{
+			Arrays.fill( scratch, 0, span, 0 );
+			
+			for ( int letter = 0; letter < 26; ++letter )
+			{
+				if ( ( allowed & 1 << letter ) != 0 )
+				{
+					int offset = ( position * 26 + letter ) * span;
+					
+					for ( int i = 0; i < span; ++i )
+					{
+						scratch[ i ] |= masks[ offset + i ];
+					}
+				}
+			}
+			
+			boolean changed = false;
+			
+			for ( int i = 0; i < span; ++i )
+			{
+				long kept = words[ i ] & scratch[ i ];
+				changed |= kept != words[ i ];
+				words[ i ] = kept;
+			}
+			
+			return changed;
+		}
+	}
+	
+	private static class ScoredWord implements Comparable<ScoredWord>
+	{
+		private String word = null;
+		
+		private int score = 0;
+		
+		private int order = 0;
+		
+		ScoredWord( String word, int score, int order )
+		{
+			this.word = word;
+			this.score = score;
+			this.order = order;
+		}
+		
+		@Override
+		public int compareTo( ScoredWord other )
+		{
+			return score != other.score ? ( score > other.score ? -1 : 1 ) : order - other.order;
+		}
+	}
+	
+}
@@ -0,0 +1,276 @@
+/**
+ * Copyright (c) 2010 Eric Peterson
+ * For contact information, visit http://www.epeterso2.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.epeterso2.jabberwordy.grading;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.epeterso2.jabberwordy.model.PuzzleModelSnapshot;
+
+/**
+ * Grades batches of submissions against a {@link GradingKey} in parallel, and measures its throughput.
+ * <p>
+ * A batch is split into one contiguous share per thread of the executor, each graded into its own reports, so the
+ * threads share nothing but the key. The grader counts the submissions and cells it has graded and the time spent on
+ * each batch, from which it reports submissions and cells per second.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+public class BatchGrader {
+	
+	private ExecutorService executor = null;
+	
+	private int parallelism = 0;
+	
+	private AtomicLong batches = new AtomicLong();
+	
+	private AtomicLong submissions = new AtomicLong();
+	
+	private AtomicLong cells = new AtomicLong();
+	
+	private AtomicLong nanos = new AtomicLong();
+	
+	/**
+	 * Creates a grader
+	 * @param executor The executor that grades the shares of a batch
+	 * @param parallelism The number of shares a batch is split into, usually the number of threads of the executor
+	 */
+	public BatchGrader( ExecutorService executor, int parallelism )
+	{
+		if ( parallelism < 1 )
+		{
+			throw new IllegalArgumentException( "Parallelism must be positive: " + parallelism );
+		}
+		
+		this.executor = executor;
+		this.parallelism = parallelism;
+	}
+	
+	/**
+	 * Grades a batch of PUZ images
+	 * @param key The key of the puzzle
+	 * @param images The submitted images
+	 * @return A report for each image, in order
+	 * @throws InterruptedException If the thread was interrupted while waiting for the batch
+	 * @throws IllegalArgumentException If an image does not have the grid size of the key
+	 */
+	public GradeReport[] gradeImages( GradingKey key, List<byte[]> images ) throws InterruptedException
+	{
+		return gradeImages( key, images, null );
+	}
+	
+	/**
+	 * Grades a batch of PUZ images into reports kept from an earlier batch
+	 * @param key The key of the puzzle
+	 * @param images The submitted images
+	 * @param reports The reports to fill, at least one per image; a <tt>null</tt> entry is replaced by a new report
+	 * @return The reports, the first of which correspond to the images in order
+	 * @throws InterruptedException If the thread was interrupted while waiting for the batch
+	 * @throws IllegalArgumentException If an image does not have the grid size of the key, or there are too few reports
+	 */
+	public GradeReport[] gradeImages( final GradingKey key, final List<byte[]> images, GradeReport[] reports ) throws InterruptedException
+	{
+		return grade( key, images.size(), reports, new Grader()
+		{
+			@Override
+			public void grade( int index, GradeReport report )
+			{
+				key.grade( images.get( index ), report );
+			}
+		} );
+	}
+	
+	/**
+	 * Grades a batch of puzzle models
+	 * @param key The key of the puzzle
+	 * @param snapshots Snapshots of the submitted models
+	 * @return A report for each model, in order
+	 * @throws InterruptedException If the thread was interrupted while waiting for the batch
+	 * @throws IllegalArgumentException If a model does not have the grid size of the key
+	 */
+	public GradeReport[] gradeSnapshots( GradingKey key, List<PuzzleModelSnapshot> snapshots ) throws InterruptedException
+	{
+		return gradeSnapshots( key, snapshots, null );
+	}
+	
+	/**
+	 * Grades a batch of puzzle models into reports kept from an earlier batch
+	 * @param key The key of the puzzle
+	 * @param snapshots Snapshots of the submitted models
+	 * @param reports The reports to fill, at least one per model; a <tt>null</tt> entry is replaced by a new report
+	 * @return The reports, the first of which correspond to the models in order
+	 * @throws InterruptedException If the thread was interrupted while waiting for the batch
+	 * @throws IllegalArgumentException If a model does not have the grid size of the key, or there are too few reports
+	 */
+	public GradeReport[] gradeSnapshots( final GradingKey key, final List<PuzzleModelSnapshot> snapshots, GradeReport[] reports ) throws InterruptedException
+	{
+		return grade( key, snapshots.size(), reports, new Grader()
+		{
+			@Override
+			public void grade( int index, GradeReport report )
+			{
+				key.grade( snapshots.get( index ), report );
+			}
+		} );
+	}
+	
+	public long getBatchCount()
+	{
+		return batches.get();
+	}
+	
+	public long getSubmissionCount()
+	{
+		return submissions.get();
+	}
+	
+	/**
+	 * Returns the number of cells graded, counting every cell of every submission
+	 * @return The cell count
+	 */
+	public long getCellCount()
+	{
+		return cells.get();
+	}
+	
+	/**
+	 * Returns the time spent grading batches, from submission of the first share to completion of the last
+	 * @return The time in nanoseconds
+	 */
+	public long getElapsedNanos()
+	{
+		return nanos.get();
+	}
+	
+	/**
+	 * Returns the number of submissions graded per second of batch time
+	 * @return The throughput, or zero if nothing has been graded
+	 */
+	public double getSubmissionsPerSecond()
+	{
+		long time = nanos.get();
+		return time == 0 ? 0 : submissions.get() * 1e9 / time;
+	}
+	
+	/**
+	 * Returns the number of cells graded per second of batch time
+	 * @return The throughput, or zero if nothing has been graded
+	 */
+	public double getCellsPerSecond()
+	{
+		long time = nanos.get();
+		return time == 0 ? 0 : cells.get() * 1e9 / time;
+	}
+	
+	/**
+	 * Clears the counters
+	 */
+	public void resetStatistics()
+	{
+		batches.set( 0 );
+		submissions.set( 0 );
+		cells.set( 0 );
+		nanos.set( 0 );
+	}
+	
+	private GradeReport[] grade( GradingKey key, int count, GradeReport[] given, final Grader grader ) throws InterruptedException
+	{
+		if ( given != null && given.length < count )
+		{
+			throw new IllegalArgumentException( count + " submissions but only " + given.length + " reports" );
+		}
+		
+		long start = System.nanoTime();
+		final GradeReport[] reports = given == null ? new GradeReport[ count ] : given;
+		int shares = Math.max( 1, Math.min( parallelism, count ) );
+		List<Future<Void>> futures = new ArrayList<Future<Void>>( shares );
+		
+		for ( int share = 0; share < shares; ++share )
+		{
+			final int from = (int) ( (long) count * share / shares );
+			final int to = (int) ( (long) count * ( share + 1 ) / shares );
+			
+			futures.add( executor.submit( new Callable<Void>()
+			{
+				@Override
+				public Void call()
+				{
+					for ( int i = from; i < to; ++i )
+					{
+						if ( reports[ i ] == null )
+						{
+							reports[ i ] = new GradeReport();
+						}
+						
+						grader.grade( i, reports[ i ] );
+					}
+					
+					return null;
+				}
+			} ) );
+		}
+		
+		try
+		{
+			for ( Future<Void> future : futures )
+			{
+				future.get();
+			}
+		}
+		
+		catch ( ExecutionException e )
+		{
+			for ( Future<Void> future : futures )
+			{
+				future.cancel( true );
+			}
+			
+			if ( e.getCause() instanceof RuntimeException )
+			{
+				throw (RuntimeException) e.getCause();
+			}
+			
+			throw new IllegalStateException( e.getCause() );
+		}
+		
+		nanos.addAndGet( System.nanoTime() - start );
+		batches.incrementAndGet();
+		submissions.addAndGet( count );
+		cells.addAndGet( (long) count * key.getCellCount() );
+		return reports;
+	}
+	
+	/**
+	 * Grades one submission of a batch
+	 */
+	private interface Grader
+	{
+		void grade( int index, GradeReport report );
+	}
+
+}
@@ -0,0 +1,213 @@
+/**
+ * Copyright (c) 2010 Eric Peterson
+ * For contact information, visit http://www.epeterso2.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.epeterso2.jabberwordy.grading;
+
+import java.util.BitSet;
+
+import com.epeterso2.jabberwordy.util.ClueDirection;
+import com.epeterso2.jabberwordy.util.GridSlotTable;
+
+/**
+ * The grade of one submitted grid: which cells are empty or incorrect and which entries are entirely correct.
+ * <p>
+ * A report is filled by {@link GradingKey#grade(byte[], GradeReport)} and may be reused for the next submission, so
+ * grading a batch allocates nothing per submission once the reports exist; {@link BatchGrader} accepts the reports of
+ * an earlier batch for the same purpose.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+public class GradeReport {
+	
+	private GradingKey key = null;
+	
+	private BitSet incorrect = new BitSet();
+	
+	private BitSet empty = new BitSet();
+	
+	private BitSet incorrectSlots = new BitSet();
+	
+	private int incorrectCount = 0;
+	
+	private int emptyCount = 0;
+	
+	public GradingKey getKey() {
+		return key;
+	}
+	
+	/**
+	 * Determines if every open cell of the grid is correct
+	 * @return <tt>true</tt> if the grid is solved
+	 */
+	public boolean isSolved()
+	{
+		return incorrectCount == 0;
+	}
+	
+	/**
+	 * Returns the number of open cells that hold the correct value
+	 * @return The number of correct cells
+	 */
+	public int getCorrectCount()
+	{
+		return key.getOpenCellCount() - incorrectCount;
+	}
+	
+	/**
+	 * Returns the number of open cells that are empty or hold the wrong value
+	 * @return The number of cells that are not correct
+	 */
+	public int getIncorrectCount()
+	{
+		return incorrectCount;
+	}
+	
+	/**
+	 * Returns the number of open cells that are empty
+	 * @return The number of empty cells
+	 */
+	public int getEmptyCount()
+	{
+		return emptyCount;
+	}
+	
+	/**
+	 * Returns the number of open cells that hold a value, whether or not it is correct
+	 * @return The number of filled cells
+	 */
+	public int getFilledCount()
+	{
+		return key.getOpenCellCount() - emptyCount;
+	}
+	
+	/**
+	 * Determines if a cell holds its solution. Blocks are always correct.
+	 * @param cell The cell index
+	 * @return <tt>true</tt> if the cell is correct
+	 */
+	public boolean isCellCorrect( int cell )
+	{
+		return ! incorrect.get( cell );
+	}
+	
+	public boolean isCellEmpty( int cell )
+	{
+		return empty.get( cell );
+	}
+	
+	/**
+	 * Returns the next cell that is not correct, in the manner of {@link BitSet#nextSetBit(int)}
+	 * @param from The cell to start from
+	 * @return The next incorrect cell at or after <tt>from</tt>, or -1 if there is none
+	 */
+	public int nextIncorrectCell( int from )
+	{
+		return incorrect.nextSetBit( from );
+	}
+	
+	/**
+	 * Determines if every cell of an entry holds its solution
+	 * @param slot The slot of the entry, as numbered by {@link GridSlotTable}
+	 * @return <tt>true</tt> if the entry is correct
+	 */
+	public boolean isSlotCorrect( int slot )
+	{
+		return ! incorrectSlots.get( slot );
+	}
+	
+	/**
+	 * Determines if every cell of an entry holds its solution
+	 * @param number The clue number of the entry
+	 * @param direction The direction of the entry
+	 * @return <tt>true</tt> if the entry is correct
+	 * @throws IllegalArgumentException If the grid has no such entry
+	 */
+	public boolean isEntryCorrect( int number, ClueDirection direction )
+	{
+		int slot = key.getSlotTable().findSlot( number, direction );
+		
+		if ( slot < 0 )
+		{
+			throw new IllegalArgumentException( "No entry " + number + " " + direction );
+		}
+		
+		return isSlotCorrect( slot );
+	}
+	
+	/**
+	 * Returns the number of entries whose cells all hold their solutions
+	 * @return The number of correct entries
+	 */
+	public int getCorrectSlotCount()
+	{
+		return key.getSlotTable().getSlotCount() - incorrectSlots.cardinality();
+	}
+	
+	/**
+	 * Clears the report to grade a submission against a key
+	 */
+	void reset( GradingKey key )
+	{
+		this.key = key;
+		incorrect.clear();
+		empty.clear();
+		incorrectSlots.clear();
+	}
+	
+	/**
+	 * Records the grade of one open cell
+	 */
+	void setCell( int cell, boolean filled, boolean correct )
+	{
+		incorrect.set( cell, ! correct );
+		empty.set( cell, ! filled );
+	}
+	
+	/**
+	 * Counts the cells and marks the entries that cross an incorrect cell
+	 */
+	void finish()
+	{
+		GridSlotTable slots = key.getSlotTable();
+		incorrectCount = incorrect.cardinality();
+		emptyCount = empty.cardinality();
+		
+		for ( int cell = incorrect.nextSetBit( 0 ); cell >= 0; cell = incorrect.nextSetBit( cell + 1 ) )
+		{
+			if ( slots.getAcrossSlot( cell ) >= 0 )
+			{
+				incorrectSlots.set( slots.getAcrossSlot( cell ) );
+			}
+			
+			if ( slots.getDownSlot( cell ) >= 0 )
+			{
+				incorrectSlots.set( slots.getDownSlot( cell ) );
+			}
+		}
+	}
+	
+	public String toString()
+	{
+		return key == null ? "Not graded" : new StringBuilder().append( getCorrectCount() ).append( '/' ).append( key.getOpenCellCount() ).append( " cells, " ).append( getCorrectSlotCount() ).append( '/' ).append( key.getSlotTable().getSlotCount() ).append( " entries correct" ).toString();
+	}
+
+}
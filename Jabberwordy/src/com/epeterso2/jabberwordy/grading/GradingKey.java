@@ -0,0 +1,332 @@
+/**
+ * Copyright (c) 2010 Eric Peterson
+ * For contact information, visit http://www.epeterso2.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.epeterso2.jabberwordy.grading;
+
+import java.nio.ByteBuffer;
+
+import com.epeterso2.jabberwordy.model.PuzzleModel;
+import com.epeterso2.jabberwordy.model.PuzzleModelSnapshot;
+import com.epeterso2.jabberwordy.serialization.puz.PUZExtraSection;
+import com.epeterso2.jabberwordy.serialization.puz.PUZUtil;
+import com.epeterso2.jabberwordy.util.GridSlotTable;
+import com.epeterso2.jabberwordy.util.GridSlotTableCache;
+
+/**
+ * The answer key of one puzzle, against which any number of submitted grids are graded.
+ * <p>
+ * The key holds the solution in the layout of the solution region of a PUZ image: one byte per cell in row-first
+ * order, with <tt>'.'</tt> for blocks and the first letter of a rebus solution in its cell. The player state region
+ * of a submitted PUZ image has the same layout, so {@link #grade(byte[], GradeReport)} compares the two regions eight
+ * cells at a time and looks at single cells only within the words that differ. Rebus cells, read from the GRBS and
+ * RTBL sections of the key, are graded afterward against the RUSR section of the submission.
+ * <p>
+ * A key is immutable and may be shared by any number of threads.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ * @see BatchGrader
+ */
+public class GradingKey {
+	
+	/**
+	 * The player state of an empty cell in a PUZ image
+	 */
+	public static final byte EMPTY = '-';
+	
+	/**
+	 * The solution and player state of a block in a PUZ image
+	 */
+	public static final byte BLOCK = '.';
+	
+	private int width = 0;
+	
+	private int height = 0;
+	
+	private GridSlotTable slots = null;
+	
+	private byte[] solution = null;
+	
+	private String[] rebus = null;
+	
+	private int[] rebusCells = null;
+	
+	private int openCells = 0;
+	
+	/**
+	 * Creates the key of a PUZ image whose solution is not encrypted
+	 * @param image The PUZ image
+	 * @throws IllegalArgumentException If the solution of the image is encrypted
+	 */
+	public GradingKey( byte[] image )
+	{
+		if ( PUZUtil.isSolutionEncrypted( image ) )
+		{
+			throw new IllegalArgumentException( "Solution is encrypted" );
+		}
+		
+		int cells = PUZUtil.getNumberOfCells( image );
+		byte[] solution = PUZUtil.getBytes( image, PUZUtil.POS_SOLUTION, cells );
+		String[] rebus = null;
+		
+		PUZExtraSection grbs = PUZUtil.getExtraSection( image, PUZUtil.GRBS_SECTION_NAME );
+		PUZExtraSection rtbl = PUZUtil.getExtraSection( image, PUZUtil.RTBL_SECTION_NAME );
+		
+		if ( grbs != null && rtbl != null )
+		{
+			String[] table = PUZUtil.decodeRebusTable( rtbl.getData() );
+			rebus = new String[ cells ];
+			
+			for ( int cell = 0; cell < cells && cell < grbs.getData().length; ++cell )
+			{
+				int key = PUZUtil.byteToUbyte( grbs.getData()[ cell ] );
+				rebus[ cell ] = key == 0 ? null : table[ key - 1 ];
+			}
+		}
+		
+		initialize( PUZUtil.getWidth( image ), PUZUtil.getHeight( image ), solution, rebus );
+	}
+	
+	/**
+	 * Creates the key of a puzzle model
+	 * @param definition The puzzle
+	 */
+	public GradingKey( PuzzleModelSnapshot definition )
+	{
+		int cells = definition.getCellCount();
+		byte[] solution = new byte[ cells ];
+		String[] rebus = new String[ cells ];
+		
+		for ( int cell = 0; cell < cells; ++cell )
+		{
+			String value = definition.getSolution( cell );
+			
+			if ( definition.isBlock( cell ) )
+			{
+				solution[ cell ] = BLOCK;
+			}
+			
+			else if ( value.length() == 0 )
+			{
+				// A cell with no solution matches only an empty cell
+				solution[ cell ] = EMPTY;
+			}
+			
+			else
+			{
+				solution[ cell ] = (byte) value.charAt( 0 );
+				rebus[ cell ] = value.length() > 1 || value.charAt( 0 ) > 0xFF ? value : null;
+			}
+		}
+		
+		initialize( definition.getWidth(), definition.getHeight(), solution, rebus );
+	}
+	
+	private void initialize( int width, int height, byte[] solution, String[] rebus )
+	{
+		this.width = width;
+		this.height = height;
+		this.solution = solution;
+		
+		boolean[] blocks = new boolean[ solution.length ];
+		int rebusCount = 0;
+		
+		for ( int cell = 0; cell < solution.length; ++cell )
+		{
+			blocks[ cell ] = solution[ cell ] == BLOCK || solution[ cell ] == ':';
+			openCells += blocks[ cell ] ? 0 : 1;
+			rebusCount += rebus != null && rebus[ cell ] != null ? 1 : 0;
+		}
+		
+		this.slots = GridSlotTableCache.getDefault().get( width, height, blocks );
+		this.rebusCells = new int[ rebusCount ];
+		this.rebus = rebusCount == 0 ? null : rebus;
+		
+		for ( int cell = 0, i = 0; i < rebusCount; ++cell )
+		{
+			if ( rebus[ cell ] != null )
+			{
+				rebusCells[ i++ ] = cell;
+			}
+		}
+	}
+	
+	public int getWidth() {
+		return width;
+	}
+	
+	public int getHeight() {
+		return height;
+	}
+	
+	public int getCellCount()
+	{
+		return solution.length;
+	}
+	
+	/**
+	 * Returns the number of cells that are not blocks
+	 * @return The number of open cells
+	 */
+	public int getOpenCellCount()
+	{
+		return openCells;
+	}
+	
+	public GridSlotTable getSlotTable()
+	{
+		return slots;
+	}
+	
+	public boolean isBlock( int cell )
+	{
+		return slots.isBlock( cell );
+	}
+	
+	/**
+	 * Returns the rebus solution of a cell
+	 * @param cell The cell index
+	 * @return The solution, or <tt>null</tt> if the cell does not hold a rebus
+	 */
+	public String getRebus( int cell )
+	{
+		return rebus == null ? null : rebus[ cell ];
+	}
+	
+	/**
+	 * Grades the player state of a PUZ image. The solution region and extra sections of the image other than RUSR are
+	 * not read, so the solution of a submission may be encrypted or absent.
+	 * @param image The submitted PUZ image
+	 * @param report The report to fill, which is reset first
+	 * @return The report
+	 * @throws IllegalArgumentException If the grid of the image does not have the size of the key
+	 */
+	public GradeReport grade( byte[] image, GradeReport report )
+	{
+		if ( PUZUtil.getWidth( image ) != width || PUZUtil.getHeight( image ) != height )
+		{
+			throw new IllegalArgumentException( "Submission is " + PUZUtil.getWidth( image ) + "x" + PUZUtil.getHeight( image ) + "; key is " + width + "x" + height );
+		}
+		
+		report.reset( this );
+		
+		int cells = solution.length;
+		int base = PUZUtil.POS_SOLUTION + cells;
+		ByteBuffer key = ByteBuffer.wrap( solution );
+		ByteBuffer player = ByteBuffer.wrap( image );
+		int cell = 0;
+		
+		// Compare eight cells at a time, and only look into the words that differ
+		for ( ; cell + 8 <= cells; cell += 8 )
+		{
+			if ( key.getLong( cell ) != player.getLong( base + cell ) )
+			{
+				compare( image, base, cell, cell + 8, report );
+			}
+		}
+		
+		compare( image, base, cell, cells, report );
+		
+		if ( rebusCells.length > 0 )
+		{
+			PUZExtraSection rusr = PUZUtil.getExtraSection( image, PUZUtil.RUSR_SECTION_NAME );
+			String[] state = rusr == null ? null : PUZUtil.decodeRebusState( rusr.getData(), cells );
+			
+			for ( int i = 0; i < rebusCells.length; ++i )
+			{
+				int rebusCell = rebusCells[ i ];
+				String value = state == null ? null : state[ rebusCell ];
+				
+				if ( value == null )
+				{
+					byte letter = image[ base + rebusCell ];
+					value = letter == EMPTY ? null : String.valueOf( (char) PUZUtil.byteToUbyte( letter ) );
+				}
+				
+				report.setCell( rebusCell, value != null, rebus[ rebusCell ].equals( value ) );
+			}
+		}
+		
+		report.finish();
+		return report;
+	}
+	
+	/**
+	 * Grades the player state of a puzzle model
+	 * @param submission A snapshot of the submitted model
+	 * @param report The report to fill, which is reset first
+	 * @return The report
+	 * @throws IllegalArgumentException If the grid of the model does not have the size of the key
+	 */
+	public GradeReport grade( PuzzleModelSnapshot submission, GradeReport report )
+	{
+		if ( submission.getWidth() != width || submission.getHeight() != height )
+		{
+			throw new IllegalArgumentException( "Submission is " + submission.getWidth() + "x" + submission.getHeight() + "; key is " + width + "x" + height );
+		}
+		
+		report.reset( this );
+		
+		for ( int cell = 0; cell < solution.length; ++cell )
+		{
+			if ( slots.isBlock( cell ) )
+			{
+				continue;
+			}
+			
+			char code = submission.getPlayerCode( cell );
+			
+			if ( rebus != null && rebus[ cell ] != null || PuzzleModel.isRebusCode( code ) || code > 0xFF )
+			{
+				String value = submission.decode( code );
+				report.setCell( cell, code != PuzzleModel.EMPTY, value.equals( rebus == null || rebus[ cell ] == null ? String.valueOf( (char) PUZUtil.byteToUbyte( solution[ cell ] ) ) : rebus[ cell ] ) );
+			}
+			
+			else if ( ( code == PuzzleModel.EMPTY ? EMPTY : (byte) code ) != solution[ cell ] )
+			{
+				report.setCell( cell, code != PuzzleModel.EMPTY, false );
+			}
+		}
+		
+		report.finish();
+		return report;
+	}
+	
+	/**
+	 * Marks the cells of a range that differ from the key
+	 */
+	private void compare( byte[] image, int base, int from, int to, GradeReport report )
+	{
+		for ( int cell = from; cell < to; ++cell )
+		{
+			if ( image[ base + cell ] != solution[ cell ] && ! slots.isBlock( cell ) )
+			{
+				report.setCell( cell, image[ base + cell ] != EMPTY, false );
+			}
+		}
+	}
+	
+	public String toString()
+	{
+		return new StringBuilder().append( width ).append( 'x' ).append( height ).append( " key, " ).append( rebusCells.length ).append( " rebus cells" ).toString();
+	}
+
+}
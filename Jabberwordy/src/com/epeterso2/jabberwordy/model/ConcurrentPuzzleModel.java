@@ -0,0 +1,350 @@
+package com.epeterso2.jabberwordy.model;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.epeterso2.jabberwordy.util.GridSlotTable;
+import com.epeterso2.jabberwordy.util.StringTable;
+
+/**
+ * The player state of a puzzle shared by many concurrent solvers, such as a "solve together" room.
+ * <p>
+ * The grid, solution and clues are taken from a {@link PuzzleModel} and never change. The player value code, flags
+ * and a version stamp of each cell are packed into one <tt>long</tt> of an {@link AtomicLongArray} and updated by
+ * compare-and-set, so writers never block one another. Plain writes are last-writer-wins: every write succeeds and
+ * gives the cell the next version. Writers that must not lose a concurrent update can use
+ * {@link #compareAndSetPlayerCode(int, int, char)}, and replicas can use {@link #applyRemote(int, int, char, int)},
+ * which keeps the highest version. Every successful write is published on a lock-free {@link PuzzleModelChangeFeed}.
+ * <p>
+ * Rebus values are interned in a table guarded by its own lock; single-letter values never touch it.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+public class ConcurrentPuzzleModel {
+
+	/**
+	 * The default number of changes held by the change feed
+	 */
+	public static final int DEFAULT_FEED_CAPACITY = 4096;
+
+	private PuzzleModel definition = null;
+
+	private GridSlotTable slots = null;
+
+	private StringTable rebusTable = null;
+
+	private AtomicLongArray states = null;
+
+	private PuzzleModelChangeFeed feed = null;
+
+	/**
+	 * Creates a concurrent model with the default feed capacity
+	 * @param definition The puzzle whose grid, solution, clues and current player state are used
+	 */
+	public ConcurrentPuzzleModel( PuzzleModel definition )
+	{
+		this( definition, DEFAULT_FEED_CAPACITY );
+	}
+
+	/**
+	 * Creates a concurrent model
+	 * @param definition The puzzle whose grid, solution, clues and current player state are used
+	 * @param feedCapacity The minimum number of changes held by the change feed
+	 */
+	public ConcurrentPuzzleModel( PuzzleModel definition, int feedCapacity )
+	{
+		this.definition = definition;
+		this.slots = definition.getSlotTable();
+		this.rebusTable = new StringTable( definition.getRebusTable() );
+		this.states = new AtomicLongArray( definition.getCellCount() );
+		this.feed = new PuzzleModelChangeFeed( feedCapacity );
+
+		for ( int cell = 0; cell < states.length(); ++cell )
+		{
+			states.set( cell, pack( 0, definition.getFlags( cell ), definition.getPlayerCode( cell ) ) );
+		}
+	}
+
+	/**
+	 * Packs a cell version, flags and value code into one state value
+	 * @param version The version stamp
+	 * @param flags The cell flags
+	 * @param code The value code
+	 * @return The packed state
+	 */
+	public static long pack( int version, int flags, char code )
+	{
+		return ( (long) version << 32 ) | ( ( flags & 0xFF ) << 16 ) | code;
+	}
+
+	public static int getVersion( long state )
+	{
+		return (int) ( state >>> 32 );
+	}
+
+	public static int getFlags( long state )
+	{
+		return (int) ( state >>> 16 ) & 0xFF;
+	}
+
+	public static char getCode( long state )
+	{
+		return (char) state;
+	}
+
+	/**
+	 * Returns the puzzle this model was created from. Its player state is not updated by this model.
+	 * @return The puzzle definition
+	 */
+	public PuzzleModel getDefinition()
+	{
+		return definition;
+	}
+
+	public GridSlotTable getSlotTable()
+	{
+		return slots;
+	}
+
+	public int getCellCount()
+	{
+		return states.length();
+	}
+
+	/**
+	 * Returns the feed on which every change is published
+	 * @return The change feed
+	 */
+	public PuzzleModelChangeFeed getFeed()
+	{
+		return feed;
+	}
+
+	/**
+	 * Returns the packed state of a cell; see {@link #getVersion(long)}, {@link #getFlags(long)} and
+	 * {@link #getCode(long)}. The three parts are read atomically.
+	 * @param cell The cell index
+	 * @return The packed state
+	 */
+	public long getState( int cell )
+	{
+		return states.get( cell );
+	}
+
+	public int getVersion( int cell )
+	{
+		return getVersion( states.get( cell ) );
+	}
+
+	public int getFlags( int cell )
+	{
+		return getFlags( states.get( cell ) );
+	}
+
+	public char getPlayerCode( int cell )
+	{
+		return getCode( states.get( cell ) );
+	}
+
+	/**
+	 * Returns the value entered into a cell
+	 * @param cell The cell index
+	 * @return The value, or an empty string if the cell is empty
+	 */
+	public String getPlayerState( int cell )
+	{
+		return decode( getPlayerCode( cell ) );
+	}
+
+	/**
+	 * Enters a value into a cell; the last writer wins
+	 * @param cell The cell index
+	 * @param value The value, or <tt>null</tt> or an empty string to clear the cell
+	 * @return The version the cell received
+	 */
+	public int setPlayerState( int cell, String value )
+	{
+		return setPlayerCode( cell, encode( value ) );
+	}
+
+	/**
+	 * Sets the value code of a cell; the last writer wins
+	 * @param cell The cell index
+	 * @param code The value code
+	 * @return The version the cell received
+	 */
+	public int setPlayerCode( int cell, char code )
+	{
+		while ( true )
+		{
+			long current = states.get( cell );
+			long next = pack( getVersion( current ) + 1, getFlags( current ), code );
+
+			if ( states.compareAndSet( cell, current, next ) )
+			{
+				feed.publish( cell, next );
+				return getVersion( next );
+			}
+		}
+	}
+
+	/**
+	 * Sets or clears flags on a cell, leaving its other flags as they are; the last writer wins
+	 * @param cell The cell index
+	 * @param flags The flags to change
+	 * @param set <tt>true</tt> to set the flags, <tt>false</tt> to clear them
+	 * @return The version the cell received
+	 */
+	public int setFlag( int cell, int flags, boolean set )
+	{
+		while ( true )
+		{
+			long current = states.get( cell );
+			int value = set ? getFlags( current ) | flags : getFlags( current ) & ~flags;
+			long next = pack( getVersion( current ) + 1, value, getCode( current ) );
+
+			if ( states.compareAndSet( cell, current, next ) )
+			{
+				feed.publish( cell, next );
+				return getVersion( next );
+			}
+		}
+	}
+
+	/**
+	 * Sets the value code of a cell only if the cell still has an expected version
+	 * @param cell The cell index
+	 * @param expectedVersion The version the writer last read
+	 * @param code The value code
+	 * @return <tt>true</tt> if the value was written; <tt>false</tt> if another writer changed the cell first
+	 */
+	public boolean compareAndSetPlayerCode( int cell, int expectedVersion, char code )
+	{
+		while ( true )
+		{
+			long current = states.get( cell );
+
+			if ( getVersion( current ) != expectedVersion )
+			{
+				return false;
+			}
+
+			long next = pack( expectedVersion + 1, getFlags( current ), code );
+
+			if ( states.compareAndSet( cell, current, next ) )
+			{
+				feed.publish( cell, next );
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Applies a change made by another replica of the puzzle, if it is newer than the state of the cell
+	 * @param cell The cell index
+	 * @param version The version of the change
+	 * @param code The value code, which must be valid for this model
+	 * @param flags The cell flags
+	 * @return <tt>true</tt> if the change was applied
+	 */
+	public boolean applyRemote( int cell, int version, char code, int flags )
+	{
+		long next = pack( version, flags, code );
+
+		while ( true )
+		{
+			long current = states.get( cell );
+
+			if ( getVersion( current ) >= version )
+			{
+				return false;
+			}
+
+			else if ( states.compareAndSet( cell, current, next ) )
+			{
+				feed.publish( cell, next );
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Determines if the value entered into a cell matches its solution
+	 * @param cell The cell index
+	 * @return <tt>true</tt> if the cell is correct
+	 */
+	public boolean isCorrect( int cell )
+	{
+		return getPlayerCode( cell ) == definition.getSolutionCode( cell );
+	}
+
+	/**
+	 * Converts a cell value into a value code, adding it to the rebus table if necessary
+	 * @param value The value
+	 * @return The value code
+	 */
+	public char encode( String value )
+	{
+		if ( value == null || value.length() == 0 )
+		{
+			return PuzzleModel.EMPTY;
+		}
+
+		else if ( value.length() == 1 && ! PuzzleModel.isRebusCode( value.charAt( 0 ) ) )
+		{
+			return value.charAt( 0 );
+		}
+
+		synchronized ( rebusTable )
+		{
+			return PuzzleModel.encode( value, rebusTable );
+		}
+	}
+
+	/**
+	 * Converts a value code of this model into a cell value
+	 * @param code The value code
+	 * @return The value, or an empty string for {@link PuzzleModel#EMPTY}
+	 */
+	public String decode( char code )
+	{
+		if ( ! PuzzleModel.isRebusCode( code ) )
+		{
+			return code == PuzzleModel.EMPTY ? "" : String.valueOf( code );
+		}
+
+		synchronized ( rebusTable )
+		{
+			return rebusTable.get( code - PuzzleModel.REBUS_BASE );
+		}
+	}
+
+	/**
+	 * Copies the current player state into a {@link PuzzleModel} of the same grid, such as the definition before it is
+	 * saved. The target receives one event.
+	 * @param target The model to update
+	 */
+	public void copyTo( PuzzleModel target )
+	{
+		if ( target.getCellCount() != getCellCount() )
+		{
+			throw new IllegalArgumentException( "Grid sizes differ" );
+		}
+
+		target.beginUpdate();
+
+		try
+		{
+			for ( int cell = 0; cell < getCellCount(); ++cell )
+			{
+				long state = states.get( cell );
+				target.setPlayerState( cell, decode( getCode( state ) ) );
+				target.setFlags( cell, ( target.getFlags( cell ) & ~PuzzleModel.PLAYER_FLAGS ) | ( getFlags( state ) & PuzzleModel.PLAYER_FLAGS ) );
+			}
+		}
+
+		finally
+		{
+			target.endUpdate();
+		}
+	}
+
+}
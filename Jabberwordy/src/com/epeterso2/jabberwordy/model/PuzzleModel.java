@@ -1,15 +1,85 @@
 package com.epeterso2.jabberwordy.model;
 
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Date;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
-import com.epeterso2.jabberwordy.util.Coordinate;
-import com.epeterso2.jabberwordy.util.CoordinateMap;
-import com.epeterso2.jabberwordy.util.GridCoordinateSet;
+import com.epeterso2.jabberwordy.util.ClueDirection;
+import com.epeterso2.jabberwordy.util.GridSlotTable;
+import com.epeterso2.jabberwordy.util.GridSlotTableCache;
+import com.epeterso2.jabberwordy.util.GridTransform;
+import com.epeterso2.jabberwordy.util.StringTable;
 
+/**
+ * A format-neutral crossword puzzle, held in parallel primitive arrays indexed by cell.
+ * <p>
+ * Cells are identified by their index in row-major order, starting at 0. The block pattern, numbering and entry
+ * layout of the grid are held by a shared, immutable {@link GridSlotTable}. Clues are held in an array indexed by the
+ * slots of that table. The solution and player state of each cell are held as single <tt>char</tt> values: a cell with
+ * a one-letter value holds that letter, an empty cell holds {@link #EMPTY}, and a cell with a multiple-letter (rebus)
+ * value holds a code from {@link #REBUS_BASE} upward that refers to an entry of an interned rebus table. The flags and
+ * shade of each cell are held as bytes; shades refer to an interned shade table.
+ * <p>
+ * Models are created with a {@link PuzzleModelBuilder}, which sizes every array once. This class is not synchronized,
+ * but listeners are held in a copy-on-write list and may be added or removed while events are being delivered, and
+ * {@link #snapshot()} gives an immutable view that other threads may read while the model keeps changing.
+ * <p>
+ * Every change is reported to the listeners as a typed {@link PuzzleModelEvent} on the mutating thread. Changes made
+ * between {@link #beginUpdate()} and {@link #endUpdate()}, including the bulk operations such as {@link #revealAll()},
+ * are reported as one event per kind of change. To deliver events on another thread, once per frame or tick, register
+ * a {@link PuzzleModelEventDispatcher}.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ * @see PuzzleModelBuilder
+ */
 public class PuzzleModel {
 	
+	/**
+	 * The value of a cell with no solution or no player entry
+	 */
+	public static final char EMPTY = 0;
+	
+	/**
+	 * The first value code that refers to the rebus table. Codes are drawn from the Unicode private use area.
+	 */
+	public static final char REBUS_BASE = '\uE000';
+	
+	/**
+	 * The largest number of distinct rebus values a model can hold
+	 */
+	public static final int REBUS_LIMIT = '\uF8FF' - REBUS_BASE + 1;
+	
+	/**
+	 * Cell flag: the cell is drawn without a border
+	 */
+	public static final int BORDERLESS = 0x01;
+	
+	/**
+	 * Cell flag: the cell was previously marked incorrect. The value matches the PUZ <tt>GEXT</tt> flag.
+	 */
+	public static final int PREVIOUSLY_INCORRECT = 0x10;
+	
+	/**
+	 * Cell flag: the cell is currently marked incorrect. The value matches the PUZ <tt>GEXT</tt> flag.
+	 */
+	public static final int CURRENTLY_INCORRECT = 0x20;
+	
+	/**
+	 * Cell flag: the solution of the cell was revealed to the solver. The value matches the PUZ <tt>GEXT</tt> flag.
+	 */
+	public static final int REVEALED = 0x40;
+	
+	/**
+	 * Cell flag: the cell is circled. The value matches the PUZ <tt>GEXT</tt> flag.
+	 */
+	public static final int CIRCLED = 0x80;
+	
+	/**
+	 * The flags that record the solver's progress, as opposed to the appearance of the grid
+	 */
+	public static final int PLAYER_FLAGS = PREVIOUSLY_INCORRECT | CURRENTLY_INCORRECT | REVEALED;
+	
 	private String title = null;
 	
 	private String author = null;
@@ -24,32 +94,78 @@ public class PuzzleModel {
 	
 	private String notes = null;
 	
+	private GridSlotTable slots = null;
+	
+	private char[] solution = null;
+	
 	private int width = 0;
 	
-	private int height = 0;
+	// The player state and flags are held in row chunks that are shared with snapshots and copied on write
+	private char[][] playerRows = null;
 	
-	private CoordinateMap<PuzzleModelCellStyle> cellStyles = new CoordinateMap<PuzzleModelCellStyle>();
+	private byte[][] flagRows = null;
 	
-	private CoordinateMap<PuzzleModelSolution> solutions = new CoordinateMap<PuzzleModelSolution>();
-
-	private CoordinateMap<PuzzleModelClue> clues = new CoordinateMap<PuzzleModelClue>();
+	private int[] rowEpochs = null;
+	
+	private int epoch = 0;
+	
+	private boolean rowsShared = false;
+	
+	private boolean cluesShared = false;
+	
+	private byte[] shades = null;
+	
+	private StringTable shadeTable = null;
+	
+	private StringTable rebusTable = null;
+	
+	private String[] clues = null;
+	
+	private CopyOnWriteArrayList<PuzzleModelListener> listeners = new CopyOnWriteArrayList<PuzzleModelListener>();
+	
+	private int updateDepth = 0;
+	
+	private BitSet pendingCells = new BitSet();
 	
-	private Set<PuzzleModelListener> listeners = new HashSet<PuzzleModelListener>();
+	private BitSet pendingClues = new BitSet();
 	
-	public PuzzleModel( int width, int height )
+	private boolean pendingLoad = false;
+	
+	private boolean pendingMetadata = false;
+	
+	private String pendingProperty = null;
+	
+	private PuzzleModelChangeLog changeLog = null;
+	
+	private PuzzleModelHistory history = null;
+	
+	PuzzleModel( GridSlotTable slots, char[] solution, char[] playerState, byte[] flags, byte[] shades,
+		StringTable shadeTable, StringTable rebusTable, String[] clues )
 	{
-		this.width = width;
-		this.height = height;
+		this.slots = slots;
+		this.solution = solution;
+		this.width = slots.getCols();
+		this.playerRows = new char[ slots.getRows() ][];
+		this.flagRows = new byte[ slots.getRows() ][];
+		this.rowEpochs = new int[ slots.getRows() ];
 		
-		for ( Coordinate coord : new GridCoordinateSet( width, height ) )
+		for ( int row = 0; row < slots.getRows(); ++row )
 		{
-			coord.getX();
+			playerRows[ row ] = new char[ width ];
+			flagRows[ row ] = new byte[ width ];
+			System.arraycopy( playerState, row * width, playerRows[ row ], 0, width );
+			System.arraycopy( flags, row * width, flagRows[ row ], 0, width );
 		}
+		this.shades = shades;
+		this.shadeTable = shadeTable;
+		this.rebusTable = rebusTable;
+		this.clues = clues;
+		this.changeLog = new PuzzleModelChangeLog( solution.length, clues.length );
 	}
 	
 	public void addPuzzleModelListener( PuzzleModelListener listener )
 	{
-		listeners.add( listener );
+		listeners.addIfAbsent( listener );
 	}
 	
 	public void removePuzzleModelListener( PuzzleModelListener listener )
@@ -65,12 +181,790 @@ public class PuzzleModel {
 		}
 	}
 	
+	/**
+	 * Starts a group of changes that are reported together. Calls may be nested; the events are sent when the
+	 * outermost group ends.
+	 * @see #endUpdate()
+	 */
+	public void beginUpdate()
+	{
+		++updateDepth;
+	}
+	
+	/**
+	 * Ends a group of changes started by {@link #beginUpdate()}. When the outermost group ends, the listeners receive at
+	 * most one {@link PuzzleModelEvent.Type#BULK_LOAD} or {@link PuzzleModelEvent.Type#CELL_CHANGED} event, at most one
+	 * {@link PuzzleModelEvent.Type#CLUE_CHANGED} event and at most one {@link PuzzleModelEvent.Type#METADATA_CHANGED}
+	 * event covering every change in the group.
+	 */
+	public void endUpdate()
+	{
+		if ( updateDepth == 0 )
+		{
+			throw new IllegalStateException( "No update in progress" );
+		}
+		
+		if ( --updateDepth > 0 )
+		{
+			return;
+		}
+		
+		if ( pendingLoad )
+		{
+			updateListeners( new PuzzleModelEvent( this, PuzzleModelEvent.Type.BULK_LOAD, null, null ) );
+		}
+		
+		else if ( ! pendingCells.isEmpty() )
+		{
+			updateListeners( new PuzzleModelEvent( this, PuzzleModelEvent.Type.CELL_CHANGED, (BitSet) pendingCells.clone(), null ) );
+		}
+		
+		if ( ! pendingClues.isEmpty() )
+		{
+			updateListeners( new PuzzleModelEvent( this, PuzzleModelEvent.Type.CLUE_CHANGED, (BitSet) pendingClues.clone(), null ) );
+		}
+		
+		if ( pendingMetadata )
+		{
+			updateListeners( new PuzzleModelEvent( this, PuzzleModelEvent.Type.METADATA_CHANGED, null, pendingProperty ) );
+		}
+		
+		pendingLoad = false;
+		pendingCells.clear();
+		pendingClues.clear();
+		pendingMetadata = false;
+		pendingProperty = null;
+		
+		if ( history != null )
+		{
+			history.endStep();
+		}
+	}
+	
+	/**
+	 * Returns an immutable view of the current state of the model. The view shares the row chunks of the player state
+	 * and flags with the model, so taking it costs the same however large the grid is; the model copies a row the first
+	 * time it changes the row after a snapshot. A snapshot may be read on any thread while the model keeps changing.
+	 * @return The snapshot
+	 */
+	public PuzzleModelSnapshot snapshot()
+	{
+		rowsShared = true;
+		cluesShared = true;
+		++epoch;
+		
+		return new PuzzleModelSnapshot( slots, solution, playerRows, flagRows, shades, shadeTable,
+			rebusTable.size() == 0 ? rebusTable : new StringTable( rebusTable ), clues, getGeneration(),
+			title, author, editor, publisher, date, copyright, notes );
+	}
+	
+	/**
+	 * Creates a copy of the model turned or reflected by a transform. Blocks, solutions, entries, flags and shades move
+	 * with their cells, the grid is numbered again, and each clue moves to the slot that holds its answer. The answers
+	 * along an axis that the transform reverses read backward in the copy. Listeners, history and changes are not
+	 * copied.
+	 * @param transform The transform
+	 * @return The transformed model
+	 */
+	public PuzzleModel transform( GridTransform transform )
+	{
+		int cols = slots.getCols();
+		int rows = slots.getRows();
+		char[] playerState = new char[ solution.length ];
+		byte[] flags = new byte[ solution.length ];
+		
+		for ( int row = 0; row < rows; ++row )
+		{
+			System.arraycopy( playerRows[ row ], 0, playerState, row * width, width );
+			System.arraycopy( flagRows[ row ], 0, flags, row * width, width );
+		}
+		
+		GridSlotTable target = GridSlotTableCache.getDefault().get( transform.getCols( cols, rows ), transform.getRows( cols, rows ),
+			transform.apply( slots.getBlocks(), cols, rows ) );
+		int[] slotMap = transform.mapSlots( slots, target );
+		String[] targetClues = new String[ clues.length ];
+		
+		for ( int slot = 0; slot < clues.length; ++slot )
+		{
+			targetClues[ slotMap[ slot ] ] = clues[ slot ];
+		}
+		
+		PuzzleModel model = new PuzzleModel( target, transform.apply( solution, cols, rows ), transform.apply( playerState, cols, rows ),
+			transform.apply( flags, cols, rows ), shades == null ? null : transform.apply( shades, cols, rows ),
+			shadeTable == null ? null : new StringTable( shadeTable ), new StringTable( rebusTable ), targetClues );
+		model.setTitle( title );
+		model.setAuthor( author );
+		model.setEditor( editor );
+		model.setPublisher( publisher );
+		model.setDate( date );
+		model.setCopyright( copyright );
+		model.setNotes( notes );
+		model.resetChanges();
+		
+		return model;
+	}
+	
+	private void writeRow( int row )
+	{
+		if ( rowsShared )
+		{
+			playerRows = playerRows.clone();
+			flagRows = flagRows.clone();
+			rowsShared = false;
+		}
+		
+		if ( rowEpochs[ row ] != epoch )
+		{
+			playerRows[ row ] = playerRows[ row ].clone();
+			flagRows[ row ] = flagRows[ row ].clone();
+			rowEpochs[ row ] = epoch;
+		}
+	}
+	
+	/**
+	 * Returns the generation of the model, which advances with every change. A consumer holds the generation as a token
+	 * and later passes it to {@link #changesSince(long)}. The counter is atomic and may be read from any thread.
+	 * @return The current generation
+	 */
+	public long getGeneration()
+	{
+		return changeLog.getGeneration();
+	}
+	
+	/**
+	 * Returns the cells, clues and metadata that changed after a generation. The time taken is proportional to the
+	 * number of changes, unless the generation is so old that the model no longer holds its changes individually, in
+	 * which case it is proportional to the grid size.
+	 * @param generation A generation previously returned by {@link #getGeneration()} or
+	 * {@link PuzzleModelChanges#getGeneration()}, or zero for every change since the model was built
+	 * @return The changes
+	 */
+	public PuzzleModelChanges changesSince( long generation )
+	{
+		return changeLog.changesSince( generation );
+	}
+	
+	/**
+	 * Returns the undo history recording the changes to this model
+	 * @return The history, or <tt>null</tt> if none is attached
+	 */
+	public PuzzleModelHistory getHistory()
+	{
+		return history;
+	}
+	
+	void setHistory( PuzzleModelHistory history )
+	{
+		this.history = history;
+	}
+	
+	/**
+	 * Forgets the changes made so far and restarts the generation count, once the model has been built
+	 */
+	void resetChanges()
+	{
+		changeLog = new PuzzleModelChangeLog( solution.length, clues.length );
+	}
+	
+	private void cellChanged( int cell )
+	{
+		changeLog.cellChanged( cell );
+		
+		if ( updateDepth > 0 )
+		{
+			pendingCells.set( cell );
+		}
+		
+		else if ( ! listeners.isEmpty() )
+		{
+			updateListeners( PuzzleModelEvent.cellChanged( this, cell ) );
+		}
+	}
+	
+	private void clueChanged( int slot )
+	{
+		changeLog.clueChanged( slot );
+		
+		if ( updateDepth > 0 )
+		{
+			pendingClues.set( slot );
+		}
+		
+		else if ( ! listeners.isEmpty() )
+		{
+			updateListeners( PuzzleModelEvent.clueChanged( this, slot ) );
+		}
+	}
+	
+	private void metadataChanged( String property )
+	{
+		changeLog.metadataChanged();
+		
+		if ( updateDepth > 0 )
+		{
+			// The event names the property only if no other property changed in the group
+			pendingProperty = ! pendingMetadata || property.equals( pendingProperty ) ? property : null;
+			pendingMetadata = true;
+		}
+		
+		else if ( ! listeners.isEmpty() )
+		{
+			updateListeners( PuzzleModelEvent.metadataChanged( this, property ) );
+		}
+	}
+	
+	private static boolean isEqual( Object first, Object second )
+	{
+		return first == null ? second == null : first.equals( second );
+	}
+	
 	public int getWidth() {
-		return width;
+		return slots.getCols();
 	}
 
 	public int getHeight() {
-		return height;
+		return slots.getRows();
+	}
+	
+	/**
+	 * Returns the number of cells in the grid
+	 * @return The number of cells
+	 */
+	public int getCellCount()
+	{
+		return solution.length;
+	}
+	
+	/**
+	 * Returns the index of the cell at a coordinate
+	 * @param col The column, starting at 1
+	 * @param row The row, starting at 1
+	 * @return The cell index
+	 */
+	public int getCellIndex( int col, int row )
+	{
+		return slots.getCellIndex( col, row );
+	}
+	
+	/**
+	 * Returns the numbering and entry layout of the grid
+	 * @return The slot table
+	 */
+	public GridSlotTable getSlotTable()
+	{
+		return slots;
+	}
+	
+	public boolean isBlock( int cell )
+	{
+		return slots.isBlock( cell );
+	}
+	
+	/**
+	 * Returns the clue number printed in a cell
+	 * @param cell The cell index
+	 * @return The clue number, or zero if the cell is not numbered
+	 */
+	public int getNumber( int cell )
+	{
+		return slots.getCellNumber( cell );
+	}
+	
+	/**
+	 * Returns the flags of a cell, such as {@link #CIRCLED} or {@link #REVEALED}
+	 * @param cell The cell index
+	 * @return The flags
+	 */
+	public int getFlags( int cell )
+	{
+		return flagRows[ cell / width ][ cell % width ] & 0xFF;
+	}
+	
+	/**
+	 * Determines if a flag is set on a cell
+	 * @param cell The cell index
+	 * @param flag The flag
+	 * @return <tt>true</tt> if the flag is set
+	 */
+	public boolean isFlagSet( int cell, int flag )
+	{
+		return ( getFlags( cell ) & flag ) == flag;
+	}
+	
+	/**
+	 * Replaces the flags of a cell
+	 * @param cell The cell index
+	 * @param value The new flags
+	 */
+	public void setFlags( int cell, int value )
+	{
+		putCell( cell, getPlayerCode( cell ), value );
+	}
+	
+	/**
+	 * Sets or clears a flag on a cell
+	 * @param cell The cell index
+	 * @param flag The flag
+	 * @param set <tt>true</tt> to set the flag, <tt>false</tt> to clear it
+	 */
+	public void setFlag( int cell, int flag, boolean set )
+	{
+		setFlags( cell, set ? getFlags( cell ) | flag : getFlags( cell ) & ~flag );
+	}
+	
+	/**
+	 * Returns the shade of a cell, such as "gray" or "#C0C0C0"
+	 * @param cell The cell index
+	 * @return The shade, or <tt>null</tt> if the cell is not shaded
+	 */
+	public String getShade( int cell )
+	{
+		return shades == null || shades[ cell ] == 0 ? null : shadeTable.get( ( shades[ cell ] & 0xFF ) - 1 );
+	}
+	
+	/**
+	 * Returns the value code of the solution of a cell
+	 * @param cell The cell index
+	 * @return The value code
+	 */
+	public char getSolutionCode( int cell )
+	{
+		return solution[ cell ];
+	}
+	
+	/**
+	 * Returns the solution of a cell
+	 * @param cell The cell index
+	 * @return The solution, or an empty string if the cell has none
+	 */
+	public String getSolution( int cell )
+	{
+		return decode( solution[ cell ] );
+	}
+	
+	/**
+	 * Returns the single letter that stands for the solution of a cell. For a rebus cell, this is the first letter of the rebus.
+	 * @param cell The cell index
+	 * @return The letter, or {@link #EMPTY} if the cell has no solution
+	 */
+	public char getSolutionLetter( int cell )
+	{
+		return isRebusCode( solution[ cell ] ) ? rebusTable.get( solution[ cell ] - REBUS_BASE ).charAt( 0 ) : solution[ cell ];
+	}
+	
+	/**
+	 * Returns the value code of the player state of a cell
+	 * @param cell The cell index
+	 * @return The value code
+	 */
+	public char getPlayerCode( int cell )
+	{
+		return playerRows[ cell / width ][ cell % width ];
+	}
+	
+	/**
+	 * Sets the player state of a cell to a value code obtained from this model
+	 * @param cell The cell index
+	 * @param code The value code
+	 */
+	public void setPlayerCode( int cell, char code )
+	{
+		putCell( cell, code, getFlags( cell ) );
+	}
+	
+	/**
+	 * Sets the value code and flags of a cell and reports the change
+	 */
+	void putCell( int cell, char code, int value )
+	{
+		if ( writeCell( cell, code, value ) )
+		{
+			cellChanged( cell );
+		}
+	}
+	
+	private boolean writeCell( int cell, char code, int value )
+	{
+		char oldCode = getPlayerCode( cell );
+		int oldFlags = getFlags( cell );
+		
+		if ( oldCode == code && oldFlags == ( value & 0xFF ) )
+		{
+			return false;
+		}
+		
+		if ( history != null )
+		{
+			history.record( cell, oldCode, oldFlags, code, value & 0xFF );
+		}
+		
+		writeRow( cell / width );
+		playerRows[ cell / width ][ cell % width ] = code;
+		flagRows[ cell / width ][ cell % width ] = (byte) value;
+		
+		if ( history != null && updateDepth == 0 )
+		{
+			history.endStep();
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Returns the value entered into a cell by the solver
+	 * @param cell The cell index
+	 * @return The value, or an empty string if the cell is empty
+	 */
+	public String getPlayerState( int cell )
+	{
+		return decode( getPlayerCode( cell ) );
+	}
+	
+	/**
+	 * Sets the value entered into a cell by the solver
+	 * @param cell The cell index
+	 * @param value The value, or <tt>null</tt> or an empty string to clear the cell
+	 */
+	public void setPlayerState( int cell, String value )
+	{
+		setPlayerCode( cell, encode( value ) );
+	}
+	
+	/**
+	 * Converts a cell value into a value code, adding it to the rebus table if necessary
+	 * @param value The value
+	 * @return The value code
+	 */
+	public char encode( String value )
+	{
+		return encode( value, rebusTable );
+	}
+	
+	/**
+	 * Converts a value code of this model into a cell value
+	 * @param code The value code
+	 * @return The value, or an empty string for {@link #EMPTY}
+	 */
+	public String decode( char code )
+	{
+		return code == EMPTY ? "" : isRebusCode( code ) ? rebusTable.get( code - REBUS_BASE ) : String.valueOf( code );
+	}
+	
+	/**
+	 * Determines if a value code refers to the rebus table
+	 * @param code The value code
+	 * @return <tt>true</tt> for a rebus code
+	 */
+	public static boolean isRebusCode( char code )
+	{
+		return code >= REBUS_BASE && code - REBUS_BASE < REBUS_LIMIT;
+	}
+	
+	static char encode( String value, StringTable rebusTable )
+	{
+		if ( value == null || value.length() == 0 )
+		{
+			return EMPTY;
+		}
+		
+		else if ( value.length() == 1 && ! isRebusCode( value.charAt( 0 ) ) )
+		{
+			return value.charAt( 0 );
+		}
+		
+		int index = rebusTable.intern( value );
+		
+		if ( index >= REBUS_LIMIT )
+		{
+			throw new IllegalStateException( "Too many distinct rebus values" );
+		}
+		
+		return (char) ( REBUS_BASE + index );
+	}
+	
+	/**
+	 * Determines if the solver's entry in a cell matches its solution
+	 * @param cell The cell index
+	 * @return <tt>true</tt> if the cell is correct
+	 */
+	public boolean isCorrect( int cell )
+	{
+		return getPlayerCode( cell ) == solution[ cell ];
+	}
+	
+	/**
+	 * Finds the next empty cell of a slot, as when the cursor skips over filled cells
+	 * @param slot The slot index
+	 * @param offset The position within the slot to search from, inclusive; the search wraps to the start of the slot
+	 * @return The empty cell, or -1 if every cell of the slot is filled
+	 */
+	public int findEmptyCell( int slot, int offset )
+	{
+		int length = slots.getLength( slot );
+		
+		for ( int i = 0; i < length; ++i )
+		{
+			int cell = slots.getCell( slot, ( offset + i ) % length );
+			
+			if ( getPlayerCode( cell ) == EMPTY )
+			{
+				return cell;
+			}
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * Finds the next slot in the clue lists, after a given slot, that has an empty cell
+	 * @param slot The slot index to search after; the search wraps around the clue lists and ends with this slot
+	 * @return The slot index, or -1 if every cell of the grid is filled
+	 */
+	public int findUnfilledSlot( int slot )
+	{
+		for ( int i = 0, next = slot; i < slots.getSlotCount(); ++i )
+		{
+			next = slots.getNextSlot( next );
+			
+			if ( findEmptyCell( next, 0 ) >= 0 )
+			{
+				return next;
+			}
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * Reveals the solution of a cell, marking it {@link #REVEALED} unless the solver's entry was already correct
+	 * @param cell The cell index
+	 */
+	public void revealCell( int cell )
+	{
+		if ( ! isBlock( cell ) && ! isCorrect( cell ) )
+		{
+			beginUpdate();
+			setPlayerCode( cell, solution[ cell ] );
+			setFlags( cell, ( getFlags( cell ) | REVEALED ) & ~CURRENTLY_INCORRECT );
+			endUpdate();
+		}
+	}
+	
+	/**
+	 * Reveals the solution of every cell. The listeners receive one event.
+	 */
+	public void revealAll()
+	{
+		beginUpdate();
+		
+		for ( int cell = 0; cell < solution.length; ++cell )
+		{
+			revealCell( cell );
+		}
+		
+		endUpdate();
+	}
+	
+	/**
+	 * Marks every filled cell whose entry does not match its solution as {@link #CURRENTLY_INCORRECT}. The listeners
+	 * receive one event.
+	 * @return The number of incorrect cells
+	 */
+	public int checkAll()
+	{
+		int incorrect = 0;
+		beginUpdate();
+		
+		for ( int cell = 0; cell < solution.length; ++cell )
+		{
+			if ( checkCell( cell ) )
+			{
+				++incorrect;
+			}
+		}
+		
+		endUpdate();
+		return incorrect;
+	}
+	
+	/**
+	 * Marks a cell as {@link #CURRENTLY_INCORRECT} if it is filled and its entry does not match its solution
+	 * @param cell The cell index
+	 * @return <tt>true</tt> if the cell is incorrect
+	 */
+	public boolean checkCell( int cell )
+	{
+		if ( getPlayerCode( cell ) != EMPTY && ! isCorrect( cell ) )
+		{
+			setFlag( cell, CURRENTLY_INCORRECT, true );
+			return true;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Clears the solver's entries and progress flags from every cell. The listeners receive one event.
+	 */
+	public void clearAll()
+	{
+		beginUpdate();
+		
+		for ( int cell = 0; cell < solution.length; ++cell )
+		{
+			setPlayerCode( cell, EMPTY );
+			setFlags( cell, getFlags( cell ) & ~PLAYER_FLAGS );
+		}
+		
+		endUpdate();
+	}
+	
+	/**
+	 * Replaces the solver's entries and progress flags with those of another model of the same grid, such as a saved
+	 * game. The listeners receive one {@link PuzzleModelEvent.Type#BULK_LOAD} event.
+	 * @param source The model to copy from
+	 */
+	public void loadPlayerState( PuzzleModel source )
+	{
+		if ( source.getCellCount() != getCellCount() || source.getWidth() != getWidth() )
+		{
+			throw new IllegalArgumentException( "Grid sizes differ" );
+		}
+		
+		beginUpdate();
+		pendingLoad = true;
+		
+		for ( int cell = 0; cell < solution.length; ++cell )
+		{
+			loadCell( cell, source.getPlayerState( cell ), source.getFlags( cell ) );
+		}
+		
+		endUpdate();
+	}
+	
+	/**
+	 * Replaces the solver's entries and progress flags with those of a snapshot of a model of the same grid. The
+	 * listeners receive one {@link PuzzleModelEvent.Type#BULK_LOAD} event.
+	 * @param source The snapshot to copy from
+	 */
+	public void loadPlayerState( PuzzleModelSnapshot source )
+	{
+		if ( source.getCellCount() != getCellCount() || source.getWidth() != getWidth() )
+		{
+			throw new IllegalArgumentException( "Grid sizes differ" );
+		}
+		
+		beginUpdate();
+		pendingLoad = true;
+		
+		for ( int cell = 0; cell < solution.length; ++cell )
+		{
+			loadCell( cell, source.getPlayerState( cell ), source.getFlags( cell ) );
+		}
+		
+		endUpdate();
+	}
+	
+	private void loadCell( int cell, String value, int sourceFlags )
+	{
+		if ( writeCell( cell, encode( value ), ( getFlags( cell ) & ~PLAYER_FLAGS ) | ( sourceFlags & PLAYER_FLAGS ) ) )
+		{
+			changeLog.cellChanged( cell );
+		}
+	}
+	
+	/**
+	 * Returns the text of the clue for a slot
+	 * @param slot The slot index
+	 * @return The clue text, or <tt>null</tt> if the slot has no clue
+	 */
+	public String getClueText( int slot )
+	{
+		return clues[ slot ];
+	}
+	
+	/**
+	 * Sets the text of the clue for a slot
+	 * @param slot The slot index
+	 * @param text The clue text
+	 */
+	public void setClueText( int slot, String text )
+	{
+		if ( text == null ? clues[ slot ] != null : ! text.equals( clues[ slot ] ) )
+		{
+			if ( cluesShared )
+			{
+				clues = clues.clone();
+				cluesShared = false;
+			}
+			
+			clues[ slot ] = text;
+			clueChanged( slot );
+		}
+	}
+	
+	/**
+	 * Reads the answer of a slot from the solutions of its cells
+	 * @param slot The slot index
+	 * @return The answer
+	 */
+	public String getAnswer( int slot )
+	{
+		StringBuilder builder = new StringBuilder( slots.getLength( slot ) );
+		
+		for ( int i = 0, cell = slots.getStart( slot ); i < slots.getLength( slot ); ++i, cell += slots.getStep( slot ) )
+		{
+			builder.append( decode( solution[ cell ] ) );
+		}
+		
+		return builder.toString();
+	}
+	
+	/**
+	 * Returns the clue for a slot
+	 * @param slot The slot index
+	 * @return A view of the clue
+	 */
+	public PuzzleModelClue getClue( int slot )
+	{
+		return new PuzzleModelClue( this, slot );
+	}
+	
+	/**
+	 * Returns the clue with a given number and direction
+	 * @param number The clue number
+	 * @param direction The direction
+	 * @return A view of the clue, or <tt>null</tt> if the grid has no such slot
+	 */
+	public PuzzleModelClue getClue( int number, ClueDirection direction )
+	{
+		int slot = slots.findSlot( number, direction );
+		return slot < 0 ? null : getClue( slot );
+	}
+	
+	/**
+	 * Returns every clue of the puzzle, all across clues followed by all down clues, each in increasing order of number
+	 * @return A list of views of the clues
+	 */
+	public List<PuzzleModelClue> getClues()
+	{
+		List<PuzzleModelClue> list = new ArrayList<PuzzleModelClue>( clues.length );
+		
+		for ( int slot = 0; slot < clues.length; ++slot )
+		{
+			list.add( getClue( slot ) );
+		}
+		
+		return list;
+	}
+	
+	/**
+	 * Returns the table of rebus values referred to by rebus value codes
+	 * @return The rebus table
+	 */
+	public StringTable getRebusTable()
+	{
+		return rebusTable;
 	}
 
 	public String getTitle() {
@@ -78,7 +972,11 @@ public class PuzzleModel {
 	}
 
 	public void setTitle(String title) {
-		this.title = title;
+		if ( ! isEqual( this.title, title ) )
+		{
+			this.title = title;
+			metadataChanged( "title" );
+		}
 	}
 
 	public String getAuthor() {
@@ -86,7 +984,11 @@ public class PuzzleModel {
 	}
 
 	public void setAuthor(String author) {
-		this.author = author;
+		if ( ! isEqual( this.author, author ) )
+		{
+			this.author = author;
+			metadataChanged( "author" );
+		}
 	}
 
 	public String getCopyright() {
@@ -94,7 +996,11 @@ public class PuzzleModel {
 	}
 
 	public void setCopyright(String copyright) {
-		this.copyright = copyright;
+		if ( ! isEqual( this.copyright, copyright ) )
+		{
+			this.copyright = copyright;
+			metadataChanged( "copyright" );
+		}
 	}
 
 	public String getNotes() {
@@ -102,7 +1008,11 @@ public class PuzzleModel {
 	}
 
 	public void setNotes(String notes) {
-		this.notes = notes;
+		if ( ! isEqual( this.notes, notes ) )
+		{
+			this.notes = notes;
+			metadataChanged( "notes" );
+		}
 	}
 
 	public String getEditor() {
@@ -110,7 +1020,11 @@ public class PuzzleModel {
 	}
 
 	public void setEditor(String editor) {
-		this.editor = editor;
+		if ( ! isEqual( this.editor, editor ) )
+		{
+			this.editor = editor;
+			metadataChanged( "editor" );
+		}
 	}
 
 	public String getPublisher() {
@@ -118,7 +1032,11 @@ public class PuzzleModel {
 	}
 
 	public void setPublisher(String publisher) {
-		this.publisher = publisher;
+		if ( ! isEqual( this.publisher, publisher ) )
+		{
+			this.publisher = publisher;
+			metadataChanged( "publisher" );
+		}
 	}
 
 	public Date getDate() {
@@ -126,31 +1044,11 @@ public class PuzzleModel {
 	}
 
 	public void setDate(Date date) {
-		this.date = date;
-	}
-
-	public void setCellStyles(CoordinateMap<PuzzleModelCellStyle> cellStyles) {
-		this.cellStyles = cellStyles;
-	}
-
-	public CoordinateMap<PuzzleModelCellStyle> getCellStyles() {
-		return cellStyles;
-	}
-
-	public void setSolutions(CoordinateMap<PuzzleModelSolution> solutions) {
-		this.solutions = solutions;
-	}
-
-	public CoordinateMap<PuzzleModelSolution> getSolutions() {
-		return solutions;
-	}
-
-	public void setClues(CoordinateMap<PuzzleModelClue> clues) {
-		this.clues = clues;
-	}
-
-	public CoordinateMap<PuzzleModelClue> getClues() {
-		return clues;
+		if ( ! isEqual( this.date, date ) )
+		{
+			this.date = date;
+			metadataChanged( "date" );
+		}
 	}
 	
 	public String toString()
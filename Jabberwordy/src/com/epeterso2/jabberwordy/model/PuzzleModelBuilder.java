@@ -0,0 +1,380 @@
+package com.epeterso2.jabberwordy.model;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import com.epeterso2.jabberwordy.util.ClueDirection;
+import com.epeterso2.jabberwordy.util.GridSlotTable;
+import com.epeterso2.jabberwordy.util.GridSlotTableCache;
+import com.epeterso2.jabberwordy.util.StringTable;
+
+/**
+ * Builds a {@link PuzzleModel}. Every cell array is sized once, when the builder is constructed, and is handed to the
+ * model without being copied when {@link #build()} is called. The numbering and slots of the grid are computed from
+ * the block pattern when the model is built, and the clues that have been added are then matched to their slots.
+ * <p>
+ * Cells are identified by their index in row-major order, starting at 0. A builder builds a single model.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+public class PuzzleModelBuilder {
+	
+	private static final int BY_NUMBER = 0;
+	
+	private static final int BY_CELL = 1;
+	
+	private static final int IN_ORDER = 2;
+	
+	private int width = 0;
+	
+	private int height = 0;
+	
+	private String title = null;
+	
+	private String author = null;
+	
+	private String editor = null;
+	
+	private String publisher = null;
+	
+	private Date date = null;
+	
+	private String copyright = null;
+	
+	private String notes = null;
+	
+	private boolean[] blocks = null;
+	
+	private char[] solution = null;
+	
+	private char[] playerState = null;
+	
+	private byte[] flags = null;
+	
+	private byte[] shades = null;
+	
+	private StringTable shadeTable = null;
+	
+	private StringTable rebusTable = new StringTable();
+	
+	private List<PendingClue> clues = new ArrayList<PendingClue>();
+	
+	private boolean built = false;
+	
+	/**
+	 * Constructs a builder for a puzzle of the given size. Every cell starts out as an empty, unflagged, non-block cell.
+	 * @param width The number of columns
+	 * @param height The number of rows
+	 */
+	public PuzzleModelBuilder( int width, int height )
+	{
+		if ( width <= 0 || height <= 0 )
+		{
+			throw new IllegalArgumentException( "Invalid puzzle size: " + width + "x" + height );
+		}
+		
+		this.width = width;
+		this.height = height;
+		this.blocks = new boolean[ width * height ];
+		this.solution = new char[ width * height ];
+		this.playerState = new char[ width * height ];
+		this.flags = new byte[ width * height ];
+	}
+	
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+	
+	/**
+	 * Returns the index of the cell at a coordinate
+	 * @param col The column, starting at 1
+	 * @param row The row, starting at 1
+	 * @return The cell index
+	 */
+	public int getCellIndex( int col, int row )
+	{
+		return ( row - 1 ) * width + col - 1;
+	}
+
+	public PuzzleModelBuilder setTitle(String title) {
+		this.title = title;
+		return this;
+	}
+
+	public PuzzleModelBuilder setAuthor(String author) {
+		this.author = author;
+		return this;
+	}
+
+	public PuzzleModelBuilder setEditor(String editor) {
+		this.editor = editor;
+		return this;
+	}
+
+	public PuzzleModelBuilder setPublisher(String publisher) {
+		this.publisher = publisher;
+		return this;
+	}
+
+	public PuzzleModelBuilder setDate(Date date) {
+		this.date = date;
+		return this;
+	}
+
+	public PuzzleModelBuilder setCopyright(String copyright) {
+		this.copyright = copyright;
+		return this;
+	}
+
+	public PuzzleModelBuilder setNotes(String notes) {
+		this.notes = notes;
+		return this;
+	}
+	
+	public boolean isBlock( int cell )
+	{
+		return blocks[ cell ];
+	}
+	
+	public PuzzleModelBuilder setBlock( int cell, boolean block )
+	{
+		blocks[ cell ] = block;
+		return this;
+	}
+	
+	/**
+	 * Sets the solution of a cell
+	 * @param cell The cell index
+	 * @param value The solution, which may be a single letter or a multiple-letter rebus
+	 * @return This builder
+	 */
+	public PuzzleModelBuilder setSolution( int cell, String value )
+	{
+		solution[ cell ] = PuzzleModel.encode( value, rebusTable );
+		return this;
+	}
+	
+	/**
+	 * Sets the single-letter solution of a cell
+	 * @param cell The cell index
+	 * @param letter The solution letter
+	 * @return This builder
+	 */
+	public PuzzleModelBuilder setSolution( int cell, char letter )
+	{
+		solution[ cell ] = PuzzleModel.isRebusCode( letter ) ? PuzzleModel.encode( String.valueOf( letter ), rebusTable ) : letter;
+		return this;
+	}
+	
+	/**
+	 * Sets the value entered into a cell by the solver
+	 * @param cell The cell index
+	 * @param value The value, or <tt>null</tt> or an empty string for an empty cell
+	 * @return This builder
+	 */
+	public PuzzleModelBuilder setPlayerState( int cell, String value )
+	{
+		playerState[ cell ] = PuzzleModel.encode( value, rebusTable );
+		return this;
+	}
+	
+	/**
+	 * Replaces the flags of a cell
+	 * @param cell The cell index
+	 * @param value The flags, such as {@link PuzzleModel#CIRCLED}
+	 * @return This builder
+	 */
+	public PuzzleModelBuilder setFlags( int cell, int value )
+	{
+		flags[ cell ] = (byte) value;
+		return this;
+	}
+	
+	/**
+	 * Sets or clears a flag on a cell
+	 * @param cell The cell index
+	 * @param flag The flag, such as {@link PuzzleModel#CIRCLED}
+	 * @param set <tt>true</tt> to set the flag, <tt>false</tt> to clear it
+	 * @return This builder
+	 */
+	public PuzzleModelBuilder setFlag( int cell, int flag, boolean set )
+	{
+		flags[ cell ] = (byte) ( set ? flags[ cell ] | flag : flags[ cell ] & ~flag );
+		return this;
+	}
+	
+	/**
+	 * Sets the shade of a cell
+	 * @param cell The cell index
+	 * @param shade The shade, such as "gray" or "#C0C0C0", or <tt>null</tt> for none
+	 * @return This builder
+	 */
+	public PuzzleModelBuilder setShade( int cell, String shade )
+	{
+		if ( shade == null || shade.length() == 0 )
+		{
+			if ( shades != null )
+			{
+				shades[ cell ] = 0;
+			}
+			
+			return this;
+		}
+		
+		if ( shades == null )
+		{
+			shades = new byte[ width * height ];
+			shadeTable = new StringTable();
+		}
+		
+		int index = shadeTable.intern( shade );
+		
+		if ( index >= 255 )
+		{
+			throw new IllegalStateException( "Too many distinct shades" );
+		}
+		
+		shades[ cell ] = (byte) ( index + 1 );
+		return this;
+	}
+	
+	/**
+	 * Adds the clue with the given number and direction. A clue that does not match a slot of the grid is ignored.
+	 * @param number The clue number
+	 * @param direction The direction
+	 * @param text The clue text
+	 * @return This builder
+	 */
+	public PuzzleModelBuilder addClue( int number, ClueDirection direction, String text )
+	{
+		clues.add( new PendingClue( BY_NUMBER, number, direction, text ) );
+		return this;
+	}
+	
+	/**
+	 * Adds the clue whose answer runs through a given cell in the given direction. A clue that does not match a slot of
+	 * the grid is ignored.
+	 * @param cell The index of a cell of the answer, usually the first
+	 * @param direction The direction
+	 * @param text The clue text
+	 * @return This builder
+	 */
+	public PuzzleModelBuilder addClueAt( int cell, ClueDirection direction, String text )
+	{
+		clues.add( new PendingClue( BY_CELL, cell, direction, text ) );
+		return this;
+	}
+	
+	/**
+	 * Adds the next clue in number order, as clues are stored in a PUZ file: the clues given to this method are
+	 * matched to the slots of the grid in increasing order of number, with the across clue before the down clue
+	 * when both start at the same cell. Clues beyond the last slot are ignored.
+	 * @param text The clue text
+	 * @return This builder
+	 */
+	public PuzzleModelBuilder appendClue( String text )
+	{
+		clues.add( new PendingClue( IN_ORDER, 0, null, text ) );
+		return this;
+	}
+	
+	/**
+	 * Builds the model. The numbering and slots of the grid are taken from the shared {@link GridSlotTableCache}, and
+	 * computed from the block pattern only if no grid with the same pattern has been seen.
+	 * @return The model
+	 * @throws IllegalStateException The model has already been built
+	 */
+	public PuzzleModel build()
+	{
+		return build( GridSlotTableCache.getDefault().get( width, height, blocks ) );
+	}
+	
+	/**
+	 * Builds the model using a slot table that has already been computed for the same block pattern
+	 * @param slots The slot table
+	 * @return The model
+	 * @throws IllegalStateException The model has already been built
+	 * @throws IllegalArgumentException The slot table is for a grid of a different size
+	 */
+	public PuzzleModel build( GridSlotTable slots )
+	{
+		if ( built )
+		{
+			throw new IllegalStateException( "The model has already been built" );
+		}
+		
+		if ( slots.getCols() != width || slots.getRows() != height )
+		{
+			throw new IllegalArgumentException( "Slot table does not match the size of the puzzle" );
+		}
+		
+		built = true;
+		
+		String[] slotClues = new String[ slots.getSlotCount() ];
+		int[] order = null;
+		int next = 0;
+		
+		for ( PendingClue clue : clues )
+		{
+			int slot = -1;
+			
+			if ( clue.kind == BY_NUMBER )
+			{
+				slot = slots.findSlot( clue.key, clue.direction );
+			}
+			
+			else if ( clue.kind == BY_CELL )
+			{
+				slot = clue.key >= 0 && clue.key < slots.getCellCount() ? slots.getSlot( clue.key, clue.direction ) : -1;
+			}
+			
+			else
+			{
+				order = order == null ? slots.getNumberOrder() : order;
+				slot = next < order.length ? order[ next++ ] : -1;
+			}
+			
+			if ( slot >= 0 )
+			{
+				slotClues[ slot ] = clue.text;
+			}
+		}
+		
+		PuzzleModel model = new PuzzleModel( slots, solution, playerState, flags, shades, shadeTable, rebusTable, slotClues );
+		model.setTitle( title );
+		model.setAuthor( author );
+		model.setEditor( editor );
+		model.setPublisher( publisher );
+		model.setDate( date );
+		model.setCopyright( copyright );
+		model.setNotes( notes );
+		model.resetChanges();
+		
+		return model;
+	}
+	
+	private static class PendingClue {
+		
+		private int kind = 0;
+		
+		private int key = 0;
+		
+		private ClueDirection direction = null;
+		
+		private String text = null;
+		
+		public PendingClue( int kind, int key, ClueDirection direction, String text )
+		{
+			this.kind = kind;
+			this.key = key;
+			this.direction = direction;
+			this.text = text;
+		}
+		
+	}
+
+}
@@ -0,0 +1,61 @@
+package com.epeterso2.jabberwordy.model;
+
+/**
+ * One change to a cell of a {@link ConcurrentPuzzleModel}, as published on its {@link PuzzleModelChangeFeed}. Changes
+ * are immutable.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+public class PuzzleModelCellChange {
+	
+	private long sequence = 0;
+	
+	private int cell = 0;
+	
+	private long state = 0;
+	
+	PuzzleModelCellChange( long sequence, int cell, long state )
+	{
+		this.sequence = sequence;
+		this.cell = cell;
+		this.state = state;
+	}
+
+	/**
+	 * Returns the position of the change in the feed
+	 * @return The sequence number
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	public int getCell() {
+		return cell;
+	}
+
+	/**
+	 * Returns the version stamp the cell received with this change
+	 * @return The cell version
+	 */
+	public int getVersion() {
+		return ConcurrentPuzzleModel.getVersion( state );
+	}
+
+	/**
+	 * Returns the player value code written to the cell
+	 * @return The value code
+	 */
+	public char getCode() {
+		return ConcurrentPuzzleModel.getCode( state );
+	}
+
+	public int getFlags() {
+		return ConcurrentPuzzleModel.getFlags( state );
+	}
+	
+	public String toString()
+	{
+		return new StringBuilder().append( '#' ).append( sequence ).append( " cell " ).append( cell ).append( " v" )
+			.append( getVersion() ).append( ' ' ).append( (int) getCode() ).append( '/' ).append( getFlags() ).toString();
+	}
+
+}
@@ -1,5 +0,0 @@
-package com.epeterso2.jabberwordy.model;
-
-public class PuzzleModelCellStyle {
-
-}
@@ -0,0 +1,115 @@
+package com.epeterso2.jabberwordy.model;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A lock-free, bounded feed of the cell changes of a {@link ConcurrentPuzzleModel}.
+ * <p>
+ * Each change is given the next sequence number and stored in a ring of fixed size. Any number of threads may publish
+ * and any number of consumers may read; each consumer keeps its own next sequence number. A consumer that falls more
+ * than a ring's length behind finds that its changes have been overwritten, and must read the model again before
+ * continuing from {@link #getHead()}.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+public class PuzzleModelChangeFeed {
+	
+	private AtomicLong head = new AtomicLong();
+	
+	private AtomicReferenceArray<PuzzleModelCellChange> ring = null;
+	
+	private int mask = 0;
+	
+	/**
+	 * Creates a feed
+	 * @param capacity The minimum number of changes held; rounded up to a power of two
+	 */
+	public PuzzleModelChangeFeed( int capacity )
+	{
+		int size = Integer.highestOneBit( Math.max( 2, capacity - 1 ) ) << 1;
+		ring = new AtomicReferenceArray<PuzzleModelCellChange>( size );
+		mask = size - 1;
+	}
+	
+	/**
+	 * Returns the number of changes the feed holds
+	 * @return The capacity
+	 */
+	public int getCapacity()
+	{
+		return mask + 1;
+	}
+	
+	/**
+	 * Returns the sequence number the next change will receive. A new consumer starts reading here.
+	 * @return The head of the feed
+	 */
+	public long getHead()
+	{
+		return head.get();
+	}
+	
+	/**
+	 * Publishes a change
+	 * @param cell The cell index
+	 * @param state The packed state the cell now holds
+	 * @return The sequence number of the change
+	 */
+	long publish( int cell, long state )
+	{
+		long sequence = head.getAndIncrement();
+		PuzzleModelCellChange change = new PuzzleModelCellChange( sequence, cell, state );
+		int index = (int) sequence & mask;
+		
+		// A publisher delayed by a full lap must not overwrite a newer change
+		while ( true )
+		{
+			PuzzleModelCellChange current = ring.get( index );
+			
+			if ( current != null && current.getSequence() > sequence )
+			{
+				break;
+			}
+			
+			else if ( ring.compareAndSet( index, current, change ) )
+			{
+				break;
+			}
+		}
+		
+		return sequence;
+	}
+	
+	/**
+	 * Reads consecutive changes. Reading stops at the first change that has not been published yet, so changes are
+	 * always returned in sequence order.
+	 * @param from The sequence number of the first change to read
+	 * @param changes The array that receives the changes
+	 * @return The number of changes read, or -1 if the change at <tt>from</tt> has been overwritten
+	 */
+	public int read( long from, PuzzleModelCellChange[] changes )
+	{
+		int count = 0;
+		
+		while ( count < changes.length )
+		{
+			long sequence = from + count;
+			PuzzleModelCellChange change = ring.get( (int) sequence & mask );
+			
+			if ( change == null || change.getSequence() < sequence )
+			{
+				break;
+			}
+			
+			else if ( change.getSequence() > sequence )
+			{
+				return count == 0 ? -1 : count;
+			}
+			
+			changes[ count++ ] = change;
+		}
+		
+		return count;
+	}
+
+}
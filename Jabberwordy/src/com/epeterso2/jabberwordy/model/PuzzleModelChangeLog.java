@@ -0,0 +1,133 @@
+package com.epeterso2.jabberwordy.model;
+
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records which cells, clues and metadata of a model changed at which generation.
+ * <p>
+ * Every change advances an atomic generation counter and appends the changed cell or clue to a log, so the changes
+ * since a recent generation are found in time proportional to the number of changes. The log holds a bounded number
+ * of entries; when it fills, its older half is dropped. A request for changes since a generation older than the log
+ * is answered from the last generation recorded for each cell and clue, in time proportional to the grid size.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+class PuzzleModelChangeLog {
+	
+	private AtomicLong generation = new AtomicLong();
+	
+	private long[] cellGenerations = null;
+	
+	private long[] clueGenerations = null;
+	
+	private long metadataGeneration = 0;
+	
+	private static final int METADATA = Integer.MIN_VALUE;
+	
+	// Entries are cell indexes, the complement of clue slot indexes, or METADATA. Entry i was recorded at generation
+	// base + i + 1.
+	private int[] entries = null;
+	
+	private int count = 0;
+	
+	private long base = 0;
+	
+	private int limit = 0;
+	
+	PuzzleModelChangeLog( int cellCount, int slotCount )
+	{
+		cellGenerations = new long[ cellCount ];
+		clueGenerations = new long[ slotCount ];
+		limit = Math.max( 64, 4 * ( cellCount + slotCount ) );
+		entries = new int[ Math.min( limit, 64 ) ];
+	}
+	
+	long getGeneration()
+	{
+		return generation.get();
+	}
+	
+	synchronized void cellChanged( int cell )
+	{
+		cellGenerations[ cell ] = append( cell );
+	}
+	
+	synchronized void clueChanged( int slot )
+	{
+		clueGenerations[ slot ] = append( ~slot );
+	}
+	
+	synchronized void metadataChanged()
+	{
+		metadataGeneration = append( METADATA );
+	}
+	
+	private long append( int entry )
+	{
+		if ( count == entries.length )
+		{
+			if ( entries.length < limit )
+			{
+				int[] larger = new int[ Math.min( limit, entries.length * 2 ) ];
+				System.arraycopy( entries, 0, larger, 0, count );
+				entries = larger;
+			}
+			
+			else
+			{
+				int dropped = count / 2;
+				System.arraycopy( entries, dropped, entries, 0, count - dropped );
+				count -= dropped;
+				base += dropped;
+			}
+		}
+		
+		entries[ count++ ] = entry;
+		return generation.incrementAndGet();
+	}
+	
+	synchronized PuzzleModelChanges changesSince( long since )
+	{
+		long current = generation.get();
+		BitSet cells = new BitSet();
+		BitSet clues = new BitSet();
+		
+		if ( since >= base && since <= current )
+		{
+			for ( int i = (int) ( since - base ); i < count; ++i )
+			{
+				if ( entries[ i ] >= 0 )
+				{
+					cells.set( entries[ i ] );
+				}
+				
+				else if ( entries[ i ] != METADATA )
+				{
+					clues.set( ~entries[ i ] );
+				}
+			}
+		}
+		
+		else
+		{
+			for ( int cell = 0; cell < cellGenerations.length; ++cell )
+			{
+				if ( cellGenerations[ cell ] > since )
+				{
+					cells.set( cell );
+				}
+			}
+			
+			for ( int slot = 0; slot < clueGenerations.length; ++slot )
+			{
+				if ( clueGenerations[ slot ] > since )
+				{
+					clues.set( slot );
+				}
+			}
+		}
+		
+		return new PuzzleModelChanges( since, current, cells, clues, metadataGeneration > since );
+	}
+
+}
@@ -0,0 +1,82 @@
+package com.epeterso2.jabberwordy.model;
+
+import java.util.BitSet;
+
+/**
+ * The cells, clues and metadata of a {@link PuzzleModel} that changed between two generations. Obtained from
+ * {@link PuzzleModel#changesSince(long)}; a consumer keeps {@link #getGeneration()} as the token for its next call.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+public class PuzzleModelChanges {
+	
+	private long since = 0;
+	
+	private long generation = 0;
+	
+	private BitSet cells = null;
+	
+	private BitSet clues = null;
+	
+	private boolean metadataChanged = false;
+	
+	PuzzleModelChanges( long since, long generation, BitSet cells, BitSet clues, boolean metadataChanged )
+	{
+		this.since = since;
+		this.generation = generation;
+		this.cells = cells;
+		this.clues = clues;
+		this.metadataChanged = metadataChanged;
+	}
+
+	/**
+	 * Returns the generation the changes were requested since
+	 * @return The caller's generation token
+	 */
+	public long getSince() {
+		return since;
+	}
+
+	/**
+	 * Returns the generation of the model when the changes were collected
+	 * @return The token to pass to the next call of {@link PuzzleModel#changesSince(long)}
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Returns the cells that changed. The set belongs to the caller.
+	 * @return The changed cell indexes
+	 */
+	public BitSet getCells() {
+		return cells;
+	}
+
+	/**
+	 * Returns the clue slots whose text changed. The set belongs to the caller.
+	 * @return The changed slot indexes
+	 */
+	public BitSet getClues() {
+		return clues;
+	}
+
+	public boolean isMetadataChanged() {
+		return metadataChanged;
+	}
+	
+	/**
+	 * Determines if nothing changed
+	 * @return <tt>true</tt> if there are no changes
+	 */
+	public boolean isEmpty()
+	{
+		return cells.isEmpty() && clues.isEmpty() && ! metadataChanged;
+	}
+	
+	public String toString()
+	{
+		return new StringBuilder().append( since ).append( ".." ).append( generation ).append( " cells " ).append( cells )
+			.append( " clues " ).append( clues ).append( metadataChanged ? " metadata" : "" ).toString();
+	}
+
+}
@@ -1,5 +1,61 @@
 package com.epeterso2.jabberwordy.model;
 
+import com.epeterso2.jabberwordy.util.ClueDirection;
+import com.epeterso2.jabberwordy.util.Coordinate;
+import com.epeterso2.jabberwordy.util.GridSlotTable;
+
+/**
+ * A view of the clue for one slot of a {@link PuzzleModel}. The view reads through to the model, so it always reflects
+ * the current clue text and solution.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
 public class PuzzleModelClue {
+	
+	private PuzzleModel model = null;
+	
+	private int slot = 0;
+	
+	PuzzleModelClue( PuzzleModel model, int slot )
+	{
+		this.model = model;
+		this.slot = slot;
+	}
+	
+	/**
+	 * Returns the slot of the clue in the model's {@link GridSlotTable}
+	 * @return The slot index
+	 */
+	public int getSlot() {
+		return slot;
+	}
+
+	public int getNumber() {
+		return model.getSlotTable().getNumber( slot );
+	}
+
+	public ClueDirection getDirection() {
+		return model.getSlotTable().getDirection( slot );
+	}
+
+	/**
+	 * Returns the location of the first cell of the answer to this clue
+	 * @return The coordinate, with column and row starting at 1
+	 */
+	public Coordinate getCoordinate() {
+		return model.getSlotTable().getCoordinate( model.getSlotTable().getStart( slot ) );
+	}
+
+	public String getText() {
+		return model.getClueText( slot );
+	}
+
+	public String getAnswer() {
+		return model.getAnswer( slot );
+	}
+	
+	public String toString()
+	{
+		return new StringBuilder().append( getNumber() ).append( " " ).append( getDirection().getLabel() ).append( ": " ).append( getText() ).toString();
+	}
 
 }
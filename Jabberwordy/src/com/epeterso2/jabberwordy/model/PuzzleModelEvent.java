@@ -1,5 +1,162 @@
 package com.epeterso2.jabberwordy.model;
 
-public class PuzzleModelEvent {
+import java.util.BitSet;
+import java.util.EventObject;
+
+/**
+ * A change to a {@link PuzzleModel}. Each event has a {@link Type}; cell and clue events carry the set of cells or clue
+ * slots that changed, so that a bulk operation such as {@link PuzzleModel#revealAll()} is reported as one event.
+ * Events are immutable.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+@SuppressWarnings("serial")
+public class PuzzleModelEvent extends EventObject {
+
+	/**
+	 * The kinds of change to a puzzle model
+	 */
+	public enum Type
+	{
+		/**
+		 * The player state or flags of one or more cells changed
+		 */
+		CELL_CHANGED,
+
+		/**
+		 * The text of one or more clues changed
+		 */
+		CLUE_CHANGED,
+
+		/**
+		 * A descriptive property, such as the title or author, changed
+		 */
+		METADATA_CHANGED,
+
+		/**
+		 * The player state of the whole grid was replaced. Listeners should read every cell again.
+		 */
+		BULK_LOAD
+	}
+
+	private Type type = null;
+
+	private BitSet changed = null;
+
+	private String property = null;
+
+	/**
+	 * Creates an event
+	 * @param source The model that changed
+	 * @param type The kind of change
+	 * @param changed The cells or clue slots that changed. The set is not copied and must not be modified afterward.
+	 * @param property The name of the changed metadata property, or <tt>null</tt>
+	 */
+	public PuzzleModelEvent( PuzzleModel source, Type type, BitSet changed, String property )
+	{
+		super( source );
+		this.type = type;
+		this.changed = changed == null ? new BitSet( 0 ) : changed;
+		this.property = property;
+	}
+
+	/**
+	 * Creates an event for a single cell
+	 * @param source The model that changed
+	 * @param cell The index of the cell
+	 * @return The event
+	 */
+	public static PuzzleModelEvent cellChanged( PuzzleModel source, int cell )
+	{
+		return new PuzzleModelEvent( source, Type.CELL_CHANGED, single( cell ), null );
+	}
+
+	/**
+	 * Creates an event for a single clue
+	 * @param source The model that changed
+	 * @param slot The slot of the clue
+	 * @return The event
+	 */
+	public static PuzzleModelEvent clueChanged( PuzzleModel source, int slot )
+	{
+		return new PuzzleModelEvent( source, Type.CLUE_CHANGED, single( slot ), null );
+	}
+
+	/**
+	 * Creates an event for a metadata property
+	 * @param source The model that changed
+	 * @param property The name of the property, such as "title"
+	 * @return The event
+	 */
+	public static PuzzleModelEvent metadataChanged( PuzzleModel source, String property )
+	{
+		return new PuzzleModelEvent( source, Type.METADATA_CHANGED, null, property );
+	}
+
+	private static BitSet single( int index )
+	{
+		BitSet set = new BitSet( index + 1 );
+		set.set( index );
+		return set;
+	}
+
+	public PuzzleModel getModel()
+	{
+		return (PuzzleModel) getSource();
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * Returns the name of the changed metadata property
+	 * @return The property name, or <tt>null</tt> if this is not a metadata event or several properties changed
+	 */
+	public String getProperty() {
+		return property;
+	}
+
+	/**
+	 * Determines if a cell (for {@link Type#CELL_CHANGED}) or clue slot (for {@link Type#CLUE_CHANGED}) changed
+	 * @param index The cell or slot index
+	 * @return <tt>true</tt> if it changed
+	 */
+	public boolean isChanged( int index )
+	{
+		return changed.get( index );
+	}
+
+	/**
+	 * Returns the next changed cell or clue slot, in the manner of {@link BitSet#nextSetBit(int)}
+	 * @param from The index to start from
+	 * @return The next changed index at or after <tt>from</tt>, or -1 if there is none
+	 */
+	public int nextChanged( int from )
+	{
+		return changed.nextSetBit( from );
+	}
+
+	/**
+	 * Returns the number of changed cells or clue slots
+	 * @return The count
+	 */
+	public int getChangedCount()
+	{
+		return changed.cardinality();
+	}
+
+	/**
+	 * Returns a copy of the set of changed cells or clue slots
+	 * @return The changed indexes
+	 */
+	public BitSet getChanged()
+	{
+		return (BitSet) changed.clone();
+	}
+
+	public String toString()
+	{
+		return new StringBuilder().append( type ).append( property == null ? "" : " " + property ).append( ' ' ).append( changed ).toString();
+	}
 
 }
@@ -0,0 +1,213 @@
+package com.epeterso2.jabberwordy.model;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link PuzzleModelListener} that collects the events of one or more models and delivers them to its own
+ * listeners on an executor, once per frame or tick.
+ * <p>
+ * Events received between two calls to {@link #flush()} are merged: repeated changes to the same cell or clue are
+ * reported once, a {@link PuzzleModelEvent.Type#BULK_LOAD} absorbs the cell changes of the same model, and several
+ * metadata changes become one event. Each flush delivers at most one event of each type per model. The dispatcher can
+ * be flushed by a frame callback, or on a fixed tick with {@link #start(ScheduledExecutorService, long, TimeUnit)}.
+ * <p>
+ * Events from one flush are delivered by a single task, and tasks are submitted in order, so the executor should run
+ * tasks one at a time and in order (for example, an event dispatch thread or a single-threaded executor).
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+public class PuzzleModelEventDispatcher implements PuzzleModelListener {
+
+	private Executor executor = null;
+
+	private CopyOnWriteArrayList<PuzzleModelListener> listeners = new CopyOnWriteArrayList<PuzzleModelListener>();
+
+	private Map<PuzzleModel, PendingEvents> pending = new LinkedHashMap<PuzzleModel, PendingEvents>();
+
+	private ScheduledFuture<?> tick = null;
+
+	/**
+	 * Creates a dispatcher
+	 * @param executor The executor that delivers the merged events
+	 */
+	public PuzzleModelEventDispatcher( Executor executor )
+	{
+		this.executor = executor;
+	}
+
+	public void addPuzzleModelListener( PuzzleModelListener listener )
+	{
+		listeners.addIfAbsent( listener );
+	}
+
+	public void removePuzzleModelListener( PuzzleModelListener listener )
+	{
+		listeners.remove( listener );
+	}
+
+	/**
+	 * Records an event for delivery at the next flush
+	 */
+	@Override
+	public synchronized void puzzleChanged( PuzzleModelEvent event )
+	{
+		PendingEvents events = pending.get( event.getModel() );
+
+		if ( events == null )
+		{
+			events = new PendingEvents();
+			pending.put( event.getModel(), events );
+		}
+
+		events.add( event );
+	}
+
+	/**
+	 * Submits the events received since the last flush to the executor
+	 * @return <tt>true</tt> if there were events to deliver
+	 */
+	public boolean flush()
+	{
+		final List<PuzzleModelEvent> events = new ArrayList<PuzzleModelEvent>();
+
+		synchronized ( this )
+		{
+			if ( pending.isEmpty() )
+			{
+				return false;
+			}
+
+			for ( Map.Entry<PuzzleModel, PendingEvents> entry : pending.entrySet() )
+			{
+				entry.getValue().merge( entry.getKey(), events );
+			}
+
+			pending.clear();
+		}
+
+		executor.execute( new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				for ( PuzzleModelEvent event : events )
+				{
+					for ( PuzzleModelListener listener : listeners )
+					{
+						listener.puzzleChanged( event );
+					}
+				}
+			}
+		} );
+
+		return true;
+	}
+
+	/**
+	 * Flushes the dispatcher on a fixed tick until {@link #stop()} is called
+	 * @param scheduler The scheduler that drives the tick
+	 * @param period The time between ticks
+	 * @param unit The unit of the period
+	 */
+	public synchronized void start( ScheduledExecutorService scheduler, long period, TimeUnit unit )
+	{
+		if ( tick != null )
+		{
+			throw new IllegalStateException( "Dispatcher already started" );
+		}
+
+		tick = scheduler.scheduleAtFixedRate( new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				flush();
+			}
+		}, period, period, unit );
+	}
+
+	/**
+	 * Stops the tick started by {@link #start(ScheduledExecutorService, long, TimeUnit)}. Events that have not been
+	 * flushed remain pending.
+	 */
+	public synchronized void stop()
+	{
+		if ( tick != null )
+		{
+			tick.cancel( false );
+			tick = null;
+		}
+	}
+
+	/**
+	 * The merged events of one model since the last flush
+	 */
+	private static class PendingEvents
+	{
+		private BitSet cells = new BitSet();
+
+		private BitSet clues = new BitSet();
+
+		private boolean load = false;
+
+		private boolean metadata = false;
+
+		private String property = null;
+
+		void add( PuzzleModelEvent event )
+		{
+			switch ( event.getType() )
+			{
+				case CELL_CHANGED:
+					cells.or( event.getChanged() );
+					break;
+
+				case CLUE_CHANGED:
+					clues.or( event.getChanged() );
+					break;
+
+				case BULK_LOAD:
+					load = true;
+					cells.clear();
+					break;
+
+				case METADATA_CHANGED:
+					property = ! metadata || ( property != null && property.equals( event.getProperty() ) ) ? event.getProperty() : null;
+					metadata = true;
+					break;
+			}
+		}
+
+		void merge( PuzzleModel model, List<PuzzleModelEvent> events )
+		{
+			if ( load )
+			{
+				events.add( new PuzzleModelEvent( model, PuzzleModelEvent.Type.BULK_LOAD, null, null ) );
+			}
+
+			else if ( ! cells.isEmpty() )
+			{
+				events.add( new PuzzleModelEvent( model, PuzzleModelEvent.Type.CELL_CHANGED, cells, null ) );
+			}
+
+			if ( ! clues.isEmpty() )
+			{
+				events.add( new PuzzleModelEvent( model, PuzzleModelEvent.Type.CLUE_CHANGED, clues, null ) );
+			}
+
+			if ( metadata )
+			{
+				events.add( new PuzzleModelEvent( model, PuzzleModelEvent.Type.METADATA_CHANGED, null, property ) );
+			}
+		}
+	}
+
+}
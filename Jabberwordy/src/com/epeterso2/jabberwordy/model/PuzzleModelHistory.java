@@ -0,0 +1,415 @@
+package com.epeterso2.jabberwordy.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The undo and redo history of the cells of a {@link PuzzleModel}.
+ * <p>
+ * Each change to a cell is recorded as one <tt>long</tt> holding the cell index and its old and new value codes and
+ * flags, in a ring of fixed capacity; the changes made in one {@link PuzzleModel#beginUpdate()} group, such as
+ * {@link PuzzleModel#revealAll()}, form one step. A step costs one more <tt>int</tt> for its start, so a keystroke
+ * costs twelve bytes. When the ring is full, the oldest steps are forgotten.
+ * <p>
+ * Every {@link #CHECKPOINT_INTERVAL} steps the history takes a {@link PuzzleModelSnapshot} of the model, which shares
+ * its rows with the model until they change. A jump to any step with {@link #jumpTo(long)} finds the nearest
+ * checkpoint by binary search and either restores it and replays the steps from there, or undoes or redoes the
+ * steps directly, whichever touches fewer cells.
+ * <p>
+ * Clue text and metadata are not recorded.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+public class PuzzleModelHistory {
+
+	/**
+	 * The default number of cell changes held
+	 */
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+
+	/**
+	 * The number of steps between checkpoints
+	 */
+	public static final int CHECKPOINT_INTERVAL = 256;
+
+	private PuzzleModel model = null;
+
+	private long[] deltas = null;
+
+	// The low 32 bits of the absolute index of the first delta of each step
+	private int[] stepStarts = null;
+
+	private int mask = 0;
+
+	private long firstStep = 0;
+
+	private long lastStep = 0;
+
+	private long position = 0;
+
+	private long deltaEnd = 0;
+
+	private boolean stepOpen = false;
+
+	private boolean overflow = false;
+
+	private boolean replaying = false;
+
+	private List<Checkpoint> checkpoints = new ArrayList<Checkpoint>();
+
+	/**
+	 * Attaches a history of the default capacity to a model
+	 * @param model The model to record
+	 */
+	public PuzzleModelHistory( PuzzleModel model )
+	{
+		this( model, DEFAULT_CAPACITY );
+	}
+
+	/**
+	 * Attaches a history to a model
+	 * @param model The model to record
+	 * @param capacity The minimum number of cell changes held; rounded up to a power of two
+	 */
+	public PuzzleModelHistory( PuzzleModel model, int capacity )
+	{
+		if ( model.getHistory() != null )
+		{
+			throw new IllegalStateException( "Model already has a history" );
+		}
+
+		else if ( model.getCellCount() > 0x10000 )
+		{
+			throw new IllegalArgumentException( "Grid too large for history: " + model.getCellCount() + " cells" );
+		}
+
+		int size = Integer.highestOneBit( Math.max( 2, capacity - 1 ) ) << 1;
+		this.model = model;
+		this.deltas = new long[ size ];
+		this.stepStarts = new int[ size ];
+		this.mask = size - 1;
+
+		checkpoints.add( new Checkpoint( 0, model.snapshot() ) );
+		model.setHistory( this );
+	}
+
+	/**
+	 * Stops recording the model
+	 */
+	public void detach()
+	{
+		if ( model.getHistory() == this )
+		{
+			model.setHistory( null );
+		}
+	}
+
+	/**
+	 * Returns the current step; undo moves it down and redo moves it up
+	 * @return The number of steps applied since recording began
+	 */
+	public long getPosition()
+	{
+		return position;
+	}
+
+	/**
+	 * Returns the earliest step that can be reached by undo
+	 * @return The oldest step held
+	 */
+	public long getFirstStep()
+	{
+		return firstStep;
+	}
+
+	/**
+	 * Returns the latest step that can be reached by redo
+	 * @return The newest step held
+	 */
+	public long getLastStep()
+	{
+		return lastStep;
+	}
+
+	public boolean canUndo()
+	{
+		return position > firstStep;
+	}
+
+	public boolean canRedo()
+	{
+		return position < lastStep;
+	}
+
+	/**
+	 * Undoes one step
+	 * @return <tt>false</tt> if there is nothing to undo
+	 */
+	public boolean undo()
+	{
+		return canUndo() && jumpTo( position - 1 );
+	}
+
+	/**
+	 * Redoes one step
+	 * @return <tt>false</tt> if there is nothing to redo
+	 */
+	public boolean redo()
+	{
+		return canRedo() && jumpTo( position + 1 );
+	}
+
+	/**
+	 * Forgets every step, keeping the model as it is
+	 */
+	public void clear()
+	{
+		firstStep = lastStep = position;
+		checkpoints.clear();
+		checkpoints.add( new Checkpoint( position, model.snapshot() ) );
+	}
+
+	/**
+	 * Moves the model to a step between {@link #getFirstStep()} and {@link #getLastStep()}. The listeners of the model
+	 * receive one event.
+	 * @param step The step to move to
+	 * @return <tt>true</tt> if the model changed
+	 */
+	public boolean jumpTo( long step )
+	{
+		if ( step < firstStep || step > lastStep )
+		{
+			throw new IllegalArgumentException( "Step " + step + " is outside the history " + firstStep + ".." + lastStep );
+		}
+
+		else if ( stepOpen )
+		{
+			throw new IllegalStateException( "Cannot move through the history during an update" );
+		}
+
+		else if ( step == position )
+		{
+			return false;
+		}
+
+		Checkpoint checkpoint = findCheckpoint( step );
+		long direct = Math.abs( deltaIndex( step ) - deltaIndex( position ) );
+
+		model.beginUpdate();
+		replaying = true;
+
+		try
+		{
+			if ( checkpoint != null && model.getCellCount() + Math.abs( deltaIndex( step ) - deltaIndex( checkpoint.step ) ) < direct )
+			{
+				restore( checkpoint );
+			}
+
+			for ( ; position > step; --position )
+			{
+				apply( position - 1, true );
+			}
+
+			for ( ; position < step; ++position )
+			{
+				apply( position, false );
+			}
+		}
+
+		finally
+		{
+			replaying = false;
+			model.endUpdate();
+		}
+
+		return true;
+	}
+
+	/**
+	 * Records a change to a cell, opening a step if none is open. Called by the model before the change is made.
+	 */
+	void record( int cell, char oldCode, int oldFlags, char newCode, int newFlags )
+	{
+		if ( replaying )
+		{
+			return;
+		}
+
+		if ( ! stepOpen )
+		{
+			startStep();
+		}
+
+		if ( ! overflow )
+		{
+			// Make room by forgetting the oldest steps, but never the step being recorded
+			while ( deltaEnd - deltaIndex( firstStep ) >= deltas.length && firstStep < lastStep - 1 )
+			{
+				dropFirstStep();
+			}
+
+			if ( deltaEnd - deltaIndex( firstStep ) >= deltas.length )
+			{
+				overflow = true;
+			}
+
+			else
+			{
+				deltas[ (int) deltaEnd & mask ] = ( (long) cell << 48 ) | ( (long) oldFlags << 40 ) | ( (long) oldCode << 24 ) | ( newFlags << 16 ) | newCode;
+				++deltaEnd;
+			}
+		}
+	}
+
+	/**
+	 * Closes the step being recorded. Called by the model after a change outside a group, and when a group ends.
+	 */
+	void endStep()
+	{
+		if ( ! stepOpen )
+		{
+			return;
+		}
+
+		stepOpen = false;
+		position = lastStep;
+
+		if ( overflow )
+		{
+			// The step did not fit, so none of the history before it can be reached
+			overflow = false;
+			clear();
+		}
+
+		else if ( position % CHECKPOINT_INTERVAL == 0 )
+		{
+			checkpoints.add( new Checkpoint( position, model.snapshot() ) );
+		}
+	}
+
+	private void startStep()
+	{
+		if ( lastStep > position )
+		{
+			// A new change discards the steps that could have been redone
+			deltaEnd = deltaIndex( position );
+			lastStep = position;
+
+			while ( ! checkpoints.isEmpty() && checkpoints.get( checkpoints.size() - 1 ).step > position )
+			{
+				checkpoints.remove( checkpoints.size() - 1 );
+			}
+		}
+
+		if ( lastStep - firstStep > mask )
+		{
+			dropFirstStep();
+		}
+
+		stepStarts[ (int) lastStep & mask ] = (int) deltaEnd;
+		++lastStep;
+		stepOpen = true;
+	}
+
+	private void dropFirstStep()
+	{
+		++firstStep;
+
+		if ( ! checkpoints.isEmpty() && checkpoints.get( 0 ).step < firstStep )
+		{
+			checkpoints.remove( 0 );
+		}
+	}
+
+	/**
+	 * Returns the absolute index of the first delta of a step, or the end of the deltas for the last step
+	 */
+	private long deltaIndex( long step )
+	{
+		return step >= lastStep ? deltaEnd : deltaEnd - ( (int) deltaEnd - stepStarts[ (int) step & mask ] );
+	}
+
+	private void apply( long step, boolean undo )
+	{
+		long start = deltaIndex( step );
+		long end = deltaIndex( step + 1 );
+
+		for ( long i = undo ? end - 1 : start; undo ? i >= start : i < end; i += undo ? -1 : 1 )
+		{
+			long delta = deltas[ (int) i & mask ];
+			int cell = (int) ( delta >>> 48 );
+
+			if ( undo )
+			{
+				model.putCell( cell, (char) ( delta >>> 24 ), (int) ( delta >>> 40 ) & 0xFF );
+			}
+
+			else
+			{
+				model.putCell( cell, (char) delta, (int) ( delta >>> 16 ) & 0xFF );
+			}
+		}
+	}
+
+	private void restore( Checkpoint checkpoint )
+	{
+		for ( int cell = 0; cell < model.getCellCount(); ++cell )
+		{
+			model.putCell( cell, model.encode( checkpoint.snapshot.getPlayerState( cell ) ), checkpoint.snapshot.getFlags( cell ) );
+		}
+
+		position = checkpoint.step;
+	}
+
+	/**
+	 * Finds the checkpoint nearest to a step by binary search
+	 */
+	private Checkpoint findCheckpoint( long step )
+	{
+		int low = 0;
+		int high = checkpoints.size() - 1;
+
+		while ( low <= high )
+		{
+			int middle = ( low + high ) >>> 1;
+
+			if ( checkpoints.get( middle ).step < step )
+			{
+				low = middle + 1;
+			}
+
+			else
+			{
+				high = middle - 1;
+			}
+		}
+
+		// The checkpoints at low and high bracket the step
+		Checkpoint best = null;
+
+		for ( int i = Math.max( 0, high ); i <= low && i < checkpoints.size(); ++i )
+		{
+			Checkpoint candidate = checkpoints.get( i );
+
+			if ( candidate.step <= lastStep && ( best == null || Math.abs( deltaIndex( candidate.step ) - deltaIndex( step ) ) < Math.abs( deltaIndex( best.step ) - deltaIndex( step ) ) ) )
+			{
+				best = candidate;
+			}
+		}
+
+		return best;
+	}
+
+	private static class Checkpoint
+	{
+		private long step = 0;
+
+		private PuzzleModelSnapshot snapshot = null;
+
+		Checkpoint( long step, PuzzleModelSnapshot snapshot )
+		{
+			this.step = step;
+			this.snapshot = snapshot;
+		}
+	}
+
+}
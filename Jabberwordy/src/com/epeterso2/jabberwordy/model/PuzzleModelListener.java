@@ -1,5 +1,10 @@
 package com.epeterso2.jabberwordy.model;
 
+/**
+ * Receives the changes made to a {@link PuzzleModel}
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ * @see PuzzleModelEventDispatcher
+ */
 public interface PuzzleModelListener {
 	
 	public void puzzleChanged( PuzzleModelEvent event );
@@ -0,0 +1,299 @@
+package com.epeterso2.jabberwordy.model;
+
+import com.epeterso2.jabberwordy.util.GridSlotTable;
+
+/**
+ * The solving progress of a {@link PuzzleModel}, kept up to date as the model changes.
+ * <p>
+ * The tracker listens to the model and keeps whether each cell is filled and correct, the number of filled and correct
+ * cells in the grid and in each slot, and the number of slots that are entirely filled or correct. A change to a cell
+ * updates only the two slots that cross it, so every query, such as {@link #isSolved()} or
+ * {@link #isSlotCorrect(int)}, takes constant time. A {@link PuzzleModelEvent.Type#BULK_LOAD} recounts the grid.
+ * <p>
+ * The tracker is updated on the thread that changes the model, when the model sends its events.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+public class PuzzleModelProgress implements PuzzleModelListener {
+	
+	private PuzzleModel model = null;
+	
+	private GridSlotTable slots = null;
+	
+	private boolean[] filled = null;
+	
+	private boolean[] correct = null;
+	
+	private int[] slotFilled = null;
+	
+	private int[] slotCorrect = null;
+	
+	private int openCells = 0;
+	
+	private int filledCells = 0;
+	
+	private int correctCells = 0;
+	
+	private int filledSlots = 0;
+	
+	private int correctSlots = 0;
+	
+	/**
+	 * Attaches a tracker to a model
+	 * @param model The model to track
+	 */
+	public PuzzleModelProgress( PuzzleModel model )
+	{
+		this.model = model;
+		this.slots = model.getSlotTable();
+		this.filled = new boolean[ model.getCellCount() ];
+		this.correct = new boolean[ model.getCellCount() ];
+		this.slotFilled = new int[ slots.getSlotCount() ];
+		this.slotCorrect = new int[ slots.getSlotCount() ];
+		
+		for ( int cell = 0; cell < filled.length; ++cell )
+		{
+			openCells += model.isBlock( cell ) ? 0 : 1;
+		}
+		
+		recount();
+		model.addPuzzleModelListener( this );
+	}
+	
+	/**
+	 * Stops tracking the model
+	 */
+	public void detach()
+	{
+		model.removePuzzleModelListener( this );
+	}
+	
+	public PuzzleModel getModel() {
+		return model;
+	}
+	
+	@Override
+	public void puzzleChanged( PuzzleModelEvent event )
+	{
+		if ( event.getType() == PuzzleModelEvent.Type.BULK_LOAD )
+		{
+			recount();
+		}
+		
+		else if ( event.getType() == PuzzleModelEvent.Type.CELL_CHANGED )
+		{
+			for ( int cell = event.nextChanged( 0 ); cell >= 0; cell = event.nextChanged( cell + 1 ) )
+			{
+				update( cell );
+			}
+		}
+	}
+	
+	/**
+	 * Determines if every open cell holds its solution
+	 * @return <tt>true</tt> if the puzzle is solved
+	 */
+	public boolean isSolved()
+	{
+		return correctCells == openCells;
+	}
+	
+	/**
+	 * Determines if every open cell holds a value, whether or not it is correct
+	 * @return <tt>true</tt> if the grid is full
+	 */
+	public boolean isFilled()
+	{
+		return filledCells == openCells;
+	}
+	
+	/**
+	 * Returns the number of cells that are not blocks
+	 * @return The number of open cells
+	 */
+	public int getOpenCount()
+	{
+		return openCells;
+	}
+	
+	public int getFilledCount()
+	{
+		return filledCells;
+	}
+	
+	public int getCorrectCount()
+	{
+		return correctCells;
+	}
+	
+	/**
+	 * Returns the number of open cells that are still empty
+	 * @return The number of cells left to fill
+	 */
+	public int getRemainingCount()
+	{
+		return openCells - filledCells;
+	}
+	
+	/**
+	 * Returns the share of open cells that are filled
+	 * @return The percentage, from 0 to 100
+	 */
+	public int getPercentFilled()
+	{
+		return openCells == 0 ? 100 : filledCells * 100 / openCells;
+	}
+	
+	/**
+	 * Returns the share of open cells that are correct
+	 * @return The percentage, from 0 to 100
+	 */
+	public int getPercentCorrect()
+	{
+		return openCells == 0 ? 100 : correctCells * 100 / openCells;
+	}
+	
+	public boolean isCellFilled( int cell )
+	{
+		return filled[ cell ];
+	}
+	
+	/**
+	 * Returns the number of filled cells in a slot
+	 * @param slot The slot index
+	 * @return The number of filled cells
+	 */
+	public int getSlotFilledCount( int slot )
+	{
+		return slotFilled[ slot ];
+	}
+	
+	/**
+	 * Returns the number of correct cells in a slot
+	 * @param slot The slot index
+	 * @return The number of correct cells
+	 */
+	public int getSlotCorrectCount( int slot )
+	{
+		return slotCorrect[ slot ];
+	}
+	
+	/**
+	 * Determines if every cell of a slot holds a value
+	 * @param slot The slot index
+	 * @return <tt>true</tt> if the entry is complete
+	 */
+	public boolean isSlotFilled( int slot )
+	{
+		return slotFilled[ slot ] == slots.getLength( slot );
+	}
+	
+	/**
+	 * Determines if every cell of a slot holds its solution
+	 * @param slot The slot index
+	 * @return <tt>true</tt> if the entry is correct
+	 */
+	public boolean isSlotCorrect( int slot )
+	{
+		return slotCorrect[ slot ] == slots.getLength( slot );
+	}
+	
+	/**
+	 * Returns the number of slots whose cells all hold a value
+	 * @return The number of complete entries
+	 */
+	public int getFilledSlotCount()
+	{
+		return filledSlots;
+	}
+	
+	/**
+	 * Returns the number of slots whose cells all hold their solutions
+	 * @return The number of correct entries
+	 */
+	public int getCorrectSlotCount()
+	{
+		return correctSlots;
+	}
+	
+	/**
+	 * Brings one cell and the slots that cross it up to date
+	 */
+	private void update( int cell )
+	{
+		if ( model.isBlock( cell ) )
+		{
+			return;
+		}
+		
+		boolean nowFilled = model.getPlayerCode( cell ) != PuzzleModel.EMPTY;
+		boolean nowCorrect = model.isCorrect( cell );
+		int filledChange = ( nowFilled ? 1 : 0 ) - ( filled[ cell ] ? 1 : 0 );
+		int correctChange = ( nowCorrect ? 1 : 0 ) - ( correct[ cell ] ? 1 : 0 );
+		
+		if ( filledChange == 0 && correctChange == 0 )
+		{
+			return;
+		}
+		
+		filled[ cell ] = nowFilled;
+		correct[ cell ] = nowCorrect;
+		filledCells += filledChange;
+		correctCells += correctChange;
+		
+		updateSlot( slots.getAcrossSlot( cell ), filledChange, correctChange );
+		updateSlot( slots.getDownSlot( cell ), filledChange, correctChange );
+	}
+	
+	private void updateSlot( int slot, int filledChange, int correctChange )
+	{
+		if ( slot < 0 )
+		{
+			return;
+		}
+		
+		int length = slots.getLength( slot );
+		filledSlots -= slotFilled[ slot ] == length ? 1 : 0;
+		correctSlots -= slotCorrect[ slot ] == length ? 1 : 0;
+		slotFilled[ slot ] += filledChange;
+		slotCorrect[ slot ] += correctChange;
+		filledSlots += slotFilled[ slot ] == length ? 1 : 0;
+		correctSlots += slotCorrect[ slot ] == length ? 1 : 0;
+	}
+	
+	/**
+	 * Counts the whole grid again
+	 */
+	private void recount()
+	{
+		filledCells = correctCells = filledSlots = correctSlots = 0;
+		
+		for ( int cell = 0; cell < filled.length; ++cell )
+		{
+			filled[ cell ] = ! model.isBlock( cell ) && model.getPlayerCode( cell ) != PuzzleModel.EMPTY;
+			correct[ cell ] = ! model.isBlock( cell ) && model.isCorrect( cell );
+			filledCells += filled[ cell ] ? 1 : 0;
+			correctCells += correct[ cell ] ? 1 : 0;
+		}
+		
+		for ( int slot = 0; slot < slotFilled.length; ++slot )
+		{
+			slotFilled[ slot ] = slotCorrect[ slot ] = 0;
+			
+			for ( int i = 0; i < slots.getLength( slot ); ++i )
+			{
+				int cell = slots.getCell( slot, i );
+				slotFilled[ slot ] += filled[ cell ] ? 1 : 0;
+				slotCorrect[ slot ] += correct[ cell ] ? 1 : 0;
+			}
+			
+			filledSlots += isSlotFilled( slot ) ? 1 : 0;
+			correctSlots += isSlotCorrect( slot ) ? 1 : 0;
+		}
+	}
+	
+	public String toString()
+	{
+		return new StringBuilder().append( filledCells ).append( '/' ).append( openCells ).append( " filled, " ).append( correctCells ).append( " correct" ).toString();
+	}
+
+}
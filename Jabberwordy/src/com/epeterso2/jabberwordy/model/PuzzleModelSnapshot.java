@@ -0,0 +1,231 @@
+package com.epeterso2.jabberwordy.model;
+
+import java.util.Date;
+
+import com.epeterso2.jabberwordy.util.ClueDirection;
+import com.epeterso2.jabberwordy.util.GridSlotTable;
+import com.epeterso2.jabberwordy.util.StringTable;
+
+/**
+ * An immutable view of a {@link PuzzleModel} at one generation, obtained from {@link PuzzleModel#snapshot()}.
+ * <p>
+ * The snapshot shares its row chunks with the model, which copies a row before changing it, so the snapshot never
+ * changes and may be read on any thread. Its fields are final so that it is safely published to other threads.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+public class PuzzleModelSnapshot {
+
+	private final GridSlotTable slots;
+
+	private final char[] solution;
+
+	private final char[][] playerRows;
+
+	private final byte[][] flagRows;
+
+	private final byte[] shades;
+
+	private final StringTable shadeTable;
+
+	private final StringTable rebusTable;
+
+	private final String[] clues;
+
+	private final long generation;
+
+	private final String title;
+
+	private final String author;
+
+	private final String editor;
+
+	private final String publisher;
+
+	private final Date date;
+
+	private final String copyright;
+
+	private final String notes;
+
+	PuzzleModelSnapshot( GridSlotTable slots, char[] solution, char[][] playerRows, byte[][] flagRows, byte[] shades,
+		StringTable shadeTable, StringTable rebusTable, String[] clues, long generation,
+		String title, String author, String editor, String publisher, Date date, String copyright, String notes )
+	{
+		this.slots = slots;
+		this.solution = solution;
+		this.playerRows = playerRows;
+		this.flagRows = flagRows;
+		this.shades = shades;
+		this.shadeTable = shadeTable;
+		this.rebusTable = rebusTable;
+		this.clues = clues;
+		this.generation = generation;
+		this.title = title;
+		this.author = author;
+		this.editor = editor;
+		this.publisher = publisher;
+		this.date = date == null ? null : (Date) date.clone();
+		this.copyright = copyright;
+		this.notes = notes;
+	}
+
+	/**
+	 * Returns the generation of the model when the snapshot was taken. Passing it to
+	 * {@link PuzzleModel#changesSince(long)} gives the changes made after the snapshot.
+	 * @return The generation
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
+	public int getWidth() {
+		return slots.getCols();
+	}
+
+	public int getHeight() {
+		return slots.getRows();
+	}
+
+	public int getCellCount()
+	{
+		return solution.length;
+	}
+
+	public int getCellIndex( int col, int row )
+	{
+		return slots.getCellIndex( col, row );
+	}
+
+	public GridSlotTable getSlotTable()
+	{
+		return slots;
+	}
+
+	public boolean isBlock( int cell )
+	{
+		return slots.isBlock( cell );
+	}
+
+	public int getNumber( int cell )
+	{
+		return slots.getCellNumber( cell );
+	}
+
+	public int getFlags( int cell )
+	{
+		return flagRows[ cell / slots.getCols() ][ cell % slots.getCols() ] & 0xFF;
+	}
+
+	public boolean isFlagSet( int cell, int flag )
+	{
+		return ( getFlags( cell ) & flag ) == flag;
+	}
+
+	public String getShade( int cell )
+	{
+		return shades == null || shades[ cell ] == 0 ? null : shadeTable.get( ( shades[ cell ] & 0xFF ) - 1 );
+	}
+
+	public char getSolutionCode( int cell )
+	{
+		return solution[ cell ];
+	}
+
+	public String getSolution( int cell )
+	{
+		return decode( solution[ cell ] );
+	}
+
+	public char getPlayerCode( int cell )
+	{
+		return playerRows[ cell / slots.getCols() ][ cell % slots.getCols() ];
+	}
+
+	public String getPlayerState( int cell )
+	{
+		return decode( getPlayerCode( cell ) );
+	}
+
+	public boolean isCorrect( int cell )
+	{
+		return getPlayerCode( cell ) == solution[ cell ];
+	}
+
+	/**
+	 * Converts a value code of the model into a cell value
+	 * @param code The value code
+	 * @return The value, or an empty string for {@link PuzzleModel#EMPTY}
+	 */
+	public String decode( char code )
+	{
+		return code == PuzzleModel.EMPTY ? "" : PuzzleModel.isRebusCode( code ) ? rebusTable.get( code - PuzzleModel.REBUS_BASE ) : String.valueOf( code );
+	}
+
+	public String getClueText( int slot )
+	{
+		return clues[ slot ];
+	}
+
+	/**
+	 * Returns the text of the clue with a given number and direction
+	 * @param number The clue number
+	 * @param direction The direction
+	 * @return The clue text, or <tt>null</tt> if the grid has no such slot or the slot has no clue
+	 */
+	public String getClueText( int number, ClueDirection direction )
+	{
+		int slot = slots.findSlot( number, direction );
+		return slot < 0 ? null : clues[ slot ];
+	}
+
+	/**
+	 * Reads the answer of a slot from the solutions of its cells
+	 * @param slot The slot index
+	 * @return The answer
+	 */
+	public String getAnswer( int slot )
+	{
+		StringBuilder builder = new StringBuilder( slots.getLength( slot ) );
+
+		for ( int i = 0, cell = slots.getStart( slot ); i < slots.getLength( slot ); ++i, cell += slots.getStep( slot ) )
+		{
+			builder.append( decode( solution[ cell ] ) );
+		}
+
+		return builder.toString();
+	}
+
+	public String getTitle() {
+		return title;
+	}
+
+	public String getAuthor() {
+		return author;
+	}
+
+	public String getEditor() {
+		return editor;
+	}
+
+	public String getPublisher() {
+		return publisher;
+	}
+
+	public Date getDate() {
+		return date == null ? null : (Date) date.clone();
+	}
+
+	public String getCopyright() {
+		return copyright;
+	}
+
+	public String getNotes() {
+		return notes;
+	}
+
+	public String toString()
+	{
+		return new StringBuilder().append( getTitle() ).append( " by " ).append( getAuthor() ).append( " @" ).append( generation ).toString();
+	}
+
+}
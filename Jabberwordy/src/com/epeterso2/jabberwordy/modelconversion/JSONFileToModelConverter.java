@@ -0,0 +1,56 @@
+package com.epeterso2.jabberwordy.modelconversion;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.epeterso2.jabberwordy.model.PuzzleModel;
+
+/**
+ * Builds a {@link PuzzleModel} from a JSON puzzle file. The file is read as a token stream with a
+ * {@link JSONStreamToModelConverter}.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+public class JSONFileToModelConverter implements FileToModelConverter {
+
+	@Override
+	public PuzzleModel convert( File file ) throws PuzzleModelConversionException
+	{
+		InputStream inputStream = null;
+		
+		try
+		{
+			inputStream = new BufferedInputStream( new FileInputStream( file ) );
+			return new JSONStreamToModelConverter().convert( inputStream );
+		}
+		
+		catch ( IOException e )
+		{
+			throw new PuzzleModelConversionException( e );
+		}
+		
+		finally
+		{
+			close( inputStream );
+		}
+	}
+	
+	private static void close( InputStream inputStream )
+	{
+		if ( inputStream != null )
+		{
+			try
+			{
+				inputStream.close();
+			}
+			
+			catch ( IOException e )
+			{
+				// Nothing to see ... move along
+			}
+		}
+	}
+
+}
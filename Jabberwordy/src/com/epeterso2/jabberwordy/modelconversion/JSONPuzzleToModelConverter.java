@@ -1,17 +1,143 @@
 package com.epeterso2.jabberwordy.modelconversion;
 
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
 import com.epeterso2.jabberwordy.model.PuzzleModel;
+import com.epeterso2.jabberwordy.model.PuzzleModelBuilder;
 import com.epeterso2.jabberwordy.serialization.json.JSONPuzzle;
+import com.epeterso2.jabberwordy.util.ClueDirection;
 
 public class JSONPuzzleToModelConverter implements PuzzleToModelConverter {
 
 	@Override
 	public PuzzleModel convert( Object puzzle ) throws PuzzleModelConversionException
 	{
+		if ( ! ( puzzle instanceof JSONPuzzle ) )
+		{
+			throw new PuzzleModelConversionException( "Not a JSON puzzle" );
+		}
+		
 		JSONPuzzle json = (JSONPuzzle) puzzle;
-		PuzzleModel model = new PuzzleModel( json.getSize().getCols(), json.getSize().getRows() );
 		
-		return model;
+		if ( json.getSize() == null || json.getSize().getCols() <= 0 || json.getSize().getRows() <= 0 )
+		{
+			throw new PuzzleModelConversionException( "JSON puzzle has no size" );
+		}
+		
+		PuzzleModelBuilder builder = new PuzzleModelBuilder( json.getSize().getCols(), json.getSize().getRows() );
+		setMetadata( builder, json.getTitle(), json.getAuthor(), json.getEditor(), json.getCopyright(), json.getPublisher(), json.getDate(), json.getNotepad() );
+		
+		String[] grid = json.getGrid();
+		int[] circles = json.getCircles();
+		
+		for ( int index = 0; grid != null && index < grid.length; ++index )
+		{
+			setCell( builder, index, grid[ index ] );
+		}
+		
+		for ( int index = 0; circles != null && index < circles.length; ++index )
+		{
+			setCircle( builder, index, circles[ index ] );
+		}
+		
+		if ( json.getClues() != null )
+		{
+			addClues( builder, json.getClues().getAcross(), ClueDirection.ACROSS );
+			addClues( builder, json.getClues().getDown(), ClueDirection.DOWN );
+		}
+		
+		return builder.build();
+	}
+	
+	/**
+	 * Copies the descriptive strings of a JSON puzzle into a builder. An unparseable date is ignored, since the
+	 * JSON format does not constrain the form of the date.
+	 */
+	static void setMetadata( PuzzleModelBuilder builder, String title, String author, String editor, String copyright, String publisher, String date, String notepad )
+	{
+		builder.setTitle( title );
+		builder.setAuthor( author );
+		builder.setEditor( editor );
+		builder.setCopyright( copyright );
+		builder.setPublisher( publisher );
+		builder.setNotes( notepad );
+		builder.setDate( parseDate( date ) );
+	}
+	
+	private static Date parseDate( String date )
+	{
+		try
+		{
+			return date == null ? null : new SimpleDateFormat( "M/d/yyyy" ).parse( date );
+		}
+		
+		catch ( ParseException e )
+		{
+			return null;
+		}
+	}
+	
+	/**
+	 * Applies one entry of the JSON <tt>grid</tt> array, in row-major order, to a builder
+	 */
+	static void setCell( PuzzleModelBuilder builder, int index, String value )
+	{
+		if ( index >= builder.getWidth() * builder.getHeight() )
+		{
+			return;
+		}
+		
+		if ( ".".equals( value ) )
+		{
+			builder.setBlock( index, true );
+		}
+		
+		else if ( value != null && value.length() > 0 && ! " ".equals( value ) )
+		{
+			builder.setSolution( index, value );
+		}
+	}
+	
+	/**
+	 * Applies one entry of the JSON <tt>circles</tt> array, in row-major order, to a builder
+	 */
+	static void setCircle( PuzzleModelBuilder builder, int index, int circle )
+	{
+		if ( index < builder.getWidth() * builder.getHeight() )
+		{
+			builder.setFlag( index, PuzzleModel.CIRCLED, circle != 0 );
+		}
+	}
+	
+	/**
+	 * Adds the clues of one direction to a builder
+	 */
+	static void addClues( PuzzleModelBuilder builder, String[] clues, ClueDirection direction )
+	{
+		for ( int i = 0; clues != null && i < clues.length; ++i )
+		{
+			addClue( builder, clues[ i ], direction );
+		}
+	}
+	
+	/**
+	 * Adds a clue to a builder. JSON clues are of the form "12. Clue text"; clues without a number are ignored.
+	 */
+	static void addClue( PuzzleModelBuilder builder, String text, ClueDirection direction )
+	{
+		int digits = 0;
+		
+		while ( text != null && digits < text.length() && digits < 6 && Character.isDigit( text.charAt( digits ) ) )
+		{
+			++digits;
+		}
+		
+		if ( digits > 0 && digits < text.length() && text.charAt( digits ) == '.' )
+		{
+			builder.addClue( Integer.parseInt( text.substring( 0, digits ) ), direction, text.substring( digits + 1 ).trim() );
+		}
 	}
 
 }
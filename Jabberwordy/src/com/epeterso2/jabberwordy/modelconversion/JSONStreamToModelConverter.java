@@ -0,0 +1,278 @@
+package com.epeterso2.jabberwordy.modelconversion;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.epeterso2.jabberwordy.model.PuzzleModel;
+import com.epeterso2.jabberwordy.model.PuzzleModelBuilder;
+import com.epeterso2.jabberwordy.serialization.json.JSONUtil;
+import com.epeterso2.jabberwordy.util.ClueDirection;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Builds a complete {@link PuzzleModel} directly from the token stream of a JSON puzzle, without first building a
+ * {@link com.epeterso2.jabberwordy.serialization.json.JSONPuzzle}.
+ * <p>
+ * Once the <tt>size</tt> property has been read, the <tt>grid</tt> and <tt>circles</tt> arrays are applied to a
+ * {@link PuzzleModelBuilder} element by element as they are read. If one of these arrays precedes the <tt>size</tt>
+ * property, it is held until the builder can be created. The numbering and answers are derived from the grid, so the
+ * <tt>gridnums</tt> and <tt>answers</tt> properties are skipped.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ * @see <a href="http://www.xwordinfo.com/JSON">Crossword puzzle data in JSON format</a>
+ */
+public class JSONStreamToModelConverter {
+	
+	/**
+	 * Converts the JSON puzzle read from an input stream. The input stream is not closed.
+	 * @param inputStream The input stream containing the UTF-8 encoded JSON puzzle
+	 * @return The puzzle model
+	 * @throws PuzzleModelConversionException The stream could not be read or is not a valid JSON puzzle
+	 */
+	public PuzzleModel convert( InputStream inputStream ) throws PuzzleModelConversionException
+	{
+		return convert( JSONUtil.newJsonReader( inputStream ) );
+	}
+	
+	/**
+	 * Converts the JSON puzzle read from a JSON reader
+	 * @param reader The reader positioned at the start of a puzzle object
+	 * @return The puzzle model
+	 * @throws PuzzleModelConversionException The reader could not be read or does not contain a valid JSON puzzle
+	 */
+	public PuzzleModel convert( JsonReader reader ) throws PuzzleModelConversionException
+	{
+		try
+		{
+			return readPuzzle( reader );
+		}
+		
+		catch ( IOException e )
+		{
+			throw new PuzzleModelConversionException( e );
+		}
+		
+		catch ( JsonParseException e )
+		{
+			throw new PuzzleModelConversionException( e );
+		}
+		
+		catch ( IllegalStateException e )
+		{
+			throw new PuzzleModelConversionException( e );
+		}
+		
+		catch ( NumberFormatException e )
+		{
+			throw new PuzzleModelConversionException( e );
+		}
+	}
+	
+	private PuzzleModel readPuzzle( JsonReader in ) throws IOException, PuzzleModelConversionException
+	{
+		PuzzleModelBuilder builder = null;
+		String title = null, author = null, editor = null, copyright = null, publisher = null, date = null, notepad = null;
+		String[] grid = null;
+		int[] circles = null;
+		List<String> across = new ArrayList<String>();
+		List<String> down = new ArrayList<String>();
+		
+		in.beginObject();
+		
+		while ( in.hasNext() )
+		{
+			String name = in.nextName();
+			
+			if ( "title".equals( name ) )
+			{
+				title = JSONUtil.readString( in );
+			}
+			
+			else if ( "author".equals( name ) )
+			{
+				author = JSONUtil.readString( in );
+			}
+			
+			else if ( "editor".equals( name ) )
+			{
+				editor = JSONUtil.readString( in );
+			}
+			
+			else if ( "copyright".equals( name ) )
+			{
+				copyright = JSONUtil.readString( in );
+			}
+			
+			else if ( "publisher".equals( name ) )
+			{
+				publisher = JSONUtil.readString( in );
+			}
+			
+			else if ( "date".equals( name ) )
+			{
+				date = JSONUtil.readString( in );
+			}
+			
+			else if ( "notepad".equals( name ) )
+			{
+				notepad = JSONUtil.readString( in );
+			}
+			
+			else if ( "size".equals( name ) && in.peek() != JsonToken.NULL )
+			{
+				builder = readSize( in );
+			}
+			
+			else if ( "grid".equals( name ) && in.peek() != JsonToken.NULL )
+			{
+				if ( builder == null )
+				{
+					grid = JSONUtil.readStringArray( in );
+				}
+				
+				else
+				{
+					in.beginArray();
+					
+					for ( int index = 0; in.hasNext(); ++index )
+					{
+						JSONPuzzleToModelConverter.setCell( builder, index, JSONUtil.readString( in ) );
+					}
+					
+					in.endArray();
+				}
+			}
+			
+			else if ( "circles".equals( name ) && in.peek() != JsonToken.NULL )
+			{
+				if ( builder == null )
+				{
+					circles = JSONUtil.readIntArray( in );
+				}
+				
+				else
+				{
+					in.beginArray();
+					
+					for ( int index = 0; in.hasNext(); ++index )
+					{
+						JSONPuzzleToModelConverter.setCircle( builder, index, in.nextInt() );
+					}
+					
+					in.endArray();
+				}
+			}
+			
+			else if ( "clues".equals( name ) && in.peek() != JsonToken.NULL )
+			{
+				readClues( in, across, down );
+			}
+			
+			else
+			{
+				// The numbers and answers are derived from the grid
+				in.skipValue();
+			}
+		}
+		
+		in.endObject();
+		
+		if ( builder == null )
+		{
+			throw new PuzzleModelConversionException( "JSON puzzle has no size" );
+		}
+		
+		JSONPuzzleToModelConverter.setMetadata( builder, title, author, editor, copyright, publisher, date, notepad );
+		
+		for ( int index = 0; grid != null && index < grid.length; ++index )
+		{
+			JSONPuzzleToModelConverter.setCell( builder, index, grid[ index ] );
+		}
+		
+		for ( int index = 0; circles != null && index < circles.length; ++index )
+		{
+			JSONPuzzleToModelConverter.setCircle( builder, index, circles[ index ] );
+		}
+		
+		for ( String clue : across )
+		{
+			JSONPuzzleToModelConverter.addClue( builder, clue, ClueDirection.ACROSS );
+		}
+		
+		for ( String clue : down )
+		{
+			JSONPuzzleToModelConverter.addClue( builder, clue, ClueDirection.DOWN );
+		}
+		
+		return builder.build();
+	}
+	
+	private PuzzleModelBuilder readSize( JsonReader in ) throws IOException, PuzzleModelConversionException
+	{
+		int rows = 0;
+		int cols = 0;
+		
+		in.beginObject();
+		
+		while ( in.hasNext() )
+		{
+			String name = in.nextName();
+			
+			if ( "rows".equals( name ) )
+			{
+				rows = in.nextInt();
+			}
+			
+			else if ( "cols".equals( name ) )
+			{
+				cols = in.nextInt();
+			}
+			
+			else
+			{
+				in.skipValue();
+			}
+		}
+		
+		in.endObject();
+		
+		if ( rows <= 0 || cols <= 0 )
+		{
+			throw new PuzzleModelConversionException( "Invalid JSON puzzle size: " + cols + "x" + rows );
+		}
+		
+		return new PuzzleModelBuilder( cols, rows );
+	}
+	
+	private void readClues( JsonReader in, List<String> across, List<String> down ) throws IOException
+	{
+		in.beginObject();
+		
+		while ( in.hasNext() )
+		{
+			String name = in.nextName();
+			List<String> clues = "across".equals( name ) ? across : "down".equals( name ) ? down : null;
+			
+			if ( clues == null || in.peek() == JsonToken.NULL )
+			{
+				in.skipValue();
+				continue;
+			}
+			
+			in.beginArray();
+			
+			while ( in.hasNext() )
+			{
+				clues.add( JSONUtil.readString( in ) );
+			}
+			
+			in.endArray();
+		}
+		
+		in.endObject();
+	}
+
+}
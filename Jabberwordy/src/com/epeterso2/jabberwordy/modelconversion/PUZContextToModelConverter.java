@@ -0,0 +1,148 @@
+package com.epeterso2.jabberwordy.modelconversion;
+
+import java.util.Map;
+
+import com.epeterso2.jabberwordy.model.PuzzleModel;
+import com.epeterso2.jabberwordy.model.PuzzleModelBuilder;
+import com.epeterso2.jabberwordy.serialization.puz.PUZContext;
+import com.epeterso2.jabberwordy.serialization.puz.PUZExtraSection;
+import com.epeterso2.jabberwordy.serialization.puz.PUZUtil;
+
+/**
+ * Builds a complete {@link PuzzleModel} directly from the image held by a {@link PUZContext}, without first
+ * building a {@link com.epeterso2.jabberwordy.serialization.puz.PUZPuzzle}.
+ * <p>
+ * The image is read in a single pass. The extra sections are located once, the rebus table and rebus player state
+ * are decoded once, and the strings are read in order with a single cursor, rather than once per cell as the
+ * per-cell getters of {@link PUZContext} would. Cells and clues are written straight into a {@link PuzzleModelBuilder}. If the solution is encrypted, it is unlocked in place in the image
+ * held by the context.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+public class PUZContextToModelConverter implements PuzzleToModelConverter {
+
+	@Override
+	public PuzzleModel convert( Object puzzle ) throws PuzzleModelConversionException
+	{
+		if ( ! ( puzzle instanceof PUZContext ) )
+		{
+			throw new PuzzleModelConversionException( "Not a PUZ context" );
+		}
+		
+		// Fault barrier - a corrupted image can fail in many ways, such as with an array index out of bounds
+		try
+		{
+			return convert( (PUZContext) puzzle );
+		}
+		
+		catch ( RuntimeException e )
+		{
+			throw new PuzzleModelConversionException( e );
+		}
+	}
+	
+	private PuzzleModel convert( PUZContext context )
+	{
+		if ( context.isSolutionEncrypted() )
+		{
+			context.unlockSolution( context.getUnlockCode() );
+		}
+		
+		byte[] image = context.getImage();
+		int width = PUZUtil.getWidth( image );
+		int height = PUZUtil.getHeight( image );
+		int cells = width * height;
+		int numberOfClues = PUZUtil.getNumberOfClues( image );
+		
+		PuzzleModelBuilder builder = new PuzzleModelBuilder( width, height );
+		
+		// Read the strings in order
+		int position = PUZUtil.getStringSectionStartPosition( image );
+		StringBuilder string = new StringBuilder();
+		
+		position = readString( image, position, string );
+		builder.setTitle( string.toString() );
+		position = readString( image, position, string );
+		builder.setAuthor( string.toString() );
+		position = readString( image, position, string );
+		builder.setCopyright( string.toString() );
+		
+		for ( int i = 0; i < numberOfClues; ++i )
+		{
+			position = readString( image, position, string );
+			builder.appendClue( string.toString() );
+		}
+		
+		position = readString( image, position, string );
+		builder.setNotes( string.toString() );
+		
+		// Decode the extra sections once
+		Map<String, PUZExtraSection> sections = PUZUtil.getExtraSections( image );
+		byte[] gext = getData( sections, PUZUtil.GEXT_SECTION_NAME );
+		byte[] grbs = getData( sections, PUZUtil.GRBS_SECTION_NAME );
+		String[] rebusTable = PUZUtil.decodeRebusTable( getData( sections, PUZUtil.RTBL_SECTION_NAME ) );
+		String[] rebusState = PUZUtil.decodeRebusState( getData( sections, PUZUtil.RUSR_SECTION_NAME ), cells );
+		
+		// Build the grid
+		for ( int cell = 0; cell < cells; ++cell )
+		{
+			byte solutionByte = image[ PUZUtil.POS_SOLUTION + cell ];
+			
+			if ( solutionByte == '.' || solutionByte == ':' )
+			{
+				builder.setBlock( cell, true );
+				continue;
+			}
+			
+			if ( grbs != null && rebusTable != null && cell < grbs.length && grbs[ cell ] > 0 && rebusTable[ grbs[ cell ] - 1 ] != null )
+			{
+				builder.setSolution( cell, rebusTable[ grbs[ cell ] - 1 ] );
+			}
+			
+			else
+			{
+				builder.setSolution( cell, (char) PUZUtil.byteToUbyte( solutionByte ) );
+			}
+			
+			if ( rebusState != null && rebusState[ cell ] != null )
+			{
+				builder.setPlayerState( cell, rebusState[ cell ] );
+			}
+			
+			else
+			{
+				char state = (char) PUZUtil.byteToUbyte( image[ PUZUtil.POS_SOLUTION + cells + cell ] );
+				builder.setPlayerState( cell, state == '-' ? null : String.valueOf( state ) );
+			}
+			
+			if ( gext != null && cell < gext.length )
+			{
+				// The GEXT flags share their values with the model flags
+				builder.setFlags( cell, gext[ cell ] & ( PuzzleModel.PLAYER_FLAGS | PuzzleModel.CIRCLED ) );
+			}
+		}
+		
+		return builder.build();
+	}
+	
+	/**
+	 * Reads the null-terminated string at the given position into the builder and returns the position that follows it
+	 */
+	private static int readString( byte[] image, int position, StringBuilder builder )
+	{
+		builder.setLength( 0 );
+		
+		for ( ; position < image.length && image[ position ] != 0; ++position )
+		{
+			builder.append( (char) PUZUtil.byteToUbyte( image[ position ] ) );
+		}
+		
+		return position + 1;
+	}
+	
+	private static byte[] getData( Map<String, PUZExtraSection> sections, String title )
+	{
+		PUZExtraSection section = sections.get( title );
+		return section == null ? null : section.getData();
+	}
+
+}
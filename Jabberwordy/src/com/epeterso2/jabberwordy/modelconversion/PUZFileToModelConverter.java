@@ -1,26 +1,59 @@
 package com.epeterso2.jabberwordy.modelconversion;
 
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 
 import com.epeterso2.jabberwordy.model.PuzzleModel;
-import com.epeterso2.jabberwordy.serialization.puz.PUZPuzzleOutputStream;
+import com.epeterso2.jabberwordy.serialization.puz.PUZContext;
+import com.epeterso2.jabberwordy.serialization.puz.PUZUtil;
 
+/**
+ * Builds a {@link PuzzleModel} from a PUZ file. The file image is converted directly with a
+ * {@link PUZContextToModelConverter}.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
 public class PUZFileToModelConverter implements FileToModelConverter {
 
 	@Override
 	public PuzzleModel convert( File file ) throws PuzzleModelConversionException
 	{
+		byte[] image;
+		
 		try
 		{
-			return PuzzleModelFactory.buildPuzzleModel( new PUZPuzzleOutputStream( new FileInputStream( file ) ).toPuzzle() );
+			image = readFile( file );
 		}
 		
 		catch ( IOException e )
 		{
 			throw new PuzzleModelConversionException( e );
 		}
+		
+		if ( image.length < PUZUtil.POS_SOLUTION || ! PUZUtil.FILE_MAGIC.equals( PUZUtil.getFileMagic( image ) ) )
+		{
+			throw new PuzzleModelConversionException( "Not a PUZ file" );
+		}
+		
+		return new PUZContextToModelConverter().convert( new PUZContext( image ) );
+	}
+	
+	private static byte[] readFile( File file ) throws IOException
+	{
+		DataInputStream inputStream = new DataInputStream( new FileInputStream( file ) );
+		
+		try
+		{
+			byte[] image = new byte[ (int) file.length() ];
+			inputStream.readFully( image );
+			return image;
+		}
+		
+		finally
+		{
+			inputStream.close();
+		}
 	}
 
 }
@@ -1,7 +1,13 @@
 package com.epeterso2.jabberwordy.modelconversion;
 
+import java.util.Map;
+
 import com.epeterso2.jabberwordy.model.PuzzleModel;
+import com.epeterso2.jabberwordy.model.PuzzleModelBuilder;
+import com.epeterso2.jabberwordy.serialization.puz.PUZCellStyle;
 import com.epeterso2.jabberwordy.serialization.puz.PUZPuzzle;
+import com.epeterso2.jabberwordy.serialization.puz.PUZSolution;
+import com.epeterso2.jabberwordy.util.ClueDirection;
 
 public class PUZPuzzleToModelConverter implements PuzzleToModelConverter {
 
@@ -14,11 +20,57 @@ public class PUZPuzzleToModelConverter implements PuzzleToModelConverter {
 		}
 		
 		PUZPuzzle puz = (PUZPuzzle) puzzle;
-		PuzzleModel model = new PuzzleModel( puz.getWidth(), puz.getHeight() );
-		model.setTitle( puz.getTitle() );
-		model.setAuthor( puz.getAuthor() );
+		PuzzleModelBuilder builder = new PuzzleModelBuilder( puz.getWidth(), puz.getHeight() );
+		builder.setTitle( puz.getTitle() );
+		builder.setAuthor( puz.getAuthor() );
+		builder.setCopyright( puz.getCopyright() );
+		builder.setNotes( puz.getNotes() );
+		
+		for ( int row = 1, cell = 0; row <= puz.getHeight(); ++row )
+		{
+			for ( int col = 1; col <= puz.getWidth(); ++col, ++cell )
+			{
+				PUZCellStyle style = puz.getCellStyles().get( col, row );
+				
+				if ( style == null || style.isBlock() )
+				{
+					builder.setBlock( cell, true );
+					continue;
+				}
+				
+				builder.setFlag( cell, PuzzleModel.CIRCLED, style.isCircled() );
+				builder.setFlag( cell, PuzzleModel.REVEALED, style.isRevealed() );
+				builder.setFlag( cell, PuzzleModel.PREVIOUSLY_INCORRECT, style.isPreviouslyMarkedIncorrect() );
+				builder.setFlag( cell, PuzzleModel.CURRENTLY_INCORRECT, style.isCurrentlyMarkedIncorrect() );
+				
+				PUZSolution solution = puz.getSolutions().get( col, row );
+				
+				if ( solution != null && solution.getRebus() != null )
+				{
+					builder.setSolution( cell, solution.getRebus() );
+				}
+				
+				else if ( solution != null )
+				{
+					builder.setSolution( cell, solution.getLetter() );
+				}
+				
+				builder.setPlayerState( cell, puz.getPlayerState().get( col, row ) );
+			}
+		}
+		
+		addClues( builder, puz.getAcrossClues(), ClueDirection.ACROSS );
+		addClues( builder, puz.getDownClues(), ClueDirection.DOWN );
 		
-		return model;
+		return builder.build();
+	}
+	
+	private void addClues( PuzzleModelBuilder builder, Map<Integer, String> clues, ClueDirection direction )
+	{
+		for ( Map.Entry<Integer, String> entry : clues.entrySet() )
+		{
+			builder.addClue( entry.getKey(), direction, entry.getValue() );
+		}
 	}
 
 }
@@ -8,6 +8,7 @@ import java.util.Set;
 
 import com.epeterso2.jabberwordy.model.PuzzleModel;
 import com.epeterso2.jabberwordy.serialization.json.JSONPuzzle;
+import com.epeterso2.jabberwordy.serialization.puz.PUZContext;
 import com.epeterso2.jabberwordy.serialization.puz.PUZPuzzle;
 import com.epeterso2.jabberwordy.serialization.xpf.XPFPuzzle;
 
@@ -20,11 +21,13 @@ public abstract class PuzzleModelFactory {
 	static
 	{
 		puzzleConverters.put( PUZPuzzle.class, new PUZPuzzleToModelConverter() );
+		puzzleConverters.put( PUZContext.class, new PUZContextToModelConverter() );
 		puzzleConverters.put( XPFPuzzle.class, new XPFPuzzleToModelConverter() );
 		puzzleConverters.put( JSONPuzzle.class, new JSONPuzzleToModelConverter() );
 		
 		fileConverters.add( new PUZFileToModelConverter() );
 		fileConverters.add( new XPFFileToModelConverter() );
+		fileConverters.add( new JSONFileToModelConverter() );
 	}
 	
 	public static PuzzleModel buildPuzzleModel( Object puzzle ) throws PuzzleModelConversionException
@@ -1,23 +1,29 @@
 package com.epeterso2.jabberwordy.modelconversion;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 
 import com.epeterso2.jabberwordy.model.PuzzleModel;
-import com.epeterso2.jabberwordy.serialization.xpf.XPFPuzzleCollection;
-import com.epeterso2.jabberwordy.serialization.xpf.XPFPuzzleOutputStream;
 
+/**
+ * Builds a {@link PuzzleModel} from an XPF file containing a single puzzle. The file is read as a stream with an
+ * {@link XPFStreamToModelConverter}.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
 public class XPFFileToModelConverter implements FileToModelConverter {
 
 	@Override
 	public PuzzleModel convert( File file ) throws PuzzleModelConversionException
 	{
-		XPFPuzzleCollection collection;
+		InputStream inputStream = null;
 		
 		try
 		{
-			collection = new XPFPuzzleOutputStream( new FileInputStream( file ) ).toPuzzle();
+			inputStream = new BufferedInputStream( new FileInputStream( file ) );
+			return new XPFStreamToModelConverter().convert( inputStream );
 		}
 		
 		catch ( IOException e )
@@ -25,12 +31,26 @@ public class XPFFileToModelConverter implements FileToModelConverter {
 			throw new PuzzleModelConversionException( e );
 		}
 		
-		if ( collection.size() != 1 )
+		finally
 		{
-			throw new PuzzleModelConversionException( "Cannot convert XPF file with multiple puzzles" );
+			close( inputStream );
+		}
+	}
+	
+	private static void close( InputStream inputStream )
+	{
+		if ( inputStream != null )
+		{
+			try
+			{
+				inputStream.close();
+			}
+			
+			catch ( IOException e )
+			{
+				// Nothing to see ... move along
+			}
 		}
-		
-		return new XPFPuzzleToModelConverter().convert( collection.get( 0 ) );
 	}
 
 }
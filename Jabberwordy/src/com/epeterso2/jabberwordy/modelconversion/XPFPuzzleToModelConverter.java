@@ -1,20 +1,106 @@
 package com.epeterso2.jabberwordy.modelconversion;
 
 import com.epeterso2.jabberwordy.model.PuzzleModel;
+import com.epeterso2.jabberwordy.model.PuzzleModelBuilder;
+import com.epeterso2.jabberwordy.serialization.xpf.XPFCellStyle;
+import com.epeterso2.jabberwordy.serialization.xpf.XPFClue;
 import com.epeterso2.jabberwordy.serialization.xpf.XPFPuzzle;
+import com.epeterso2.jabberwordy.serialization.xpf.XPFSolution;
+import com.epeterso2.jabberwordy.util.ClueDirection;
 
 public class XPFPuzzleToModelConverter implements PuzzleToModelConverter {
 
 	@Override
 	public PuzzleModel convert( Object puzzle ) throws PuzzleModelConversionException
 	{
+		if ( ! ( puzzle instanceof XPFPuzzle ) )
+		{
+			throw new PuzzleModelConversionException( "Not an XPF puzzle" );
+		}
+		
 		XPFPuzzle xpf = (XPFPuzzle) puzzle;
-		PuzzleModel model = new PuzzleModel( xpf.getCols(), xpf.getRows() );
+		PuzzleModelBuilder builder = new PuzzleModelBuilder( xpf.getCols(), xpf.getRows() );
+		
+		builder.setTitle( xpf.getTitle() );
+		builder.setAuthor( xpf.getAuthor() );
+		builder.setEditor( xpf.getEditor() );
+		builder.setCopyright( xpf.getCopyright() );
+		builder.setPublisher( xpf.getPublisher() );
+		builder.setNotes( xpf.getNotepad() );
+		builder.setDate( xpf.getDate() );
+		
+		for ( int row = 1, cell = 0; row <= xpf.getRows(); ++row )
+		{
+			for ( int col = 1; col <= xpf.getCols(); ++col, ++cell )
+			{
+				XPFCellStyle style = xpf.getCellStyles().get( col, row );
+				XPFSolution solution = xpf.getSolutions().get( col, row );
+				char letter = solution == null ? 0 : solution.getLetter();
+				
+				// Grid characters may have been carried into the solution unchanged
+				if ( style != null && ( style.isBlock() || style.isBorderless() ) || letter == '.' || letter == '~' )
+				{
+					builder.setBlock( cell, true );
+					builder.setFlag( cell, PuzzleModel.BORDERLESS, letter == '~' || style != null && style.isBorderless() );
+					continue;
+				}
+				
+				if ( style != null )
+				{
+					builder.setFlag( cell, PuzzleModel.CIRCLED, style.isCircled() );
+					builder.setShade( cell, style.getShade() );
+				}
+				
+				if ( solution != null && solution.getRebus() != null && solution.getRebus().length() > 0 )
+				{
+					builder.setSolution( cell, solution.getRebus() );
+				}
+				
+				else if ( letter != ' ' )
+				{
+					builder.setSolution( cell, letter );
+				}
+				
+				builder.setPlayerState( cell, xpf.getPlayerState().get( col, row ) );
+			}
+		}
 		
-		model.setTitle( xpf.getTitle() );
-		model.setAuthor( xpf.getAuthor() );
+		for ( XPFClue clue : xpf.getClues() )
+		{
+			ClueDirection direction = ClueDirection.fromLabel( clue.getDirection() );
+			int col = clue.getCoordinate() == null ? 0 : clue.getCoordinate().getX();
+			int row = clue.getCoordinate() == null ? 0 : clue.getCoordinate().getY();
+			
+			if ( direction != null && col >= 1 && col <= xpf.getCols() && row >= 1 && row <= xpf.getRows() )
+			{
+				builder.addClueAt( builder.getCellIndex( col, row ), direction, clue.getText() );
+			}
+			
+			else if ( direction != null )
+			{
+				builder.addClue( parseNumber( clue.getNumber() ), direction, clue.getText() );
+			}
+			
+			else
+			{
+				builder.appendClue( clue.getText() );
+			}
+		}
+		
+		return builder.build();
+	}
+	
+	private static int parseNumber( String number )
+	{
+		try
+		{
+			return number == null ? 0 : Integer.parseInt( number.trim() );
+		}
 		
-		return model;
+		catch ( NumberFormatException e )
+		{
+			return 0;
+		}
 	}
 
 }
@@ -0,0 +1,403 @@
+package com.epeterso2.jabberwordy.modelconversion;
+
+import java.io.InputStream;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.epeterso2.jabberwordy.model.PuzzleModel;
+import com.epeterso2.jabberwordy.model.PuzzleModelBuilder;
+import com.epeterso2.jabberwordy.util.ClueDirection;
+import com.epeterso2.jabberwordy.util.Coordinate;
+
+/**
+ * Builds a complete {@link PuzzleModel} from an XPF document by reading it as a stream of XML events, without
+ * first building a document tree or an {@link com.epeterso2.jabberwordy.serialization.xpf.XPFPuzzle}.
+ * <p>
+ * A {@link PuzzleModelBuilder} is created as soon as the <tt>Size</tt> element has been read, and every later element
+ * is applied to it as it is encountered, so the <tt>Size</tt> element must precede the <tt>Grid</tt>, <tt>Circles</tt>,
+ * <tt>RebusEntries</tt> and <tt>Shades</tt> elements. The document must contain exactly one puzzle.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ * @see <a href="http://www.xwordinfo.com/XPF/">XWordInfo XPF Universal Crossword Puzzle Format</a>
+ */
+public class XPFStreamToModelConverter {
+	
+	private static XMLInputFactory factory = XMLInputFactory.newInstance();
+	
+	static
+	{
+		factory.setProperty( XMLInputFactory.SUPPORT_DTD, false );
+		factory.setProperty( XMLInputFactory.IS_COALESCING, true );
+	}
+	
+	/**
+	 * Converts the XPF document read from an input stream. The input stream is not closed.
+	 * @param inputStream The input stream containing the XPF document
+	 * @return The puzzle model
+	 * @throws PuzzleModelConversionException The document could not be read or is not a valid single-puzzle XPF document
+	 */
+	public PuzzleModel convert( InputStream inputStream ) throws PuzzleModelConversionException
+	{
+		XMLStreamReader reader = null;
+		
+		try
+		{
+			synchronized ( factory )
+			{
+				reader = factory.createXMLStreamReader( inputStream );
+			}
+			
+			return readDocument( reader );
+		}
+		
+		catch ( XMLStreamException e )
+		{
+			throw new PuzzleModelConversionException( e );
+		}
+		
+		catch ( RuntimeException e )
+		{
+			throw new PuzzleModelConversionException( e );
+		}
+		
+		finally
+		{
+			close( reader );
+		}
+	}
+	
+	private PuzzleModel readDocument( XMLStreamReader reader ) throws XMLStreamException, PuzzleModelConversionException
+	{
+		reader.nextTag();
+		confirm( reader.getLocalName().equals( "Puzzles" ), "No 'Puzzles' element found at the root" );
+		
+		PuzzleModel model = null;
+		
+		while ( reader.nextTag() == XMLStreamConstants.START_ELEMENT )
+		{
+			if ( reader.getLocalName().equals( "Puzzle" ) )
+			{
+				confirm( model == null, "Cannot convert XPF file with multiple puzzles" );
+				model = readPuzzle( reader );
+			}
+			
+			else
+			{
+				skipElement( reader );
+			}
+		}
+		
+		confirm( model != null, "No 'Puzzle' element found" );
+		
+		return model;
+	}
+	
+	private PuzzleModel readPuzzle( XMLStreamReader reader ) throws XMLStreamException, PuzzleModelConversionException
+	{
+		PuzzleModelBuilder builder = null;
+		String title = null, author = null, editor = null, copyright = null, publisher = null, notes = null, date = null;
+		int gridRows = 0;
+		int[] clueCounts = new int[ 2 ];
+		
+		while ( reader.nextTag() == XMLStreamConstants.START_ELEMENT )
+		{
+			String name = reader.getLocalName();
+			
+			if ( name.equals( "Title" ) )
+			{
+				title = reader.getElementText();
+			}
+			
+			else if ( name.equals( "Author" ) )
+			{
+				author = reader.getElementText();
+			}
+			
+			else if ( name.equals( "Editor" ) )
+			{
+				editor = reader.getElementText();
+			}
+			
+			else if ( name.equals( "Copyright" ) )
+			{
+				copyright = reader.getElementText();
+			}
+			
+			else if ( name.equals( "Publisher" ) )
+			{
+				publisher = reader.getElementText();
+			}
+			
+			else if ( name.equals( "Notepad" ) )
+			{
+				notes = reader.getElementText();
+			}
+			
+			else if ( name.equals( "Date" ) )
+			{
+				date = reader.getElementText();
+			}
+			
+			else if ( name.equals( "Size" ) )
+			{
+				confirm( builder == null, "Puzzle must contain exactly one 'Size' element" );
+				builder = readSize( reader );
+			}
+			
+			else if ( name.equals( "Grid" ) )
+			{
+				confirm( builder != null, "The 'Size' element must precede the 'Grid' element" );
+				gridRows = readGrid( reader, builder );
+			}
+			
+			else if ( name.equals( "Circles" ) || name.equals( "RebusEntries" ) || name.equals( "Shades" ) )
+			{
+				confirm( builder != null, "The 'Size' element must precede the '" + name + "' element" );
+				readCellList( reader, builder, name );
+			}
+			
+			else if ( name.equals( "Clues" ) )
+			{
+				confirm( builder != null, "The 'Size' element must precede the 'Clues' element" );
+				readClues( reader, builder, clueCounts );
+			}
+			
+			else
+			{
+				skipElement( reader );
+			}
+		}
+		
+		confirm( builder != null, "Puzzle must contain exactly one 'Size' element" );
+		confirm( gridRows == builder.getHeight(), "Number of rows in 'Grid' element is not equal to the number of rows in 'Size' element" );
+		confirm( clueCounts[ 0 ] == 0 || clueCounts[ 1 ] == 0, "Some clues are located and some are not" );
+		
+		builder.setTitle( title == null ? "" : title );
+		builder.setAuthor( author == null ? "" : author );
+		builder.setEditor( editor == null ? "" : editor );
+		builder.setCopyright( copyright == null ? "" : copyright );
+		builder.setPublisher( publisher == null ? "" : publisher );
+		builder.setNotes( notes == null ? "" : notes );
+		
+		if ( date != null )
+		{
+			try
+			{
+				builder.setDate( new SimpleDateFormat( "M/d/yyyy" ).parse( date ) );
+			}
+			
+			catch ( ParseException e )
+			{
+				throw new PuzzleModelConversionException( e );
+			}
+		}
+		
+		return builder.build();
+	}
+
+	private PuzzleModelBuilder readSize( XMLStreamReader reader ) throws XMLStreamException, PuzzleModelConversionException
+	{
+		int rows = -1;
+		int cols = -1;
+		
+		while ( reader.nextTag() == XMLStreamConstants.START_ELEMENT )
+		{
+			if ( reader.getLocalName().equals( "Rows" ) )
+			{
+				rows = Integer.parseInt( reader.getElementText().trim() );
+			}
+			
+			else if ( reader.getLocalName().equals( "Cols" ) )
+			{
+				cols = Integer.parseInt( reader.getElementText().trim() );
+			}
+			
+			else
+			{
+				skipElement( reader );
+			}
+		}
+		
+		confirm( rows > 0, "Puzzle 'Size' element must contain exactly one 'Rows' element" );
+		confirm( cols > 0, "Puzzle 'Size' element must contain exactly one 'Cols' element" );
+		
+		return new PuzzleModelBuilder( cols, rows );
+	}
+	
+	private int readGrid( XMLStreamReader reader, PuzzleModelBuilder builder ) throws XMLStreamException, PuzzleModelConversionException
+	{
+		int row = 0;
+		
+		while ( reader.nextTag() == XMLStreamConstants.START_ELEMENT )
+		{
+			if ( ! reader.getLocalName().equals( "Row" ) )
+			{
+				skipElement( reader );
+				continue;
+			}
+			
+			String text = reader.getElementText();
+			confirm( ++row <= builder.getHeight() && text.length() == builder.getWidth(), "Grid row " + row + " does not match the 'Size' element" );
+			
+			for ( int col = 1, cell = builder.getCellIndex( 1, row ); col <= text.length(); ++col, ++cell )
+			{
+				char c = text.charAt( col - 1 );
+				
+				if ( c == '.' || c == '~' )
+				{
+					builder.setBlock( cell, true );
+					builder.setFlag( cell, PuzzleModel.BORDERLESS, c == '~' );
+				}
+				
+				else if ( c != ' ' )
+				{
+					builder.setSolution( cell, c );
+				}
+			}
+		}
+		
+		return row;
+	}
+	
+	private void readCellList( XMLStreamReader reader, PuzzleModelBuilder builder, String listName ) throws XMLStreamException, PuzzleModelConversionException
+	{
+		while ( reader.nextTag() == XMLStreamConstants.START_ELEMENT )
+		{
+			String name = reader.getLocalName();
+			Coordinate coord = readCoordinate( reader );
+			
+			confirm( coord != null && coord.getX() >= 1 && coord.getX() <= builder.getWidth() && coord.getY() >= 1 && coord.getY() <= builder.getHeight(),
+				"Invalid cell location in '" + listName + "' element" );
+			
+			int cell = builder.getCellIndex( coord.getX(), coord.getY() );
+			
+			if ( name.equals( "Circle" ) )
+			{
+				builder.setFlag( cell, PuzzleModel.CIRCLED, true );
+				skipElement( reader );
+			}
+			
+			else if ( name.equals( "Shade" ) )
+			{
+				builder.setShade( cell, reader.getElementText().trim() );
+			}
+			
+			else if ( name.equals( "Rebus" ) )
+			{
+				builder.setSolution( cell, reader.getElementText() );
+			}
+			
+			else
+			{
+				skipElement( reader );
+			}
+		}
+	}
+	
+	/**
+	 * Adds the clues to the builder. Clues with a location are matched to the slot at that location, clues with only
+	 * a number and direction to the slot with that number, and clues with neither to the slots in number order.
+	 * The counts of located and unlocated clues are accumulated into the given array.
+	 */
+	private void readClues( XMLStreamReader reader, PuzzleModelBuilder builder, int[] clueCounts ) throws XMLStreamException
+	{
+		while ( reader.nextTag() == XMLStreamConstants.START_ELEMENT )
+		{
+			if ( ! reader.getLocalName().equals( "Clue" ) )
+			{
+				skipElement( reader );
+				continue;
+			}
+			
+			Coordinate coord = readCoordinate( reader );
+			ClueDirection direction = ClueDirection.fromLabel( reader.getAttributeValue( null, "Dir" ) );
+			int number = parseNumber( reader.getAttributeValue( null, "Num" ) );
+			String text = reader.getElementText();
+			
+			if ( coord != null && direction != null && coord.getX() >= 1 && coord.getX() <= builder.getWidth() && coord.getY() >= 1 && coord.getY() <= builder.getHeight() )
+			{
+				builder.addClueAt( builder.getCellIndex( coord.getX(), coord.getY() ), direction, text );
+				++clueCounts[ 0 ];
+			}
+			
+			else if ( number > 0 && direction != null )
+			{
+				builder.addClue( number, direction, text );
+			}
+			
+			else
+			{
+				builder.appendClue( text );
+				++clueCounts[ 1 ];
+			}
+		}
+	}
+	
+	private static Coordinate readCoordinate( XMLStreamReader reader )
+	{
+		String col = reader.getAttributeValue( null, "Col" );
+		String row = reader.getAttributeValue( null, "Row" );
+		
+		return col != null && row != null ? new Coordinate( Integer.parseInt( col.trim() ), Integer.parseInt( row.trim() ) ) : null;
+	}
+	
+	private static int parseNumber( String number )
+	{
+		try
+		{
+			return number == null ? 0 : Integer.parseInt( number.trim() );
+		}
+		
+		catch ( NumberFormatException e )
+		{
+			return 0;
+		}
+	}
+	
+	private static void skipElement( XMLStreamReader reader ) throws XMLStreamException
+	{
+		for ( int depth = 1; depth > 0; )
+		{
+			int event = reader.next();
+			
+			if ( event == XMLStreamConstants.START_ELEMENT )
+			{
+				++depth;
+			}
+			
+			else if ( event == XMLStreamConstants.END_ELEMENT )
+			{
+				--depth;
+			}
+		}
+	}
+	
+	private static void close( XMLStreamReader reader )
+	{
+		if ( reader != null )
+		{
+			try
+			{
+				reader.close();
+			}
+			
+			catch ( XMLStreamException e )
+			{
+				// Nothing to see ... move along
+			}
+		}
+	}
+
+	private static void confirm( boolean assertion, String message ) throws PuzzleModelConversionException
+	{
+		if ( ! assertion )
+		{
+			throw new PuzzleModelConversionException( message );
+		}
+	}
+
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) 2010 Eric Peterson
+ * For contact information, visit http://www.epeterso2.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.epeterso2.jabberwordy.search;
+
+import com.epeterso2.jabberwordy.util.ClueDirection;
+
+/**
+ * A clue found by a {@link ClueIndex}: the puzzle it belongs to, its number and direction, and its text.
+ * <p>
+ * Instances of this class are immutable.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+public class ClueHit {
+	
+	private String puzzle = null;
+	
+	private int number = 0;
+	
+	private ClueDirection direction = null;
+	
+	private String text = null;
+	
+	/**
+	 * Creates a hit
+	 * @param puzzle The name under which the puzzle was indexed
+	 * @param number The clue number
+	 * @param direction The clue direction
+	 * @param text The clue text
+	 */
+	public ClueHit( String puzzle, int number, ClueDirection direction, String text )
+	{
+		this.puzzle = puzzle;
+		this.number = number;
+		this.direction = direction;
+		this.text = text;
+	}
+	
+	public String getPuzzle() {
+		return puzzle;
+	}
+	
+	public int getNumber() {
+		return number;
+	}
+	
+	public ClueDirection getDirection() {
+		return direction;
+	}
+	
+	public String getText() {
+		return text;
+	}
+	
+	public String toString()
+	{
+		return new StringBuilder().append( puzzle ).append( ' ' ).append( number ).append( ' ' ).append( direction.getLabel() )
+			.append( ": " ).append( text ).toString();
+	}
+	
+}
@@ -0,0 +1,491 @@
+/**
+ * Copyright (c) 2010 Eric Peterson
+ * For contact information, visit http://www.epeterso2.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.epeterso2.jabberwordy.search;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A full-text index of the clues of a puzzle archive, kept in a directory of memory-mapped segment files.
+ * <p>
+ * Puzzles are added in batches: each {@link #add(ClueIndexBuilder)} writes the clues of a {@link ClueIndexBuilder} as
+ * a new segment, so the files already written are never rewritten. A manifest names the live segments; it is synced
+ * before it replaces the previous one, so an interrupted addition leaves the index as it was. {@link #compact()} merges the segments into one
+ * when there are many.
+ * <p>
+ * {@link #findWords(String)} returns the clues containing every word of a query, from the postings of its terms.
+ * {@link #findText(String)} returns the clues containing a phrase or part of a word, such as "opera" in "operas", by
+ * intersecting the postings of the n-grams of the query and checking the text of each remaining clue. Hits are
+ * returned in the order the clues were added.
+ * <p>
+ * Queries may be made by any number of threads at once, and while segments are added or compacted.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+public class ClueIndex implements Closeable {
+	
+	/**
+	 * The name of the manifest file in the index directory
+	 */
+	public static final String MANIFEST = "segments";
+	
+	private static final String SEGMENT_PREFIX = "clues-";
+	
+	private static final String SEGMENT_SUFFIX = ".cix";
+	
+	private File directory = null;
+	
+	private volatile ClueIndexSegment[] segments = new ClueIndexSegment[ 0 ];
+	
+	private int nextSegment = 1;
+	
+	/**
+	 * Opens the index in a directory, creating the directory if necessary. A directory without a manifest holds an
+	 * empty index. Segment files numbered above every segment named by the manifest, left by an interrupted addition or
+	 * compaction, are deleted; no other file is.
+	 * @param directory The directory
+	 * @throws IOException If the directory cannot be created or a segment cannot be read
+	 */
+	public ClueIndex( File directory ) throws IOException
+	{
+		if ( ! directory.isDirectory() && ! directory.mkdirs() )
+		{
+			throw new IOException( "Could not create clue index directory " + directory );
+		}
+		
+		this.directory = directory;
+		List<String> names = readManifest();
+		int listed = 0;
+		
+		for ( String name : names )
+		{
+			listed = Math.max( listed, getSequence( name ) );
+		}
+		
+		nextSegment = listed + 1;
+		List<ClueIndexSegment> opened = new ArrayList<ClueIndexSegment>();
+		
+		try
+		{
+			for ( String name : names )
+			{
+				opened.add( new ClueIndexSegment( new File( directory, name ) ) );
+			}
+		}
+		
+		catch ( IOException e )
+		{
+			for ( ClueIndexSegment segment : opened )
+			{
+				segment.close();
+			}
+			
+			throw e;
+		}
+		
+		segments = opened.toArray( new ClueIndexSegment[ opened.size() ] );
+		
+		for ( String name : directory.list() )
+		{
+			int sequence = getSequence( name );
+			
+			// Never reuse the number of a file that is still present
+			if ( sequence > listed && ! new File( directory, name ).delete() )
+			{
+				nextSegment = Math.max( nextSegment, sequence + 1 );
+			}
+		}
+	}
+	
+	public File getDirectory()
+	{
+		return directory;
+	}
+	
+	/**
+	 * Returns the number of segment files
+	 * @return The number of segments
+	 */
+	public int getSegmentCount()
+	{
+		return segments.length;
+	}
+	
+	/**
+	 * Returns the number of clues held
+	 * @return The number of clues in all segments
+	 */
+	public int getClueCount()
+	{
+		int count = 0;
+		
+		for ( ClueIndexSegment segment : segments )
+		{
+			count += segment.getClueCount();
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Adds the clues collected by a builder as a new segment
+	 * @param builder The builder; it may be reused or discarded afterward
+	 * @throws IOException If the segment or manifest could not be written
+	 */
+	public synchronized void add( ClueIndexBuilder builder ) throws IOException
+	{
+		if ( builder.size() > 0 )
+		{
+			List<ClueIndexSegment> next = new ArrayList<ClueIndexSegment>( Arrays.asList( segments ) );
+			next.add( writeSegment( builder ) );
+			install( next );
+		}
+	}
+	
+	/**
+	 * Merges all segments into one. Queries made meanwhile see the old segments.
+	 * @throws IOException If the merged segment or manifest could not be written
+	 */
+	public synchronized void compact() throws IOException
+	{
+		ClueIndexSegment[] old = segments;
+		
+		if ( old.length < 2 )
+		{
+			return;
+		}
+		
+		ClueIndexBuilder builder = new ClueIndexBuilder();
+		
+		for ( ClueIndexSegment segment : old )
+		{
+			for ( int clue = 0; clue < segment.getClueCount(); ++clue )
+			{
+				ClueHit hit = segment.getHit( clue );
+				builder.addClue( hit.getPuzzle(), hit.getNumber(), hit.getDirection(), hit.getText() );
+			}
+		}
+		
+		install( Collections.singletonList( writeSegment( builder ) ) );
+		
+		for ( ClueIndexSegment segment : old )
+		{
+			segment.close();
+			
+			// A file still mapped may not be deletable on some platforms; it is then left unused in the directory
+			segment.getFile().delete();
+		}
+	}
+	
+	/**
+	 * Finds the clues containing every word of a query. Case and punctuation are ignored.
+	 * @param words The words, such as "verdi opera"
+	 * @return The matching clues
+	 */
+	public List<ClueHit> findWords( String words )
+	{
+		List<String> terms = ClueIndexBuilder.getTerms( ClueIndexBuilder.normalize( words ) );
+		List<ClueHit> hits = new ArrayList<ClueHit>();
+		
+		for ( ClueIndexSegment segment : segments )
+		{
+			int[] ids = terms.isEmpty() ? null : segment.getTermPostings( terms.get( 0 ) );
+			
+			for ( int i = 1; ids != null && i < terms.size(); ++i )
+			{
+				ids = intersect( ids, segment.getTermPostings( terms.get( i ) ) );
+			}
+			
+			for ( int i = 0; ids != null && i < ids.length; ++i )
+			{
+				hits.add( segment.getHit( ids[ i ] ) );
+			}
+		}
+		
+		return hits;
+	}
+	
+	/**
+	 * Finds the clues whose text contains a phrase or part of a word. Case is ignored, and any run of punctuation and
+	 * spaces matches any other. A query shorter than {@link ClueIndexBuilder#GRAM_LENGTH} characters is checked against
+	 * every clue.
+	 * @param text The text, such as "opera"
+	 * @return The matching clues
+	 */
+	public List<ClueHit> findText( String text )
+	{
+		String query = ClueIndexBuilder.normalize( text );
+		List<String> grams = ClueIndexBuilder.getGrams( query );
+		List<ClueHit> hits = new ArrayList<ClueHit>();
+		
+		if ( query.length() == 0 )
+		{
+			return hits;
+		}
+		
+		for ( ClueIndexSegment segment : segments )
+		{
+			int[] ids = null;
+			
+			if ( grams.isEmpty() )
+			{
+				ids = new int[ segment.getClueCount() ];
+				
+				for ( int i = 0; i < ids.length; ++i )
+				{
+					ids[ i ] = i;
+				}
+			}
+			
+			else
+			{
+				ids = intersectAll( segment, grams );
+			}
+			
+			for ( int i = 0; ids != null && i < ids.length; ++i )
+			{
+				// The n-grams may occur apart, so the text itself decides
+				if ( ClueIndexBuilder.normalize( segment.getText( ids[ i ] ) ).contains( query ) )
+				{
+					hits.add( segment.getHit( ids[ i ] ) );
+				}
+			}
+		}
+		
+		return hits;
+	}
+	
+	/**
+	 * Intersects the postings of several n-grams, shortest first
+	 */
+	private static int[] intersectAll( ClueIndexSegment segment, List<String> grams )
+	{
+		List<int[]> lists = new ArrayList<int[]>();
+		
+		for ( String gram : grams )
+		{
+			int[] ids = segment.getGramPostings( gram );
+			
+			if ( ids == null )
+			{
+				return null;
+			}
+			
+			lists.add( ids );
+		}
+		
+		Collections.sort( lists, new Comparator<int[]>()
+		{
+			@Override
+			public int compare( int[] first, int[] second )
+			{
+				return first.length - second.length;
+			}
+		} );
+		
+		int[] ids = lists.get( 0 );
+		
+		for ( int i = 1; i < lists.size() && ids.length > 0; ++i )
+		{
+			ids = intersect( ids, lists.get( i ) );
+		}
+		
+		return ids;
+	}
+	
+	/**
+	 * Intersects two ascending lists
+	 * @return The common values, or <tt>null</tt> if either list is <tt>null</tt>
+	 */
+	private static int[] intersect( int[] first, int[] second )
+	{
+		if ( first == null || second == null )
+		{
+			return null;
+		}
+		
+		int[] common = new int[ Math.min( first.length, second.length ) ];
+		int count = 0;
+		
+		for ( int i = 0, j = 0; i < first.length && j < second.length; )
+		{
+			if ( first[ i ] < second[ j ] )
+			{
+				++i;
+			}
+			
+			else if ( first[ i ] > second[ j ] )
+			{
+				++j;
+			}
+			
+			else
+			{
+				common[ count++ ] = first[ i ];
+				++i;
+				++j;
+			}
+		}
+		
+		return Arrays.copyOf( common, count );
+	}
+	
+	/**
+	 * Writes a builder as the next segment file and opens it
+	 */
+	private ClueIndexSegment writeSegment( ClueIndexBuilder builder ) throws IOException
+	{
+		File file = new File( directory, String.format( "%s%06d%s", SEGMENT_PREFIX, nextSegment++, SEGMENT_SUFFIX ) );
+		builder.write( file );
+		return new ClueIndexSegment( file );
+	}
+	
+	/**
+	 * Replaces the manifest and then the live segments
+	 */
+	private void install( List<ClueIndexSegment> next ) throws IOException
+	{
+		File manifest = new File( directory, MANIFEST );
+		File temp = new File( directory, MANIFEST + ".tmp" );
+		FileOutputStream stream = new FileOutputStream( temp );
+		
+		try
+		{
+			Writer writer = new OutputStreamWriter( stream, "UTF-8" );
+			
+			for ( ClueIndexSegment segment : next )
+			{
+				writer.write( segment.getFile().getName() );
+				writer.write( '\n' );
+			}
+			
+			writer.flush();
+			stream.getFD().sync();
+		}
+		
+		finally
+		{
+			stream.close();
+		}
+		
+		// Where a rename cannot replace a file, the manifest is briefly missing; the synced copy is then read instead
+		if ( ! temp.renameTo( manifest ) && ! ( manifest.delete() && temp.renameTo( manifest ) ) )
+		{
+			throw new IOException( "Could not replace manifest " + manifest );
+		}
+		
+		segments = next.toArray( new ClueIndexSegment[ next.size() ] );
+	}
+	
+	private List<String> readManifest() throws IOException
+	{
+		List<String> names = new ArrayList<String>();
+		File manifest = new File( directory, MANIFEST );
+		boolean replacement = ! manifest.exists();
+		
+		if ( replacement )
+		{
+			// An interrupted replacement deletes the manifest only after its replacement is synced. Without a manifest,
+			// the replacement may instead be the first one, cut short while being written.
+			manifest = new File( directory, MANIFEST + ".tmp" );
+		}
+		
+		if ( manifest.exists() )
+		{
+			BufferedReader reader = new BufferedReader( new InputStreamReader( new FileInputStream( manifest ), "UTF-8" ) );
+			
+			try
+			{
+				for ( String line = reader.readLine(); line != null; line = reader.readLine() )
+				{
+					if ( getSequence( line ) <= 0 && replacement )
+					{
+						break;
+					}
+					
+					else if ( getSequence( line ) <= 0 )
+					{
+						throw new IOException( "Corrupt clue index manifest: " + manifest );
+					}
+					
+					names.add( line );
+				}
+			}
+			
+			finally
+			{
+				reader.close();
+			}
+		}
+		
+		return names;
+	}
+	
+	/**
+	 * Returns the sequence number in the name of a segment file, or 0 if the name is not that of a segment
+	 */
+	private static int getSequence( String name )
+	{
+		if ( name.startsWith( SEGMENT_PREFIX ) && name.endsWith( SEGMENT_SUFFIX ) )
+		{
+			try
+			{
+				return Integer.parseInt( name.substring( SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length() ) );
+			}
+			
+			catch ( NumberFormatException e )
+			{
+				return 0;
+			}
+		}
+		
+		return 0;
+	}
+	
+	/**
+	 * Closes the segment files. Hits already returned remain valid.
+	 */
+	@Override
+	public synchronized void close() throws IOException
+	{
+		for ( ClueIndexSegment segment : segments )
+		{
+			segment.close();
+		}
+		
+		segments = new ClueIndexSegment[ 0 ];
+	}
+	
+}
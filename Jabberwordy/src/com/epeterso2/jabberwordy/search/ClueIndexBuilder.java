@@ -0,0 +1,542 @@
+/**
+ * Copyright (c) 2010 Eric Peterson
+ * For contact information, visit http://www.epeterso2.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.epeterso2.jabberwordy.search;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.epeterso2.jabberwordy.model.PuzzleModel;
+import com.epeterso2.jabberwordy.serialization.puz.PUZPuzzle;
+import com.epeterso2.jabberwordy.serialization.xpf.XPFClue;
+import com.epeterso2.jabberwordy.serialization.xpf.XPFPuzzle;
+import com.epeterso2.jabberwordy.util.ClueDirection;
+import com.epeterso2.jabberwordy.util.VarIntUtil;
+
+/**
+ * Collects the clues of one or more puzzles and writes them as one segment of a {@link ClueIndex}.
+ * <p>
+ * Clue text is normalized by lowercasing it and replacing every run of characters other than letters and digits with
+ * one space. The words of the normalized text are its terms, and each run of {@link #GRAM_LENGTH} characters is one of
+ * its n-grams. The segment holds the puzzle names and clue texts, a sorted dictionary of the terms and one of the
+ * n-grams, and for each entry the ascending numbers of the clues that contain it, written as differences from the
+ * previous number in the variable-length format of {@link VarIntUtil}.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+public class ClueIndexBuilder {
+	
+	/**
+	 * The number of characters in an n-gram
+	 */
+	public static final int GRAM_LENGTH = 3;
+	
+	private static final Comparator<Entry> KEY_ORDER = new Comparator<Entry>()
+	{
+		@Override
+		public int compare( Entry first, Entry second )
+		{
+			return compareKeys( first.key, second.key );
+		}
+	};
+	
+	private Map<String, Integer> puzzles = new LinkedHashMap<String, Integer>();
+	
+	private List<Clue> clues = new ArrayList<Clue>();
+	
+	/**
+	 * Adds a clue. The clues of a puzzle need not be added together.
+	 * @param puzzle The name of the puzzle, such as its file name; returned in each {@link ClueHit}
+	 * @param number The clue number
+	 * @param direction The clue direction
+	 * @param text The clue text; a clue without text is ignored
+	 * @return This builder
+	 */
+	public ClueIndexBuilder addClue( String puzzle, int number, ClueDirection direction, String text )
+	{
+		if ( puzzle == null || direction == null )
+		{
+			throw new IllegalArgumentException( "A clue needs a puzzle and a direction" );
+		}
+		
+		if ( text != null && text.length() > 0 )
+		{
+			Integer id = puzzles.get( puzzle );
+			
+			if ( id == null )
+			{
+				id = puzzles.size();
+				puzzles.put( puzzle, id );
+			}
+			
+			clues.add( new Clue( id, number, direction, text ) );
+		}
+		
+		return this;
+	}
+	
+	/**
+	 * Adds the clues of a puzzle model
+	 * @param puzzle The name of the puzzle
+	 * @param model The model
+	 * @return This builder
+	 */
+	public ClueIndexBuilder add( String puzzle, PuzzleModel model )
+	{
+		for ( int slot = 0; slot < model.getSlotTable().getSlotCount(); ++slot )
+		{
+			addClue( puzzle, model.getSlotTable().getNumber( slot ), model.getSlotTable().getDirection( slot ), model.getClueText( slot ) );
+		}
+		
+		return this;
+	}
+	
+	/**
+	 * Adds the clues of a PUZ puzzle
+	 * @param puzzle The name of the puzzle
+	 * @param puz The puzzle
+	 * @return This builder
+	 */
+	public ClueIndexBuilder add( String puzzle, PUZPuzzle puz )
+	{
+		addAll( puzzle, ClueDirection.ACROSS, puz.getAcrossClues() );
+		addAll( puzzle, ClueDirection.DOWN, puz.getDownClues() );
+		return this;
+	}
+	
+	private void addAll( String puzzle, ClueDirection direction, Map<Integer, String> texts )
+	{
+		if ( texts != null )
+		{
+			for ( Map.Entry<Integer, String> entry : texts.entrySet() )
+			{
+				addClue( puzzle, entry.getKey(), direction, entry.getValue() );
+			}
+		}
+	}
+	
+	/**
+	 * Adds the clues of an XPF puzzle. Clues without a recognized direction are ignored, and clues without a number are
+	 * added with number 0.
+	 * @param puzzle The name of the puzzle
+	 * @param xpf The puzzle
+	 * @return This builder
+	 */
+	public ClueIndexBuilder add( String puzzle, XPFPuzzle xpf )
+	{
+		for ( XPFClue clue : xpf.getClues() )
+		{
+			ClueDirection direction = ClueDirection.fromLabel( clue.getDirection() );
+			
+			if ( direction != null )
+			{
+				addClue( puzzle, parseNumber( clue.getNumber() ), direction, clue.getText() );
+			}
+		}
+		
+		return this;
+	}
+	
+	private static int parseNumber( String number )
+	{
+		try
+		{
+			return number == null ? 0 : Integer.parseInt( number.trim() );
+		}
+		
+		catch ( NumberFormatException e )
+		{
+			return 0;
+		}
+	}
+	
+	/**
+	 * Returns the number of clues added
+	 * @return The number of clues
+	 */
+	public int size()
+	{
+		return clues.size();
+	}
+	
+	/**
+	 * Normalizes clue text or a query: lowercases it and replaces each run of characters other than letters and digits
+	 * with one space, dropping any at the ends
+	 * @param text The text
+	 * @return The normalized text
+	 */
+	public static String normalize( String text )
+	{
+		String lower = text.toLowerCase( Locale.ENGLISH );
+		StringBuilder builder = new StringBuilder( lower.length() );
+		boolean gap = false;
+		
+		for ( int i = 0; i < lower.length(); ++i )
+		{
+			char c = lower.charAt( i );
+			
+			if ( Character.isLetterOrDigit( c ) )
+			{
+				if ( gap && builder.length() > 0 )
+				{
+					builder.append( ' ' );
+				}
+				
+				builder.append( c );
+				gap = false;
+			}
+			
+			else
+			{
+				gap = true;
+			}
+		}
+		
+		return builder.toString();
+	}
+	
+	/**
+	 * Returns the distinct terms of normalized text
+	 */
+	static List<String> getTerms( String normalized )
+	{
+		List<String> terms = new ArrayList<String>();
+		
+		if ( normalized.length() > 0 )
+		{
+			for ( String term : normalized.split( " " ) )
+			{
+				if ( ! terms.contains( term ) )
+				{
+					terms.add( term );
+				}
+			}
+		}
+		
+		return terms;
+	}
+	
+	/**
+	 * Returns the distinct n-grams of normalized text
+	 */
+	static List<String> getGrams( String normalized )
+	{
+		List<String> grams = new ArrayList<String>();
+		
+		for ( int i = 0; i + GRAM_LENGTH <= normalized.length(); ++i )
+		{
+			String gram = normalized.substring( i, i + GRAM_LENGTH );
+			
+			if ( ! grams.contains( gram ) )
+			{
+				grams.add( gram );
+			}
+		}
+		
+		return grams;
+	}
+	
+	/**
+	 * Compares dictionary keys as unsigned bytes, the order in which they are written
+	 */
+	static int compareKeys( byte[] first, byte[] second )
+	{
+		for ( int i = 0; i < first.length && i < second.length; ++i )
+		{
+			if ( first[ i ] != second[ i ] )
+			{
+				return ( first[ i ] & 0xFF ) - ( second[ i ] & 0xFF );
+			}
+		}
+		
+		return first.length - second.length;
+	}
+	
+	static byte[] encode( String text )
+	{
+		try
+		{
+			return text.getBytes( "UTF-8" );
+		}
+		
+		catch ( UnsupportedEncodingException e )
+		{
+			throw new IllegalStateException( e );
+		}
+	}
+	
+	/**
+	 * Writes the clues as a segment file
+	 * @param file The file
+	 * @throws IOException The file could not be written
+	 */
+	public void write( File file ) throws IOException
+	{
+		FileOutputStream stream = new FileOutputStream( file );
+		
+		try
+		{
+			write( stream );
+			stream.getFD().sync();
+		}
+		
+		finally
+		{
+			stream.close();
+		}
+	}
+	
+	/**
+	 * Writes the clues as a segment
+	 * @param stream The output stream, which is not closed
+	 * @throws IOException The segment could not be written
+	 */
+	public void write( OutputStream stream ) throws IOException
+	{
+		// Number the clues in order of puzzle, keeping the order in which the clues of each puzzle were added
+		List<Clue> ordered = new ArrayList<Clue>( clues );
+		
+		Collections.sort( ordered, new Comparator<Clue>()
+		{
+			@Override
+			public int compare( Clue first, Clue second )
+			{
+				return first.puzzle - second.puzzle;
+			}
+		} );
+		
+		Map<String, Entry> terms = new HashMap<String, Entry>();
+		Map<String, Entry> grams = new HashMap<String, Entry>();
+		
+		for ( int id = 0; id < ordered.size(); ++id )
+		{
+			String normalized = normalize( ordered.get( id ).text );
+			post( terms, getTerms( normalized ), id );
+			post( grams, getGrams( normalized ), id );
+		}
+		
+		List<Entry> termEntries = sort( terms );
+		List<Entry> gramEntries = sort( grams );
+		
+		ByteArrayOutputStream strings = new ByteArrayOutputStream();
+		ByteArrayOutputStream postings = new ByteArrayOutputStream();
+		int[] puzzleNames = new int[ puzzles.size() * 2 ];
+		int puzzle = 0;
+		
+		for ( String name : puzzles.keySet() )
+		{
+			byte[] bytes = encode( name );
+			puzzleNames[ puzzle * 2 ] = strings.size();
+			puzzleNames[ puzzle * 2 + 1 ] = bytes.length;
+			strings.write( bytes );
+			++puzzle;
+		}
+		
+		DataOutputStream out = new DataOutputStream( new BufferedOutputStream( stream ) );
+		int clueTableLength = ordered.size() * ClueIndexSegment.CLUE_ENTRY_LENGTH;
+		byte[][] texts = new byte[ ordered.size() ][];
+		
+		for ( int id = 0; id < ordered.size(); ++id )
+		{
+			texts[ id ] = encode( ordered.get( id ).text );
+		}
+		
+		for ( Entry entry : termEntries )
+		{
+			entry.encode( strings, postings );
+		}
+		
+		for ( Entry entry : gramEntries )
+		{
+			entry.encode( strings, postings );
+		}
+		
+		int textBase = strings.size();
+		int textLength = 0;
+		
+		for ( byte[] text : texts )
+		{
+			textLength += text.length;
+		}
+		
+		long total = ClueIndexSegment.HEADER_LENGTH + puzzles.size() * ClueIndexSegment.PUZZLE_ENTRY_LENGTH + (long) clueTableLength
+			+ ( termEntries.size() + gramEntries.size() ) * (long) ClueIndexSegment.KEY_ENTRY_LENGTH + textBase + textLength + postings.size();
+		
+		if ( total > Integer.MAX_VALUE )
+		{
+			throw new IOException( "Segment too large: " + total + " bytes" );
+		}
+		
+		out.writeInt( ClueIndexSegment.MAGIC );
+		out.writeInt( ClueIndexSegment.VERSION );
+		out.writeInt( puzzles.size() );
+		out.writeInt( ordered.size() );
+		out.writeInt( termEntries.size() );
+		out.writeInt( gramEntries.size() );
+		out.writeInt( textBase + textLength );
+		out.writeInt( postings.size() );
+		
+		for ( puzzle = 0; puzzle < puzzles.size(); ++puzzle )
+		{
+			out.writeInt( puzzleNames[ puzzle * 2 ] );
+			out.writeInt( puzzleNames[ puzzle * 2 + 1 ] );
+		}
+		
+		for ( int id = 0, offset = textBase; id < ordered.size(); offset += texts[ id ].length, ++id )
+		{
+			Clue clue = ordered.get( id );
+			out.writeInt( clue.puzzle );
+			out.writeInt( clue.number << 1 | clue.direction.ordinal() );
+			out.writeInt( offset );
+			out.writeInt( texts[ id ].length );
+		}
+		
+		for ( Entry entry : termEntries )
+		{
+			entry.writeTo( out );
+		}
+		
+		for ( Entry entry : gramEntries )
+		{
+			entry.writeTo( out );
+		}
+		
+		strings.writeTo( out );
+		
+		for ( byte[] text : texts )
+		{
+			out.write( text );
+		}
+		
+		postings.writeTo( out );
+		out.flush();
+	}
+	
+	private static void post( Map<String, Entry> entries, List<String> keys, int id )
+	{
+		for ( String key : keys )
+		{
+			Entry entry = entries.get( key );
+			
+			if ( entry == null )
+			{
+				entry = new Entry( encode( key ) );
+				entries.put( key, entry );
+			}
+			
+			entry.add( id );
+		}
+	}
+	
+	private static List<Entry> sort( Map<String, Entry> entries )
+	{
+		List<Entry> sorted = new ArrayList<Entry>( entries.values() );
+		Collections.sort( sorted, KEY_ORDER );
+		return sorted;
+	}
+	
+	private static class Clue
+	{
+		private int puzzle = 0;
+		
+		private int number = 0;
+		
+		private ClueDirection direction = null;
+		
+		private String text = null;
+		
+		Clue( int puzzle, int number, ClueDirection direction, String text )
+		{
+			this.puzzle = puzzle;
+			this.number = number;
+			this.direction = direction;
+			this.text = text;
+		}
+	}
+	
+	/**
+	 * A term or n-gram and the ascending numbers of the clues that contain it
+	 */
+	private static class Entry
+	{
+		private byte[] key = null;
+		
+		private int[] ids = new int[ 4 ];
+		
+		private int count = 0;
+		
+		private int keyOffset = 0;
+		
+		private int postingsOffset = 0;
+		
+		Entry( byte[] key )
+		{
+			this.key = key;
+		}
+		
+		void add( int id )
+		{
+			if ( count == ids.length )
+			{
+				ids = Arrays.copyOf( ids, count * 2 );
+			}
+			
+			ids[ count++ ] = id;
+		}
+		
+		void encode( ByteArrayOutputStream strings, ByteArrayOutputStream postings ) throws IOException
+		{
+			keyOffset = strings.size();
+			strings.write( key );
+			postingsOffset = postings.size();
+			
+			for ( int i = 0, previous = 0; i < count; previous = ids[ i++ ] )
+			{
+				VarIntUtil.writeUnsigned( postings, ids[ i ] - previous );
+			}
+		}
+		
+		void writeTo( DataOutputStream out ) throws IOException
+		{
+			out.writeInt( keyOffset );
+			out.writeInt( key.length );
+			out.writeInt( postingsOffset );
+			out.writeInt( count );
+		}
+	}
+	
+}
@@ -0,0 +1,285 @@
+/**
+ * Copyright (c) 2010 Eric Peterson
+ * For contact information, visit http://www.epeterso2.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.epeterso2.jabberwordy.search;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import com.epeterso2.jabberwordy.util.ClueDirection;
+import com.epeterso2.jabberwordy.util.VarIntUtil;
+
+/**
+ * One memory-mapped segment file of a {@link ClueIndex}, written by a {@link ClueIndexBuilder}.
+ * <p>
+ * The file holds a header, fixed-size tables of the puzzles, the clues, the terms and the n-grams, then the strings
+ * they refer to and the postings of the terms and n-grams. The tables are read in place; a dictionary lookup is a
+ * binary search of the mapped keys.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+class ClueIndexSegment implements Closeable {
+	
+	static final int MAGIC = 0x4A434958;
+	
+	static final int VERSION = 1;
+	
+	static final int HEADER_LENGTH = 32;
+	
+	static final int PUZZLE_ENTRY_LENGTH = 8;
+	
+	static final int CLUE_ENTRY_LENGTH = 16;
+	
+	static final int KEY_ENTRY_LENGTH = 16;
+	
+	private File file = null;
+	
+	private RandomAccessFile raf = null;
+	
+	private ByteBuffer buffer = null;
+	
+	private int puzzleCount = 0;
+	
+	private int clueCount = 0;
+	
+	private int termCount = 0;
+	
+	private int gramCount = 0;
+	
+	private int clueTable = 0;
+	
+	private int termTable = 0;
+	
+	private int gramTable = 0;
+	
+	private int strings = 0;
+	
+	private int postings = 0;
+	
+	/**
+	 * Opens a segment file
+	 * @param file The file
+	 * @throws IOException If the file cannot be read or is not a clue index segment
+	 */
+	ClueIndexSegment( File file ) throws IOException
+	{
+		this.file = file;
+		this.raf = new RandomAccessFile( file, "r" );
+		
+		try
+		{
+			FileChannel channel = raf.getChannel();
+			
+			if ( channel.size() < HEADER_LENGTH || channel.size() > Integer.MAX_VALUE )
+			{
+				throw new IOException( "Not a clue index segment: " + file );
+			}
+			
+			buffer = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+			
+			if ( buffer.getInt( 0 ) != MAGIC || buffer.getInt( 4 ) != VERSION )
+			{
+				throw new IOException( "Not a clue index segment: " + file );
+			}
+			
+			puzzleCount = buffer.getInt( 8 );
+			clueCount = buffer.getInt( 12 );
+			termCount = buffer.getInt( 16 );
+			gramCount = buffer.getInt( 20 );
+			
+			long end = HEADER_LENGTH + puzzleCount * (long) PUZZLE_ENTRY_LENGTH + clueCount * (long) CLUE_ENTRY_LENGTH
+				+ ( termCount + (long) gramCount ) * KEY_ENTRY_LENGTH;
+			
+			if ( puzzleCount < 0 || clueCount < 0 || termCount < 0 || gramCount < 0 || end + buffer.getInt( 24 ) + buffer.getInt( 28 ) != buffer.limit() )
+			{
+				throw new IOException( "Corrupt clue index segment: " + file );
+			}
+			
+			clueTable = HEADER_LENGTH + puzzleCount * PUZZLE_ENTRY_LENGTH;
+			termTable = clueTable + clueCount * CLUE_ENTRY_LENGTH;
+			gramTable = termTable + termCount * KEY_ENTRY_LENGTH;
+			strings = gramTable + gramCount * KEY_ENTRY_LENGTH;
+			postings = strings + buffer.getInt( 24 );
+		}
+		
+		catch ( IOException e )
+		{
+			raf.close();
+			throw e;
+		}
+	}
+	
+	public File getFile()
+	{
+		return file;
+	}
+	
+	public int getPuzzleCount()
+	{
+		return puzzleCount;
+	}
+	
+	public int getClueCount()
+	{
+		return clueCount;
+	}
+	
+	public String getPuzzle( int puzzle )
+	{
+		int entry = HEADER_LENGTH + puzzle * PUZZLE_ENTRY_LENGTH;
+		return getString( buffer.getInt( entry ), buffer.getInt( entry + 4 ) );
+	}
+	
+	public String getText( int clue )
+	{
+		int entry = clueTable + clue * CLUE_ENTRY_LENGTH;
+		return getString( buffer.getInt( entry + 8 ), buffer.getInt( entry + 12 ) );
+	}
+	
+	/**
+	 * Returns a clue of the segment
+	 * @param clue The number of the clue within the segment
+	 * @return The clue
+	 */
+	public ClueHit getHit( int clue )
+	{
+		int entry = clueTable + clue * CLUE_ENTRY_LENGTH;
+		int numberAndDirection = buffer.getInt( entry + 4 );
+		
+		return new ClueHit( getPuzzle( buffer.getInt( entry ) ), numberAndDirection >> 1, ClueDirection.values()[ numberAndDirection & 1 ],
+			getText( clue ) );
+	}
+	
+	/**
+	 * Reads the postings of a term
+	 * @param term The normalized term
+	 * @return The ascending numbers of the clues containing the term, or <tt>null</tt> if no clue contains it
+	 */
+	public int[] getTermPostings( String term )
+	{
+		return getPostings( termTable, termCount, ClueIndexBuilder.encode( term ) );
+	}
+	
+	/**
+	 * Reads the postings of an n-gram
+	 * @param gram The normalized n-gram
+	 * @return The ascending numbers of the clues containing the n-gram, or <tt>null</tt> if no clue contains it
+	 */
+	public int[] getGramPostings( String gram )
+	{
+		return getPostings( gramTable, gramCount, ClueIndexBuilder.encode( gram ) );
+	}
+	
+	private int[] getPostings( int table, int count, byte[] key )
+	{
+		int low = 0;
+		int high = count - 1;
+		
+		while ( low <= high )
+		{
+			int middle = ( low + high ) >>> 1;
+			int entry = table + middle * KEY_ENTRY_LENGTH;
+			int comparison = compareKey( entry, key );
+			
+			if ( comparison < 0 )
+			{
+				low = middle + 1;
+			}
+			
+			else if ( comparison > 0 )
+			{
+				high = middle - 1;
+			}
+			
+			else
+			{
+				// A duplicate shares the mapping but has its own position, so lookups do not interfere
+				ByteBuffer reader = buffer.duplicate();
+				reader.position( postings + buffer.getInt( entry + 8 ) );
+				int[] ids = new int[ buffer.getInt( entry + 12 ) ];
+				
+				for ( int i = 0, previous = 0; i < ids.length; previous = ids[ i++ ] )
+				{
+					ids[ i ] = previous + (int) VarIntUtil.getUnsigned( reader );
+				}
+				
+				return ids;
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Compares the key of a dictionary entry with a key as unsigned bytes
+	 */
+	private int compareKey( int entry, byte[] key )
+	{
+		int offset = strings + buffer.getInt( entry );
+		int length = buffer.getInt( entry + 4 );
+		
+		for ( int i = 0; i < length && i < key.length; ++i )
+		{
+			int b = buffer.get( offset + i ) & 0xFF;
+			
+			if ( b != ( key[ i ] & 0xFF ) )
+			{
+				return b - ( key[ i ] & 0xFF );
+			}
+		}
+		
+		return length - key.length;
+	}
+	
+	private String getString( int offset, int length )
+	{
+		byte[] bytes = new byte[ length ];
+		ByteBuffer reader = buffer.duplicate();
+		reader.position( strings + offset );
+		reader.get( bytes );
+		
+		try
+		{
+			return new String( bytes, "UTF-8" );
+		}
+		
+		catch ( UnsupportedEncodingException e )
+		{
+			throw new IllegalStateException( e );
+		}
+	}
+	
+	/**
+	 * Closes the file. The mapping is released when the segment is garbage collected.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		raf.close();
+	}
+	
+}
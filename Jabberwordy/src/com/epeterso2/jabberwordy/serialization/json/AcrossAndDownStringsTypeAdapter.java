@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2010 Eric Peterson
+ * For contact information, visit http://www.epeterso2.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.epeterso2.jabberwordy.serialization.json;
+
+import java.io.IOException;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Streaming Gson {@link TypeAdapter} for {@link AcrossAndDownStrings} objects. The adapter reads and writes the <tt>across</tt>
+ * and <tt>down</tt> string arrays directly from and to the token stream without using reflection. Unknown properties are skipped
+ * when reading, and <tt>null</tt> arrays are omitted when writing.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ * @see <a href="http://www.xwordinfo.com/JSON">Crossword puzzle data in JSON format</a>
+ */
+public class AcrossAndDownStringsTypeAdapter extends TypeAdapter<AcrossAndDownStrings> {
+
+	/**
+	 * Writes an {@link AcrossAndDownStrings} object to the given JSON writer.
+	 */
+	@Override
+	public void write( JsonWriter out, AcrossAndDownStrings strings ) throws IOException
+	{
+		if ( strings == null )
+		{
+			out.nullValue();
+			return;
+		}
+		
+		out.beginObject();
+		
+		if ( strings.getAcross() != null )
+		{
+			JSONUtil.writeStringArray( out.name( "across" ), strings.getAcross() );
+		}
+		
+		if ( strings.getDown() != null )
+		{
+			JSONUtil.writeStringArray( out.name( "down" ), strings.getDown() );
+		}
+		
+		out.endObject();
+	}
+
+	/**
+	 * Reads an {@link AcrossAndDownStrings} object from the given JSON reader.
+	 */
+	@Override
+	public AcrossAndDownStrings read( JsonReader in ) throws IOException
+	{
+		if ( in.peek() == JsonToken.NULL )
+		{
+			in.nextNull();
+			return null;
+		}
+		
+		AcrossAndDownStrings strings = new AcrossAndDownStrings();
+		in.beginObject();
+		
+		while ( in.hasNext() )
+		{
+			String name = in.nextName();
+			
+			if ( "across".equals( name ) )
+			{
+				strings.setAcross( JSONUtil.readStringArray( in ) );
+			}
+			
+			else if ( "down".equals( name ) )
+			{
+				strings.setDown( JSONUtil.readStringArray( in ) );
+			}
+			
+			else
+			{
+				in.skipValue();
+			}
+		}
+		
+		in.endObject();
+		return strings;
+	}
+
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright (c) 2010 Eric Peterson
+ * For contact information, visit http://www.epeterso2.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.epeterso2.jabberwordy.serialization.json;
+
+import java.io.IOException;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Streaming Gson {@link TypeAdapter} for {@link GridSize} objects. The adapter reads and writes the <tt>rows</tt> and <tt>cols</tt>
+ * properties directly from and to the token stream without using reflection. Unknown properties are skipped when reading.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ * @see <a href="http://www.xwordinfo.com/JSON">Crossword puzzle data in JSON format</a>
+ */
+public class GridSizeTypeAdapter extends TypeAdapter<GridSize> {
+
+	/**
+	 * Writes a {@link GridSize} object to the given JSON writer.
+	 */
+	@Override
+	public void write( JsonWriter out, GridSize size ) throws IOException
+	{
+		if ( size == null )
+		{
+			out.nullValue();
+			return;
+		}
+		
+		out.beginObject();
+		out.name( "rows" ).value( size.getRows() );
+		out.name( "cols" ).value( size.getCols() );
+		out.endObject();
+	}
+
+	/**
+	 * Reads a {@link GridSize} object from the given JSON reader.
+	 */
+	@Override
+	public GridSize read( JsonReader in ) throws IOException
+	{
+		if ( in.peek() == JsonToken.NULL )
+		{
+			in.nextNull();
+			return null;
+		}
+		
+		GridSize size = new GridSize();
+		in.beginObject();
+		
+		while ( in.hasNext() )
+		{
+			String name = in.nextName();
+			
+			if ( "rows".equals( name ) )
+			{
+				size.setRows( in.nextInt() );
+			}
+			
+			else if ( "cols".equals( name ) )
+			{
+				size.setCols( in.nextInt() );
+			}
+			
+			else
+			{
+				in.skipValue();
+			}
+		}
+		
+		in.endObject();
+		return size;
+	}
+
+}
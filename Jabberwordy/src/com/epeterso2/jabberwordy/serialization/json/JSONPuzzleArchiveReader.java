@@ -0,0 +1,548 @@
+/**
+ * Copyright (c) 2010 Eric Peterson
+ * For contact information, visit http://www.epeterso2.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.epeterso2.jabberwordy.serialization.json;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.StringReader;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.google.gson.JsonIOException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Reads the puzzles in a JSON puzzle archive one at a time. An archive is either newline-delimited JSON or a single top-level
+ * JSON array of puzzle objects; see {@link JSONPuzzleArchiveFormat}.
+ * <p>
+ * The archive is read incrementally: only the text of the puzzle currently being decoded is held in memory, so archives of any
+ * size may be read in constant memory. Puzzles may be pulled one at a time with {@link #readPuzzle()} or through the
+ * {@link Iterator} interface, or pushed to a {@link JSONPuzzleConsumer} with {@link #readAll(JSONPuzzleConsumer)}.
+ * <p>
+ * Decoding may optionally be spread across the threads of an {@link ExecutorService} with
+ * {@link #readAll(JSONPuzzleConsumer, ExecutorService, int)}. The archive text is still split into records on the calling thread,
+ * but each record is decoded on the executor. Puzzles are delivered to the consumer on the calling thread in archive order, and
+ * the number of records being decoded at once is bounded so that memory use remains constant.
+ * <p>
+ * Every record of an archive must be a single puzzle object. A <tt>null</tt> record is an error in both formats, as are
+ * the elements of an array that are not separated by exactly one comma.
+ * <p>
+ * Because the methods of {@link Iterator} cannot throw checked exceptions, errors encountered by {@link #hasNext()} and
+ * {@link #next()} are reported as {@link JsonIOException} objects that wrap the underlying {@link IOException}.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ * @see JSONPuzzleArchiveWriter
+ */
+public class JSONPuzzleArchiveReader implements Iterator<JSONPuzzle>, Closeable {
+	
+	private static final int DETECTION_LIMIT = 8192;
+	
+	private BufferedReader reader = null;
+	
+	private JSONPuzzleArchiveFormat format = null;
+	
+	private StringBuilder record = new StringBuilder();
+	
+	private boolean started = false;
+	
+	private boolean finished = false;
+	
+	private int recordNumber = 0;
+	
+	private JSONPuzzle nextPuzzle = null;
+
+	/**
+	 * Constructs a new archive reader. The format of the archive is detected from its first non-whitespace character:
+	 * an archive that begins with '[' is read as a {@link JSONPuzzleArchiveFormat#ARRAY}, and any other archive is read as
+	 * {@link JSONPuzzleArchiveFormat#NDJSON}.
+	 * @param inputStream The UTF-8 encoded archive
+	 * @throws IOException The archive could not be read
+	 */
+	public JSONPuzzleArchiveReader( InputStream inputStream ) throws IOException
+	{
+		this.reader = new BufferedReader( new InputStreamReader( inputStream, JSONUtil.CHARSET ) );
+		this.format = detectFormat();
+	}
+	
+	/**
+	 * Constructs a new archive reader for an archive of the given format
+	 * @param inputStream The UTF-8 encoded archive
+	 * @param format The format of the archive
+	 */
+	public JSONPuzzleArchiveReader( InputStream inputStream, JSONPuzzleArchiveFormat format )
+	{
+		this.reader = new BufferedReader( new InputStreamReader( inputStream, JSONUtil.CHARSET ) );
+		this.format = format;
+	}
+	
+	/**
+	 * Returns the format of the archive being read
+	 * @return The archive format
+	 */
+	public JSONPuzzleArchiveFormat getFormat()
+	{
+		return format;
+	}
+	
+	/**
+	 * Returns the number of puzzle records that have been read from the archive so far
+	 * @return The number of records read
+	 */
+	public int getRecordNumber()
+	{
+		return recordNumber;
+	}
+	
+	private JSONPuzzleArchiveFormat detectFormat() throws IOException
+	{
+		reader.mark( DETECTION_LIMIT );
+		
+		try
+		{
+			for ( int i = 0, c; i < DETECTION_LIMIT && ( c = reader.read() ) != -1; ++i )
+			{
+				if ( ! isWhitespace( c ) )
+				{
+					return c == '[' ? JSONPuzzleArchiveFormat.ARRAY : JSONPuzzleArchiveFormat.NDJSON;
+				}
+			}
+			
+			return JSONPuzzleArchiveFormat.NDJSON;
+		}
+		
+		finally
+		{
+			reader.reset();
+		}
+	}
+	
+	/**
+	 * Reads and decodes the next puzzle in the archive
+	 * @return The next puzzle, or <tt>null</tt> if there are no more puzzles in the archive
+	 * @throws IOException The archive could not be read or contains an invalid puzzle
+	 */
+	public JSONPuzzle readPuzzle() throws IOException
+	{
+		if ( nextPuzzle != null )
+		{
+			JSONPuzzle puzzle = nextPuzzle;
+			nextPuzzle = null;
+			return puzzle;
+		}
+		
+		String text = nextRecord();
+		return text == null ? null : decode( text, recordNumber );
+	}
+	
+	/**
+	 * Reads every remaining puzzle in the archive and passes each one to a consumer on the calling thread
+	 * @param consumer The consumer of the puzzles
+	 * @return The number of puzzles passed to the consumer
+	 * @throws IOException The archive could not be read, contains an invalid puzzle, or the consumer failed
+	 */
+	public int readAll( JSONPuzzleConsumer consumer ) throws IOException
+	{
+		int count = 0;
+		
+		for ( JSONPuzzle puzzle; ( puzzle = readPuzzle() ) != null; ++count )
+		{
+			consumer.consume( puzzle );
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Reads every remaining puzzle in the archive, decoding the puzzles in parallel on an executor. The puzzles are passed to
+	 * the consumer on the calling thread in the order in which they appear in the archive. At most <tt>window</tt> puzzles
+	 * are decoded or waiting to be consumed at any time. The executor is not shut down by this method.
+	 * @param consumer The consumer of the puzzles
+	 * @param executor The executor on which the puzzles are decoded
+	 * @param window The maximum number of puzzles in flight; this should be somewhat larger than the number of threads in the executor
+	 * @return The number of puzzles passed to the consumer
+	 * @throws IOException The archive could not be read, contains an invalid puzzle, or the consumer failed
+	 */
+	public int readAll( JSONPuzzleConsumer consumer, ExecutorService executor, int window ) throws IOException
+	{
+		LinkedList<Future<JSONPuzzle>> pending = new LinkedList<Future<JSONPuzzle>>();
+		int count = 0;
+		
+		try
+		{
+			if ( nextPuzzle != null )
+			{
+				consumer.consume( readPuzzle() );
+				++count;
+			}
+			
+			for ( String text; ( text = nextRecord() ) != null; )
+			{
+				if ( pending.size() >= Math.max( window, 1 ) )
+				{
+					consumer.consume( await( pending.removeFirst() ) );
+					++count;
+				}
+				
+				pending.add( executor.submit( new DecodeTask( text, recordNumber ) ) );
+			}
+			
+			while ( ! pending.isEmpty() )
+			{
+				consumer.consume( await( pending.removeFirst() ) );
+				++count;
+			}
+		}
+		
+		finally
+		{
+			for ( Future<JSONPuzzle> future : pending )
+			{
+				future.cancel( true );
+			}
+		}
+		
+		return count;
+	}
+	
+	private JSONPuzzle await( Future<JSONPuzzle> future ) throws IOException
+	{
+		try
+		{
+			return future.get();
+		}
+		
+		catch ( InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException( "Interrupted while decoding puzzle archive" );
+		}
+		
+		catch ( ExecutionException e )
+		{
+			if ( e.getCause() instanceof IOException )
+			{
+				throw (IOException) e.getCause();
+			}
+			
+			throw new IOException( e.getCause() );
+		}
+	}
+	
+	private class DecodeTask implements Callable<JSONPuzzle> {
+		
+		private String text = null;
+		
+		private int number = 0;
+		
+		public DecodeTask( String text, int number )
+		{
+			this.text = text;
+			this.number = number;
+		}
+
+		@Override
+		public JSONPuzzle call() throws IOException
+		{
+			return decode( text, number );
+		}
+		
+	}
+	
+	private static JSONPuzzle decode( String text, int number ) throws IOException
+	{
+		try
+		{
+			JsonReader jsonReader = new JsonReader( new StringReader( text ) );
+			JSONPuzzle puzzle = JSONUtil.readPuzzle( jsonReader );
+			
+			if ( puzzle == null || jsonReader.peek() != JsonToken.END_DOCUMENT )
+			{
+				throw new IOException( "Record is not a single puzzle object" );
+			}
+			
+			return puzzle;
+		}
+		
+		catch ( IOException e )
+		{
+			throw new IOException( "Error in puzzle record " + number + ": " + e.getMessage(), e );
+		}
+	}
+	
+	/**
+	 * Returns the text of the next puzzle record in the archive, or null if there are no more records
+	 */
+	private String nextRecord() throws IOException
+	{
+		String text = format == JSONPuzzleArchiveFormat.ARRAY ? nextArrayRecord() : nextLineRecord();
+		
+		if ( text != null )
+		{
+			++recordNumber;
+		}
+		
+		return text;
+	}
+	
+	private String nextLineRecord() throws IOException
+	{
+		for ( String line; ( line = reader.readLine() ) != null; )
+		{
+			if ( ! started && line.length() > 0 && line.charAt( 0 ) == '\uFEFF' )
+			{
+				line = line.substring( 1 );
+			}
+			
+			started = true;
+			
+			if ( line.trim().length() > 0 )
+			{
+				return line;
+			}
+		}
+		
+		finished = true;
+		return null;
+	}
+	
+	private String nextArrayRecord() throws IOException
+	{
+		if ( finished )
+		{
+			return null;
+		}
+		
+		boolean first = ! started;
+		
+		if ( ! started )
+		{
+			int c = skipWhitespace();
+			
+			if ( c == '\uFEFF' )
+			{
+				c = skipWhitespace();
+			}
+			
+			if ( c != '[' )
+			{
+				throw new IOException( "Puzzle archive does not begin with '['" );
+			}
+			
+			started = true;
+		}
+		
+		int c = skipWhitespace();
+		
+		if ( c == ']' )
+		{
+			finished = true;
+			return null;
+		}
+		
+		if ( ! first )
+		{
+			if ( c != ',' )
+			{
+				throw unexpected( c, "',' or ']'" );
+			}
+			
+			c = skipWhitespace();
+		}
+		
+		if ( c == '{' )
+		{
+			return readObject();
+		}
+		
+		else if ( c == 'n' && reader.read() == 'u' && reader.read() == 'l' && reader.read() == 'l' )
+		{
+			throw new IOException( "Error in puzzle record " + ( recordNumber + 1 ) + ": Record is not a single puzzle object" );
+		}
+		
+		else
+		{
+			throw unexpected( c, "a puzzle object" );
+		}
+	}
+	
+	private static IOException unexpected( int c, String expected )
+	{
+		if ( c == -1 )
+		{
+			return new IOException( "Puzzle archive ends before the closing ']'" );
+		}
+		
+		return new IOException( "Unexpected character in puzzle archive: '" + (char) c + "' where " + expected + " was expected" );
+	}
+	
+	/**
+	 * Captures the text of a JSON object whose opening brace has already been read, honoring nested objects and arrays
+	 * and braces that appear inside of strings
+	 */
+	private String readObject() throws IOException
+	{
+		record.setLength( 0 );
+		record.append( '{' );
+		
+		int depth = 1;
+		boolean inString = false;
+		
+		while ( depth > 0 )
+		{
+			int c = reader.read();
+			
+			if ( c == -1 )
+			{
+				throw new IOException( "Puzzle archive ends inside of a puzzle object" );
+			}
+			
+			record.append( (char) c );
+			
+			if ( inString )
+			{
+				if ( c == '\\' )
+				{
+					int escaped = reader.read();
+					
+					if ( escaped == -1 )
+					{
+						throw new IOException( "Puzzle archive ends inside of a string" );
+					}
+					
+					record.append( (char) escaped );
+				}
+				
+				else if ( c == '"' )
+				{
+					inString = false;
+				}
+			}
+			
+			else if ( c == '"' )
+			{
+				inString = true;
+			}
+			
+			else if ( c == '{' || c == '[' )
+			{
+				++depth;
+			}
+			
+			else if ( c == '}' || c == ']' )
+			{
+				--depth;
+			}
+		}
+		
+		return record.toString();
+	}
+	
+	private int skipWhitespace() throws IOException
+	{
+		int c;
+		
+		do
+		{
+			c = reader.read();
+		}
+		while ( isWhitespace( c ) );
+		
+		return c;
+	}
+	
+	private static boolean isWhitespace( int c )
+	{
+		return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+	}
+
+	/**
+	 * Determines if there is another puzzle in the archive. The next puzzle is read and decoded by this method.
+	 * @throws JsonIOException The archive could not be read or contains an invalid puzzle
+	 */
+	@Override
+	public boolean hasNext()
+	{
+		if ( nextPuzzle == null && ! finished )
+		{
+			try
+			{
+				nextPuzzle = readPuzzle();
+			}
+			
+			catch ( IOException e )
+			{
+				throw new JsonIOException( e );
+			}
+		}
+		
+		return nextPuzzle != null;
+	}
+
+	/**
+	 * Returns the next puzzle in the archive
+	 * @throws NoSuchElementException There are no more puzzles in the archive
+	 * @throws JsonIOException The archive could not be read or contains an invalid puzzle
+	 */
+	@Override
+	public JSONPuzzle next()
+	{
+		if ( ! hasNext() )
+		{
+			throw new NoSuchElementException();
+		}
+		
+		JSONPuzzle puzzle = nextPuzzle;
+		nextPuzzle = null;
+		return puzzle;
+	}
+
+	/**
+	 * Not supported
+	 * @throws UnsupportedOperationException Always
+	 */
+	@Override
+	public void remove()
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Closes the archive and the underlying input stream
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		reader.close();
+	}
+
+}
@@ -0,0 +1,180 @@
+/**
+ * Copyright (c) 2010 Eric Peterson
+ * For contact information, visit http://www.epeterso2.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.epeterso2.jabberwordy.serialization.json;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Iterator;
+
+import com.google.gson.JsonParseException;
+
+/**
+ * Writes puzzles to a JSON puzzle archive one at a time. Each puzzle is encoded and written as soon as it is received, so
+ * archives of any size may be written in constant memory. Puzzles are always written in the compact form.
+ * <p>
+ * An {@link JSONPuzzleArchiveFormat#ARRAY} archive is not complete until the writer has been closed.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ * @see JSONPuzzleArchiveReader
+ */
+public class JSONPuzzleArchiveWriter implements JSONPuzzleConsumer, Closeable, Flushable {
+	
+	private Writer writer = null;
+	
+	private JSONPuzzleArchiveFormat format = null;
+	
+	private int count = 0;
+	
+	private boolean closed = false;
+	
+	/**
+	 * Constructs a new archive writer
+	 * @param outputStream The output stream to receive the UTF-8 encoded archive
+	 * @param format The format of the archive
+	 */
+	public JSONPuzzleArchiveWriter( OutputStream outputStream, JSONPuzzleArchiveFormat format )
+	{
+		this.writer = new BufferedWriter( new OutputStreamWriter( outputStream, JSONUtil.CHARSET ) );
+		this.format = format;
+	}
+	
+	/**
+	 * Returns the format of the archive being written
+	 * @return The archive format
+	 */
+	public JSONPuzzleArchiveFormat getFormat()
+	{
+		return format;
+	}
+	
+	/**
+	 * Returns the number of puzzles written to the archive so far
+	 * @return The number of puzzles written
+	 */
+	public int getCount()
+	{
+		return count;
+	}
+	
+	/**
+	 * Appends a puzzle to the archive
+	 * @param puzzle The puzzle
+	 * @throws IOException The puzzle could not be written
+	 */
+	public void writePuzzle( JSONPuzzle puzzle ) throws IOException
+	{
+		if ( closed )
+		{
+			throw new IOException( "Puzzle archive has been closed" );
+		}
+		
+		if ( format == JSONPuzzleArchiveFormat.ARRAY )
+		{
+			writer.write( count == 0 ? "[\n" : ",\n" );
+		}
+		
+		try
+		{
+			JSONUtil.getGson().toJson( puzzle, JSONPuzzle.class, writer );
+		}
+		
+		catch ( JsonParseException e )
+		{
+			throw new IOException( e );
+		}
+		
+		if ( format == JSONPuzzleArchiveFormat.NDJSON )
+		{
+			writer.write( '\n' );
+		}
+		
+		++count;
+	}
+	
+	/**
+	 * Appends every remaining puzzle of an iterator to the archive
+	 * @param puzzles The puzzles
+	 * @return The number of puzzles written
+	 * @throws IOException A puzzle could not be written
+	 */
+	public int writeAll( Iterator<JSONPuzzle> puzzles ) throws IOException
+	{
+		int written = 0;
+		
+		while ( puzzles.hasNext() )
+		{
+			writePuzzle( puzzles.next() );
+			++written;
+		}
+		
+		return written;
+	}
+
+	/**
+	 * Appends a puzzle to the archive; equivalent to {@link #writePuzzle(JSONPuzzle)}
+	 */
+	@Override
+	public void consume( JSONPuzzle puzzle ) throws IOException
+	{
+		writePuzzle( puzzle );
+	}
+
+	@Override
+	public void flush() throws IOException
+	{
+		writer.flush();
+	}
+
+	/**
+	 * Completes the archive and closes the underlying output stream
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		if ( closed )
+		{
+			return;
+		}
+		
+		closed = true;
+		
+		try
+		{
+			if ( format == JSONPuzzleArchiveFormat.ARRAY )
+			{
+				writer.write( count == 0 ? "[]\n" : "\n]\n" );
+			}
+		}
+		
+		finally
+		{
+			writer.close();
+		}
+	}
+
+}
@@ -26,19 +26,61 @@ package com.epeterso2.jabberwordy.serialization.json;
 import java.io.IOException;
 
 import com.epeterso2.jabberwordy.serialization.PuzzleInputStream;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 
 /**
- * Serializes a {@link JSONPuzzle} object into the JSON file format.
+ * Serializes a {@link JSONPuzzle} object into the JSON file format. The image is encoded in UTF-8 using the shared
+ * streaming type adapters in {@link JSONUtil}. By default the output is compact; pretty-printing may be enabled with
+ * {@link #setPrettyPrinting(boolean)}.
  * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
  * @see <a href="http://www.xwordinfo.com/JSON">Crossword puzzle data in JSON format</a>
  * @see <a href="http://www.json.org">Introducing JSON</a>
  */
 public class JSONPuzzleInputStream extends PuzzleInputStream<JSONPuzzle> {
 	
-	private Gson gson = new GsonBuilder().setPrettyPrinting().create();
+	private boolean prettyPrinting = false;
 	
+	/**
+	 * Constructs a new input stream with no puzzle
+	 */
+	public JSONPuzzleInputStream()
+	{
+		super();
+	}
+	
+	/**
+	 * Constructs a new input stream for serializing the given puzzle
+	 * @param puzzle The puzzle to serialize
+	 */
+	public JSONPuzzleInputStream( JSONPuzzle puzzle )
+	{
+		super( puzzle );
+	}
+	
+	/**
+	 * Sets the pretty-printing mode for this serializer.
+	 * If set to <tt>true</tt>, the output will be formatted for human-readability.
+	 * If set to <tt>false</tt> (default), the output will be compact.
+	 * @param prettyPrinting The pretty-printing mode setting
+	 * @return This input stream
+	 */
+	public JSONPuzzleInputStream setPrettyPrinting( boolean prettyPrinting )
+	{
+		this.prettyPrinting = prettyPrinting;
+		return this;
+	}
+	
+	/**
+	 * Returns the pretty-printing mode setting for this serializer.
+	 * @return <tt>true</tt> if the output will be formatted for human-readability, <tt>false</tt> if it will be compact
+	 */
+	public boolean isPrettyPrinting()
+	{
+		return prettyPrinting;
+	}
+	
+	/**
+	 * Serializes the {@link JSONPuzzle} associated with this class into a UTF-8 encoded JSON image.
+	 */
 	@Override
 	public byte[] toByteArray() throws IOException
 	{
@@ -47,7 +89,7 @@ public class JSONPuzzleInputStream extends PuzzleInputStream<JSONPuzzle> {
 			throw new IOException( new NullPointerException( "Null puzzle" ) );
 		}
 		
-		return gson.toJson( getPuzzle() ).getBytes();
+		return JSONUtil.writePuzzle( getPuzzle(), isPrettyPrinting() );
 	}
 
 	/**
@@ -24,27 +24,46 @@
 package com.epeterso2.jabberwordy.serialization.json;
 
 import java.io.IOException;
+import java.io.InputStream;
 
 import com.epeterso2.jabberwordy.serialization.PuzzleOutputStream;
-import com.google.gson.Gson;
 
 /**
  * Provides a {@link PuzzleOutputStream} for deserializing a JSON image into a {@link JSONPuzzle} object.
+ * The image is read as UTF-8 directly from its bytes by the shared streaming type adapters in {@link JSONUtil}.
  * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
  * @see <a href="http://www.xwordinfo.com/JSON">Crossword puzzle data in JSON format</a>
  * @see <a href="http://www.json.org">Introducing JSON</a>
  */
 public class JSONPuzzleOutputStream extends PuzzleOutputStream<JSONPuzzle> {
 	
-	private Gson gson = new Gson();
+	/**
+	 * Constructs a new output stream
+	 */
+	public JSONPuzzleOutputStream()
+	{
+		super();
+	}
+
+	/**
+	 * Constructs a new JSON deserializing output stream using an input stream.
+	 * The entire input stream will be read then written to this output stream.
+	 * @param inputStream The input stream containing a JSON puzzle image
+	 * @throws IOException An error occurred while reading the input stream
+	 */
+	public JSONPuzzleOutputStream( InputStream inputStream ) throws IOException
+	{
+		super( inputStream );
+	}
 
 	/**
 	 * Converts the serialized puzzle image into a {@link JSONPuzzle} object.
+	 * @throws IOException The image is not a valid JSON puzzle
 	 */
 	@Override
 	public JSONPuzzle toPuzzle() throws IOException
 	{
-		return gson.fromJson( new String( toByteArray() ), JSONPuzzle.class );
+		return JSONUtil.readPuzzle( toByteArray() );
 	}
 
 }
@@ -0,0 +1,205 @@
+/**
+ * Copyright (c) 2010 Eric Peterson
+ * For contact information, visit http://www.epeterso2.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.epeterso2.jabberwordy.serialization.json;
+
+import java.io.IOException;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Streaming Gson {@link TypeAdapter} for {@link JSONPuzzle} objects. Each property of the puzzle is read from or written to the
+ * token stream directly, so no reflection is performed and no intermediate tree is built. The nested {@link GridSize} and
+ * {@link AcrossAndDownStrings} properties are handled by {@link GridSizeTypeAdapter} and {@link AcrossAndDownStringsTypeAdapter}.
+ * <p>
+ * Properties with <tt>null</tt> values are omitted when writing, and unknown properties are skipped when reading. The properties
+ * are written in the same order in which they are declared in {@link JSONPuzzle}.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ * @see <a href="http://www.xwordinfo.com/JSON">Crossword puzzle data in JSON format</a>
+ */
+public class JSONPuzzleTypeAdapter extends TypeAdapter<JSONPuzzle> {
+	
+	private GridSizeTypeAdapter sizeAdapter = new GridSizeTypeAdapter();
+	
+	private AcrossAndDownStringsTypeAdapter stringsAdapter = new AcrossAndDownStringsTypeAdapter();
+
+	/**
+	 * Writes a {@link JSONPuzzle} object to the given JSON writer.
+	 */
+	@Override
+	public void write( JsonWriter out, JSONPuzzle puzzle ) throws IOException
+	{
+		if ( puzzle == null )
+		{
+			out.nullValue();
+			return;
+		}
+		
+		out.beginObject();
+		writeString( out, "title", puzzle.getTitle() );
+		writeString( out, "author", puzzle.getAuthor() );
+		writeString( out, "editor", puzzle.getEditor() );
+		writeString( out, "copyright", puzzle.getCopyright() );
+		writeString( out, "publisher", puzzle.getPublisher() );
+		writeString( out, "date", puzzle.getDate() );
+		
+		if ( puzzle.getSize() != null )
+		{
+			sizeAdapter.write( out.name( "size" ), puzzle.getSize() );
+		}
+		
+		if ( puzzle.getGrid() != null )
+		{
+			JSONUtil.writeStringArray( out.name( "grid" ), puzzle.getGrid() );
+		}
+		
+		if ( puzzle.getGridnums() != null )
+		{
+			JSONUtil.writeIntArray( out.name( "gridnums" ), puzzle.getGridnums() );
+		}
+		
+		if ( puzzle.getClues() != null )
+		{
+			stringsAdapter.write( out.name( "clues" ), puzzle.getClues() );
+		}
+		
+		if ( puzzle.getAnswers() != null )
+		{
+			stringsAdapter.write( out.name( "answers" ), puzzle.getAnswers() );
+		}
+		
+		if ( puzzle.getCircles() != null )
+		{
+			JSONUtil.writeIntArray( out.name( "circles" ), puzzle.getCircles() );
+		}
+		
+		writeString( out, "notepad", puzzle.getNotepad() );
+		out.endObject();
+	}
+	
+	private void writeString( JsonWriter out, String name, String value ) throws IOException
+	{
+		if ( value != null )
+		{
+			out.name( name ).value( value );
+		}
+	}
+
+	/**
+	 * Reads a {@link JSONPuzzle} object from the given JSON reader.
+	 */
+	@Override
+	public JSONPuzzle read( JsonReader in ) throws IOException
+	{
+		if ( in.peek() == JsonToken.NULL )
+		{
+			in.nextNull();
+			return null;
+		}
+		
+		JSONPuzzle puzzle = new JSONPuzzle();
+		in.beginObject();
+		
+		while ( in.hasNext() )
+		{
+			String name = in.nextName();
+			
+			if ( "title".equals( name ) )
+			{
+				puzzle.setTitle( JSONUtil.readString( in ) );
+			}
+			
+			else if ( "author".equals( name ) )
+			{
+				puzzle.setAuthor( JSONUtil.readString( in ) );
+			}
+			
+			else if ( "editor".equals( name ) )
+			{
+				puzzle.setEditor( JSONUtil.readString( in ) );
+			}
+			
+			else if ( "copyright".equals( name ) )
+			{
+				puzzle.setCopyright( JSONUtil.readString( in ) );
+			}
+			
+			else if ( "publisher".equals( name ) )
+			{
+				puzzle.setPublisher( JSONUtil.readString( in ) );
+			}
+			
+			else if ( "date".equals( name ) )
+			{
+				puzzle.setDate( JSONUtil.readString( in ) );
+			}
+			
+			else if ( "size".equals( name ) )
+			{
+				puzzle.setSize( sizeAdapter.read( in ) );
+			}
+			
+			else if ( "grid".equals( name ) )
+			{
+				puzzle.setGrid( JSONUtil.readStringArray( in ) );
+			}
+			
+			else if ( "gridnums".equals( name ) )
+			{
+				puzzle.setGridnums( JSONUtil.readIntArray( in ) );
+			}
+			
+			else if ( "clues".equals( name ) )
+			{
+				puzzle.setClues( stringsAdapter.read( in ) );
+			}
+			
+			else if ( "answers".equals( name ) )
+			{
+				puzzle.setAnswers( stringsAdapter.read( in ) );
+			}
+			
+			else if ( "circles".equals( name ) )
+			{
+				puzzle.setCircles( JSONUtil.readIntArray( in ) );
+			}
+			
+			else if ( "notepad".equals( name ) )
+			{
+				puzzle.setNotepad( JSONUtil.readString( in ) );
+			}
+			
+			else
+			{
+				in.skipValue();
+			}
+		}
+		
+		in.endObject();
+		return puzzle;
+	}
+
+}
@@ -0,0 +1,307 @@
+/**
+ * Copyright (c) 2010 Eric Peterson
+ * For contact information, visit http://www.epeterso2.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.epeterso2.jabberwordy.serialization.json;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * A collection of utility methods and shared objects for reading and writing JSON puzzle images.
+ * <p>
+ * The {@link Gson} instances returned by this class are created once and shared. They have the streaming type adapters
+ * {@link JSONPuzzleTypeAdapter}, {@link GridSizeTypeAdapter}, and {@link AcrossAndDownStringsTypeAdapter} pre-registered,
+ * so no reflection is performed when converting puzzles. {@link Gson} objects are thread-safe, so the shared instances may be
+ * used concurrently.
+ * <p>
+ * JSON puzzle images are always encoded in UTF-8. Images are read directly from their bytes by a {@link JsonReader} rather than
+ * being decoded into an intermediate {@link String}.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ * @see <a href="http://www.xwordinfo.com/JSON">Crossword puzzle data in JSON format</a>
+ */
+public abstract class JSONUtil {
+	
+	/**
+	 * The character set of JSON puzzle images
+	 */
+	public static final Charset CHARSET = Charset.forName( "UTF-8" );
+	
+	private static final Gson gson = buildGsonBuilder().create();
+	
+	private static final Gson prettyGson = buildGsonBuilder().setPrettyPrinting().create();
+	
+	private static GsonBuilder buildGsonBuilder()
+	{
+		return new GsonBuilder()
+			.registerTypeAdapter( JSONPuzzle.class, new JSONPuzzleTypeAdapter() )
+			.registerTypeAdapter( GridSize.class, new GridSizeTypeAdapter() )
+			.registerTypeAdapter( AcrossAndDownStrings.class, new AcrossAndDownStringsTypeAdapter() );
+	}
+	
+	/**
+	 * Returns the shared {@link Gson} instance that produces compact output
+	 * @return The shared compact {@link Gson} instance
+	 */
+	public static Gson getGson()
+	{
+		return gson;
+	}
+	
+	/**
+	 * Returns the shared {@link Gson} instance that produces pretty-printed output
+	 * @return The shared pretty-printing {@link Gson} instance
+	 */
+	public static Gson getPrettyGson()
+	{
+		return prettyGson;
+	}
+	
+	/**
+	 * Builds a {@link JsonReader} that decodes the given input stream as UTF-8
+	 * @param inputStream The input stream containing JSON data
+	 * @return The reader
+	 */
+	public static JsonReader newJsonReader( InputStream inputStream )
+	{
+		return new JsonReader( new InputStreamReader( inputStream, CHARSET ) );
+	}
+	
+	/**
+	 * Builds a {@link JsonWriter} that encodes to the given output stream as UTF-8
+	 * @param outputStream The output stream to receive JSON data
+	 * @param pretty If <tt>true</tt>, the output will be pretty-printed; if <tt>false</tt>, the output will be compact
+	 * @return The writer
+	 * @throws IOException The writer could not be created
+	 */
+	public static JsonWriter newJsonWriter( OutputStream outputStream, boolean pretty ) throws IOException
+	{
+		return ( pretty ? prettyGson : gson ).newJsonWriter( new OutputStreamWriter( outputStream, CHARSET ) );
+	}
+	
+	/**
+	 * Converts a JSON puzzle image into a {@link JSONPuzzle} object
+	 * @param image The UTF-8 encoded JSON puzzle image
+	 * @return The puzzle, or <tt>null</tt> if the image is empty
+	 * @throws IOException The image could not be read or is not a valid JSON puzzle
+	 */
+	public static JSONPuzzle readPuzzle( byte[] image ) throws IOException
+	{
+		return readPuzzle( newJsonReader( new ByteArrayInputStream( image ) ) );
+	}
+	
+	/**
+	 * Reads the next {@link JSONPuzzle} object from a {@link JsonReader}
+	 * @param reader The reader positioned at the start of a puzzle object
+	 * @return The puzzle, or <tt>null</tt> if the reader is at the end of its input
+	 * @throws IOException The input could not be read or is not a valid JSON puzzle
+	 */
+	public static JSONPuzzle readPuzzle( JsonReader reader ) throws IOException
+	{
+		try
+		{
+			return gson.fromJson( reader, JSONPuzzle.class );
+		}
+		
+		catch ( JsonParseException e )
+		{
+			throw new IOException( e );
+		}
+	}
+	
+	/**
+	 * Converts a {@link JSONPuzzle} object into a UTF-8 encoded JSON puzzle image
+	 * @param puzzle The puzzle
+	 * @param pretty If <tt>true</tt>, the output will be pretty-printed; if <tt>false</tt>, the output will be compact
+	 * @return The JSON puzzle image
+	 * @throws IOException The puzzle could not be written
+	 */
+	public static byte[] writePuzzle( JSONPuzzle puzzle, boolean pretty ) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		JsonWriter writer = newJsonWriter( out, pretty );
+		writePuzzle( writer, puzzle, pretty );
+		writer.close();
+		
+		return out.toByteArray();
+	}
+	
+	/**
+	 * Writes a {@link JSONPuzzle} object to a {@link JsonWriter}
+	 * @param writer The writer
+	 * @param puzzle The puzzle
+	 * @param pretty If <tt>true</tt>, the output will be pretty-printed; if <tt>false</tt>, the output will be compact
+	 * @throws IOException The puzzle could not be written
+	 */
+	public static void writePuzzle( JsonWriter writer, JSONPuzzle puzzle, boolean pretty ) throws IOException
+	{
+		try
+		{
+			( pretty ? prettyGson : gson ).toJson( puzzle, JSONPuzzle.class, writer );
+		}
+		
+		catch ( JsonParseException e )
+		{
+			throw new IOException( e );
+		}
+	}
+
+	/**
+	 * Reads a string value that may be <tt>null</tt>
+	 * @param in The reader
+	 * @return The string value, or <tt>null</tt>
+	 * @throws IOException The value could not be read
+	 */
+	public static String readString( JsonReader in ) throws IOException
+	{
+		if ( in.peek() == JsonToken.NULL )
+		{
+			in.nextNull();
+			return null;
+		}
+		
+		return in.nextString();
+	}
+	
+	/**
+	 * Reads an array of strings that may be <tt>null</tt>. Elements of the array may also be <tt>null</tt>.
+	 * @param in The reader
+	 * @return The array of strings, or <tt>null</tt>
+	 * @throws IOException The value could not be read
+	 */
+	public static String[] readStringArray( JsonReader in ) throws IOException
+	{
+		if ( in.peek() == JsonToken.NULL )
+		{
+			in.nextNull();
+			return null;
+		}
+		
+		List<String> strings = new ArrayList<String>();
+		in.beginArray();
+		
+		while ( in.hasNext() )
+		{
+			strings.add( readString( in ) );
+		}
+		
+		in.endArray();
+		return strings.toArray( new String[ strings.size() ] );
+	}
+	
+	/**
+	 * Reads an array of integers that may be <tt>null</tt>. The integers are accumulated without boxing.
+	 * @param in The reader
+	 * @return The array of integers, or <tt>null</tt>
+	 * @throws IOException The value could not be read
+	 */
+	public static int[] readIntArray( JsonReader in ) throws IOException
+	{
+		if ( in.peek() == JsonToken.NULL )
+		{
+			in.nextNull();
+			return null;
+		}
+		
+		int[] values = new int[ 256 ];
+		int size = 0;
+		in.beginArray();
+		
+		while ( in.hasNext() )
+		{
+			if ( size == values.length )
+			{
+				int[] grown = new int[ size * 2 ];
+				System.arraycopy( values, 0, grown, 0, size );
+				values = grown;
+			}
+			
+			values[ size++ ] = in.nextInt();
+		}
+		
+		in.endArray();
+		
+		int[] out = new int[ size ];
+		System.arraycopy( values, 0, out, 0, size );
+		return out;
+	}
+	
+	/**
+	 * Writes an array of strings. Elements of the array may be <tt>null</tt>.
+	 * @param out The writer
+	 * @param strings The array of strings
+	 * @throws IOException The value could not be written
+	 */
+	public static void writeStringArray( JsonWriter out, String[] strings ) throws IOException
+	{
+		out.beginArray();
+		
+		for ( String string : strings )
+		{
+			if ( string == null )
+			{
+				out.nullValue();
+			}
+			
+			else
+			{
+				out.value( string );
+			}
+		}
+		
+		out.endArray();
+	}
+	
+	/**
+	 * Writes an array of integers.
+	 * @param out The writer
+	 * @param values The array of integers
+	 * @throws IOException The value could not be written
+	 */
+	public static void writeIntArray( JsonWriter out, int[] values ) throws IOException
+	{
+		out.beginArray();
+		
+		for ( int value : values )
+		{
+			out.value( value );
+		}
+		
+		out.endArray();
+	}
+	
+}
@@ -23,16 +23,18 @@
 
 package com.epeterso2.jabberwordy.serialization.puz;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 
 import com.epeterso2.jabberwordy.serialization.Puzzle;
-import com.epeterso2.jabberwordy.util.StandardClueNumberCalculator;
-import com.epeterso2.jabberwordy.util.StandardClueNumberResult;
+import com.epeterso2.jabberwordy.util.ClueDirection;
 import com.epeterso2.jabberwordy.util.Coordinate;
 import com.epeterso2.jabberwordy.util.CoordinateMap;
+import com.epeterso2.jabberwordy.util.GridSlotTable;
+import com.epeterso2.jabberwordy.util.GridSlotTableCache;
 import com.epeterso2.jabberwordy.util.GridCoordinateSet;
 
 /**
@@ -360,67 +362,19 @@ public class PUZPuzzle implements Puzzle, Cloneable {
 	 * A cell may be the start of a down entry if it is on the top row of the grid or if there is a block in the cell above it.
 	 * There must not be a block in the cell below of it or it must not be on the bottom row of the grid.
 	 * Unchecked cells in the middle of a down entry cannot be individual across entries. 
+	 * <p>
+	 * The numbering is taken from the shared {@link GridSlotTableCache}, so puzzles built on the same grid template are
+	 * numbered only once.
 	 */
 	public void assignClueNumbers()
 	{
-		int cellNumber = 0;
+		GridSlotTable slots = getSlotTable();
 
-		// Walk through all cells
 		for ( Coordinate coord : getCoordinates() )
 		{
-			boolean numberable = false;
-
-			// If the cell is not a block, see if it needs to be numbered
-			if ( ! getCellStyles().get( coord ).isBlock() )
-			{
-				// Grab the other cells in the vicinity, including virtual ones that might be off the grid
-				PUZCellStyle styleUp = getStyle( coord.getX(), coord.getY() - 1 );
-				PUZCellStyle styleDown  = getStyle( coord.getX(), coord.getY() + 1 );
-				PUZCellStyle styleLeft = getStyle( coord.getX() - 1, coord.getY() );
-				PUZCellStyle styleRight = getStyle( coord.getX() + 1, coord.getY() );
-
-				// Compute the number of enterable directions
-				int playDirs = 0;
-				playDirs += styleUp.isBlock()    ? 0 : 1;
-				playDirs += styleDown.isBlock()  ? 0 : 1;
-				playDirs += styleLeft.isBlock()  ? 0 : 1;
-				playDirs += styleRight.isBlock() ? 0 : 1;
-				
-				// Can this be the start of an across entry?
-				if ( styleLeft.isBlock() && ! styleRight.isBlock() && ( ! styleUp.isBlock() || ! styleDown.isBlock() ) )
-				{
-					numberable = true;
-				}
-				
-				// Can this be the start of a down entry?
-				else if ( styleUp.isBlock() && ! styleDown.isBlock() && ( ! styleLeft.isBlock() || ! styleRight.isBlock() ) )
-				{
-					numberable = true;
-				}
-				
-				// Can this be the unchecked start of an entry?
-				else if ( playDirs == 1 && ( ! styleDown.isBlock() || ! styleRight.isBlock() ) )
-				{
-					numberable = true;
-				}
-			}
-			
-			// Set the cell number
-			getCellStyles().get( coord ).setNumber( numberable ? ++cellNumber : 0 );
+			getCellStyles().get( coord ).setNumber( slots.getCellNumber( slots.getCellIndex( coord.getX(), coord.getY() ) ) );
 		}
 	}
-	
-	private static PUZCellStyle blockCellStyle = new PUZCellStyle();
-	
-	static
-	{
-		blockCellStyle.setBlock( true );
-	}
-
-	private PUZCellStyle getStyle( int x, int y )
-	{
-		return getCellStyles().containsKey( x, y ) ? getCellStyles().get( x, y ) : blockCellStyle;
-	}
 
 	/**
 	 * Assigns clues to entries. This method assumes that the grid is already numbered appropriately - see the {@link #assignClueNumbers()} method.
@@ -431,32 +385,32 @@ public class PUZPuzzle implements Puzzle, Cloneable {
 	 */
 	public void assignClues( List<String> clues )
 	{
-		CoordinateMap<StandardClueNumberResult> result = new StandardClueNumberCalculator( width, height, buildBlockMap() ).getNumberedGrid();
-		
-		for ( Coordinate coord : result.keySet() )
-		{
-			if ( result.get( coord ).isStartOfAcrossClue() )
-			{
-				getAcrossClues().put( result.get( coord ).getNumber(), clues.remove( 0 ) );
-			}
+		GridSlotTable slots = getSlotTable();
 
-			if ( result.get( coord ).isStartOfDownClue() )
-			{
-				getDownClues().put( result.get( coord ).getNumber(), clues.remove( 0 ) );
-			}
+		for ( int slot : slots.getNumberOrder() )
+		{
+			Map<Integer, String> target = slots.getDirection( slot ) == ClueDirection.ACROSS ? getAcrossClues() : getDownClues();
+			target.put( slots.getNumber( slot ), clues.remove( 0 ) );
 		}
 	}
 
-	private CoordinateMap<Boolean> buildBlockMap()
+	/**
+	 * Returns the slot table of the grid from the shared cache. Cells missing from the grid are treated as blocks.
+	 */
+	private GridSlotTable getSlotTable()
 	{
-		CoordinateMap<Boolean> map = new CoordinateMap<Boolean>();
-		
+		boolean[] blocks = new boolean[ getNumberOfCells() ];
+		Arrays.fill( blocks, true );
+
 		for ( Coordinate coord : getCoordinates() )
 		{
-			map.put( coord, getCellStyles().get( coord ).isBlock() );
+			if ( coord.getX() >= 1 && coord.getX() <= width && coord.getY() >= 1 && coord.getY() <= height )
+			{
+				blocks[ ( coord.getY() - 1 ) * width + coord.getX() - 1 ] = getCellStyles().get( coord ).isBlock();
+			}
 		}
-		
-		return map;
+
+		return GridSlotTableCache.getDefault().get( width, height, blocks );
 	}
 
 	/**
@@ -550,9 +504,23 @@ public class PUZPuzzle implements Puzzle, Cloneable {
 		that.setNotes( getNotes() );
 		that.getAcrossClues().putAll( getAcrossClues() );
 		that.getDownClues().putAll( getDownClues() );
-		that.getSolutions().putAll( getSolutions() );
-		that.getPlayerState().putAll( getPlayerState() );
-		that.getCellStyles().putAll( getCellStyles() );
+		
+		// The cell styles, solutions and coordinate keys are mutable, so each is copied
+		for ( Map.Entry<Coordinate, PUZSolution> entry : getSolutions().entrySet() )
+		{
+			that.getSolutions().put( entry.getKey().clone(), entry.getValue() == null ? null : entry.getValue().clone() );
+		}
+		
+		for ( Map.Entry<Coordinate, String> entry : getPlayerState().entrySet() )
+		{
+			that.getPlayerState().put( entry.getKey().clone(), entry.getValue() );
+		}
+		
+		for ( Map.Entry<Coordinate, PUZCellStyle> entry : getCellStyles().entrySet() )
+		{
+			that.getCellStyles().put( entry.getKey().clone(), entry.getValue() == null ? null : entry.getValue().clone() );
+		}
+		
 		that.setDiagramless( isDiagramless() );
 		that.setElapsedSeconds( getElapsedSeconds() );
 		that.setTimerRunning( isTimerRunning() );
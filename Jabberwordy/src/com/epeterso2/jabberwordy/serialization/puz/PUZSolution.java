@@ -32,7 +32,7 @@ package com.epeterso2.jabberwordy.serialization.puz;
  * is encrypted, then only the single-letter answers are used in the unlock code verification.
  * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
  */
-public class PUZSolution {
+public class PUZSolution implements Cloneable {
 	
 	private char letter = 0;
 	
@@ -130,6 +130,44 @@ public class PUZSolution {
 		return single;
 	}
 	
+	/**
+	 * Computes the hashCode of this object
+	 */
+	@Override
+	public int hashCode()
+	{
+		return letter + ( rebus == null ? 0 : 31 * rebus.hashCode() );
+	}
+	
+	/**
+	 * Implements the equality operation for this object.
+	 */
+	@Override
+	public boolean equals( Object object )
+	{
+		if ( object instanceof PUZSolution )
+		{
+			PUZSolution that = (PUZSolution) object;
+			
+			return this.getLetter() == that.getLetter() &&
+				( this.getRebus() == null ? that.getRebus() == null : this.getRebus().equals( that.getRebus() ) );
+		}
+		
+		else
+		{
+			return false;
+		}
+	}
+	
+	/**
+	 * Creates and returns a copy of this object.
+	 */
+	@Override
+	public PUZSolution clone()
+	{
+		return new PUZSolution( getLetter(), getRebus() );
+	}
+	
 	/**
 	 * Returns a printable representation of the single-letter and rebus answers in "[letter:rebus]" format.
 	 */
@@ -966,6 +966,78 @@ public abstract class PUZUtil {
 		return timerRunning;
 	}
 
+	/**
+	 * Decode the data of an RTBL section, of the form " 0:ONE; 1:TWO;", into an array of rebus solutions indexed by
+	 * rebus key. A cell whose GRBS value is <i>n</i> has the solution at key <i>n</i> - 1.
+	 * @param rtbl The data of the RTBL section, or null
+	 * @return An array of 256 rebus solutions, with null for unused keys, or null if the data is null
+	 */
+	public static String[] decodeRebusTable( byte[] rtbl )
+	{
+		if ( rtbl == null )
+		{
+			return null;
+		}
+
+		String[] table = new String[ 256 ];
+		int start = 0;
+
+		for ( int i = 0; i <= rtbl.length; ++i )
+		{
+			if ( i == rtbl.length || rtbl[ i ] == ';' || rtbl[ i ] == 0 )
+			{
+				String[] entry = buildString( rtbl, start, i - start ).trim().split( ":" );
+
+				if ( entry.length == 2 )
+				{
+					int key = Integer.parseInt( entry[ 0 ].trim() );
+
+					if ( key >= 0 && key < table.length )
+					{
+						table[ key ] = entry[ 1 ];
+					}
+				}
+
+				start = i + 1;
+			}
+		}
+
+		return table;
+	}
+
+	/**
+	 * Decode the data of a RUSR section, a series of null-terminated strings, one per cell, into an array of the rebus
+	 * values entered by the player, indexed by cell in row-first order.
+	 * @param rusr The data of the RUSR section, or null
+	 * @param cells The number of cells in the grid
+	 * @return The rebus values, with null for cells that have none, or null if the data is null
+	 */
+	public static String[] decodeRebusState( byte[] rusr, int cells )
+	{
+		if ( rusr == null )
+		{
+			return null;
+		}
+
+		String[] state = new String[ cells ];
+
+		for ( int i = 0, start = 0, cell = 0; i < rusr.length && cell < cells; ++i )
+		{
+			if ( rusr[ i ] == 0 )
+			{
+				if ( i > start )
+				{
+					state[ cell ] = buildString( rusr, start, i - start );
+				}
+
+				start = i + 1;
+				++cell;
+			}
+		}
+
+		return state;
+	}
+
 	private static String buildString( byte[] image, int start, int length )
 	{
 		StringBuilder builder = new StringBuilder();
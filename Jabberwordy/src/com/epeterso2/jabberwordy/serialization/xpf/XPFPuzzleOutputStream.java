@@ -39,10 +39,10 @@ import org.jdom.JDOMException;
 import org.jdom.input.SAXBuilder;
 
 import com.epeterso2.jabberwordy.serialization.PuzzleOutputStream;
+import com.epeterso2.jabberwordy.util.ClueDirection;
 import com.epeterso2.jabberwordy.util.Coordinate;
-import com.epeterso2.jabberwordy.util.CoordinateMap;
-import com.epeterso2.jabberwordy.util.StandardClueNumberCalculator;
-import com.epeterso2.jabberwordy.util.StandardClueNumberResult;
+import com.epeterso2.jabberwordy.util.GridSlotTable;
+import com.epeterso2.jabberwordy.util.GridSlotTableCache;
 
 /**
  * Provides an {@link OutputStream} for deserializing an XPF image into an {@link XPFPuzzleCollection} object.
@@ -197,39 +197,25 @@ public class XPFPuzzleOutputStream extends PuzzleOutputStream<XPFPuzzleCollectio
 	
 	private List<XPFClue> buildLocatedClueList( XPFPuzzle puzzle, List<XPFClue> clueList )
 	{
-		CoordinateMap<Boolean> blocks = new CoordinateMap<Boolean>();
+		boolean[] blocks = new boolean[ puzzle.getCols() * puzzle.getRows() ];
 		
 		for ( Coordinate coord : puzzle.getCoordinates() )
 		{
 			if ( puzzle.getCellStyles().get( coord ).isBlock() )
 			{
-				blocks.put( coord, true );
+				blocks[ ( coord.getY() - 1 ) * puzzle.getCols() + coord.getX() - 1 ] = true;
 			}
 		}
 		
-		CoordinateMap<StandardClueNumberResult> results = new StandardClueNumberCalculator( puzzle.getCols(), puzzle.getRows(), blocks ).getNumberedGrid();
+		GridSlotTable slots = GridSlotTableCache.getDefault().get( puzzle.getCols(), puzzle.getRows(), blocks );
 		int clueIndex = 0;
 		
-		for ( Coordinate coord : puzzle.getCoordinates() )
+		for ( int slot : slots.getNumberOrder() )
 		{
-			if ( results.containsKey( coord ) && ( results.get( coord ).isStartOfAcrossClue() || results.get( coord ).isStartOfDownClue() ) )
-			{
-				if ( results.get( coord ).isStartOfAcrossClue() )
-				{
-					XPFClue clue = clueList.get( clueIndex++ );
-					clue.setCoordinate( coord );
-					clue.setNumber( Integer.valueOf( results.get( coord ).getNumber() ).toString() );
-					clue.setDirection( "Across" );
-				}
-
-				if ( results.get( coord ).isStartOfDownClue() )
-				{
-					XPFClue clue = clueList.get( clueIndex++ );
-					clue.setCoordinate( coord );
-					clue.setNumber( Integer.valueOf( results.get( coord ).getNumber() ).toString() );
-					clue.setDirection( "Down" );
-				}
-			}
+			XPFClue clue = clueList.get( clueIndex++ );
+			clue.setCoordinate( slots.getCoordinate( slots.getStart( slot ) ) );
+			clue.setNumber( Integer.valueOf( slots.getNumber( slot ) ).toString() );
+			clue.setDirection( slots.getDirection( slot ) == ClueDirection.ACROSS ? "Across" : "Down" );
 		}
 
 		return clueList;
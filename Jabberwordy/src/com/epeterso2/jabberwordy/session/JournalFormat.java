@@ -0,0 +1,335 @@
+/**
+ * Copyright (c) 2010 Eric Peterson
+ * For contact information, visit http://www.epeterso2.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.epeterso2.jabberwordy.session;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import com.epeterso2.jabberwordy.model.PuzzleModel;
+import com.epeterso2.jabberwordy.util.VarIntUtil;
+
+/**
+ * The binary layout of session journals and their compaction snapshots.
+ * <p>
+ * A journal starts with the four bytes "JBJ1" and continues with frames, one per group commit. A frame is a
+ * big-endian <tt>int</tt> payload length, a big-endian <tt>int</tt> CRC-32 of the payload, and the payload: the
+ * sequence number of its first move, the timestamp of its first move and the number of moves, followed by the moves.
+ * A move is the signed difference between its timestamp and that of the previous move, a type byte, the signed cell
+ * index and, for fill and rebus moves, the UTF-8 length and bytes of the value. All numbers other than the frame header
+ * are variable-length integers written by {@link VarIntUtil}, so a typical move takes five or six bytes.
+ * <p>
+ * A snapshot starts with the four bytes "JBS1" and holds the sequence number of the first move it does not include,
+ * the timestamp of the last move it includes, the cell count, and for each cell its player flags and its value.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+abstract class JournalFormat {
+	
+	static final byte[] JOURNAL_MAGIC = { 'J', 'B', 'J', '1' };
+	
+	static final byte[] SNAPSHOT_MAGIC = { 'J', 'B', 'S', '1' };
+	
+	static final int FRAME_HEADER_LENGTH = 8;
+	
+	/**
+	 * Encodes a group of consecutive moves as one frame
+	 */
+	static ByteBuffer encodeFrame( List<JournalMove> moves ) throws IOException
+	{
+		ByteArrayOutputStream payload = new ByteArrayOutputStream( 8 * moves.size() + 16 );
+		long previous = moves.get( 0 ).getTimestamp();
+		
+		VarIntUtil.writeUnsigned( payload, moves.get( 0 ).getSequence() );
+		VarIntUtil.writeSigned( payload, previous );
+		VarIntUtil.writeUnsigned( payload, moves.size() );
+		
+		for ( JournalMove move : moves )
+		{
+			VarIntUtil.writeSigned( payload, move.getTimestamp() - previous );
+			payload.write( move.getType().ordinal() );
+			VarIntUtil.writeSigned( payload, move.getCell() );
+			previous = move.getTimestamp();
+			
+			if ( move.getType() == JournalMove.Type.FILL || move.getType() == JournalMove.Type.REBUS )
+			{
+				writeString( payload, move.getValue() );
+			}
+		}
+		
+		CRC32 crc = new CRC32();
+		crc.update( payload.toByteArray() );
+		
+		ByteBuffer frame = ByteBuffer.allocate( FRAME_HEADER_LENGTH + payload.size() );
+		frame.putInt( payload.size() ).putInt( (int) crc.getValue() ).put( payload.toByteArray() );
+		frame.flip();
+		
+		return frame;
+	}
+	
+	/**
+	 * Reads the frames of a journal, stopping at the end of the file or at the first frame that is incomplete or
+	 * damaged, such as one torn by a crash
+	 * @param file The journal, positioned anywhere
+	 * @param moves The list that receives the moves, or <tt>null</tt>
+	 * @return The offset just past the last whole frame, and the sequence number following its last move
+	 */
+	static long[] readFrames( RandomAccessFile file, List<JournalMove> moves ) throws IOException
+	{
+		byte[] image = new byte[ (int) file.length() ];
+		file.seek( 0 );
+		file.readFully( image );
+		
+		if ( image.length < JOURNAL_MAGIC.length || ! Arrays.equals( JOURNAL_MAGIC, Arrays.copyOf( image, JOURNAL_MAGIC.length ) ) )
+		{
+			throw new IOException( "Not a session journal" );
+		}
+		
+		ByteBuffer buffer = ByteBuffer.wrap( image );
+		long end = JOURNAL_MAGIC.length;
+		long next = 0;
+		buffer.position( (int) end );
+		
+		while ( buffer.remaining() >= FRAME_HEADER_LENGTH )
+		{
+			int length = buffer.getInt();
+			int checksum = buffer.getInt();
+			
+			if ( length < 0 || length > buffer.remaining() )
+			{
+				break;
+			}
+			
+			CRC32 crc = new CRC32();
+			crc.update( image, buffer.position(), length );
+			
+			if ( (int) crc.getValue() != checksum )
+			{
+				break;
+			}
+			
+			ByteBuffer payload = ByteBuffer.wrap( image, buffer.position(), length ).slice();
+			buffer.position( buffer.position() + length );
+			
+			try
+			{
+				next = decodeFrame( payload, moves );
+			}
+			
+			catch ( BufferUnderflowException e )
+			{
+				throw new IOException( "Malformed journal frame at offset " + end );
+			}
+			
+			end = buffer.position();
+		}
+		
+		return new long[] { end, next };
+	}
+	
+	private static long decodeFrame( ByteBuffer payload, List<JournalMove> moves ) throws IOException
+	{
+		long sequence = VarIntUtil.getUnsigned( payload );
+		long timestamp = VarIntUtil.getSigned( payload );
+		long count = VarIntUtil.getUnsigned( payload );
+		JournalMove.Type[] types = JournalMove.Type.values();
+		
+		for ( long i = 0; i < count; ++i, ++sequence )
+		{
+			timestamp += VarIntUtil.getSigned( payload );
+			int code = payload.get();
+			int cell = (int) VarIntUtil.getSigned( payload );
+			
+			if ( code < 0 || code >= types.length )
+			{
+				throw new IOException( "Unknown journal move type " + code );
+			}
+			
+			String value = types[ code ] == JournalMove.Type.FILL || types[ code ] == JournalMove.Type.REBUS ? getString( payload ) : null;
+			
+			if ( moves != null )
+			{
+				JournalMove move = new JournalMove( types[ code ], timestamp, cell, value );
+				move.setSequence( sequence );
+				moves.add( move );
+			}
+		}
+		
+		return sequence;
+	}
+	
+	/**
+	 * Writes a snapshot of the player state of a model. The snapshot is written to a temporary file, forced to disk,
+	 * and renamed over the previous snapshot, so a crash leaves either the old snapshot or the new one.
+	 */
+	static void writeSnapshot( File file, PuzzleModel model, long nextSequence, long timestamp ) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream( 4 * model.getCellCount() + 32 );
+		out.write( SNAPSHOT_MAGIC );
+		VarIntUtil.writeUnsigned( out, nextSequence );
+		VarIntUtil.writeSigned( out, timestamp );
+		VarIntUtil.writeUnsigned( out, model.getCellCount() );
+		
+		for ( int cell = 0; cell < model.getCellCount(); ++cell )
+		{
+			out.write( model.getFlags( cell ) & PuzzleModel.PLAYER_FLAGS );
+			writeString( out, model.getPlayerState( cell ) );
+		}
+		
+		File temp = new File( file.getPath() + ".tmp" );
+		FileOutputStream stream = new FileOutputStream( temp );
+		
+		try
+		{
+			stream.write( out.toByteArray() );
+			stream.getFD().sync();
+		}
+		
+		finally
+		{
+			stream.close();
+		}
+		
+		if ( ! temp.renameTo( file ) && ! ( file.delete() && temp.renameTo( file ) ) )
+		{
+			throw new IOException( "Could not replace snapshot " + file );
+		}
+	}
+	
+	/**
+	 * Reads a snapshot
+	 * @return The snapshot, or <tt>null</tt> if the file does not exist
+	 */
+	static JournalSnapshot readSnapshot( File file ) throws IOException
+	{
+		if ( ! file.exists() )
+		{
+			return null;
+		}
+		
+		RandomAccessFile in = new RandomAccessFile( file, "r" );
+		byte[] image = null;
+		
+		try
+		{
+			image = new byte[ (int) in.length() ];
+			in.readFully( image );
+		}
+		
+		finally
+		{
+			in.close();
+		}
+		
+		if ( image.length < SNAPSHOT_MAGIC.length || ! Arrays.equals( SNAPSHOT_MAGIC, Arrays.copyOf( image, SNAPSHOT_MAGIC.length ) ) )
+		{
+			throw new IOException( "Not a session journal snapshot" );
+		}
+		
+		try
+		{
+			ByteBuffer buffer = ByteBuffer.wrap( image );
+			buffer.position( SNAPSHOT_MAGIC.length );
+			
+			long nextSequence = VarIntUtil.getUnsigned( buffer );
+			long timestamp = VarIntUtil.getSigned( buffer );
+			int cellCount = (int) VarIntUtil.getUnsigned( buffer );
+			byte[] flags = new byte[ cellCount ];
+			String[] values = new String[ cellCount ];
+			
+			for ( int cell = 0; cell < cellCount; ++cell )
+			{
+				flags[ cell ] = buffer.get();
+				values[ cell ] = getString( buffer );
+			}
+			
+			return new JournalSnapshot( nextSequence, timestamp, values, flags );
+		}
+		
+		catch ( BufferUnderflowException e )
+		{
+			throw new IOException( "Truncated session journal snapshot " + file );
+		}
+	}
+	
+	private static void writeString( ByteArrayOutputStream out, String value ) throws IOException
+	{
+		byte[] bytes = value == null ? new byte[ 0 ] : value.getBytes( "UTF-8" );
+		VarIntUtil.writeUnsigned( out, bytes.length );
+		out.write( bytes );
+	}
+	
+	private static String getString( ByteBuffer buffer ) throws IOException
+	{
+		byte[] bytes = new byte[ (int) VarIntUtil.getUnsigned( buffer ) ];
+		buffer.get( bytes );
+		return new String( bytes, "UTF-8" );
+	}
+	
+	/**
+	 * The contents of a snapshot file
+	 */
+	static class JournalSnapshot
+	{
+		long nextSequence = 0;
+		
+		long timestamp = 0;
+		
+		String[] values = null;
+		
+		byte[] flags = null;
+		
+		JournalSnapshot( long nextSequence, long timestamp, String[] values, byte[] flags )
+		{
+			this.nextSequence = nextSequence;
+			this.timestamp = timestamp;
+			this.values = values;
+			this.flags = flags;
+		}
+		
+		/**
+		 * Loads the player state of the snapshot into a model of the same grid
+		 */
+		void apply( PuzzleModel model )
+		{
+			if ( model.getCellCount() != values.length )
+			{
+				throw new IllegalArgumentException( "Snapshot has " + values.length + " cells; model has " + model.getCellCount() );
+			}
+			
+			for ( int cell = 0; cell < values.length; ++cell )
+			{
+				model.setPlayerState( cell, values[ cell ] );
+				model.setFlags( cell, ( model.getFlags( cell ) & ~PuzzleModel.PLAYER_FLAGS ) | ( flags[ cell ] & PuzzleModel.PLAYER_FLAGS ) );
+			}
+		}
+	}
+
+}
@@ -0,0 +1,205 @@
+/**
+ * Copyright (c) 2010 Eric Peterson
+ * For contact information, visit http://www.epeterso2.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.epeterso2.jabberwordy.session;
+
+import com.epeterso2.jabberwordy.model.PuzzleModel;
+
+/**
+ * One timestamped move of a solving session, as recorded in a {@link SessionJournal}.
+ * <p>
+ * A move applies to one cell, or to every cell when its cell is {@link #ALL_CELLS} (for example "check puzzle" or
+ * "reveal puzzle"). Fill and rebus moves carry the value entered. Moves are immutable once appended to a journal.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+public class JournalMove {
+	
+	/**
+	 * The kinds of move. The ordinal of each type is its code in the journal, so new types must be added at the end.
+	 */
+	public enum Type
+	{
+		/**
+		 * A single letter was entered into a cell
+		 */
+		FILL,
+		
+		/**
+		 * A cell was cleared
+		 */
+		ERASE,
+		
+		/**
+		 * A cell, or every cell, was checked against the solution
+		 */
+		CHECK,
+		
+		/**
+		 * The solution of a cell, or of every cell, was revealed
+		 */
+		REVEAL,
+		
+		/**
+		 * A multiple-letter value was entered into a cell
+		 */
+		REBUS
+	}
+	
+	/**
+	 * The cell of a move that applies to the whole grid
+	 */
+	public static final int ALL_CELLS = -1;
+	
+	private long sequence = -1;
+	
+	private long timestamp = 0;
+	
+	private Type type = null;
+	
+	private int cell = 0;
+	
+	private String value = null;
+	
+	/**
+	 * Creates a move
+	 * @param type The kind of move
+	 * @param timestamp The time of the move, in milliseconds since the epoch
+	 * @param cell The cell index, or {@link #ALL_CELLS}
+	 * @param value The value entered by a fill or rebus move, otherwise <tt>null</tt>
+	 */
+	public JournalMove( Type type, long timestamp, int cell, String value )
+	{
+		this.type = type;
+		this.timestamp = timestamp;
+		this.cell = cell;
+		this.value = value;
+	}
+	
+	/**
+	 * Creates a fill move, or a rebus move if the value has more than one character
+	 * @param timestamp The time of the move
+	 * @param cell The cell index
+	 * @param value The value entered
+	 * @return The move
+	 */
+	public static JournalMove fill( long timestamp, int cell, String value )
+	{
+		return value == null || value.length() == 0 ? erase( timestamp, cell ) :
+			new JournalMove( value.length() > 1 ? Type.REBUS : Type.FILL, timestamp, cell, value );
+	}
+	
+	public static JournalMove erase( long timestamp, int cell )
+	{
+		return new JournalMove( Type.ERASE, timestamp, cell, null );
+	}
+	
+	public static JournalMove check( long timestamp, int cell )
+	{
+		return new JournalMove( Type.CHECK, timestamp, cell, null );
+	}
+	
+	public static JournalMove reveal( long timestamp, int cell )
+	{
+		return new JournalMove( Type.REVEAL, timestamp, cell, null );
+	}
+	
+	/**
+	 * Applies the move to a model
+	 * @param model The model
+	 */
+	public void apply( PuzzleModel model )
+	{
+		switch ( type )
+		{
+			case FILL:
+			case REBUS:
+				model.setPlayerState( cell, value );
+				break;
+				
+			case ERASE:
+				model.setPlayerState( cell, null );
+				break;
+				
+			case CHECK:
+				if ( cell == ALL_CELLS )
+				{
+					model.checkAll();
+				}
+				
+				else
+				{
+					model.checkCell( cell );
+				}
+				
+				break;
+				
+			case REVEAL:
+				if ( cell == ALL_CELLS )
+				{
+					model.revealAll();
+				}
+				
+				else
+				{
+					model.revealCell( cell );
+				}
+				
+				break;
+		}
+	}
+	
+	/**
+	 * Returns the position of the move in its journal
+	 * @return The sequence number, or -1 if the move has not been appended
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+	
+	void setSequence( long sequence ) {
+		this.sequence = sequence;
+	}
+
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public int getCell() {
+		return cell;
+	}
+
+	public String getValue() {
+		return value;
+	}
+	
+	public String toString()
+	{
+		return new StringBuilder().append( '#' ).append( sequence ).append( ' ' ).append( timestamp ).append( ' ' ).append( type )
+			.append( ' ' ).append( cell ).append( value == null ? "" : " " + value ).toString();
+	}
+
+}
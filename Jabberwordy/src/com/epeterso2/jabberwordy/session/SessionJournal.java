@@ -0,0 +1,414 @@
+/**
+ * Copyright (c) 2010 Eric Peterson
+ * For contact information, visit http://www.epeterso2.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.epeterso2.jabberwordy.session;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.epeterso2.jabberwordy.model.PuzzleModel;
+
+/**
+ * An append-only journal of the moves of one solving session.
+ * <p>
+ * {@link #append(JournalMove)} queues a move and returns at once. A commit thread gathers the queued moves, waiting up
+ * to the commit interval for more to arrive, writes them as one checksummed frame and forces the file to disk, so many
+ * moves share one <tt>fsync</tt>. {@link #sync()} waits until every move appended so far is durable. A frame torn by a
+ * crash is detected by its checksum and discarded when the journal is reopened.
+ * <p>
+ * {@link #compact(PuzzleModel)} writes the player state of the session's model to a snapshot file beside the journal
+ * and empties the journal, so a long session does not replay from its first move. A {@link SessionJournalReader}
+ * rebuilds the state of the session at any time since the last compaction.
+ * <p>
+ * The layout of the files is described in {@link JournalFormat}.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+public class SessionJournal implements Closeable {
+	
+	/**
+	 * The default longest time, in milliseconds, that a move waits for others to share its commit
+	 */
+	public static final long DEFAULT_COMMIT_INTERVAL = 50;
+	
+	/**
+	 * The default number of queued moves that starts a commit at once
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 256;
+	
+	private File snapshotFile = null;
+	
+	private RandomAccessFile file = null;
+	
+	private FileChannel channel = null;
+	
+	private long commitInterval = 0;
+	
+	private int batchSize = 0;
+	
+	private long end = 0;
+	
+	private long nextSequence = 0;
+	
+	private long durableSequence = 0;
+	
+	private long lastTimestamp = Long.MIN_VALUE;
+	
+	private List<JournalMove> pending = new ArrayList<JournalMove>();
+	
+	private boolean compacting = false;
+	
+	private boolean closed = false;
+	
+	private IOException failure = null;
+	
+	private Thread committer = null;
+	
+	/**
+	 * Opens or creates a journal with the default commit interval and batch size
+	 * @param journalFile The journal file
+	 * @throws IOException The journal could not be opened
+	 */
+	public SessionJournal( File journalFile ) throws IOException
+	{
+		this( journalFile, DEFAULT_COMMIT_INTERVAL, DEFAULT_BATCH_SIZE );
+	}
+	
+	/**
+	 * Opens or creates a journal
+	 * @param journalFile The journal file
+	 * @param commitInterval The longest time, in milliseconds, that a move waits for others to share its commit
+	 * @param batchSize The number of queued moves that starts a commit at once
+	 * @throws IOException The journal could not be opened
+	 */
+	public SessionJournal( File journalFile, long commitInterval, int batchSize ) throws IOException
+	{
+		this.snapshotFile = getSnapshotFile( journalFile );
+		this.commitInterval = commitInterval;
+		this.batchSize = batchSize;
+		this.file = new RandomAccessFile( journalFile, "rw" );
+		this.channel = file.getChannel();
+		
+		try
+		{
+			if ( file.length() == 0 )
+			{
+				file.write( JournalFormat.JOURNAL_MAGIC );
+				channel.force( true );
+			}
+			
+			List<JournalMove> moves = new ArrayList<JournalMove>();
+			long[] scan = JournalFormat.readFrames( file, moves );
+			end = scan[ 0 ];
+			nextSequence = scan[ 1 ];
+			
+			for ( JournalMove move : moves )
+			{
+				lastTimestamp = Math.max( lastTimestamp, move.getTimestamp() );
+			}
+			
+			// Discard a frame torn by a crash
+			if ( end < file.length() )
+			{
+				channel.truncate( end );
+				channel.force( true );
+			}
+			
+			JournalFormat.JournalSnapshot snapshot = JournalFormat.readSnapshot( snapshotFile );
+			
+			if ( snapshot != null )
+			{
+				nextSequence = Math.max( nextSequence, snapshot.nextSequence );
+				lastTimestamp = Math.max( lastTimestamp, snapshot.timestamp );
+			}
+		}
+		
+		catch ( IOException e )
+		{
+			file.close();
+			throw e;
+		}
+		
+		durableSequence = nextSequence;
+		
+		committer = new Thread( new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				commitLoop();
+			}
+		}, "SessionJournal " + journalFile.getName() );
+		
+		committer.setDaemon( true );
+		committer.start();
+	}
+	
+	/**
+	 * Returns the snapshot file that accompanies a journal
+	 * @param journalFile The journal file
+	 * @return The snapshot file
+	 */
+	public static File getSnapshotFile( File journalFile )
+	{
+		return new File( journalFile.getPath() + ".snapshot" );
+	}
+	
+	/**
+	 * Queues a move for the next commit
+	 * @param move The move, which is given its sequence number
+	 * @return The sequence number of the move
+	 * @throws IOException The journal is closed or a previous commit failed
+	 */
+	public synchronized long append( JournalMove move ) throws IOException
+	{
+		while ( compacting )
+		{
+			await();
+		}
+		
+		checkOpen();
+		move.setSequence( nextSequence++ );
+		lastTimestamp = Math.max( lastTimestamp, move.getTimestamp() );
+		pending.add( move );
+		
+		if ( pending.size() == 1 || pending.size() >= batchSize )
+		{
+			notifyAll();
+		}
+		
+		return move.getSequence();
+	}
+	
+	/**
+	 * Waits until every move appended so far has been forced to disk
+	 * @throws IOException A commit failed
+	 */
+	public synchronized void sync() throws IOException
+	{
+		awaitDurable( nextSequence );
+	}
+	
+	/**
+	 * Returns the sequence number the next appended move will receive
+	 * @return The next sequence number
+	 */
+	public synchronized long getNextSequence()
+	{
+		return nextSequence;
+	}
+	
+	/**
+	 * Returns the number of bytes in the journal file, excluding queued moves
+	 * @return The journal size
+	 */
+	public synchronized long getSize()
+	{
+		return end;
+	}
+	
+	/**
+	 * Replaces the journal with a snapshot of the session. Appends wait until the compaction is complete.
+	 * @param model The session's model, which must reflect every move appended so far
+	 * @throws IOException The snapshot could not be written or the journal could not be emptied
+	 */
+	public synchronized void compact( PuzzleModel model ) throws IOException
+	{
+		while ( compacting )
+		{
+			await();
+		}
+		
+		compacting = true;
+		
+		try
+		{
+			awaitDurable( nextSequence );
+			
+			JournalFormat.writeSnapshot( snapshotFile, model, nextSequence, lastTimestamp );
+			channel.truncate( JournalFormat.JOURNAL_MAGIC.length );
+			channel.force( true );
+			end = JournalFormat.JOURNAL_MAGIC.length;
+		}
+		
+		finally
+		{
+			compacting = false;
+			notifyAll();
+		}
+	}
+	
+	/**
+	 * Commits the queued moves and closes the journal
+	 * @throws IOException The last commit failed or the file could not be closed
+	 */
+	public void close() throws IOException
+	{
+		synchronized ( this )
+		{
+			if ( closed )
+			{
+				return;
+			}
+			
+			closed = true;
+			notifyAll();
+		}
+		
+		try
+		{
+			committer.join();
+		}
+		
+		catch ( InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+		}
+		
+		file.close();
+		
+		synchronized ( this )
+		{
+			if ( failure != null )
+			{
+				throw failure;
+			}
+		}
+	}
+	
+	private void checkOpen() throws IOException
+	{
+		if ( failure != null )
+		{
+			throw new IOException( "Session journal commit failed", failure );
+		}
+		
+		else if ( closed )
+		{
+			throw new IOException( "Session journal is closed" );
+		}
+	}
+	
+	private void awaitDurable( long sequence ) throws IOException
+	{
+		while ( durableSequence < sequence )
+		{
+			checkOpen();
+			await();
+		}
+	}
+	
+	private void await() throws IOException
+	{
+		try
+		{
+			wait();
+		}
+		
+		catch ( InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException( "Interrupted while waiting for the session journal" );
+		}
+	}
+	
+	private void commitLoop()
+	{
+		while ( true )
+		{
+			List<JournalMove> batch = null;
+			long position = 0;
+			
+			synchronized ( this )
+			{
+				try
+				{
+					while ( pending.isEmpty() && ! closed )
+					{
+						wait();
+					}
+					
+					// Give other moves a chance to share the commit
+					long deadline = System.currentTimeMillis() + commitInterval;
+					
+					while ( pending.size() < batchSize && ! closed && ! compacting && System.currentTimeMillis() < deadline )
+					{
+						wait( Math.max( 1, deadline - System.currentTimeMillis() ) );
+					}
+				}
+				
+				catch ( InterruptedException e )
+				{
+					// Commit what has been queued
+				}
+				
+				if ( pending.isEmpty() )
+				{
+					return;
+				}
+				
+				batch = pending;
+				pending = new ArrayList<JournalMove>();
+				position = end;
+			}
+			
+			try
+			{
+				ByteBuffer frame = JournalFormat.encodeFrame( batch );
+				int length = frame.remaining();
+				
+				while ( frame.hasRemaining() )
+				{
+					channel.write( frame, position + length - frame.remaining() );
+				}
+				
+				channel.force( false );
+				
+				synchronized ( this )
+				{
+					end = position + length;
+					durableSequence = batch.get( batch.size() - 1 ).getSequence() + 1;
+					notifyAll();
+				}
+			}
+			
+			catch ( IOException e )
+			{
+				synchronized ( this )
+				{
+					failure = e;
+					notifyAll();
+				}
+				
+				return;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright (c) 2010 Eric Peterson
+ * For contact information, visit http://www.epeterso2.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.epeterso2.jabberwordy.session;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.epeterso2.jabberwordy.model.PuzzleModel;
+
+/**
+ * Replays a {@link SessionJournal} to rebuild the state of a solving session at any point in time since its last
+ * compaction.
+ * <p>
+ * The reader loads the journal's snapshot, if it has one, and the moves recorded after it. It may be used while the
+ * journal is open, in which case it sees the moves committed before it was created.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+public class SessionJournalReader {
+	
+	private JournalFormat.JournalSnapshot snapshot = null;
+	
+	private List<JournalMove> moves = new ArrayList<JournalMove>();
+	
+	/**
+	 * Reads a journal and its snapshot
+	 * @param journalFile The journal file
+	 * @throws IOException The journal or snapshot could not be read
+	 */
+	public SessionJournalReader( File journalFile ) throws IOException
+	{
+		snapshot = JournalFormat.readSnapshot( SessionJournal.getSnapshotFile( journalFile ) );
+		
+		if ( journalFile.exists() )
+		{
+			RandomAccessFile file = new RandomAccessFile( journalFile, "r" );
+			
+			try
+			{
+				JournalFormat.readFrames( file, moves );
+			}
+			
+			finally
+			{
+				file.close();
+			}
+		}
+		
+		// Moves already included in the snapshot, left by a crash during compaction, are skipped
+		int skip = 0;
+		
+		while ( snapshot != null && skip < moves.size() && moves.get( skip ).getSequence() < snapshot.nextSequence )
+		{
+			++skip;
+		}
+		
+		moves.subList( 0, skip ).clear();
+	}
+	
+	/**
+	 * Determines if the journal has been compacted into a snapshot
+	 * @return <tt>true</tt> if there is a snapshot
+	 */
+	public boolean hasSnapshot()
+	{
+		return snapshot != null;
+	}
+	
+	/**
+	 * Returns the earliest time the session can be rebuilt at
+	 * @return The time of the snapshot, or {@link Long#MIN_VALUE} if the journal has not been compacted
+	 */
+	public long getEarliestTimestamp()
+	{
+		return snapshot == null ? Long.MIN_VALUE : snapshot.timestamp;
+	}
+	
+	/**
+	 * Returns the moves recorded after the snapshot, in the order they were appended
+	 * @return An unmodifiable list of the moves
+	 */
+	public List<JournalMove> getMoves()
+	{
+		return Collections.unmodifiableList( moves );
+	}
+	
+	/**
+	 * Rebuilds the state of the session at a point in time. The listeners of the model receive one event.
+	 * @param model A model of the session's puzzle in the state in which the session began
+	 * @param timestamp The time, in milliseconds since the epoch; moves made at or before it are applied
+	 * @return The number of moves applied after the snapshot
+	 * @throws IllegalArgumentException The time is before the snapshot
+	 */
+	public int replay( PuzzleModel model, long timestamp )
+	{
+		if ( timestamp < getEarliestTimestamp() )
+		{
+			throw new IllegalArgumentException( "The journal was compacted after " + timestamp );
+		}
+		
+		int applied = 0;
+		model.beginUpdate();
+		
+		try
+		{
+			if ( snapshot != null )
+			{
+				snapshot.apply( model );
+			}
+			
+			for ( JournalMove move : moves )
+			{
+				if ( move.getTimestamp() <= timestamp )
+				{
+					move.apply( model );
+					++applied;
+				}
+			}
+		}
+		
+		finally
+		{
+			model.endUpdate();
+		}
+		
+		return applied;
+	}
+	
+	/**
+	 * Rebuilds the latest state of the session
+	 * @param model A model of the session's puzzle in the state in which the session began
+	 * @return The number of moves applied after the snapshot
+	 */
+	public int replay( PuzzleModel model )
+	{
+		return replay( model, Long.MAX_VALUE );
+	}
+
+}
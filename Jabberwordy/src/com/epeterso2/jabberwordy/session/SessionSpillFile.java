@@ -0,0 +1,220 @@
+/**
+ * Copyright (c) 2010 Eric Peterson
+ * For contact information, visit http://www.epeterso2.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.epeterso2.jabberwordy.session;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A memory-mapped scratch file holding the state of idle sessions spilled by a {@link SessionStore}.
+ * <p>
+ * The file grows in mapped regions of {@link #REGION_SIZE} bytes. Each record occupies a slot whose size is a multiple
+ * of {@link #SLOT_ALIGNMENT} bytes and begins with the slot size and the record length. A freed slot is reused by the
+ * next record of the same slot size, and sessions of one puzzle all need about the same size, so the file stays close
+ * to the size of the spilled sessions without compaction.
+ * <p>
+ * The contents of the file are meaningful only while it is open; it is emptied when opened. Its methods are
+ * synchronized.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+public class SessionSpillFile implements Closeable {
+	
+	/**
+	 * The size of each mapped region of the file
+	 */
+	public static final int REGION_SIZE = 1 << 24;
+	
+	/**
+	 * The granularity of slot sizes
+	 */
+	public static final int SLOT_ALIGNMENT = 64;
+	
+	private static final int HEADER_LENGTH = 8;
+	
+	private RandomAccessFile file = null;
+	
+	private FileChannel channel = null;
+	
+	private List<MappedByteBuffer> regions = new ArrayList<MappedByteBuffer>();
+	
+	private Map<Integer, ArrayDeque<Long>> freeSlots = new HashMap<Integer, ArrayDeque<Long>>();
+	
+	private long end = 0;
+	
+	private long usedBytes = 0;
+	
+	/**
+	 * Creates or empties a spill file
+	 * @param spillFile The file
+	 * @throws IOException The file could not be opened
+	 */
+	public SessionSpillFile( File spillFile ) throws IOException
+	{
+		this.file = new RandomAccessFile( spillFile, "rw" );
+		this.channel = file.getChannel();
+		
+		try
+		{
+			file.setLength( 0 );
+		}
+		
+		catch ( IOException e )
+		{
+			file.close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Writes a record to a free slot
+	 * @param data The buffer holding the record
+	 * @param offset The offset of the record in the buffer
+	 * @param length The length of the record
+	 * @return The position of the slot, for {@link #read(long)} and {@link #free(long)}
+	 * @throws IOException The file could not be extended
+	 */
+	public synchronized long write( byte[] data, int offset, int length ) throws IOException
+	{
+		int size = ( length + HEADER_LENGTH + SLOT_ALIGNMENT - 1 ) & ~( SLOT_ALIGNMENT - 1 );
+		
+		if ( size > REGION_SIZE )
+		{
+			throw new IllegalArgumentException( "Record too large to spill: " + length + " bytes" );
+		}
+		
+		ArrayDeque<Long> free = freeSlots.get( size );
+		long position = free == null || free.isEmpty() ? allocate( size ) : free.poll();
+		
+		ByteBuffer region = getRegion( position );
+		region.putInt( size );
+		region.putInt( length );
+		region.put( data, offset, length );
+		
+		usedBytes += size;
+		return position;
+	}
+	
+	/**
+	 * Reads the record in a slot
+	 * @param position The position of the slot
+	 * @return The record
+	 */
+	public synchronized byte[] read( long position )
+	{
+		ByteBuffer region = getRegion( position );
+		region.getInt();
+		byte[] data = new byte[ region.getInt() ];
+		region.get( data );
+		return data;
+	}
+	
+	/**
+	 * Releases a slot for reuse
+	 * @param position The position of the slot
+	 */
+	public synchronized void free( long position )
+	{
+		int size = getRegion( position ).getInt();
+		ArrayDeque<Long> free = freeSlots.get( size );
+		
+		if ( free == null )
+		{
+			free = new ArrayDeque<Long>();
+			freeSlots.put( size, free );
+		}
+		
+		free.push( position );
+		usedBytes -= size;
+	}
+	
+	/**
+	 * Returns the number of bytes mapped by the file
+	 * @return The size of the file
+	 */
+	public synchronized long getFileSize()
+	{
+		return (long) regions.size() * REGION_SIZE;
+	}
+	
+	/**
+	 * Returns the number of bytes in slots holding records
+	 * @return The bytes in use
+	 */
+	public synchronized long getUsedBytes()
+	{
+		return usedBytes;
+	}
+	
+	/**
+	 * Closes the file. Its contents are no longer meaningful.
+	 */
+	@Override
+	public synchronized void close() throws IOException
+	{
+		regions.clear();
+		freeSlots.clear();
+		file.close();
+	}
+	
+	/**
+	 * Allocates a new slot at the end of the file; slots never cross a region boundary
+	 */
+	private long allocate( int size ) throws IOException
+	{
+		if ( end % REGION_SIZE + size > REGION_SIZE )
+		{
+			end = ( end / REGION_SIZE + 1 ) * REGION_SIZE;
+		}
+		
+		while ( end + size > getFileSize() )
+		{
+			regions.add( channel.map( FileChannel.MapMode.READ_WRITE, getFileSize(), REGION_SIZE ) );
+		}
+		
+		long position = end;
+		end += size;
+		return position;
+	}
+	
+	/**
+	 * Returns a view of the region holding a slot, positioned at the slot
+	 */
+	private ByteBuffer getRegion( long position )
+	{
+		ByteBuffer region = regions.get( (int) ( position / REGION_SIZE ) ).duplicate();
+		region.position( (int) ( position % REGION_SIZE ) );
+		return region;
+	}
+
+}
@@ -0,0 +1,455 @@
+/**
+ * Copyright (c) 2010 Eric Peterson
+ * For contact information, visit http://www.epeterso2.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.epeterso2.jabberwordy.session;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.epeterso2.jabberwordy.model.PuzzleModel;
+import com.epeterso2.jabberwordy.model.PuzzleModelSnapshot;
+
+/**
+ * The solving sessions hosted by a server, for many solvers and many puzzles at once.
+ * <p>
+ * Each puzzle is added once and kept as an immutable {@link PuzzleModelSnapshot}, which every session of the puzzle
+ * shares. A {@link SolvingSession} adds only a byte of player state and a byte of flags per cell and its timer, so a
+ * 15x15 session costs about 660 bytes including its entry in the store. Sessions are kept in a
+ * {@link ConcurrentHashMap} by session identifier and may be created, found and removed from any thread.
+ * <p>
+ * A store created with a {@link SessionSpillFile} and a heap budget keeps only its working set in memory. When the
+ * state of the resident sessions exceeds the budget, a clock passes over them in the order they became resident: a
+ * session used since the clock last passed it is given a second chance, and one that was not is spilled to the file,
+ * leaving only its identifier and timer in memory. The next use of a spilled session reads it back. The store counts
+ * hits and misses, spills, and the time taken to spill and reload.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+public class SessionStore {
+	
+	// The estimated heap used by one entry of a concurrent hash map, including its slot in the table
+	private static final int ENTRY_SIZE = 32 + 8;
+	
+	private ConcurrentMap<String, PuzzleModelSnapshot> puzzles = new ConcurrentHashMap<String, PuzzleModelSnapshot>();
+	
+	private ConcurrentMap<String, SolvingSession> sessions = new ConcurrentHashMap<String, SolvingSession>();
+	
+	private SessionSpillFile spillFile = null;
+	
+	private long heapBudget = Long.MAX_VALUE;
+	
+	private Queue<SolvingSession> clock = new ConcurrentLinkedQueue<SolvingSession>();
+	
+	private AtomicLong residentBytes = new AtomicLong();
+	
+	private AtomicInteger residentCount = new AtomicInteger();
+	
+	// Set when a session is read back under its own lock, where the store cannot spill
+	private AtomicBoolean trimPending = new AtomicBoolean();
+	
+	private AtomicLong hits = new AtomicLong();
+	
+	private AtomicLong misses = new AtomicLong();
+	
+	private AtomicLong spills = new AtomicLong();
+	
+	private AtomicLong spillFailures = new AtomicLong();
+	
+	private AtomicLong spillNanos = new AtomicLong();
+	
+	private AtomicLong reloadNanos = new AtomicLong();
+	
+	/**
+	 * Creates a store that keeps every session in memory
+	 */
+	public SessionStore()
+	{
+	}
+	
+	/**
+	 * Creates a store that spills idle sessions to disk
+	 * @param spillFile The file to spill to, which should not be shared with another store
+	 * @param heapBudget The most heap, in bytes, to spend on the state of resident sessions
+	 */
+	public SessionStore( SessionSpillFile spillFile, long heapBudget )
+	{
+		this.spillFile = spillFile;
+		this.heapBudget = heapBudget;
+	}
+	
+	/**
+	 * Adds a puzzle that sessions may be created for. Later changes to the model do not affect the store.
+	 * @param puzzleId The puzzle identifier
+	 * @param model The puzzle
+	 * @return The shared definition of the puzzle, which is the existing one if the puzzle was already added
+	 */
+	public PuzzleModelSnapshot addPuzzle( String puzzleId, PuzzleModel model )
+	{
+		PuzzleModelSnapshot definition = model.snapshot();
+		PuzzleModelSnapshot existing = puzzles.putIfAbsent( puzzleId, definition );
+		return existing == null ? definition : existing;
+	}
+	
+	public PuzzleModelSnapshot getPuzzle( String puzzleId )
+	{
+		return puzzles.get( puzzleId );
+	}
+	
+	/**
+	 * Removes a puzzle so that no more sessions can be created for it. Existing sessions keep their definition.
+	 * @param puzzleId The puzzle identifier
+	 * @return The definition that was removed, or <tt>null</tt> if there was none
+	 */
+	public PuzzleModelSnapshot removePuzzle( String puzzleId )
+	{
+		return puzzles.remove( puzzleId );
+	}
+	
+	/**
+	 * Creates an empty session for a puzzle
+	 * @param sessionId The session identifier
+	 * @param puzzleId The identifier of a puzzle added with {@link #addPuzzle(String, PuzzleModel)}
+	 * @return The new session
+	 * @throws IllegalArgumentException If the puzzle has not been added
+	 * @throws IllegalStateException If a session with the identifier already exists
+	 */
+	public SolvingSession createSession( String sessionId, String puzzleId )
+	{
+		PuzzleModelSnapshot definition = puzzles.get( puzzleId );
+		
+		if ( definition == null )
+		{
+			throw new IllegalArgumentException( "Unknown puzzle: " + puzzleId );
+		}
+		
+		SolvingSession session = new SolvingSession( sessionId, definition );
+		
+		if ( sessions.putIfAbsent( sessionId, session ) != null )
+		{
+			throw new IllegalStateException( "Session already exists: " + sessionId );
+		}
+		
+		if ( spillFile != null )
+		{
+			session.setStore( this );
+			residentBytes.addAndGet( session.charge() );
+			residentCount.incrementAndGet();
+			clock.add( session );
+			trim();
+		}
+		
+		return session;
+	}
+	
+	/**
+	 * Finds a session, reading it back if it was spilled
+	 * @param sessionId The session identifier
+	 * @return The session, or <tt>null</tt> if there is none
+	 */
+	public SolvingSession getSession( String sessionId )
+	{
+		SolvingSession session = sessions.get( sessionId );
+		
+		if ( session != null && spillFile != null )
+		{
+			if ( session.touch() )
+			{
+				hits.incrementAndGet();
+			}
+			
+			residentBytes.addAndGet( session.charge() );
+			trim();
+		}
+		
+		return session;
+	}
+	
+	/**
+	 * Removes a session from the store. A spilled session is read back first, so the session remains usable.
+	 * @param sessionId The session identifier
+	 * @return The session that was removed, or <tt>null</tt> if there was none
+	 */
+	public SolvingSession removeSession( String sessionId )
+	{
+		SolvingSession session = sessions.remove( sessionId );
+		
+		if ( session != null && spillFile != null )
+		{
+			synchronized ( session )
+			{
+				if ( session.isResident() )
+				{
+					residentBytes.addAndGet( -session.uncharge() );
+					residentCount.decrementAndGet();
+				}
+				
+				else
+				{
+					long slot = session.getSpillSlot();
+					session.readState( spillFile.read( slot ) );
+					spillFile.free( slot );
+				}
+				
+				session.setStore( null );
+			}
+		}
+		
+		return session;
+	}
+	
+	public int getSessionCount()
+	{
+		return sessions.size();
+	}
+	
+	/**
+	 * Returns a live, unmodifiable view of the sessions
+	 * @return The sessions
+	 */
+	public Collection<SolvingSession> getSessions()
+	{
+		return Collections.unmodifiableCollection( sessions.values() );
+	}
+	
+	/**
+	 * Estimates the heap used by all sessions, including their entries in the store but not the shared definitions
+	 * @return The estimated size in bytes
+	 */
+	public long getSessionBytes()
+	{
+		long size = 0;
+		
+		for ( SolvingSession session : sessions.values() )
+		{
+			size += session.estimateSize() + ENTRY_SIZE;
+		}
+		
+		return size;
+	}
+	
+	/**
+	 * Estimates the average heap used by one session, including its entry in the store
+	 * @return The estimated size in bytes, or zero if there are no sessions
+	 */
+	public long getBytesPerSession()
+	{
+		int count = 0;
+		long size = 0;
+		
+		for ( SolvingSession session : sessions.values() )
+		{
+			size += session.estimateSize() + ENTRY_SIZE;
+			++count;
+		}
+		
+		return count == 0 ? 0 : size / count;
+	}
+	
+	public long getHeapBudget() {
+		return heapBudget;
+	}
+	
+	/**
+	 * Returns the estimated heap used by the state of the resident sessions, which the store keeps within its budget
+	 * @return The resident size in bytes
+	 */
+	public long getResidentBytes()
+	{
+		return spillFile == null ? getSessionBytes() : residentBytes.get();
+	}
+	
+	/**
+	 * Returns the number of sessions whose state is in memory
+	 * @return The resident count
+	 */
+	public int getResidentCount()
+	{
+		return spillFile == null ? sessions.size() : residentCount.get();
+	}
+	
+	/**
+	 * Returns the number of uses of a session that found it in memory
+	 * @return The hit count
+	 */
+	public long getHitCount()
+	{
+		return hits.get();
+	}
+	
+	/**
+	 * Returns the number of uses of a session that read it back from the spill file
+	 * @return The miss count
+	 */
+	public long getMissCount()
+	{
+		return misses.get();
+	}
+	
+	/**
+	 * Returns the fraction of session uses that found the session in memory
+	 * @return The hit rate, or 1 if there have been no uses
+	 */
+	public double getHitRate()
+	{
+		long hits = this.hits.get();
+		long total = hits + misses.get();
+		return total == 0 ? 1 : (double) hits / total;
+	}
+	
+	public long getSpillCount()
+	{
+		return spills.get();
+	}
+	
+	/**
+	 * Returns the number of spills that failed because the spill file could not be written; the sessions stayed in memory
+	 * @return The failure count
+	 */
+	public long getSpillFailureCount()
+	{
+		return spillFailures.get();
+	}
+	
+	/**
+	 * Returns the average time taken to spill a session
+	 * @return The time in nanoseconds
+	 */
+	public long getAverageSpillNanos()
+	{
+		long count = spills.get();
+		return count == 0 ? 0 : spillNanos.get() / count;
+	}
+	
+	/**
+	 * Returns the average time taken to read back a spilled session
+	 * @return The time in nanoseconds
+	 */
+	public long getAverageReloadNanos()
+	{
+		long count = misses.get();
+		return count == 0 ? 0 : reloadNanos.get() / count;
+	}
+	
+	/**
+	 * Reads back the state of a spilled session. Called by the session, holding its lock.
+	 */
+	void reload( SolvingSession session )
+	{
+		long start = System.nanoTime();
+		long slot = session.getSpillSlot();
+		session.readState( spillFile.read( slot ) );
+		spillFile.free( slot );
+		reloadNanos.addAndGet( System.nanoTime() - start );
+		misses.incrementAndGet();
+		
+		residentBytes.addAndGet( session.charge() );
+		residentCount.incrementAndGet();
+		clock.add( session );
+		trimPending.set( true );
+	}
+	
+	/**
+	 * Spills sessions if a session has been read back since the last trim. A caller must not hold the lock of any
+	 * session.
+	 */
+	void trimIfPending()
+	{
+		if ( trimPending.get() )
+		{
+			trim();
+		}
+	}
+	
+	/**
+	 * Spills sessions until the resident sessions fit the heap budget. A caller must not hold the lock of any session.
+	 */
+	private void trim()
+	{
+		trimPending.set( false );
+		
+		for ( int passes = 2 * residentCount.get() + 1; passes > 0 && residentBytes.get() > heapBudget; --passes )
+		{
+			SolvingSession session = clock.poll();
+			
+			if ( session == null )
+			{
+				break;
+			}
+			
+			try
+			{
+				spill( session );
+			}
+			
+			catch ( IOException e )
+			{
+				spillFailures.incrementAndGet();
+				clock.add( session );
+				break;
+			}
+		}
+	}
+	
+	/**
+	 * Spills a session taken from the clock, unless it has been used since the clock last passed it
+	 */
+	private void spill( SolvingSession session ) throws IOException
+	{
+		synchronized ( session )
+		{
+			if ( session.getStore() != this || ! session.isResident() )
+			{
+				// Removed or already spilled; drop it from the clock
+				return;
+			}
+			
+			else if ( session.clearReferenced() )
+			{
+				clock.add( session );
+				return;
+			}
+			
+			long start = System.nanoTime();
+			byte[] state = session.writeState();
+			session.releaseState( spillFile.write( state, 0, state.length ) );
+			spillNanos.addAndGet( System.nanoTime() - start );
+			spills.incrementAndGet();
+			
+			residentBytes.addAndGet( session.charge() );
+			residentCount.decrementAndGet();
+		}
+	}
+	
+	public String toString()
+	{
+		return new StringBuilder().append( sessions.size() ).append( " sessions of " ).append( puzzles.size() ).append( " puzzles, " ).append( getBytesPerSession() ).append( " bytes per session" ).toString();
+	}
+
+}
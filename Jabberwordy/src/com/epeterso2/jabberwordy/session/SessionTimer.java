@@ -0,0 +1,153 @@
+/**
+ * Copyright (c) 2010 Eric Peterson
+ * For contact information, visit http://www.epeterso2.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.epeterso2.jabberwordy.session;
+
+import com.epeterso2.jabberwordy.serialization.puz.PUZPuzzle;
+
+/**
+ * The solving timer of one session, kept by a {@link SessionTimerService}.
+ * <p>
+ * A timer holds the time accumulated while it ran before and the time it last started, so starting, pausing and
+ * reading it take constant time and nothing happens while it runs. Its elapsed time is written to a puzzle only when
+ * the session is saved, with {@link #save(PUZPuzzle, long)}.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+public class SessionTimer {
+	
+	private SessionTimerService service = null;
+	
+	private String id = null;
+	
+	long elapsedMillis = 0;
+	
+	long runningSince = -1;
+	
+	long alarmMillis = -1;
+	
+	// The position of the timer in the wheel of its service while its alarm is scheduled
+	
+	long deadline = 0;
+	
+	int level = -1;
+	
+	int slot = 0;
+	
+	SessionTimer previous = null;
+	
+	SessionTimer next = null;
+	
+	SessionTimer( SessionTimerService service, String id, long elapsedMillis )
+	{
+		this.service = service;
+		this.id = id;
+		this.elapsedMillis = elapsedMillis;
+	}
+	
+	public String getId() {
+		return id;
+	}
+	
+	public SessionTimerService getService() {
+		return service;
+	}
+	
+	/**
+	 * Starts the timer, if it is not running
+	 * @param now The current time, in milliseconds
+	 */
+	public void start( long now )
+	{
+		service.start( this, now );
+	}
+	
+	/**
+	 * Stops the timer, if it is running, keeping its elapsed time
+	 * @param now The current time, in milliseconds
+	 */
+	public void pause( long now )
+	{
+		service.pause( this, now );
+	}
+	
+	public boolean isRunning()
+	{
+		return service.isRunning( this );
+	}
+	
+	/**
+	 * Returns the time the timer has run
+	 * @param now The current time, in milliseconds
+	 * @return The elapsed time, in milliseconds
+	 */
+	public long getElapsedMillis( long now )
+	{
+		return service.getElapsedMillis( this, now );
+	}
+	
+	/**
+	 * Returns the time the timer has run, in whole seconds as kept by the PUZ <tt>LTIM</tt> section
+	 * @param now The current time, in milliseconds
+	 * @return The elapsed time, in seconds
+	 */
+	public int getElapsedSeconds( long now )
+	{
+		return (int) Math.min( Integer.MAX_VALUE, getElapsedMillis( now ) / 1000 );
+	}
+	
+	/**
+	 * Sets an alarm, replacing any other, that calls the listeners of the service when the elapsed time reaches a value.
+	 * The alarm waits while the timer is paused.
+	 * @param elapsedMillis The elapsed time at which the alarm goes off, in milliseconds
+	 * @param now The current time, in milliseconds
+	 */
+	public void setAlarm( long elapsedMillis, long now )
+	{
+		service.setAlarm( this, elapsedMillis, now );
+	}
+	
+	/**
+	 * Clears the alarm
+	 */
+	public void clearAlarm()
+	{
+		service.setAlarm( this, -1, 0 );
+	}
+	
+	/**
+	 * Writes the elapsed time and running state of the timer to a puzzle, as when the session is saved
+	 * @param puzzle The puzzle
+	 * @param now The current time, in milliseconds
+	 */
+	public void save( PUZPuzzle puzzle, long now )
+	{
+		puzzle.setElapsedSeconds( getElapsedSeconds( now ) );
+		puzzle.setTimerRunning( isRunning() );
+	}
+	
+	public String toString()
+	{
+		return new StringBuilder().append( id ).append( isRunning() ? " running" : " paused" ).toString();
+	}
+
+}
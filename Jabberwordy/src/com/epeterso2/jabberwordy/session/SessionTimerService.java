@@ -0,0 +1,409 @@
+/**
+ * Copyright (c) 2010 Eric Peterson
+ * For contact information, visit http://www.epeterso2.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.epeterso2.jabberwordy.session;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.epeterso2.jabberwordy.serialization.puz.PUZPuzzle;
+
+/**
+ * The solving timers of many sessions, with alarms kept on one hierarchical timing wheel.
+ * <p>
+ * Reading, starting and pausing a {@link SessionTimer} take constant time and need no task of their own. An alarm,
+ * such as a time limit or an idle warning, is placed on a wheel of {@link #LEVELS} levels of {@link #SLOTS} slots: the
+ * first level has a slot for each of the next {@value #SLOTS} ticks, and each level above covers {@value #SLOTS} times
+ * as many ticks per slot. Placing and removing an alarm take constant time. Each tick empties one slot of the first
+ * level, and every {@value #SLOTS} ticks the next slot of a higher level is spread over the levels below it. Alarms go
+ * off on the first tick at or after their time, and never early.
+ * <p>
+ * The wheel is turned by {@link #advance(long)}, which can be driven by
+ * {@link #start(ScheduledExecutorService)}. Listeners are called on the thread that turns the wheel, outside the lock
+ * of the service. The methods of the service are synchronized.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+public class SessionTimerService {
+	
+	/**
+	 * The default length of a tick, in milliseconds
+	 */
+	public static final long DEFAULT_TICK_MILLIS = 100;
+	
+	/**
+	 * The number of levels of the wheel
+	 */
+	public static final int LEVELS = 4;
+	
+	/**
+	 * The number of slots in each level of the wheel
+	 */
+	public static final int SLOTS = 64;
+	
+	private static final int SLOT_BITS = 6;
+	
+	private static final long SPAN = 1L << ( SLOT_BITS * LEVELS );
+	
+	private long tickMillis = 0;
+	
+	private SessionTimer[][] wheel = new SessionTimer[ LEVELS ][ SLOTS ];
+	
+	// The last tick processed by advance
+	private long currentTick = -1;
+	
+	private int timerCount = 0;
+	
+	private int alarmCount = 0;
+	
+	private CopyOnWriteArrayList<SessionTimerListener> listeners = new CopyOnWriteArrayList<SessionTimerListener>();
+	
+	private ScheduledFuture<?> task = null;
+	
+	/**
+	 * Creates a service with the default tick length
+	 */
+	public SessionTimerService()
+	{
+		this( DEFAULT_TICK_MILLIS );
+	}
+	
+	/**
+	 * Creates a service
+	 * @param tickMillis The length of a tick, in milliseconds, which is the precision of alarms
+	 */
+	public SessionTimerService( long tickMillis )
+	{
+		if ( tickMillis <= 0 )
+		{
+			throw new IllegalArgumentException( "Tick length must be positive: " + tickMillis );
+		}
+		
+		this.tickMillis = tickMillis;
+	}
+	
+	public long getTickMillis() {
+		return tickMillis;
+	}
+	
+	public void addSessionTimerListener( SessionTimerListener listener )
+	{
+		listeners.addIfAbsent( listener );
+	}
+	
+	public void removeSessionTimerListener( SessionTimerListener listener )
+	{
+		listeners.remove( listener );
+	}
+	
+	/**
+	 * Creates a paused timer
+	 * @param id The identifier of the session
+	 * @param elapsedMillis The time the session has already been solved, in milliseconds
+	 * @return The timer
+	 */
+	public synchronized SessionTimer createTimer( String id, long elapsedMillis )
+	{
+		++timerCount;
+		return new SessionTimer( this, id, elapsedMillis );
+	}
+	
+	/**
+	 * Creates a timer from the <tt>LTIM</tt> state of a puzzle, starting it if the puzzle says it was running
+	 * @param id The identifier of the session
+	 * @param puzzle The puzzle
+	 * @param now The current time, in milliseconds
+	 * @return The timer
+	 */
+	public SessionTimer createTimer( String id, PUZPuzzle puzzle, long now )
+	{
+		SessionTimer timer = createTimer( id, Math.max( 0, puzzle.getElapsedSeconds() ) * 1000L );
+		
+		if ( puzzle.isTimerRunning() )
+		{
+			timer.start( now );
+		}
+		
+		return timer;
+	}
+	
+	/**
+	 * Releases a timer that is no longer needed, clearing its alarm
+	 * @param timer The timer
+	 */
+	public synchronized void releaseTimer( SessionTimer timer )
+	{
+		unschedule( timer );
+		timer.alarmMillis = -1;
+		--timerCount;
+	}
+	
+	public synchronized int getTimerCount()
+	{
+		return timerCount;
+	}
+	
+	/**
+	 * Returns the number of alarms waiting on the wheel, which excludes those of paused timers
+	 * @return The alarm count
+	 */
+	public synchronized int getAlarmCount()
+	{
+		return alarmCount;
+	}
+	
+	/**
+	 * Turns the wheel to a time, calling the listeners of every alarm that has come due
+	 * @param now The current time, in milliseconds
+	 */
+	public void advance( long now )
+	{
+		List<SessionTimer> expired = new ArrayList<SessionTimer>();
+		
+		synchronized ( this )
+		{
+			long target = now / tickMillis;
+			
+			if ( currentTick < 0 )
+			{
+				currentTick = target;
+			}
+			
+			while ( currentTick < target )
+			{
+				tick( currentTick + 1, expired );
+			}
+		}
+		
+		for ( SessionTimer timer : expired )
+		{
+			for ( SessionTimerListener listener : listeners )
+			{
+				listener.timerExpired( timer );
+			}
+		}
+	}
+	
+	/**
+	 * Turns the wheel on a scheduler, once per tick, until {@link #stop()} is called
+	 * @param scheduler The scheduler that drives the wheel
+	 */
+	public synchronized void start( ScheduledExecutorService scheduler )
+	{
+		if ( task != null )
+		{
+			throw new IllegalStateException( "Timer service already started" );
+		}
+		
+		task = scheduler.scheduleAtFixedRate( new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				advance( System.currentTimeMillis() );
+			}
+		}, tickMillis, tickMillis, TimeUnit.MILLISECONDS );
+	}
+	
+	/**
+	 * Stops turning the wheel on the scheduler given to {@link #start(ScheduledExecutorService)}
+	 */
+	public synchronized void stop()
+	{
+		if ( task != null )
+		{
+			task.cancel( false );
+			task = null;
+		}
+	}
+	
+	synchronized void start( SessionTimer timer, long now )
+	{
+		if ( timer.runningSince < 0 )
+		{
+			timer.runningSince = now;
+			schedule( timer, now );
+		}
+	}
+	
+	synchronized void pause( SessionTimer timer, long now )
+	{
+		if ( timer.runningSince >= 0 )
+		{
+			timer.elapsedMillis += Math.max( 0, now - timer.runningSince );
+			timer.runningSince = -1;
+			unschedule( timer );
+		}
+	}
+	
+	synchronized boolean isRunning( SessionTimer timer )
+	{
+		return timer.runningSince >= 0;
+	}
+	
+	synchronized long getElapsedMillis( SessionTimer timer, long now )
+	{
+		return timer.elapsedMillis + ( timer.runningSince < 0 ? 0 : Math.max( 0, now - timer.runningSince ) );
+	}
+	
+	synchronized void setAlarm( SessionTimer timer, long alarmMillis, long now )
+	{
+		unschedule( timer );
+		timer.alarmMillis = alarmMillis;
+		
+		if ( timer.runningSince >= 0 )
+		{
+			schedule( timer, now );
+		}
+	}
+	
+	/**
+	 * Places the alarm of a running timer on the wheel
+	 */
+	private void schedule( SessionTimer timer, long now )
+	{
+		if ( timer.alarmMillis < 0 )
+		{
+			return;
+		}
+		
+		long remaining = Math.max( 0, timer.alarmMillis - getElapsedMillis( timer, now ) );
+		timer.deadline = ( now + remaining + tickMillis - 1 ) / tickMillis;
+		
+		if ( currentTick < 0 )
+		{
+			currentTick = now / tickMillis;
+		}
+		
+		place( timer, currentTick + 1 );
+		++alarmCount;
+	}
+	
+	private void unschedule( SessionTimer timer )
+	{
+		if ( timer.level >= 0 )
+		{
+			unlink( timer );
+			--alarmCount;
+		}
+	}
+	
+	/**
+	 * Puts a timer into the slot for its deadline, counting from the next tick to be processed
+	 */
+	private void place( SessionTimer timer, long base )
+	{
+		long when = Math.min( Math.max( timer.deadline, base ), base + SPAN - 1 );
+		long delta = when - base;
+		int level = 0;
+		
+		while ( delta >= 1L << ( SLOT_BITS * ( level + 1 ) ) )
+		{
+			++level;
+		}
+		
+		timer.level = level;
+		timer.slot = (int) ( when >>> ( SLOT_BITS * level ) ) & ( SLOTS - 1 );
+		timer.previous = null;
+		timer.next = wheel[ level ][ timer.slot ];
+		
+		if ( timer.next != null )
+		{
+			timer.next.previous = timer;
+		}
+		
+		wheel[ level ][ timer.slot ] = timer;
+	}
+	
+	private void unlink( SessionTimer timer )
+	{
+		if ( timer.previous == null )
+		{
+			wheel[ timer.level ][ timer.slot ] = timer.next;
+		}
+		
+		else
+		{
+			timer.previous.next = timer.next;
+		}
+		
+		if ( timer.next != null )
+		{
+			timer.next.previous = timer.previous;
+		}
+		
+		timer.previous = timer.next = null;
+		timer.level = -1;
+	}
+	
+	/**
+	 * Processes one tick: cascades the higher levels whose turn has come, then fires the alarms of the first level
+	 */
+	private void tick( long tick, List<SessionTimer> expired )
+	{
+		for ( int level = 1; level < LEVELS && ( tick & ( ( 1L << ( SLOT_BITS * level ) ) - 1 ) ) == 0; ++level )
+		{
+			int slot = (int) ( tick >>> ( SLOT_BITS * level ) ) & ( SLOTS - 1 );
+			SessionTimer timer = wheel[ level ][ slot ];
+			wheel[ level ][ slot ] = null;
+			
+			while ( timer != null )
+			{
+				SessionTimer next = timer.next;
+				place( timer, tick );
+				timer = next;
+			}
+		}
+		
+		int slot = (int) tick & ( SLOTS - 1 );
+		SessionTimer timer = wheel[ 0 ][ slot ];
+		wheel[ 0 ][ slot ] = null;
+		
+		while ( timer != null )
+		{
+			SessionTimer next = timer.next;
+			
+			if ( timer.deadline <= tick )
+			{
+				timer.previous = timer.next = null;
+				timer.level = -1;
+				timer.alarmMillis = -1;
+				--alarmCount;
+				expired.add( timer );
+			}
+			
+			else
+			{
+				place( timer, tick + 1 );
+			}
+			
+			timer = next;
+		}
+		
+		currentTick = tick;
+	}
+
+}
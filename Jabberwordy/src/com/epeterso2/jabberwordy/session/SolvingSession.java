@@ -0,0 +1,617 @@
+/**
+ * Copyright (c) 2010 Eric Peterson
+ * For contact information, visit http://www.epeterso2.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.epeterso2.jabberwordy.session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import com.epeterso2.jabberwordy.model.PuzzleModel;
+import com.epeterso2.jabberwordy.model.PuzzleModelSnapshot;
+
+/**
+ * The progress of one solver on a shared puzzle.
+ * <p>
+ * A session holds only what differs between solvers: one byte of player state and one byte of flags per cell, and
+ * the timer. The grid, solution and clues belong to an immutable {@link PuzzleModelSnapshot} shared by every session of
+ * the puzzle. A player byte holds a value below 128 directly, holds zero for an empty cell, and refers to a small
+ * per-session table for rebus and other values from 128 upward.
+ * <p>
+ * A {@link SessionStore} with a {@link SessionSpillFile} may spill the state of an idle session to disk, keeping only
+ * its identifier and timer in memory; the state is read back by the next method that needs it, which then lets the
+ * store spill other sessions to stay within its budget.
+ * <p>
+ * The methods of this class are synchronized on the session.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ * @see SessionStore
+ */
+public class SolvingSession {
+	
+	/**
+	 * The largest number of distinct rebus values a session can hold
+	 */
+	public static final int REBUS_LIMIT = 128;
+	
+	private String id = null;
+	
+	private PuzzleModelSnapshot definition = null;
+	
+	private byte[] player = null;
+	
+	private byte[] flags = null;
+	
+	private String[] rebusValues = null;
+	
+	private long elapsedMillis = 0;
+	
+	private long runningSince = -1;
+	
+	private SessionStore store = null;
+	
+	private long spillSlot = -1;
+	
+	private int chargedSize = 0;
+	
+	private boolean referenced = false;
+	
+	/**
+	 * Creates an empty session
+	 * @param id The session identifier
+	 * @param definition The shared puzzle definition
+	 */
+	public SolvingSession( String id, PuzzleModelSnapshot definition )
+	{
+		this.id = id;
+		this.definition = definition;
+		this.player = new byte[ definition.getCellCount() ];
+		this.flags = new byte[ definition.getCellCount() ];
+	}
+	
+	public String getId() {
+		return id;
+	}
+	
+	public PuzzleModelSnapshot getDefinition() {
+		return definition;
+	}
+	
+	public String getPlayerState( int cell )
+	{
+		try
+		{
+			synchronized ( this )
+			{
+				load();
+				
+				return decode( player[ cell ] );
+			}
+		}
+		
+		finally
+		{
+			released();
+		}
+	}
+	
+	/**
+	 * Sets the value entered into a cell
+	 * @param cell The cell index
+	 * @param value The value, or <tt>null</tt> or an empty string to clear the cell
+	 */
+	public void setPlayerState( int cell, String value )
+	{
+		try
+		{
+			synchronized ( this )
+			{
+				load();
+				
+				player[ cell ] = encode( value );
+			}
+		}
+		
+		finally
+		{
+			released();
+		}
+	}
+	
+	/**
+	 * Returns the flags of a cell: the player flags of the session combined with the other flags of the definition,
+	 * such as {@link PuzzleModel#CIRCLED}
+	 * @param cell The cell index
+	 * @return The flags
+	 */
+	public int getFlags( int cell )
+	{
+		try
+		{
+			synchronized ( this )
+			{
+				load();
+				
+				return ( definition.getFlags( cell ) & ~PuzzleModel.PLAYER_FLAGS ) | flags[ cell ];
+			}
+		}
+		
+		finally
+		{
+			released();
+		}
+	}
+	
+	/**
+	 * Sets the player flags of a cell; other flags belong to the definition and are ignored
+	 * @param cell The cell index
+	 * @param value The flags
+	 */
+	public void setFlags( int cell, int value )
+	{
+		try
+		{
+			synchronized ( this )
+			{
+				load();
+				
+				flags[ cell ] = (byte) ( value & PuzzleModel.PLAYER_FLAGS );
+			}
+		}
+		
+		finally
+		{
+			released();
+		}
+	}
+	
+	public void setFlag( int cell, int flag, boolean set )
+	{
+		try
+		{
+			synchronized ( this )
+			{
+				load();
+				
+				flags[ cell ] = (byte) ( ( set ? flags[ cell ] | flag : flags[ cell ] & ~flag ) & PuzzleModel.PLAYER_FLAGS );
+			}
+		}
+		
+		finally
+		{
+			released();
+		}
+	}
+	
+	/**
+	 * Determines if the value entered into a cell matches its solution
+	 * @param cell The cell index
+	 * @return <tt>true</tt> if the cell is correct
+	 */
+	public boolean isCorrect( int cell )
+	{
+		try
+		{
+			synchronized ( this )
+			{
+				load();
+				
+				return decode( player[ cell ] ).equals( definition.getSolution( cell ) );
+			}
+		}
+		
+		finally
+		{
+			released();
+		}
+	}
+	
+	/**
+	 * Starts the timer, if it is not running
+	 * @param now The current time, in milliseconds
+	 */
+	public synchronized void startTimer( long now )
+	{
+		if ( runningSince < 0 )
+		{
+			runningSince = now;
+		}
+	}
+	
+	/**
+	 * Stops the timer, adding the time since it started to the elapsed time
+	 * @param now The current time, in milliseconds
+	 */
+	public synchronized void pauseTimer( long now )
+	{
+		if ( runningSince >= 0 )
+		{
+			elapsedMillis += Math.max( 0, now - runningSince );
+			runningSince = -1;
+		}
+	}
+	
+	public synchronized boolean isTimerRunning()
+	{
+		return runningSince >= 0;
+	}
+	
+	/**
+	 * Returns the time spent solving
+	 * @param now The current time, in milliseconds
+	 * @return The elapsed time, in milliseconds
+	 */
+	public synchronized long getElapsedMillis( long now )
+	{
+		return elapsedMillis + ( runningSince < 0 ? 0 : Math.max( 0, now - runningSince ) );
+	}
+	
+	/**
+	 * Sets the time spent solving, as when a saved session is loaded. The timer is left stopped.
+	 * @param elapsedMillis The elapsed time, in milliseconds
+	 */
+	public synchronized void setElapsedMillis( long elapsedMillis )
+	{
+		this.elapsedMillis = elapsedMillis;
+		this.runningSince = -1;
+	}
+	
+	/**
+	 * Copies the player state and player flags of the session into a model of the puzzle, as for saving or rendering.
+	 * The listeners of the model receive one event.
+	 * @param model The model
+	 */
+	public void copyTo( PuzzleModel model )
+	{
+		try
+		{
+			synchronized ( this )
+			{
+				load();
+				
+				model.beginUpdate();
+				
+				try
+				{
+					for ( int cell = 0; cell < player.length; ++cell )
+					{
+						model.setPlayerState( cell, decode( player[ cell ] ) );
+						model.setFlags( cell, ( model.getFlags( cell ) & ~PuzzleModel.PLAYER_FLAGS ) | ( flags[ cell ] & PuzzleModel.PLAYER_FLAGS ) );
+					}
+				}
+				
+				finally
+				{
+					model.endUpdate();
+				}
+			}
+		}
+		
+		finally
+		{
+			released();
+		}
+	}
+	
+	/**
+	 * Replaces the player state and player flags of the session with those of a model of the puzzle
+	 * @param model The model
+	 */
+	public void copyFrom( PuzzleModel model )
+	{
+		try
+		{
+			synchronized ( this )
+			{
+				load();
+				
+				if ( model.getCellCount() != player.length )
+				{
+					throw new IllegalArgumentException( "Model has " + model.getCellCount() + " cells; session has " + player.length );
+				}
+				
+				for ( int cell = 0; cell < player.length; ++cell )
+				{
+					player[ cell ] = encode( model.getPlayerState( cell ) );
+					flags[ cell ] = (byte) ( model.getFlags( cell ) & PuzzleModel.PLAYER_FLAGS );
+				}
+			}
+		}
+		
+		finally
+		{
+			released();
+		}
+	}
+	
+	/**
+	 * Estimates the heap used by this session, not counting the shared definition, on a 64-bit virtual machine with
+	 * compressed references
+	 * @return The estimated size in bytes
+	 */
+	public synchronized int estimateSize()
+	{
+		// The session and its identifier string
+		int size = align( 12 + 4 * 6 + 8 * 3 + 4 + 1 ) + align( 12 + 4 + 4 + 4 ) + arraySize( 2 * id.length() );
+		return size + estimateStateSize();
+	}
+	
+	/**
+	 * Estimates the heap used by the state that can be spilled; zero if it has been spilled
+	 */
+	synchronized int estimateStateSize()
+	{
+		if ( player == null )
+		{
+			return 0;
+		}
+		
+		int size = arraySize( player.length ) + arraySize( flags.length );
+		
+		if ( rebusValues != null )
+		{
+			size += arraySize( 4 * rebusValues.length );
+			
+			for ( int i = 0; i < rebusValues.length && rebusValues[ i ] != null; ++i )
+			{
+				size += align( 12 + 4 + 4 + 4 ) + arraySize( 2 * rebusValues[ i ].length() );
+			}
+		}
+		
+		return size;
+	}
+	
+	/**
+	 * Returns <tt>true</tt> if the state of the session is in memory
+	 */
+	synchronized boolean isResident()
+	{
+		return player != null;
+	}
+	
+	/**
+	 * Records a use of the session for the eviction clock of its store
+	 * @return <tt>true</tt> if the state of the session was in memory
+	 */
+	synchronized boolean touch()
+	{
+		boolean resident = player != null;
+		load();
+		return resident;
+	}
+	
+	/**
+	 * Clears the use recorded since the eviction clock last passed the session
+	 * @return <tt>true</tt> if the session had been used
+	 */
+	synchronized boolean clearReferenced()
+	{
+		boolean result = referenced;
+		referenced = false;
+		return result;
+	}
+	
+	/**
+	 * Brings the size charged against the heap budget of the store up to date
+	 * @return The change in the charged size
+	 */
+	synchronized int charge()
+	{
+		int size = estimateStateSize();
+		int change = size - chargedSize;
+		chargedSize = size;
+		return change;
+	}
+	
+	/**
+	 * Removes the charge of the session from the heap budget of the store
+	 * @return The size that was charged
+	 */
+	synchronized int uncharge()
+	{
+		int size = chargedSize;
+		chargedSize = 0;
+		return size;
+	}
+	
+	synchronized SessionStore getStore()
+	{
+		return store;
+	}
+	
+	void setStore( SessionStore store )
+	{
+		this.store = store;
+	}
+	
+	long getSpillSlot()
+	{
+		return spillSlot;
+	}
+	
+	/**
+	 * Writes the player state, flags and rebus values of the session in a compact binary form
+	 */
+	byte[] writeState()
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream( player.length * 2 + 1 );
+		DataOutputStream out = new DataOutputStream( bytes );
+		
+		try
+		{
+			out.write( player );
+			out.write( flags );
+			
+			int count = 0;
+			
+			while ( rebusValues != null && count < rebusValues.length && rebusValues[ count ] != null )
+			{
+				++count;
+			}
+			
+			out.writeByte( count );
+			
+			for ( int i = 0; i < count; ++i )
+			{
+				out.writeUTF( rebusValues[ i ] );
+			}
+		}
+		
+		catch ( IOException e )
+		{
+			throw new IllegalStateException( e );
+		}
+		
+		return bytes.toByteArray();
+	}
+	
+	/**
+	 * Restores the state written by {@link #writeState()}
+	 */
+	void readState( byte[] data )
+	{
+		DataInputStream in = new DataInputStream( new ByteArrayInputStream( data ) );
+		
+		try
+		{
+			player = new byte[ definition.getCellCount() ];
+			flags = new byte[ definition.getCellCount() ];
+			in.readFully( player );
+			in.readFully( flags );
+			
+			int count = in.readUnsignedByte();
+			rebusValues = count == 0 ? null : new String[ count ];
+			
+			for ( int i = 0; i < count; ++i )
+			{
+				rebusValues[ i ] = in.readUTF();
+			}
+		}
+		
+		catch ( IOException e )
+		{
+			throw new IllegalStateException( "Corrupt spilled state for session " + id, e );
+		}
+		
+		spillSlot = -1;
+	}
+	
+	/**
+	 * Drops the state of the session after it has been spilled
+	 */
+	void releaseState( long spillSlot )
+	{
+		this.player = null;
+		this.flags = null;
+		this.rebusValues = null;
+		this.spillSlot = spillSlot;
+	}
+	
+	/**
+	 * Records a use of the session and reads its state back if it was spilled. Called holding the lock of the session.
+	 */
+	private void load()
+	{
+		referenced = true;
+		
+		if ( player == null )
+		{
+			store.reload( this );
+		}
+	}
+	
+	/**
+	 * Lets the store spill sessions read back meanwhile. Called after the lock of the session is released.
+	 */
+	private void released()
+	{
+		SessionStore current = getStore();
+		
+		if ( current != null )
+		{
+			current.trimIfPending();
+		}
+	}
+	
+	private static int arraySize( int bytes )
+	{
+		return align( 16 + bytes );
+	}
+	
+	private static int align( int bytes )
+	{
+		return ( bytes + 7 ) & ~7;
+	}
+	
+	private byte encode( String value )
+	{
+		if ( value == null || value.length() == 0 )
+		{
+			return 0;
+		}
+		
+		else if ( value.length() == 1 && value.charAt( 0 ) < 0x80 )
+		{
+			return (byte) value.charAt( 0 );
+		}
+		
+		int index = 0;
+		
+		while ( rebusValues != null && index < rebusValues.length && rebusValues[ index ] != null && ! rebusValues[ index ].equals( value ) )
+		{
+			++index;
+		}
+		
+		if ( index == REBUS_LIMIT )
+		{
+			throw new IllegalStateException( "Too many distinct rebus values in session " + id );
+		}
+		
+		if ( rebusValues == null || index == rebusValues.length )
+		{
+			String[] larger = new String[ rebusValues == null ? 2 : Math.min( REBUS_LIMIT, rebusValues.length * 2 ) ];
+			
+			if ( rebusValues != null )
+			{
+				System.arraycopy( rebusValues, 0, larger, 0, rebusValues.length );
+			}
+			
+			rebusValues = larger;
+		}
+		
+		rebusValues[ index ] = value;
+		return (byte) ( 0x80 + index );
+	}
+	
+	private String decode( byte code )
+	{
+		return code == 0 ? "" : code > 0 ? String.valueOf( (char) code ) : rebusValues[ ( code & 0xFF ) - 0x80 ];
+	}
+	
+	public String toString()
+	{
+		return new StringBuilder().append( id ).append( ": " ).append( definition ).toString();
+	}
+
+}
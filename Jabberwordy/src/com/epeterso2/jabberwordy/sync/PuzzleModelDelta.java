@@ -0,0 +1,284 @@
+/**
+ * Copyright (c) 2010 Eric Peterson
+ * For contact information, visit http://www.epeterso2.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.epeterso2.jabberwordy.sync;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import com.epeterso2.jabberwordy.model.PuzzleModel;
+import com.epeterso2.jabberwordy.model.PuzzleModelChanges;
+import com.epeterso2.jabberwordy.model.PuzzleModelSnapshot;
+import com.epeterso2.jabberwordy.util.VarIntUtil;
+
+/**
+ * An encoder of compact binary differences between two states of the same puzzle grid.
+ * <p>
+ * A delta lists the changed cells as runs of consecutive cell indexes, each run written as the gap since the end of
+ * the previous run and its length, followed by the new value and flags of each cell in the run. Changed clues follow
+ * as slot gaps and texts. Every number is a variable-length integer written by {@link VarIntUtil}, so a delta of a few
+ * cells takes a few dozen bytes. A delta may also carry the sender's {@link VersionVector} and a stamp for each cell
+ * and clue, which a {@link SyncReplica} uses to make replicas converge.
+ * <p>
+ * The encoder writes into a buffer that is kept and reused from one delta to the next, so that encoding allocates
+ * nothing once the buffer has grown to the size of the largest delta. Deltas are read by
+ * {@link PuzzleModelDeltaReader}. This class is not synchronized.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+public class PuzzleModelDelta {
+	
+	/**
+	 * The format version written at the start of every delta
+	 */
+	public static final int FORMAT = 1;
+	
+	/**
+	 * Option bit: each cell and clue carries a stamp
+	 */
+	public static final int OPTION_STAMPS = 0x01;
+	
+	static final int VALUE_EMPTY = 0;
+	
+	static final int VALUE_STRING = 1;
+	
+	private static final VersionVector NO_VERSION = new VersionVector();
+	
+	private ByteBuffer buffer = ByteBuffer.allocate( 256 );
+	
+	private BitSet cells = new BitSet();
+	
+	private BitSet clues = new BitSet();
+	
+	/**
+	 * Encodes the difference between two snapshots of the same grid
+	 * @param base The state the receiver holds
+	 * @param target The state to bring the receiver to
+	 * @return This encoder, holding the delta
+	 */
+	public PuzzleModelDelta diff( PuzzleModelSnapshot base, PuzzleModelSnapshot target )
+	{
+		if ( base.getCellCount() != target.getCellCount() || base.getWidth() != target.getWidth() )
+		{
+			throw new IllegalArgumentException( "Grid sizes differ" );
+		}
+		
+		cells.clear();
+		clues.clear();
+		
+		for ( int cell = 0; cell < target.getCellCount(); ++cell )
+		{
+			char before = base.getPlayerCode( cell );
+			char after = target.getPlayerCode( cell );
+			
+			if ( base.getFlags( cell ) != target.getFlags( cell ) || ( before != after &&
+				! ( PuzzleModel.isRebusCode( before ) && PuzzleModel.isRebusCode( after ) && base.decode( before ).equals( target.decode( after ) ) ) ) )
+			{
+				cells.set( cell );
+			}
+		}
+		
+		for ( int slot = 0; slot < target.getSlotTable().getSlotCount(); ++slot )
+		{
+			String text = target.getClueText( slot );
+			
+			if ( text == null ? base.getClueText( slot ) != null : ! text.equals( base.getClueText( slot ) ) )
+			{
+				clues.set( slot );
+			}
+		}
+		
+		return encode( target, cells, clues, null, null, NO_VERSION );
+	}
+	
+	/**
+	 * Encodes the changes made to a model after a generation, in time proportional to the number of changes
+	 * @param model The model
+	 * @param generation A generation of the model, as for {@link PuzzleModel#changesSince(long)}
+	 * @return This encoder, holding the delta
+	 */
+	public PuzzleModelDelta changes( PuzzleModel model, long generation )
+	{
+		PuzzleModelChanges changes = model.changesSince( generation );
+		return encode( model.snapshot(), changes.getCells(), changes.getClues(), null, null, NO_VERSION );
+	}
+	
+	/**
+	 * Encodes the given cells and clues of a snapshot
+	 * @param target The state the cells and clues are read from
+	 * @param changedCells The cells to include
+	 * @param changedClues The clue slots to include
+	 * @param cellStamps The stamp of each cell, or <tt>null</tt> to omit stamps
+	 * @param clueStamps The stamp of each clue slot, or <tt>null</tt> if cell stamps are omitted
+	 * @param version The sender's version vector
+	 * @return This encoder, holding the delta
+	 */
+	public PuzzleModelDelta encode( PuzzleModelSnapshot target, BitSet changedCells, BitSet changedClues, long[] cellStamps, long[] clueStamps, VersionVector version )
+	{
+		buffer.clear();
+		ensure( 8 + version.getEncodedLength() );
+		
+		buffer.put( (byte) FORMAT );
+		buffer.put( (byte) ( cellStamps == null ? 0 : OPTION_STAMPS ) );
+		VarIntUtil.putUnsigned( buffer, target.getCellCount() );
+		version.write( buffer );
+		
+		int runs = 0;
+		
+		for ( int start = changedCells.nextSetBit( 0 ); start >= 0; start = changedCells.nextSetBit( changedCells.nextClearBit( start ) ) )
+		{
+			++runs;
+		}
+		
+		ensure( VarIntUtil.MAX_LENGTH );
+		VarIntUtil.putUnsigned( buffer, runs );
+		
+		for ( int start = changedCells.nextSetBit( 0 ), previous = 0; start >= 0; start = changedCells.nextSetBit( previous ) )
+		{
+			int end = changedCells.nextClearBit( start );
+			ensure( 2 * VarIntUtil.MAX_LENGTH );
+			VarIntUtil.putUnsigned( buffer, start - previous );
+			VarIntUtil.putUnsigned( buffer, end - start );
+			
+			for ( int cell = start; cell < end; ++cell )
+			{
+				putValue( target.getPlayerCode( cell ), target );
+				ensure( 1 + VarIntUtil.MAX_LENGTH );
+				buffer.put( (byte) target.getFlags( cell ) );
+				
+				if ( cellStamps != null )
+				{
+					VarIntUtil.putUnsigned( buffer, cellStamps[ cell ] );
+				}
+			}
+			
+			previous = end;
+		}
+		
+		ensure( VarIntUtil.MAX_LENGTH );
+		VarIntUtil.putUnsigned( buffer, changedClues.cardinality() );
+		
+		for ( int slot = changedClues.nextSetBit( 0 ), previous = 0; slot >= 0; previous = slot + 1, slot = changedClues.nextSetBit( slot + 1 ) )
+		{
+			ensure( 2 * VarIntUtil.MAX_LENGTH );
+			VarIntUtil.putUnsigned( buffer, slot - previous );
+			
+			if ( cellStamps != null )
+			{
+				VarIntUtil.putUnsigned( buffer, clueStamps[ slot ] );
+			}
+			
+			putString( target.getClueText( slot ) );
+		}
+		
+		return this;
+	}
+	
+	/**
+	 * Returns the buffer holding the delta. The buffer is reused by the next call to this encoder.
+	 * @return The buffer; the delta runs from index 0 to {@link #getLength()}
+	 */
+	public byte[] getBuffer()
+	{
+		return buffer.array();
+	}
+	
+	/**
+	 * Returns the length of the delta
+	 * @return The length in bytes
+	 */
+	public int getLength()
+	{
+		return buffer.position();
+	}
+	
+	/**
+	 * Returns a copy of the delta
+	 * @return The delta
+	 */
+	public byte[] toByteArray()
+	{
+		return Arrays.copyOf( buffer.array(), buffer.position() );
+	}
+	
+	private void putValue( char code, PuzzleModelSnapshot target )
+	{
+		ensure( VarIntUtil.MAX_LENGTH );
+		
+		if ( code == PuzzleModel.EMPTY )
+		{
+			VarIntUtil.putUnsigned( buffer, VALUE_EMPTY );
+		}
+		
+		else if ( code > VALUE_STRING && ! PuzzleModel.isRebusCode( code ) )
+		{
+			VarIntUtil.putUnsigned( buffer, code );
+		}
+		
+		else
+		{
+			// Rebus codes belong to the sender's model, so the value itself is sent
+			VarIntUtil.putUnsigned( buffer, VALUE_STRING );
+			putString( target.decode( code ) );
+		}
+	}
+	
+	/**
+	 * Writes a string as its UTF-8 length plus one, or zero for <tt>null</tt>, followed by its bytes
+	 */
+	private void putString( String value )
+	{
+		byte[] bytes = null;
+		
+		try
+		{
+			bytes = value == null ? null : value.getBytes( "UTF-8" );
+		}
+		
+		catch ( UnsupportedEncodingException e )
+		{
+			throw new IllegalStateException( e );
+		}
+		
+		ensure( VarIntUtil.MAX_LENGTH + ( bytes == null ? 0 : bytes.length ) );
+		VarIntUtil.putUnsigned( buffer, bytes == null ? 0 : bytes.length + 1 );
+		
+		if ( bytes != null )
+		{
+			buffer.put( bytes );
+		}
+	}
+	
+	private void ensure( int room )
+	{
+		if ( buffer.remaining() < room )
+		{
+			ByteBuffer larger = ByteBuffer.allocate( Math.max( buffer.capacity() * 2, buffer.position() + room ) );
+			buffer.flip();
+			larger.put( buffer );
+			buffer = larger;
+		}
+	}
+
+}
@@ -0,0 +1,363 @@
+/**
+ * Copyright (c) 2010 Eric Peterson
+ * For contact information, visit http://www.epeterso2.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.epeterso2.jabberwordy.sync;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+
+import com.epeterso2.jabberwordy.model.PuzzleModel;
+import com.epeterso2.jabberwordy.util.VarIntUtil;
+
+/**
+ * A cursor over a delta written by {@link PuzzleModelDelta}.
+ * <p>
+ * The changed cells are visited with {@link #nextCell()} and then the changed clues with {@link #nextClue()}. Values
+ * are decoded without allocation except for rebus values and clue text. A reader can be {@link #reset} and reused for
+ * the next delta. This class is not synchronized.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+public class PuzzleModelDeltaReader {
+	
+	private ByteBuffer buffer = null;
+	
+	private boolean stamps = false;
+	
+	private int cellCount = 0;
+	
+	private VersionVector version = new VersionVector();
+	
+	private long runs = 0;
+	
+	private long runRemaining = 0;
+	
+	private long cluesRemaining = -1;
+	
+	private int next = 0;
+	
+	private int cell = -1;
+	
+	private char code = PuzzleModel.EMPTY;
+	
+	private String value = null;
+	
+	private int flags = 0;
+	
+	private long stamp = 0;
+	
+	private int slot = -1;
+	
+	private String clueText = null;
+	
+	/**
+	 * Creates a reader positioned before the first cell of a delta
+	 * @param data The array holding the delta
+	 * @param offset The start of the delta
+	 * @param length The length of the delta
+	 */
+	public PuzzleModelDeltaReader( byte[] data, int offset, int length )
+	{
+		reset( data, offset, length );
+	}
+	
+	/**
+	 * Positions the reader before the first cell of another delta
+	 * @param data The array holding the delta
+	 * @param offset The start of the delta
+	 * @param length The length of the delta
+	 * @throws IllegalArgumentException The delta is of an unknown format or is truncated
+	 */
+	public void reset( byte[] data, int offset, int length )
+	{
+		buffer = buffer != null && buffer.array() == data ? buffer : ByteBuffer.wrap( data );
+		buffer.limit( offset + length ).position( offset );
+		
+		try
+		{
+			int format = buffer.get();
+			
+			if ( format != PuzzleModelDelta.FORMAT )
+			{
+				throw new IllegalArgumentException( "Unknown delta format " + format );
+			}
+			
+			stamps = ( buffer.get() & PuzzleModelDelta.OPTION_STAMPS ) != 0;
+			cellCount = (int) VarIntUtil.getUnsigned( buffer );
+			version.read( buffer );
+			runs = VarIntUtil.getUnsigned( buffer );
+		}
+		
+		catch ( RuntimeException e )
+		{
+			throw truncated( e );
+		}
+		
+		runRemaining = 0;
+		cluesRemaining = -1;
+		next = 0;
+		cell = -1;
+		slot = -1;
+	}
+	
+	/**
+	 * Returns the number of cells of the grid the delta was made from
+	 * @return The cell count
+	 */
+	public int getCellCount()
+	{
+		return cellCount;
+	}
+	
+	/**
+	 * Returns the version vector of the sender. The vector is reused by the next delta.
+	 * @return The version vector
+	 */
+	public VersionVector getVersion()
+	{
+		return version;
+	}
+	
+	/**
+	 * Determines if each cell and clue of the delta carries a stamp
+	 * @return <tt>true</tt> if the delta has stamps
+	 */
+	public boolean hasStamps()
+	{
+		return stamps;
+	}
+	
+	/**
+	 * Moves to the next changed cell
+	 * @return <tt>false</tt> if there are no more changed cells
+	 */
+	public boolean nextCell()
+	{
+		try
+		{
+			while ( runRemaining == 0 )
+			{
+				if ( runs == 0 )
+				{
+					return false;
+				}
+				
+				--runs;
+				next += (int) VarIntUtil.getUnsigned( buffer );
+				runRemaining = VarIntUtil.getUnsigned( buffer );
+			}
+			
+			cell = next++;
+			--runRemaining;
+			
+			long tag = VarIntUtil.getUnsigned( buffer );
+			value = tag == PuzzleModelDelta.VALUE_STRING ? getString() : null;
+			code = tag == PuzzleModelDelta.VALUE_STRING ? PuzzleModel.EMPTY : (char) tag;
+			flags = buffer.get() & 0xFF;
+			stamp = stamps ? VarIntUtil.getUnsigned( buffer ) : 0;
+			
+			if ( cell >= cellCount )
+			{
+				throw new IllegalArgumentException( "Delta cell " + cell + " is outside the grid" );
+			}
+			
+			return true;
+		}
+		
+		catch ( RuntimeException e )
+		{
+			throw truncated( e );
+		}
+	}
+	
+	public int getCell()
+	{
+		return cell;
+	}
+	
+	/**
+	 * Returns the new value of the current cell as a value code of a model, interning a rebus value in the model
+	 * @param model The model the code is for
+	 * @return The value code
+	 */
+	public char getCode( PuzzleModel model )
+	{
+		return value == null ? code : model.encode( value );
+	}
+	
+	/**
+	 * Returns the new value of the current cell
+	 * @return The value, or an empty string if the cell was cleared
+	 */
+	public String getValue()
+	{
+		return value != null ? value : code == PuzzleModel.EMPTY ? "" : String.valueOf( code );
+	}
+	
+	public int getFlags()
+	{
+		return flags;
+	}
+	
+	/**
+	 * Returns the stamp of the current cell or clue
+	 * @return The stamp, or zero if the delta has no stamps
+	 */
+	public long getStamp()
+	{
+		return stamp;
+	}
+	
+	/**
+	 * Moves to the next changed clue, skipping any changed cells not yet visited
+	 * @return <tt>false</tt> if there are no more changed clues
+	 */
+	public boolean nextClue()
+	{
+		while ( cluesRemaining < 0 && nextCell() )
+		{
+			;
+		}
+		
+		try
+		{
+			if ( cluesRemaining < 0 )
+			{
+				cluesRemaining = VarIntUtil.getUnsigned( buffer );
+			}
+			
+			if ( cluesRemaining == 0 )
+			{
+				return false;
+			}
+			
+			--cluesRemaining;
+			slot += 1 + (int) VarIntUtil.getUnsigned( buffer );
+			
+			if ( slot < 0 )
+			{
+				throw new IllegalArgumentException( "Delta clue slot is out of range" );
+			}
+			
+			stamp = stamps ? VarIntUtil.getUnsigned( buffer ) : 0;
+			clueText = getString();
+			return true;
+		}
+		
+		catch ( RuntimeException e )
+		{
+			throw truncated( e );
+		}
+	}
+	
+	public int getSlot()
+	{
+		return slot;
+	}
+	
+	public String getClueText()
+	{
+		return clueText;
+	}
+	
+	/**
+	 * Applies every change of a delta to a model of the same grid. The listeners of the model receive one event.
+	 * The delta is read through once before the model is touched, so a delta that is truncated or names a clue
+	 * slot outside the grid leaves the model unchanged.
+	 * @param data The array holding the delta
+	 * @param offset The start of the delta
+	 * @param length The length of the delta
+	 * @param model The model
+	 */
+	public static void apply( byte[] data, int offset, int length, PuzzleModel model )
+	{
+		PuzzleModelDeltaReader reader = new PuzzleModelDeltaReader( data, offset, length );
+		
+		if ( reader.getCellCount() != model.getCellCount() )
+		{
+			throw new IllegalArgumentException( "Delta has " + reader.getCellCount() + " cells; model has " + model.getCellCount() );
+		}
+		
+		PuzzleModelDeltaReader check = new PuzzleModelDeltaReader( data, offset, length );
+		int slotCount = model.getSlotTable().getSlotCount();
+		
+		while ( check.nextClue() )
+		{
+			if ( check.getSlot() >= slotCount )
+			{
+				throw new IllegalArgumentException( "Delta clue slot " + check.getSlot() + " is outside the grid; model has " + slotCount + " slots" );
+			}
+		}
+		
+		model.beginUpdate();
+		
+		try
+		{
+			while ( reader.nextCell() )
+			{
+				model.setPlayerCode( reader.getCell(), reader.getCode( model ) );
+				model.setFlags( reader.getCell(), reader.getFlags() );
+			}
+			
+			while ( reader.nextClue() )
+			{
+				model.setClueText( reader.getSlot(), reader.getClueText() );
+			}
+		}
+		
+		finally
+		{
+			model.endUpdate();
+		}
+	}
+	
+	private String getString()
+	{
+		int length = (int) VarIntUtil.getUnsigned( buffer );
+		
+		if ( length == 0 )
+		{
+			return null;
+		}
+		
+		String text = null;
+		
+		try
+		{
+			text = new String( buffer.array(), buffer.position(), length - 1, "UTF-8" );
+		}
+		
+		catch ( UnsupportedEncodingException e )
+		{
+			throw new IllegalStateException( e );
+		}
+		
+		buffer.position( buffer.position() + length - 1 );
+		return text;
+	}
+	
+	private IllegalArgumentException truncated( RuntimeException e )
+	{
+		return e instanceof IllegalArgumentException ? (IllegalArgumentException) e : new IllegalArgumentException( "Truncated delta", e );
+	}
+
+}
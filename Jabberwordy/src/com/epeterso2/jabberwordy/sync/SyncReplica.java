@@ -0,0 +1,249 @@
+/**
+ * Copyright (c) 2010 Eric Peterson
+ * For contact information, visit http://www.epeterso2.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.epeterso2.jabberwordy.sync;
+
+import java.util.BitSet;
+
+import com.epeterso2.jabberwordy.model.PuzzleModel;
+import com.epeterso2.jabberwordy.model.PuzzleModelChanges;
+
+/**
+ * One replica of a puzzle being solved on several devices, kept in step with the others by exchanging deltas.
+ * <p>
+ * Each cell and clue carries a stamp: a counter of the replica that last changed it, combined with that replica's
+ * identifier. Local changes to the model are stamped with the next counter of this replica; a received change is
+ * applied only if its stamp is higher than the stamp held for the cell, so concurrent changes to a cell are settled the
+ * same way on every replica (the higher counter wins, then the higher replica identifier) and all replicas converge.
+ * <p>
+ * The {@link VersionVector} of the replica records the highest counter it has seen from each replica. A replica
+ * answers a peer's version vector with a delta of only the cells and clues whose stamps the peer has not seen.
+ * <p>
+ * The model must not be changed by another thread while a replica method runs. This class is not synchronized.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+public class SyncReplica {
+	
+	private int replicaId = 0;
+	
+	private PuzzleModel model = null;
+	
+	private VersionVector version = new VersionVector();
+	
+	private long clock = 0;
+	
+	private long[] cellStamps = null;
+	
+	private long[] clueStamps = null;
+	
+	private long generation = 0;
+	
+	private BitSet cells = new BitSet();
+	
+	private BitSet clues = new BitSet();
+	
+	private PuzzleModelDeltaReader reader = null;
+	
+	/**
+	 * Creates a replica. Every replica of a puzzle must start from the same state.
+	 * @param replicaId The identifier of this replica, from 0 to {@link VersionVector#MAX_REPLICA}
+	 * @param model The model of this replica
+	 */
+	public SyncReplica( int replicaId, PuzzleModel model )
+	{
+		if ( replicaId < 0 || replicaId > VersionVector.MAX_REPLICA )
+		{
+			throw new IllegalArgumentException( "Invalid replica: " + replicaId );
+		}
+		
+		this.replicaId = replicaId;
+		this.model = model;
+		this.cellStamps = new long[ model.getCellCount() ];
+		this.clueStamps = new long[ model.getSlotTable().getSlotCount() ];
+		this.generation = model.getGeneration();
+	}
+	
+	/**
+	 * Combines a counter and a replica identifier into a stamp
+	 * @param counter The counter
+	 * @param replica The replica identifier
+	 * @return The stamp
+	 */
+	public static long stamp( long counter, int replica )
+	{
+		return ( counter << 16 ) | replica;
+	}
+	
+	public int getReplicaId() {
+		return replicaId;
+	}
+	
+	public PuzzleModel getModel() {
+		return model;
+	}
+	
+	/**
+	 * Returns the version vector of this replica, after stamping any local changes
+	 * @return The version vector, which must not be modified
+	 */
+	public VersionVector getVersion()
+	{
+		commitLocalChanges();
+		return version;
+	}
+	
+	/**
+	 * Stamps the changes made to the model since the last call, all with the same new counter
+	 * @return <tt>true</tt> if there were changes
+	 */
+	public boolean commitLocalChanges()
+	{
+		PuzzleModelChanges changes = model.changesSince( generation );
+		generation = changes.getGeneration();
+		
+		if ( changes.getCells().isEmpty() && changes.getClues().isEmpty() )
+		{
+			return false;
+		}
+		
+		long stamp = stamp( ++clock, replicaId );
+		
+		for ( int cell = changes.getCells().nextSetBit( 0 ); cell >= 0; cell = changes.getCells().nextSetBit( cell + 1 ) )
+		{
+			cellStamps[ cell ] = stamp;
+		}
+		
+		for ( int slot = changes.getClues().nextSetBit( 0 ); slot >= 0; slot = changes.getClues().nextSetBit( slot + 1 ) )
+		{
+			clueStamps[ slot ] = stamp;
+		}
+		
+		version.observe( replicaId, clock );
+		return true;
+	}
+	
+	/**
+	 * Encodes the changes a peer has not seen
+	 * @param peerVersion The version vector of the peer
+	 * @param delta The encoder that receives the delta
+	 * @return The encoder
+	 */
+	public PuzzleModelDelta createDelta( VersionVector peerVersion, PuzzleModelDelta delta )
+	{
+		commitLocalChanges();
+		cells.clear();
+		clues.clear();
+		
+		for ( int cell = 0; cell < cellStamps.length; ++cell )
+		{
+			if ( isUnseen( cellStamps[ cell ], peerVersion ) )
+			{
+				cells.set( cell );
+			}
+		}
+		
+		for ( int slot = 0; slot < clueStamps.length; ++slot )
+		{
+			if ( isUnseen( clueStamps[ slot ], peerVersion ) )
+			{
+				clues.set( slot );
+			}
+		}
+		
+		return delta.encode( model.snapshot(), cells, clues, cellStamps, clueStamps, version );
+	}
+	
+	private static boolean isUnseen( long stamp, VersionVector peerVersion )
+	{
+		return stamp != 0 && ( stamp >>> 16 ) > peerVersion.get( (int) stamp & 0xFFFF );
+	}
+	
+	/**
+	 * Applies a delta created by another replica. Changes older than those this replica holds are ignored. The
+	 * listeners of the model receive one event.
+	 * @param data The array holding the delta
+	 * @param offset The start of the delta
+	 * @param length The length of the delta
+	 * @return The number of cells and clues that changed
+	 */
+	public int applyDelta( byte[] data, int offset, int length )
+	{
+		commitLocalChanges();
+		
+		if ( reader == null )
+		{
+			reader = new PuzzleModelDeltaReader( data, offset, length );
+		}
+		
+		else
+		{
+			reader.reset( data, offset, length );
+		}
+		
+		if ( ! reader.hasStamps() || reader.getCellCount() != model.getCellCount() )
+		{
+			throw new IllegalArgumentException( "Not a replica delta of this grid" );
+		}
+		
+		int applied = 0;
+		model.beginUpdate();
+		
+		try
+		{
+			while ( reader.nextCell() )
+			{
+				if ( reader.getStamp() > cellStamps[ reader.getCell() ] )
+				{
+					model.setPlayerCode( reader.getCell(), reader.getCode( model ) );
+					model.setFlags( reader.getCell(), reader.getFlags() );
+					cellStamps[ reader.getCell() ] = reader.getStamp();
+					clock = Math.max( clock, reader.getStamp() >>> 16 );
+					++applied;
+				}
+			}
+			
+			while ( reader.nextClue() )
+			{
+				if ( reader.getSlot() < clueStamps.length && reader.getStamp() > clueStamps[ reader.getSlot() ] )
+				{
+					model.setClueText( reader.getSlot(), reader.getClueText() );
+					clueStamps[ reader.getSlot() ] = reader.getStamp();
+					clock = Math.max( clock, reader.getStamp() >>> 16 );
+					++applied;
+				}
+			}
+		}
+		
+		finally
+		{
+			model.endUpdate();
+			
+			// Remote changes are already stamped
+			generation = model.getGeneration();
+		}
+		
+		version.merge( reader.getVersion() );
+		return applied;
+	}
+
+}
@@ -0,0 +1,216 @@
+/**
+ * Copyright (c) 2010 Eric Peterson
+ * For contact information, visit http://www.epeterso2.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.epeterso2.jabberwordy.sync;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.epeterso2.jabberwordy.util.VarIntUtil;
+
+/**
+ * A version vector: for each replica of a puzzle, the highest change counter of that replica that has been seen.
+ * <p>
+ * Replicas are identified by numbers from 0 to {@link #MAX_REPLICA}. The entries are held in parallel sorted arrays.
+ * This class is not synchronized.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+public class VersionVector {
+	
+	/**
+	 * The largest replica identifier
+	 */
+	public static final int MAX_REPLICA = 0xFFFF;
+	
+	private int[] replicas = new int[ 4 ];
+	
+	private long[] counters = new long[ 4 ];
+	
+	private int size = 0;
+	
+	/**
+	 * Creates an empty version vector
+	 */
+	public VersionVector()
+	{
+		;
+	}
+	
+	/**
+	 * Creates a copy of a version vector
+	 * @param that The vector to copy
+	 */
+	public VersionVector( VersionVector that )
+	{
+		this.replicas = that.replicas.clone();
+		this.counters = that.counters.clone();
+		this.size = that.size;
+	}
+	
+	/**
+	 * Returns the highest counter seen from a replica
+	 * @param replica The replica
+	 * @return The counter, or zero if nothing has been seen from the replica
+	 */
+	public long get( int replica )
+	{
+		int index = Arrays.binarySearch( replicas, 0, size, replica );
+		return index < 0 ? 0 : counters[ index ];
+	}
+	
+	/**
+	 * Records that a counter of a replica has been seen
+	 * @param replica The replica
+	 * @param counter The counter; a counter lower than the one held is ignored
+	 */
+	public void observe( int replica, long counter )
+	{
+		if ( replica < 0 || replica > MAX_REPLICA )
+		{
+			throw new IllegalArgumentException( "Invalid replica: " + replica );
+		}
+		
+		int index = Arrays.binarySearch( replicas, 0, size, replica );
+		
+		if ( index >= 0 )
+		{
+			counters[ index ] = Math.max( counters[ index ], counter );
+			return;
+		}
+		
+		index = -index - 1;
+		
+		if ( size == replicas.length )
+		{
+			replicas = Arrays.copyOf( replicas, size * 2 );
+			counters = Arrays.copyOf( counters, size * 2 );
+		}
+		
+		System.arraycopy( replicas, index, replicas, index + 1, size - index );
+		System.arraycopy( counters, index, counters, index + 1, size - index );
+		replicas[ index ] = replica;
+		counters[ index ] = counter;
+		++size;
+	}
+	
+	/**
+	 * Raises each counter of this vector to at least the corresponding counter of another
+	 * @param that The other vector
+	 */
+	public void merge( VersionVector that )
+	{
+		for ( int i = 0; i < that.size; ++i )
+		{
+			observe( that.replicas[ i ], that.counters[ i ] );
+		}
+	}
+	
+	/**
+	 * Determines if this vector has seen everything another vector has seen
+	 * @param that The other vector
+	 * @return <tt>true</tt> if no counter of the other vector is higher than the corresponding counter of this one
+	 */
+	public boolean includes( VersionVector that )
+	{
+		for ( int i = 0; i < that.size; ++i )
+		{
+			if ( get( that.replicas[ i ] ) < that.counters[ i ] )
+			{
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Determines if two vectors record changes that neither has seen from the other
+	 * @param that The other vector
+	 * @return <tt>true</tt> if neither vector includes the other
+	 */
+	public boolean isConcurrentWith( VersionVector that )
+	{
+		return ! includes( that ) && ! that.includes( this );
+	}
+	
+	/**
+	 * Returns the number of replicas in the vector
+	 * @return The number of entries
+	 */
+	public int size()
+	{
+		return size;
+	}
+	
+	/**
+	 * Writes the vector as a count followed by replica and counter pairs, all as variable-length integers
+	 * @param buffer The buffer, which must have room for {@link #getEncodedLength()} bytes
+	 */
+	public void write( ByteBuffer buffer )
+	{
+		VarIntUtil.putUnsigned( buffer, size );
+		
+		for ( int i = 0; i < size; ++i )
+		{
+			VarIntUtil.putUnsigned( buffer, replicas[ i ] );
+			VarIntUtil.putUnsigned( buffer, counters[ i ] );
+		}
+	}
+	
+	/**
+	 * Returns the largest number of bytes {@link #write(ByteBuffer)} uses
+	 * @return The length in bytes
+	 */
+	public int getEncodedLength()
+	{
+		return VarIntUtil.MAX_LENGTH * ( 1 + 2 * size );
+	}
+	
+	/**
+	 * Replaces the contents of this vector with a vector read from a buffer
+	 * @param buffer The buffer
+	 */
+	public void read( ByteBuffer buffer )
+	{
+		size = 0;
+		
+		for ( long count = VarIntUtil.getUnsigned( buffer ); count > 0; --count )
+		{
+			int replica = (int) VarIntUtil.getUnsigned( buffer );
+			observe( replica, VarIntUtil.getUnsigned( buffer ) );
+		}
+	}
+	
+	public String toString()
+	{
+		StringBuilder builder = new StringBuilder( "{" );
+		
+		for ( int i = 0; i < size; ++i )
+		{
+			builder.append( i == 0 ? "" : ", " ).append( replicas[ i ] ).append( '=' ).append( counters[ i ] );
+		}
+		
+		return builder.append( '}' ).toString();
+	}
+
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) 2010 Eric Peterson
+ * For contact information, visit http://www.epeterso2.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.epeterso2.jabberwordy.util;
+
+/**
+ * The direction in which the answer to a crossword clue is entered into the grid.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+public enum ClueDirection {
+	
+	/**
+	 * An answer entered from left to right
+	 */
+	ACROSS( "Across" ),
+	
+	/**
+	 * An answer entered from top to bottom
+	 */
+	DOWN( "Down" );
+	
+	private String label = null;
+	
+	private ClueDirection( String label )
+	{
+		this.label = label;
+	}
+	
+	/**
+	 * Returns the conventional name of this direction, such as "Across", as used by the XPF and JSON formats
+	 * @return The name of the direction
+	 */
+	public String getLabel()
+	{
+		return label;
+	}
+	
+	/**
+	 * Finds the direction with the given name. Case is ignored, and the abbreviations "A" and "D" are accepted.
+	 * @param label The name of the direction
+	 * @return The direction, or <tt>null</tt> if the name is not recognized
+	 */
+	public static ClueDirection fromLabel( String label )
+	{
+		if ( label != null )
+		{
+			String trimmed = label.trim();
+			
+			for ( ClueDirection direction : values() )
+			{
+				if ( direction.label.equalsIgnoreCase( trimmed ) || direction.label.substring( 0, 1 ).equalsIgnoreCase( trimmed ) )
+				{
+					return direction;
+				}
+			}
+		}
+		
+		return null;
+	}
+
+}
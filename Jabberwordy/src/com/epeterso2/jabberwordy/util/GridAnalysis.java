@@ -0,0 +1,258 @@
+/**
+ * Copyright (c) 2010 Eric Peterson
+ * For contact information, visit http://www.epeterso2.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.epeterso2.jabberwordy.util;
+
+import java.util.BitSet;
+
+/**
+ * The result of checking a block pattern with a {@link GridAnalyzer}. Cells are identified by their index in row-major
+ * order, starting at 0.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+public class GridAnalysis {
+	
+	private int cols = 0;
+	
+	private int rows = 0;
+	
+	private int minimumLength = 0;
+	
+	private int openCount = 0;
+	
+	private int acrossCount = 0;
+	
+	private int downCount = 0;
+	
+	private int shortCount = 0;
+	
+	private int uncheckedCount = 0;
+	
+	private int componentCount = 0;
+	
+	private boolean rotational = false;
+	
+	private boolean leftRight = false;
+	
+	private boolean topBottom = false;
+	
+	private long[] shortAcross = null;
+	
+	private long[] shortDown = null;
+	
+	private long[] unchecked = null;
+	
+	GridAnalysis( int cols, int rows, int minimumLength )
+	{
+		this.cols = cols;
+		this.rows = rows;
+		this.minimumLength = minimumLength;
+		this.shortAcross = new long[ rows ];
+		this.shortDown = new long[ rows ];
+		this.unchecked = new long[ rows ];
+	}
+	
+	void addRow( int row, int open, long acrossStarts, long downStarts, long shortAcrossStarts, long shortDownStarts, long uncheckedCells )
+	{
+		openCount += open;
+		acrossCount += Long.bitCount( acrossStarts );
+		downCount += Long.bitCount( downStarts );
+		shortCount += Long.bitCount( shortAcrossStarts ) + Long.bitCount( shortDownStarts );
+		uncheckedCount += Long.bitCount( uncheckedCells );
+		shortAcross[ row ] = shortAcrossStarts;
+		shortDown[ row ] = shortDownStarts;
+		unchecked[ row ] = uncheckedCells;
+	}
+	
+	void setComponentCount( int componentCount )
+	{
+		this.componentCount = componentCount;
+	}
+	
+	void setSymmetry( boolean rotational, boolean leftRight, boolean topBottom )
+	{
+		this.rotational = rotational;
+		this.leftRight = leftRight;
+		this.topBottom = topBottom;
+	}
+	
+	public int getCols() {
+		return cols;
+	}
+	
+	public int getRows() {
+		return rows;
+	}
+	
+	public int getMinimumLength() {
+		return minimumLength;
+	}
+	
+	public int getOpenCount() {
+		return openCount;
+	}
+	
+	/**
+	 * Returns the number of across entries, which are runs of two or more open cells
+	 * @return The number of across entries
+	 */
+	public int getAcrossCount() {
+		return acrossCount;
+	}
+	
+	/**
+	 * Returns the number of down entries, which are runs of two or more open cells
+	 * @return The number of down entries
+	 */
+	public int getDownCount() {
+		return downCount;
+	}
+	
+	/**
+	 * Returns the number of entries shorter than the minimum length
+	 * @return The number of short entries
+	 */
+	public int getShortEntryCount() {
+		return shortCount;
+	}
+	
+	/**
+	 * Returns the number of open cells that are not part of both an across and a down entry
+	 * @return The number of unchecked cells
+	 */
+	public int getUncheckedCount() {
+		return uncheckedCount;
+	}
+	
+	/**
+	 * Returns the number of groups of open cells that cannot be reached from one another
+	 * @return The number of components, or 0 if the grid has no open cells
+	 */
+	public int getComponentCount() {
+		return componentCount;
+	}
+	
+	public boolean isConnected()
+	{
+		return componentCount <= 1;
+	}
+	
+	/**
+	 * Determines if the grid is unchanged when turned half way around
+	 * @return <tt>true</tt> if the grid has rotational symmetry
+	 */
+	public boolean isRotationallySymmetric() {
+		return rotational;
+	}
+	
+	/**
+	 * Determines if the grid is unchanged when reflected about its vertical center line
+	 * @return <tt>true</tt> if the left and right halves mirror each other
+	 */
+	public boolean isLeftRightSymmetric() {
+		return leftRight;
+	}
+	
+	/**
+	 * Determines if the grid is unchanged when reflected about its horizontal center line
+	 * @return <tt>true</tt> if the top and bottom halves mirror each other
+	 */
+	public boolean isTopBottomSymmetric() {
+		return topBottom;
+	}
+	
+	public boolean isSymmetric()
+	{
+		return rotational || leftRight || topBottom;
+	}
+	
+	/**
+	 * Determines if the grid passes every check: it is connected and symmetric, and has no short entries and no
+	 * unchecked cells
+	 * @return <tt>true</tt> if the grid is acceptable
+	 */
+	public boolean isValid()
+	{
+		return isConnected() && isSymmetric() && shortCount == 0 && uncheckedCount == 0;
+	}
+	
+	public boolean isUnchecked( int cell )
+	{
+		return ( unchecked[ cell / cols ] & 1L << ( cell % cols ) ) != 0;
+	}
+	
+	/**
+	 * Determines if a short entry starts at a cell
+	 * @param cell The cell index
+	 * @param direction The direction of the entry
+	 * @return <tt>true</tt> if an entry shorter than the minimum length starts at the cell
+	 */
+	public boolean isShortEntry( int cell, ClueDirection direction )
+	{
+		long[] starts = direction == ClueDirection.ACROSS ? shortAcross : shortDown;
+		return ( starts[ cell / cols ] & 1L << ( cell % cols ) ) != 0;
+	}
+	
+	/**
+	 * Returns the unchecked cells
+	 * @return A new set of cell indexes
+	 */
+	public BitSet getUncheckedCells()
+	{
+		return toBitSet( unchecked );
+	}
+	
+	/**
+	 * Returns the start cells of the short entries in one direction
+	 * @param direction The direction
+	 * @return A new set of cell indexes
+	 */
+	public BitSet getShortEntries( ClueDirection direction )
+	{
+		return toBitSet( direction == ClueDirection.ACROSS ? shortAcross : shortDown );
+	}
+	
+	private BitSet toBitSet( long[] rowBits )
+	{
+		BitSet set = new BitSet( cols * rows );
+		
+		for ( int row = 0; row < rows; ++row )
+		{
+			for ( long bits = rowBits[ row ]; bits != 0; bits &= bits - 1 )
+			{
+				set.set( row * cols + Long.numberOfTrailingZeros( bits ) );
+			}
+		}
+		
+		return set;
+	}
+	
+	public String toString()
+	{
+		return new StringBuilder().append( cols ).append( 'x' ).append( rows ).append( isValid() ? " valid" : " invalid" )
+			.append( ", " ).append( componentCount ).append( " components, " ).append( shortCount ).append( " short entries, " )
+			.append( uncheckedCount ).append( " unchecked cells" ).append( rotational ? ", rotational" : "" )
+			.append( leftRight ? ", left-right" : "" ).append( topBottom ? ", top-bottom" : "" ).toString();
+	}
+	
+}
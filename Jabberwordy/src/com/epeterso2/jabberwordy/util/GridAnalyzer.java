@@ -0,0 +1,291 @@
+/**
+ * Copyright (c) 2010 Eric Peterson
+ * For contact information, visit http://www.epeterso2.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.epeterso2.jabberwordy.util;
+
+/**
+ * Checks the block pattern of a grid against the rules a submitted construction is expected to follow: the open cells
+ * are connected, no entry is shorter than a minimum length, the pattern is symmetric, and every open cell is part of
+ * both an across and a down entry.
+ * <p>
+ * The open cells of each row are held as the bits of one <tt>long</tt>, bit 0 being the first column, so grids may be
+ * up to 64 columns wide. Entries are found by shifting and masking whole rows, the open cells are flood filled a row at
+ * a time with a doubling fill that crosses a run of any length in six steps, and symmetry is checked with
+ * {@link Long#reverse(long)}. An analyzer reuses its buffers from one grid to the next and is not safe for use by
+ * several threads; give each thread its own.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+public class GridAnalyzer {
+	
+	/**
+	 * The default shortest allowed entry
+	 */
+	public static final int DEFAULT_MINIMUM_LENGTH = 3;
+	
+	private int minimumLength = 0;
+	
+	private long[] open = new long[ 0 ];
+	
+	private long[] region = new long[ 0 ];
+	
+	private long[] unvisited = new long[ 0 ];
+	
+	/**
+	 * Creates an analyzer with the default minimum entry length
+	 */
+	public GridAnalyzer()
+	{
+		this( DEFAULT_MINIMUM_LENGTH );
+	}
+	
+	/**
+	 * Creates an analyzer
+	 * @param minimumLength The shortest allowed entry, at least 2
+	 */
+	public GridAnalyzer( int minimumLength )
+	{
+		if ( minimumLength < 2 || minimumLength > 64 )
+		{
+			throw new IllegalArgumentException( "Invalid minimum entry length: " + minimumLength );
+		}
+		
+		this.minimumLength = minimumLength;
+	}
+	
+	public int getMinimumLength()
+	{
+		return minimumLength;
+	}
+	
+	/**
+	 * Analyzes the grid of a slot table
+	 * @param slots The slot table
+	 * @return The analysis
+	 */
+	public GridAnalysis analyze( GridSlotTable slots )
+	{
+		return analyze( slots.getCols(), slots.getRows(), slots.getBlocks() );
+	}
+	
+	/**
+	 * Analyzes a grid
+	 * @param cols The number of columns in the grid, at most 64
+	 * @param rows The number of rows in the grid
+	 * @param blocks An array of <tt>cols * rows</tt> values in row-major order; true for each block
+	 * @return The analysis
+	 */
+	public GridAnalysis analyze( int cols, int rows, boolean[] blocks )
+	{
+		if ( blocks.length != cols * rows )
+		{
+			throw new IllegalArgumentException( "Block pattern has " + blocks.length + " cells, expected " + cols * rows );
+		}
+		
+		long[] openRows = new long[ rows ];
+		
+		for ( int cell = 0; cell < blocks.length; ++cell )
+		{
+			openRows[ cell / cols ] |= blocks[ cell ] ? 0 : 1L << ( cell % cols );
+		}
+		
+		return analyze( cols, openRows );
+	}
+	
+	/**
+	 * Analyzes a grid given as row bitsets
+	 * @param cols The number of columns in the grid, at most 64
+	 * @param openRows One value for each row, in which bit <i>n</i> is set if column <i>n</i>, starting at 0, is open.
+	 * The array is not kept.
+	 * @return The analysis
+	 */
+	public GridAnalysis analyze( int cols, long[] openRows )
+	{
+		if ( cols < 1 || cols > 64 )
+		{
+			throw new IllegalArgumentException( "Grid must be 1 to 64 columns wide: " + cols );
+		}
+		
+		int rows = openRows.length;
+		long mask = cols == 64 ? -1L : ( 1L << cols ) - 1;
+		
+		if ( open.length < rows + 2 )
+		{
+			open = new long[ rows + 2 ];
+			region = new long[ rows + 2 ];
+			unvisited = new long[ rows + 2 ];
+		}
+		
+		// Pad the grid with a row of blocks above and below so that every row has two neighbors
+		open[ 0 ] = open[ rows + 1 ] = 0;
+		
+		for ( int row = 0; row < rows; ++row )
+		{
+			open[ row + 1 ] = openRows[ row ] & mask;
+		}
+		
+		GridAnalysis analysis = new GridAnalysis( cols, rows, minimumLength );
+		scanEntries( rows, analysis );
+		countComponents( rows, analysis );
+		checkSymmetry( cols, rows, analysis );
+		return analysis;
+	}
+	
+	/**
+	 * Counts the entries and finds the short entries and unchecked cells, a row at a time
+	 */
+	private void scanEntries( int rows, GridAnalysis analysis )
+	{
+		for ( int row = 1; row <= rows; ++row )
+		{
+			long cells = open[ row ];
+			long above = open[ row - 1 ];
+			long below = open[ row + 1 ];
+			
+			// Across: a run starts where the cell to its left is closed, and has two or more cells if the next is open
+			long acrossStarts = cells & ~( cells << 1 ) & ( cells >>> 1 );
+			long acrossSingles = cells & ~( cells << 1 ) & ~( cells >>> 1 );
+			
+			// Down: the same, looking at the rows above and below
+			long downStarts = cells & ~above & below;
+			long downSingles = cells & ~above & ~below;
+			
+			// A run reaches the minimum length if every cell of the window starting at it is open
+			long acrossLong = cells;
+			long downLong = cells;
+			
+			for ( int i = 1; i < minimumLength; ++i )
+			{
+				acrossLong &= cells >>> i;
+				downLong &= row + i <= rows ? open[ row + i ] : 0;
+			}
+			
+			analysis.addRow( row - 1, Long.bitCount( cells ), acrossStarts, downStarts, acrossStarts & ~acrossLong, downStarts & ~downLong, acrossSingles | downSingles );
+		}
+	}
+	
+	/**
+	 * Flood fills the open cells from the first unvisited one until every open cell has been visited
+	 */
+	private void countComponents( int rows, GridAnalysis analysis )
+	{
+		System.arraycopy( open, 0, unvisited, 0, rows + 2 );
+		int components = 0;
+		
+		for ( int row = 1; row <= rows; ++row )
+		{
+			while ( unvisited[ row ] != 0 )
+			{
+				fill( row, Long.lowestOneBit( unvisited[ row ] ), rows );
+				++components;
+				
+				for ( int r = row; r <= rows; ++r )
+				{
+					unvisited[ r ] &= ~region[ r ];
+				}
+			}
+		}
+		
+		analysis.setComponentCount( components );
+	}
+	
+	/**
+	 * Fills the region of open cells reachable from a seed, sweeping down and up the rows until no row grows
+	 */
+	private void fill( int seedRow, long seed, int rows )
+	{
+		for ( int row = 0; row < rows + 2; ++row )
+		{
+			region[ row ] = 0;
+		}
+		
+		region[ seedRow ] = spread( seed, open[ seedRow ] );
+		boolean grown = true;
+		
+		while ( grown )
+		{
+			grown = false;
+			
+			for ( int row = 2; row <= rows; ++row )
+			{
+				grown |= grow( row, region[ row - 1 ] );
+			}
+			
+			for ( int row = rows - 1; row >= 1; --row )
+			{
+				grown |= grow( row, region[ row + 1 ] );
+			}
+		}
+	}
+	
+	private boolean grow( int row, long neighbor )
+	{
+		long entering = neighbor & open[ row ] & ~region[ row ];
+		
+		if ( entering == 0 )
+		{
+			return false;
+		}
+		
+		region[ row ] = spread( region[ row ] | entering, open[ row ] );
+		return true;
+	}
+	
+	/**
+	 * Extends a set of cells to the whole of the runs of open cells that contain them, doubling the distance covered
+	 * at each step
+	 */
+	private static long spread( long cells, long open )
+	{
+		long left = open;
+		long right = open;
+		
+		for ( int shift = 1; shift < 64; shift <<= 1 )
+		{
+			cells |= left & ( cells << shift ) | right & ( cells >>> shift );
+			left &= left << shift;
+			right &= right >>> shift;
+		}
+		
+		return cells;
+	}
+	
+	private void checkSymmetry( int cols, int rows, GridAnalysis analysis )
+	{
+		boolean rotational = true;
+		boolean leftRight = true;
+		boolean topBottom = true;
+		
+		for ( int row = 1; row <= rows && ( rotational || leftRight || topBottom ); ++row )
+		{
+			long cells = open[ row ];
+			long opposite = open[ rows + 1 - row ];
+			
+			rotational &= cells == Long.reverse( opposite ) >>> ( 64 - cols );
+			leftRight &= cells == Long.reverse( cells ) >>> ( 64 - cols );
+			topBottom &= cells == opposite;
+		}
+		
+		analysis.setSymmetry( rotational, leftRight, topBottom );
+	}
+	
+}
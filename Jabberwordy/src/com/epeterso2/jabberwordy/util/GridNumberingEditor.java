@@ -0,0 +1,414 @@
+/**
+ * Copyright (c) 2010 Eric Peterson
+ * For contact information, visit http://www.epeterso2.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.epeterso2.jabberwordy.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The numbering of a grid under construction, kept up to date as blocks are placed and removed.
+ * <p>
+ * Placing or removing a block changes only the slots that start at the cell, just after it or just below it, and the
+ * slots that run into it from the left or from above. {@link #setBlock(int, boolean, boolean)} looks at those slots
+ * alone, then shifts the numbers of the cells after the first cell that gained or lost a number, and returns a
+ * {@link GridSlotChange} for every slot that was added, removed, renumbered or resized, so that an editor can update its
+ * clue lists in place instead of numbering the grid again. The grid is numbered by the same rules as
+ * {@link GridSlotTable}.
+ * <p>
+ * The symmetric partner of a cell is the cell in the same position when the grid is turned half way around, which is
+ * the symmetry of most published grids. Instances of this class are not safe for use by several threads.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+public class GridNumberingEditor {
+	
+	private static final int ACROSS = 1;
+	
+	private static final int DOWN = 2;
+	
+	private int cols = 0;
+	
+	private int rows = 0;
+	
+	private boolean[] blocks = null;
+	
+	private byte[] starts = null;
+	
+	private int[] numbers = null;
+	
+	private int numberCount = 0;
+	
+	/**
+	 * Creates an editor for a grid
+	 * @param cols The number of columns in the grid
+	 * @param rows The number of rows in the grid
+	 * @param blocks An array of <tt>cols * rows</tt> values in row-major order; a cell is a block if its entry is true.
+	 * The array is copied.
+	 */
+	public GridNumberingEditor( int cols, int rows, boolean[] blocks )
+	{
+		int cells = cols * rows;
+		
+		if ( blocks.length != cells )
+		{
+			throw new IllegalArgumentException( "Block pattern has " + blocks.length + " cells, expected " + cells );
+		}
+		
+		this.cols = cols;
+		this.rows = rows;
+		this.blocks = Arrays.copyOf( blocks, cells );
+		this.starts = new byte[ cells ];
+		this.numbers = new int[ cells ];
+		
+		for ( int cell = 0; cell < cells; ++cell )
+		{
+			starts[ cell ] = computeStarts( cell );
+			numbers[ cell ] = starts[ cell ] == 0 ? 0 : ++numberCount;
+		}
+	}
+	
+	/**
+	 * Creates an editor for the grid of a slot table
+	 * @param slots The slot table
+	 */
+	public GridNumberingEditor( GridSlotTable slots )
+	{
+		this( slots.getCols(), slots.getRows(), slots.getBlocks() );
+	}
+	
+	public int getCols()
+	{
+		return cols;
+	}
+	
+	public int getRows()
+	{
+		return rows;
+	}
+	
+	public int getCellCount()
+	{
+		return blocks.length;
+	}
+	
+	public boolean isBlock( int cell )
+	{
+		return blocks[ cell ];
+	}
+	
+	/**
+	 * Returns the clue number of a cell
+	 * @param cell The cell index
+	 * @return The clue number, or 0 if no slot starts at the cell
+	 */
+	public int getNumber( int cell )
+	{
+		return numbers[ cell ];
+	}
+	
+	/**
+	 * Returns the highest clue number of the grid
+	 * @return The number of cells at which a slot starts
+	 */
+	public int getNumberCount()
+	{
+		return numberCount;
+	}
+	
+	public boolean isStartOfAcross( int cell )
+	{
+		return ( starts[ cell ] & ACROSS ) != 0;
+	}
+	
+	public boolean isStartOfDown( int cell )
+	{
+		return ( starts[ cell ] & DOWN ) != 0;
+	}
+	
+	/**
+	 * Returns the cell that takes the place of a cell when the grid is turned half way around
+	 * @param cell The cell index
+	 * @return The index of the symmetric partner, which is the cell itself at the center of the grid
+	 */
+	public int getSymmetricCell( int cell )
+	{
+		return blocks.length - 1 - cell;
+	}
+	
+	/**
+	 * Returns a copy of the block pattern of the grid
+	 * @return An array of <tt>cols * rows</tt> values in row-major order; true for each block
+	 */
+	public boolean[] getBlocks()
+	{
+		return Arrays.copyOf( blocks, blocks.length );
+	}
+	
+	/**
+	 * Returns the slot table of the grid as it is now, from the shared {@link GridSlotTableCache}
+	 * @return The slot table
+	 */
+	public GridSlotTable getSlotTable()
+	{
+		return GridSlotTableCache.getDefault().get( cols, rows, blocks );
+	}
+	
+	/**
+	 * Turns a block into an open cell or an open cell into a block
+	 * @param cell The cell index
+	 * @param symmetric <tt>true</tt> to give the symmetric partner of the cell the same state
+	 * @return The slots that changed, in the order of their start cells
+	 */
+	public List<GridSlotChange> toggleBlock( int cell, boolean symmetric )
+	{
+		return setBlock( cell, ! blocks[ cell ], symmetric );
+	}
+	
+	/**
+	 * Places or removes a block and renumbers the grid
+	 * @param cell The cell index
+	 * @param block <tt>true</tt> to place a block, <tt>false</tt> to open the cell
+	 * @param symmetric <tt>true</tt> to give the symmetric partner of the cell the same state
+	 * @return The slots that changed, in the order of their start cells, across before down. The list is empty if the
+	 * cells already had the state.
+	 */
+	public List<GridSlotChange> setBlock( int cell, boolean block, boolean symmetric )
+	{
+		int partner = symmetric ? getSymmetricCell( cell ) : cell;
+		
+		if ( blocks[ cell ] == block && blocks[ partner ] == block )
+		{
+			return Collections.emptyList();
+		}
+		
+		// Find the slots the change can touch, and record their state before it
+		int[] candidates = new int[ 12 ];
+		int count = addCandidates( cell, candidates, 0 );
+		count = partner == cell ? count : addCandidates( partner, candidates, count );
+		
+		int[] oldNumbers = new int[ count ];
+		int[] oldLengths = new int[ count ];
+		
+		for ( int i = 0; i < count; ++i )
+		{
+			int start = candidates[ i ] >> 1;
+			int direction = ( candidates[ i ] & 1 ) == 0 ? ACROSS : DOWN;
+			oldNumbers[ i ] = ( starts[ start ] & direction ) == 0 ? 0 : numbers[ start ];
+			oldLengths[ i ] = oldNumbers[ i ] == 0 ? 0 : getLength( start, direction );
+		}
+		
+		blocks[ cell ] = block;
+		blocks[ partner ] = block;
+		
+		// Only the candidate cells can gain or lose a start
+		int first = blocks.length;
+		
+		for ( int i = 0; i < count; ++i )
+		{
+			int start = candidates[ i ] >> 1;
+			byte updated = computeStarts( start );
+			
+			if ( ( updated == 0 ) != ( starts[ start ] == 0 ) )
+			{
+				first = Math.min( first, start );
+			}
+			
+			starts[ start ] = updated;
+		}
+		
+		List<GridSlotChange> changes = new ArrayList<GridSlotChange>();
+		
+		if ( first < blocks.length )
+		{
+			renumber( first, candidates, count, changes );
+		}
+		
+		for ( int i = 0; i < count; ++i )
+		{
+			int start = candidates[ i ] >> 1;
+			int direction = ( candidates[ i ] & 1 ) == 0 ? ACROSS : DOWN;
+			int newNumber = ( starts[ start ] & direction ) == 0 ? 0 : numbers[ start ];
+			int newLength = newNumber == 0 ? 0 : getLength( start, direction );
+			
+			if ( oldNumbers[ i ] != newNumber || oldLengths[ i ] != newLength )
+			{
+				changes.add( new GridSlotChange( toDirection( direction ), start, oldNumbers[ i ], newNumber, oldLengths[ i ], newLength ) );
+			}
+		}
+		
+		Collections.sort( changes, new Comparator<GridSlotChange>()
+		{
+			@Override
+			public int compare( GridSlotChange first, GridSlotChange second )
+			{
+				return first.getStart() != second.getStart() ? first.getStart() - second.getStart() : first.getDirection().compareTo( second.getDirection() );
+			}
+		} );
+		
+		return changes;
+	}
+	
+	/**
+	 * Adds the slots a change to a cell can touch: those starting at the cell and its neighbors after it, and those
+	 * running into it. Each is recorded as its start cell times two, plus one for down.
+	 */
+	private int addCandidates( int cell, int[] candidates, int count )
+	{
+		int col = cell % cols;
+		
+		if ( col > 0 )
+		{
+			count = addCandidate( findStart( cell - 1, 1 ) * 2, candidates, count );
+		}
+		
+		count = addCandidate( cell * 2, candidates, count );
+		
+		if ( col + 1 < cols )
+		{
+			count = addCandidate( ( cell + 1 ) * 2, candidates, count );
+		}
+		
+		if ( cell >= cols )
+		{
+			count = addCandidate( findStart( cell - cols, cols ) * 2 + 1, candidates, count );
+		}
+		
+		count = addCandidate( cell * 2 + 1, candidates, count );
+		
+		if ( cell + cols < blocks.length )
+		{
+			count = addCandidate( ( cell + cols ) * 2 + 1, candidates, count );
+		}
+		
+		return count;
+	}
+	
+	private int addCandidate( int candidate, int[] candidates, int count )
+	{
+		for ( int i = 0; i < count; ++i )
+		{
+			if ( candidates[ i ] == candidate )
+			{
+				return count;
+			}
+		}
+		
+		candidates[ count ] = candidate;
+		return count + 1;
+	}
+	
+	/**
+	 * Finds the first cell of the run of open cells through a cell, or the cell itself if it is a block
+	 */
+	private int findStart( int cell, int step )
+	{
+		while ( ! blocks[ cell ] && ( step == cols ? cell >= cols : cell % cols > 0 ) && ! blocks[ cell - step ] )
+		{
+			cell -= step;
+		}
+		
+		return cell;
+	}
+	
+	/**
+	 * Numbers the cells from the first one that gained or lost a start, reporting the slots elsewhere that only
+	 * changed number
+	 */
+	private void renumber( int first, int[] candidates, int count, List<GridSlotChange> changes )
+	{
+		int number = 0;
+		
+		for ( int cell = first - 1; cell >= 0 && number == 0; --cell )
+		{
+			number = numbers[ cell ];
+		}
+		
+		for ( int cell = first; cell < blocks.length; ++cell )
+		{
+			int oldNumber = numbers[ cell ];
+			numbers[ cell ] = starts[ cell ] == 0 ? 0 : ++number;
+			
+			if ( oldNumber != 0 && numbers[ cell ] != 0 && oldNumber != numbers[ cell ] )
+			{
+				for ( int direction = ACROSS; direction <= DOWN; ++direction )
+				{
+					if ( ( starts[ cell ] & direction ) != 0 && ! contains( candidates, count, cell * 2 + direction - 1 ) )
+					{
+						int length = getLength( cell, direction );
+						changes.add( new GridSlotChange( toDirection( direction ), cell, oldNumber, numbers[ cell ], length, length ) );
+					}
+				}
+			}
+		}
+		
+		numberCount = number;
+	}
+	
+	private boolean contains( int[] candidates, int count, int candidate )
+	{
+		for ( int i = 0; i < count; ++i )
+		{
+			if ( candidates[ i ] == candidate )
+			{
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	private byte computeStarts( int cell )
+	{
+		if ( blocks[ cell ] )
+		{
+			return 0;
+		}
+		
+		int col = cell % cols;
+		boolean across = ( col == 0 || blocks[ cell - 1 ] ) && col + 1 < cols && ! blocks[ cell + 1 ];
+		boolean down = ( cell < cols || blocks[ cell - cols ] ) && cell + cols < blocks.length && ! blocks[ cell + cols ];
+		return (byte) ( ( across ? ACROSS : 0 ) | ( down ? DOWN : 0 ) );
+	}
+	
+	private int getLength( int start, int direction )
+	{
+		int step = direction == ACROSS ? 1 : cols;
+		int length = 0;
+		
+		for ( int cell = start; cell < blocks.length && ! blocks[ cell ] && ( step == cols || cell / cols == start / cols ); cell += step )
+		{
+			++length;
+		}
+		
+		return length;
+	}
+	
+	private ClueDirection toDirection( int direction )
+	{
+		return direction == ACROSS ? ClueDirection.ACROSS : ClueDirection.DOWN;
+	}
+	
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright (c) 2010 Eric Peterson
+ * For contact information, visit http://www.epeterso2.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.epeterso2.jabberwordy.util;
+
+/**
+ * A change to one slot of a grid made by a {@link GridNumberingEditor}. The slot is identified by its start cell and
+ * direction; a slot that was added has no old number, a slot that was removed has no new number, and a slot that
+ * kept its start cell may have been renumbered, resized, or both.
+ * <p>
+ * Instances of this class are immutable.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+public class GridSlotChange {
+	
+	private ClueDirection direction = null;
+	
+	private int start = 0;
+	
+	private int oldNumber = 0;
+	
+	private int newNumber = 0;
+	
+	private int oldLength = 0;
+	
+	private int newLength = 0;
+	
+	/**
+	 * Creates a change
+	 * @param direction The direction of the slot
+	 * @param start The index of the start cell of the slot
+	 * @param oldNumber The clue number of the slot before the change, or 0 if the slot was added
+	 * @param newNumber The clue number of the slot after the change, or 0 if the slot was removed
+	 * @param oldLength The length of the slot before the change, or 0 if the slot was added
+	 * @param newLength The length of the slot after the change, or 0 if the slot was removed
+	 */
+	public GridSlotChange( ClueDirection direction, int start, int oldNumber, int newNumber, int oldLength, int newLength )
+	{
+		this.direction = direction;
+		this.start = start;
+		this.oldNumber = oldNumber;
+		this.newNumber = newNumber;
+		this.oldLength = oldLength;
+		this.newLength = newLength;
+	}
+	
+	public ClueDirection getDirection() {
+		return direction;
+	}
+	
+	public int getStart() {
+		return start;
+	}
+	
+	public int getOldNumber() {
+		return oldNumber;
+	}
+	
+	public int getNewNumber() {
+		return newNumber;
+	}
+	
+	public int getOldLength() {
+		return oldLength;
+	}
+	
+	public int getNewLength() {
+		return newLength;
+	}
+	
+	/**
+	 * Determines if the slot did not exist before the change
+	 * @return <tt>true</tt> if the slot was added
+	 */
+	public boolean isAdded()
+	{
+		return oldNumber == 0;
+	}
+	
+	/**
+	 * Determines if the slot no longer exists after the change
+	 * @return <tt>true</tt> if the slot was removed
+	 */
+	public boolean isRemoved()
+	{
+		return newNumber == 0;
+	}
+	
+	/**
+	 * Determines if the slot exists before and after the change with different clue numbers
+	 * @return <tt>true</tt> if the slot was renumbered
+	 */
+	public boolean isRenumbered()
+	{
+		return oldNumber != 0 && newNumber != 0 && oldNumber != newNumber;
+	}
+	
+	/**
+	 * Determines if the slot exists before and after the change with different lengths
+	 * @return <tt>true</tt> if the slot was resized
+	 */
+	public boolean isResized()
+	{
+		return oldNumber != 0 && newNumber != 0 && oldLength != newLength;
+	}
+	
+	public String toString()
+	{
+		return new StringBuilder().append( direction.getLabel() ).append( ' ' ).append( oldNumber ).append( "->" ).append( newNumber )
+			.append( " @" ).append( start ).append( " length " ).append( oldLength ).append( "->" ).append( newLength ).toString();
+	}
+	
+}
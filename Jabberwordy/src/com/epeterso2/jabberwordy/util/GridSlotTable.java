@@ -0,0 +1,481 @@
+/**
+ * Copyright (c) 2010 Eric Peterson
+ * For contact information, visit http://www.epeterso2.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.epeterso2.jabberwordy.util;
+
+import java.util.Arrays;
+
+/**
+ * The numbering and entry layout of a crossword grid, computed once from its block pattern and held in primitive arrays.
+ * <p>
+ * Cells are identified by their index in row-major order, starting at 0. The grid is numbered according to the
+ * conventional rules described by {@link StandardClueNumberCalculator}. Each across or down entry of the grid is a
+ * <i>slot</i>. Slots are identified by an index starting at 0: all across slots come first, in increasing order of clue
+ * number, followed by all down slots in increasing order of clue number.
+ * <p>
+ * The table also serves as the navigation index of the grid: besides the slots through each cell, it holds for each
+ * cell the nearest open cell before and after it in its row and column, so that cursor movement, entry highlighting and
+ * moving from clue to clue never search the grid.
+ * <p>
+ * Instances of this class are immutable and may be shared freely between threads and between puzzles that have the
+ * same block pattern.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ * @see StandardClueNumberCalculator
+ */
+public class GridSlotTable {
+	
+	private int cols = 0;
+	
+	private int rows = 0;
+	
+	private boolean[] blocks = null;
+	
+	private short[] numbers = null;
+	
+	private int[] acrossSlots = null;
+	
+	private int[] downSlots = null;
+	
+	private int acrossCount = 0;
+	
+	private int[] starts = null;
+	
+	private int[] lengths = null;
+	
+	private int[] slotNumbers = null;
+	
+	private int[] nextAcross = null;
+	
+	private int[] previousAcross = null;
+	
+	private int[] nextDown = null;
+	
+	private int[] previousDown = null;
+	
+	/**
+	 * Computes the slot table of a grid
+	 * @param cols The number of columns in the grid
+	 * @param rows The number of rows in the grid
+	 * @param blocks An array of <tt>cols * rows</tt> values in row-major order; a cell is a block if its entry is true.
+	 * The array is copied.
+	 */
+	public GridSlotTable( int cols, int rows, boolean[] blocks )
+	{
+		int cells = cols * rows;
+		
+		if ( blocks.length != cells )
+		{
+			throw new IllegalArgumentException( "Block pattern has " + blocks.length + " cells, expected " + cells );
+		}
+		
+		this.cols = cols;
+		this.rows = rows;
+		this.blocks = Arrays.copyOf( blocks, cells );
+		this.numbers = new short[ cells ];
+		this.acrossSlots = new int[ cells ];
+		this.downSlots = new int[ cells ];
+		
+		// Number the grid and count the slots in each direction
+		int number = 0;
+		int downCount = 0;
+		
+		for ( int cell = 0; cell < cells; ++cell )
+		{
+			boolean across = isStartOfAcross( cell );
+			boolean down = isStartOfDown( cell );
+			
+			if ( across || down )
+			{
+				numbers[ cell ] = (short) ++number;
+				acrossCount += across ? 1 : 0;
+				downCount += down ? 1 : 0;
+			}
+		}
+		
+		starts = new int[ acrossCount + downCount ];
+		lengths = new int[ starts.length ];
+		slotNumbers = new int[ starts.length ];
+		Arrays.fill( acrossSlots, -1 );
+		Arrays.fill( downSlots, -1 );
+		
+		// Lay out the slots, across slots first, and record the slots that pass through each cell
+		for ( int cell = 0, across = 0, down = acrossCount; cell < cells; ++cell )
+		{
+			if ( isStartOfAcross( cell ) )
+			{
+				layOut( across++, cell, 1, acrossSlots );
+			}
+			
+			if ( isStartOfDown( cell ) )
+			{
+				layOut( down++, cell, cols, downSlots );
+			}
+		}
+		
+		nextAcross = new int[ cells ];
+		previousAcross = new int[ cells ];
+		nextDown = new int[ cells ];
+		previousDown = new int[ cells ];
+		
+		// Link each cell to the nearest open cells on either side of it in its row and column
+		for ( int row = 0; row < rows; ++row )
+		{
+			link( row * cols, 1, cols, nextAcross, previousAcross );
+		}
+		
+		for ( int col = 0; col < cols; ++col )
+		{
+			link( col, cols, rows, nextDown, previousDown );
+		}
+	}
+	
+	private void link( int first, int step, int count, int[] next, int[] previous )
+	{
+		for ( int i = 0, open = -1; i < count; ++i )
+		{
+			int cell = first + i * step;
+			previous[ cell ] = open;
+			open = blocks[ cell ] ? open : cell;
+		}
+		
+		for ( int i = count - 1, open = -1; i >= 0; --i )
+		{
+			int cell = first + i * step;
+			next[ cell ] = open;
+			open = blocks[ cell ] ? open : cell;
+		}
+	}
+	
+	private void layOut( int slot, int start, int step, int[] cellSlots )
+	{
+		starts[ slot ] = start;
+		slotNumbers[ slot ] = numbers[ start ];
+		
+		int length = 0;
+		
+		for ( int cell = start; cell < blocks.length && ! blocks[ cell ] && ( step == cols || cell / cols == start / cols ); cell += step )
+		{
+			cellSlots[ cell ] = slot;
+			++length;
+		}
+		
+		lengths[ slot ] = length;
+	}
+	
+	private boolean isStartOfAcross( int cell )
+	{
+		int col = cell % cols;
+		return ! blocks[ cell ] && ( col == 0 || blocks[ cell - 1 ] ) && col + 1 < cols && ! blocks[ cell + 1 ];
+	}
+	
+	private boolean isStartOfDown( int cell )
+	{
+		return ! blocks[ cell ] && ( cell < cols || blocks[ cell - cols ] ) && cell + cols < blocks.length && ! blocks[ cell + cols ];
+	}
+	
+	/**
+	 * Returns the number of columns in the grid
+	 * @return The number of columns
+	 */
+	public int getCols()
+	{
+		return cols;
+	}
+	
+	/**
+	 * Returns the number of rows in the grid
+	 * @return The number of rows
+	 */
+	public int getRows()
+	{
+		return rows;
+	}
+	
+	/**
+	 * Returns the number of cells in the grid
+	 * @return The number of cells
+	 */
+	public int getCellCount()
+	{
+		return blocks.length;
+	}
+	
+	/**
+	 * Returns the index of the cell at a coordinate
+	 * @param col The column, starting at 1
+	 * @param row The row, starting at 1
+	 * @return The cell index
+	 */
+	public int getCellIndex( int col, int row )
+	{
+		return ( row - 1 ) * cols + col - 1;
+	}
+	
+	/**
+	 * Returns the coordinate of a cell
+	 * @param cell The cell index
+	 * @return The coordinate, with column and row starting at 1
+	 */
+	public Coordinate getCoordinate( int cell )
+	{
+		return new Coordinate( cell % cols + 1, cell / cols + 1 );
+	}
+	
+	/**
+	 * Determines if a cell is a block
+	 * @param cell The cell index
+	 * @return <tt>true</tt> if the cell is a block
+	 */
+	public boolean isBlock( int cell )
+	{
+		return blocks[ cell ];
+	}
+	
+	/**
+	 * Returns a copy of the block pattern of the grid
+	 * @return An array of <tt>cols * rows</tt> values in row-major order; true for each block
+	 */
+	public boolean[] getBlocks()
+	{
+		return Arrays.copyOf( blocks, blocks.length );
+	}
+	
+	/**
+	 * Determines if this table was computed for a grid of a given size and block pattern
+	 */
+	boolean matches( int cols, int rows, boolean[] blocks )
+	{
+		return this.cols == cols && this.rows == rows && Arrays.equals( this.blocks, blocks );
+	}
+	
+	/**
+	 * Returns the clue number printed in a cell
+	 * @param cell The cell index
+	 * @return The clue number, or zero if the cell is not numbered
+	 */
+	public int getCellNumber( int cell )
+	{
+		return numbers[ cell ];
+	}
+	
+	/**
+	 * Returns the total number of slots in the grid
+	 * @return The number of slots
+	 */
+	public int getSlotCount()
+	{
+		return starts.length;
+	}
+	
+	/**
+	 * Returns the number of across slots in the grid. The across slots are those with indexes from zero up to,
+	 * but not including, this value.
+	 * @return The number of across slots
+	 */
+	public int getAcrossSlotCount()
+	{
+		return acrossCount;
+	}
+	
+	/**
+	 * Returns the direction of a slot
+	 * @param slot The slot index
+	 * @return The direction
+	 */
+	public ClueDirection getDirection( int slot )
+	{
+		return slot < acrossCount ? ClueDirection.ACROSS : ClueDirection.DOWN;
+	}
+	
+	/**
+	 * Returns the clue number of a slot
+	 * @param slot The slot index
+	 * @return The clue number
+	 */
+	public int getNumber( int slot )
+	{
+		return slotNumbers[ slot ];
+	}
+	
+	/**
+	 * Returns the first cell of a slot
+	 * @param slot The slot index
+	 * @return The index of the first cell
+	 */
+	public int getStart( int slot )
+	{
+		return starts[ slot ];
+	}
+	
+	/**
+	 * Returns the number of cells in a slot
+	 * @param slot The slot index
+	 * @return The length of the slot
+	 */
+	public int getLength( int slot )
+	{
+		return lengths[ slot ];
+	}
+	
+	/**
+	 * Returns the difference between the indexes of consecutive cells of a slot: 1 for an across slot, or the number
+	 * of columns for a down slot
+	 * @param slot The slot index
+	 * @return The step between cells
+	 */
+	public int getStep( int slot )
+	{
+		return slot < acrossCount ? 1 : cols;
+	}
+	
+	/**
+	 * Returns a cell of a slot
+	 * @param slot The slot index
+	 * @param offset The position of the cell within the slot, starting at 0
+	 * @return The cell index
+	 */
+	public int getCell( int slot, int offset )
+	{
+		return starts[ slot ] + offset * getStep( slot );
+	}
+	
+	/**
+	 * Returns the across slot that passes through a cell
+	 * @param cell The cell index
+	 * @return The slot index, or -1 if no across slot passes through the cell
+	 */
+	public int getAcrossSlot( int cell )
+	{
+		return acrossSlots[ cell ];
+	}
+	
+	/**
+	 * Returns the down slot that passes through a cell
+	 * @param cell The cell index
+	 * @return The slot index, or -1 if no down slot passes through the cell
+	 */
+	public int getDownSlot( int cell )
+	{
+		return downSlots[ cell ];
+	}
+	
+	/**
+	 * Returns the slot in a given direction that passes through a cell
+	 * @param cell The cell index
+	 * @param direction The direction
+	 * @return The slot index, or -1 if no slot in that direction passes through the cell
+	 */
+	public int getSlot( int cell, ClueDirection direction )
+	{
+		return direction == ClueDirection.ACROSS ? acrossSlots[ cell ] : downSlots[ cell ];
+	}
+	
+	/**
+	 * Returns the position of a cell within the slot in a given direction that passes through it
+	 * @param cell The cell index
+	 * @param direction The direction
+	 * @return The offset of the cell within the slot, starting at 0, or -1 if no slot in that direction passes through
+	 * the cell
+	 */
+	public int getOffset( int cell, ClueDirection direction )
+	{
+		int slot = getSlot( cell, direction );
+		return slot < 0 ? -1 : ( cell - starts[ slot ] ) / getStep( slot );
+	}
+	
+	/**
+	 * Returns the nearest open cell after a cell in its row (across) or column (down), skipping blocks
+	 * @param cell The cell index
+	 * @param direction The direction in which to move
+	 * @return The cell index, or -1 if there is no open cell after the cell
+	 */
+	public int getNextCell( int cell, ClueDirection direction )
+	{
+		return direction == ClueDirection.ACROSS ? nextAcross[ cell ] : nextDown[ cell ];
+	}
+	
+	/**
+	 * Returns the nearest open cell before a cell in its row (across) or column (down), skipping blocks
+	 * @param cell The cell index
+	 * @param direction The direction in which to move back
+	 * @return The cell index, or -1 if there is no open cell before the cell
+	 */
+	public int getPreviousCell( int cell, ClueDirection direction )
+	{
+		return direction == ClueDirection.ACROSS ? previousAcross[ cell ] : previousDown[ cell ];
+	}
+	
+	/**
+	 * Returns the slot whose clue follows that of a slot in the clue lists: the next slot in the same direction, or
+	 * after the last slot of one direction, the first slot of the other
+	 * @param slot The slot index
+	 * @return The next slot index
+	 */
+	public int getNextSlot( int slot )
+	{
+		return slot + 1 == starts.length ? 0 : slot + 1;
+	}
+	
+	/**
+	 * Returns the slot whose clue precedes that of a slot in the clue lists, wrapping as {@link #getNextSlot(int)}
+	 * @param slot The slot index
+	 * @return The previous slot index
+	 */
+	public int getPreviousSlot( int slot )
+	{
+		return slot == 0 ? starts.length - 1 : slot - 1;
+	}
+	
+	/**
+	 * Finds the slot with a given clue number and direction
+	 * @param number The clue number
+	 * @param direction The direction
+	 * @return The slot index, or -1 if the grid has no such slot
+	 */
+	public int findSlot( int number, ClueDirection direction )
+	{
+		int from = direction == ClueDirection.ACROSS ? 0 : acrossCount;
+		int to = direction == ClueDirection.ACROSS ? acrossCount : slotNumbers.length;
+		int slot = Arrays.binarySearch( slotNumbers, from, to, number );
+		
+		return slot >= 0 ? slot : -1;
+	}
+	
+	/**
+	 * Returns the slots in the order in which the PUZ format stores their clues: in increasing order of clue number,
+	 * with the across slot before the down slot when both start at the same cell
+	 * @return An array of every slot index
+	 */
+	public int[] getNumberOrder()
+	{
+		int[] order = new int[ starts.length ];
+		
+		for ( int i = 0, across = 0, down = acrossCount; i < order.length; ++i )
+		{
+			order[ i ] = down == starts.length || across < acrossCount && starts[ across ] <= starts[ down ] ? across++ : down++;
+		}
+		
+		return order;
+	}
+
+}
@@ -0,0 +1,206 @@
+/**
+ * Copyright (c) 2010 Eric Peterson
+ * For contact information, visit http://www.epeterso2.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.epeterso2.jabberwordy.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of {@link GridSlotTable}s, keyed by a 64-bit fingerprint of the size and block pattern of a grid.
+ * <p>
+ * Publishers reuse a small number of grid templates, so most puzzles loaded in bulk share their block pattern with one
+ * loaded before. {@link #get(int, int, boolean[])} returns the table already computed for the pattern, which is
+ * immutable and may be shared, and computes one only for a new pattern. A table found by fingerprint is compared
+ * with the pattern before it is returned, so a collision costs only a miss. When the cache is full, the least recently
+ * used table is dropped.
+ * <p>
+ * The loaders of PUZ, XPF and JSON puzzles use the cache returned by {@link #getDefault()}. The methods of this class
+ * are synchronized.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+public class GridSlotTableCache {
+	
+	/**
+	 * The capacity of the default cache
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+	
+	private static final GridSlotTableCache defaultCache = new GridSlotTableCache( DEFAULT_CAPACITY );
+	
+	private Map<Long, GridSlotTable> tables = null;
+	
+	private long hits = 0;
+	
+	private long misses = 0;
+	
+	private long evictions = 0;
+	
+	/**
+	 * Creates a cache
+	 * @param capacity The largest number of tables held
+	 */
+	@SuppressWarnings("serial")
+	public GridSlotTableCache( final int capacity )
+	{
+		this.tables = new LinkedHashMap<Long, GridSlotTable>( 16, 0.75f, true )
+		{
+			@Override
+			protected boolean removeEldestEntry( Map.Entry<Long, GridSlotTable> eldest )
+			{
+				boolean remove = size() > capacity;
+				evictions += remove ? 1 : 0;
+				return remove;
+			}
+		};
+	}
+	
+	/**
+	 * Returns the cache shared by the puzzle loaders
+	 * @return The default cache
+	 */
+	public static GridSlotTableCache getDefault()
+	{
+		return defaultCache;
+	}
+	
+	/**
+	 * Computes the fingerprint of the size and block pattern of a grid
+	 * @param cols The number of columns in the grid
+	 * @param rows The number of rows in the grid
+	 * @param blocks An array of <tt>cols * rows</tt> values in row-major order; true for each block
+	 * @return The fingerprint
+	 */
+	public static long fingerprint( int cols, int rows, boolean[] blocks )
+	{
+		long hash = mix( ( (long) cols << 32 ) | rows );
+		long word = 0;
+		
+		// Fold the pattern in sixty-four cells at a time
+		for ( int cell = 0; cell < blocks.length; ++cell )
+		{
+			word = ( word << 1 ) | ( blocks[ cell ] ? 1 : 0 );
+			
+			if ( ( cell & 63 ) == 63 )
+			{
+				hash = mix( hash ^ word ) * 31;
+				word = 0;
+			}
+		}
+		
+		return mix( hash ^ word ^ blocks.length );
+	}
+	
+	/**
+	 * The finalizer of MurmurHash3, which spreads every bit of its input over the output
+	 */
+	private static long mix( long value )
+	{
+		value ^= value >>> 33;
+		value *= 0xFF51AFD7ED558CCDL;
+		value ^= value >>> 33;
+		value *= 0xC4CEB9FE1A85EC53L;
+		value ^= value >>> 33;
+		return value;
+	}
+	
+	/**
+	 * Returns the slot table of a grid, computing it only if the cache does not hold it
+	 * @param cols The number of columns in the grid
+	 * @param rows The number of rows in the grid
+	 * @param blocks An array of <tt>cols * rows</tt> values in row-major order; true for each block. The array is not
+	 * kept.
+	 * @return The slot table
+	 */
+	public GridSlotTable get( int cols, int rows, boolean[] blocks )
+	{
+		Long key = fingerprint( cols, rows, blocks );
+		
+		synchronized ( this )
+		{
+			GridSlotTable table = tables.get( key );
+			
+			if ( table != null && table.matches( cols, rows, blocks ) )
+			{
+				++hits;
+				return table;
+			}
+			
+			++misses;
+		}
+		
+		// Compute outside the lock; two threads may compute the same table, and the second simply replaces the first
+		GridSlotTable table = new GridSlotTable( cols, rows, blocks );
+		
+		synchronized ( this )
+		{
+			tables.put( key, table );
+		}
+		
+		return table;
+	}
+	
+	public synchronized int size()
+	{
+		return tables.size();
+	}
+	
+	public synchronized long getHitCount()
+	{
+		return hits;
+	}
+	
+	public synchronized long getMissCount()
+	{
+		return misses;
+	}
+	
+	public synchronized long getEvictionCount()
+	{
+		return evictions;
+	}
+	
+	/**
+	 * Returns the fraction of lookups that found their table in the cache
+	 * @return The hit rate, or zero if there have been no lookups
+	 */
+	public synchronized double getHitRate()
+	{
+		return hits + misses == 0 ? 0 : (double) hits / ( hits + misses );
+	}
+	
+	/**
+	 * Drops every table and clears the counters
+	 */
+	public synchronized void clear()
+	{
+		tables.clear();
+		hits = misses = evictions = 0;
+	}
+	
+	public synchronized String toString()
+	{
+		return new StringBuilder().append( tables.size() ).append( " grids, " ).append( hits ).append( " hits, " ).append( misses ).append( " misses" ).toString();
+	}
+
+}
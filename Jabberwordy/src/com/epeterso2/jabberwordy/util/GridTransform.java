@@ -0,0 +1,345 @@
+/**
+ * Copyright (c) 2010 Eric Peterson
+ * For contact information, visit http://www.epeterso2.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.epeterso2.jabberwordy.util;
+
+/**
+ * The eight ways of turning or reflecting a rectangular grid onto itself: the four rotations, the two mirrors and the
+ * two transposes.
+ * <p>
+ * Each transform works on grids held as packed arrays in row-major order. It maps cell indexes, moves whole arrays of
+ * blocks, letters or flags, and maps the slots of a grid to the slots of the transformed grid so that clues follow
+ * their answers. The transforms that exchange rows and columns turn across entries into down entries and back; the
+ * transforms that reverse an axis leave the answers along it reading backward, as {@link #isReversed(ClueDirection)}
+ * reports. {@link #canonicalFingerprint(int, int, boolean[])} identifies a block pattern up to all eight transforms, so
+ * that a template is recognized however it was turned.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+public enum GridTransform {
+	
+	/**
+	 * Leaves the grid as it is
+	 */
+	IDENTITY( false, false, false ),
+	
+	/**
+	 * Turns the grid a quarter turn clockwise
+	 */
+	ROTATE_90( true, true, false ),
+	
+	/**
+	 * Turns the grid half way around
+	 */
+	ROTATE_180( false, true, true ),
+	
+	/**
+	 * Turns the grid a quarter turn counterclockwise
+	 */
+	ROTATE_270( true, false, true ),
+	
+	/**
+	 * Reflects the grid about its vertical center line, exchanging left and right
+	 */
+	MIRROR_LEFT_RIGHT( false, true, false ),
+	
+	/**
+	 * Reflects the grid about its horizontal center line, exchanging top and bottom
+	 */
+	MIRROR_TOP_BOTTOM( false, false, true ),
+	
+	/**
+	 * Reflects the grid about the diagonal from its top left corner, exchanging rows and columns
+	 */
+	TRANSPOSE( true, false, false ),
+	
+	/**
+	 * Reflects the grid about the diagonal from its top right corner
+	 */
+	ANTI_TRANSPOSE( true, true, true );
+	
+	// A transform exchanges rows and columns if it swaps, then reverses the columns and rows of the result if it flips
+	private boolean swap = false;
+	
+	private boolean flipCols = false;
+	
+	private boolean flipRows = false;
+	
+	private GridTransform( boolean swap, boolean flipCols, boolean flipRows )
+	{
+		this.swap = swap;
+		this.flipCols = flipCols;
+		this.flipRows = flipRows;
+	}
+	
+	/**
+	 * Determines if the transform exchanges rows and columns, turning across entries into down entries
+	 * @return <tt>true</tt> for the quarter turns and the transposes
+	 */
+	public boolean isTransposing()
+	{
+		return swap;
+	}
+	
+	/**
+	 * Returns the number of columns of a transformed grid
+	 * @param cols The number of columns in the grid
+	 * @param rows The number of rows in the grid
+	 * @return The number of columns after the transform
+	 */
+	public int getCols( int cols, int rows )
+	{
+		return swap ? rows : cols;
+	}
+	
+	/**
+	 * Returns the number of rows of a transformed grid
+	 * @param cols The number of columns in the grid
+	 * @param rows The number of rows in the grid
+	 * @return The number of rows after the transform
+	 */
+	public int getRows( int cols, int rows )
+	{
+		return swap ? cols : rows;
+	}
+	
+	/**
+	 * Returns the index a cell has after the transform
+	 * @param cell The cell index in the grid
+	 * @param cols The number of columns in the grid
+	 * @param rows The number of rows in the grid
+	 * @return The cell index in the transformed grid
+	 */
+	public int map( int cell, int cols, int rows )
+	{
+		int col = swap ? cell / cols : cell % cols;
+		int row = swap ? cell % cols : cell / cols;
+		int targetCols = getCols( cols, rows );
+		int targetRows = getRows( cols, rows );
+		
+		col = flipCols ? targetCols - 1 - col : col;
+		row = flipRows ? targetRows - 1 - row : row;
+		return row * targetCols + col;
+	}
+	
+	/**
+	 * Returns the cell of a grid that a cell of the transformed grid came from
+	 * @param target The cell index in the transformed grid
+	 * @param cols The number of columns in the grid before the transform
+	 * @param rows The number of rows in the grid before the transform
+	 * @return The cell index in the grid
+	 */
+	public int source( int target, int cols, int rows )
+	{
+		int targetCols = getCols( cols, rows );
+		int targetRows = getRows( cols, rows );
+		int col = target % targetCols;
+		int row = target / targetCols;
+		
+		col = flipCols ? targetCols - 1 - col : col;
+		row = flipRows ? targetRows - 1 - row : row;
+		return swap ? col * cols + row : row * cols + col;
+	}
+	
+	/**
+	 * Returns the direction an entry runs in after the transform
+	 * @param direction The direction of the entry
+	 * @return The direction in the transformed grid
+	 */
+	public ClueDirection map( ClueDirection direction )
+	{
+		return ! swap ? direction : direction == ClueDirection.ACROSS ? ClueDirection.DOWN : ClueDirection.ACROSS;
+	}
+	
+	/**
+	 * Determines if the answers of the entries in a direction read backward after the transform
+	 * @param direction The direction of the entries before the transform
+	 * @return <tt>true</tt> if the first letter of each answer becomes the last
+	 */
+	public boolean isReversed( ClueDirection direction )
+	{
+		// An entry runs along the columns of the result if it is across and not swapped, or down and swapped
+		return ( direction == ClueDirection.ACROSS ) != swap ? flipCols : flipRows;
+	}
+	
+	public boolean[] apply( boolean[] cells, int cols, int rows )
+	{
+		boolean[] result = new boolean[ cells.length ];
+		
+		for ( int target = 0; target < result.length; ++target )
+		{
+			result[ target ] = cells[ source( target, cols, rows ) ];
+		}
+		
+		return result;
+	}
+	
+	public char[] apply( char[] cells, int cols, int rows )
+	{
+		char[] result = new char[ cells.length ];
+		
+		for ( int target = 0; target < result.length; ++target )
+		{
+			result[ target ] = cells[ source( target, cols, rows ) ];
+		}
+		
+		return result;
+	}
+	
+	public byte[] apply( byte[] cells, int cols, int rows )
+	{
+		byte[] result = new byte[ cells.length ];
+		
+		for ( int target = 0; target < result.length; ++target )
+		{
+			result[ target ] = cells[ source( target, cols, rows ) ];
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Maps each slot of a grid to the slot of the transformed grid that holds the same cells
+	 * @param source The slot table of the grid
+	 * @param target The slot table of the transformed grid, such as one computed from the blocks moved by
+	 * {@link #apply(boolean[], int, int)}
+	 * @return For each slot of the source table, the index of its slot in the target table
+	 * @throws IllegalArgumentException The target table is not the transform of the source table
+	 */
+	public int[] mapSlots( GridSlotTable source, GridSlotTable target )
+	{
+		int cols = source.getCols();
+		int rows = source.getRows();
+		
+		if ( target.getCols() != getCols( cols, rows ) || target.getRows() != getRows( cols, rows ) || target.getSlotCount() != source.getSlotCount() )
+		{
+			throw new IllegalArgumentException( "Slot table is not the " + this + " transform of the grid" );
+		}
+		
+		int[] result = new int[ source.getSlotCount() ];
+		
+		for ( int slot = 0; slot < result.length; ++slot )
+		{
+			ClueDirection direction = source.getDirection( slot );
+			int first = isReversed( direction ) ? source.getCell( slot, source.getLength( slot ) - 1 ) : source.getStart( slot );
+			result[ slot ] = target.getSlot( map( first, cols, rows ), map( direction ) );
+			
+			if ( result[ slot ] < 0 || target.getStart( result[ slot ] ) != map( first, cols, rows ) )
+			{
+				throw new IllegalArgumentException( "Slot table is not the " + this + " transform of the grid" );
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Finds the transform that gives the least form of a block pattern: the one with the fewest columns, then the
+	 * earliest open cell in row-major order. Grids that are transforms of one another have the same least form.
+	 * @param cols The number of columns in the grid
+	 * @param rows The number of rows in the grid
+	 * @param blocks An array of <tt>cols * rows</tt> values in row-major order; true for each block
+	 * @return The first transform, in declaration order, that gives the least form
+	 */
+	public static GridTransform canonical( int cols, int rows, boolean[] blocks )
+	{
+		GridTransform best = IDENTITY;
+		
+		for ( GridTransform candidate : values() )
+		{
+			int order = candidate.getCols( cols, rows ) - best.getCols( cols, rows );
+			
+			for ( int target = 0; order == 0 && target < blocks.length; ++target )
+			{
+				boolean mine = blocks[ candidate.source( target, cols, rows ) ];
+				boolean theirs = blocks[ best.source( target, cols, rows ) ];
+				order = mine == theirs ? 0 : mine ? 1 : -1;
+			}
+			
+			best = order < 0 ? candidate : best;
+		}
+		
+		return best;
+	}
+	
+	/**
+	 * Finds the transform that gives the least form of a grid of letters, comparing cell values in row-major order
+	 * after the number of columns. Blocks should be given a value no letter has.
+	 * @param cols The number of columns in the grid
+	 * @param rows The number of rows in the grid
+	 * @param cells An array of <tt>cols * rows</tt> cell values in row-major order
+	 * @return The first transform, in declaration order, that gives the least form
+	 */
+	public static GridTransform canonical( int cols, int rows, char[] cells )
+	{
+		GridTransform best = IDENTITY;
+		
+		for ( GridTransform candidate : values() )
+		{
+			int order = candidate.getCols( cols, rows ) - best.getCols( cols, rows );
+			
+			for ( int target = 0; order == 0 && target < cells.length; ++target )
+			{
+				order = cells[ candidate.source( target, cols, rows ) ] - cells[ best.source( target, cols, rows ) ];
+			}
+			
+			best = order < 0 ? candidate : best;
+		}
+		
+		return best;
+	}
+	
+	/**
+	 * Computes a fingerprint of a block pattern that is the same for all eight of its transforms
+	 * @param cols The number of columns in the grid
+	 * @param rows The number of rows in the grid
+	 * @param blocks An array of <tt>cols * rows</tt> values in row-major order; true for each block
+	 * @return The fingerprint of the least form of the pattern
+	 */
+	public static long canonicalFingerprint( int cols, int rows, boolean[] blocks )
+	{
+		GridTransform transform = canonical( cols, rows, blocks );
+		return GridSlotTableCache.fingerprint( transform.getCols( cols, rows ), transform.getRows( cols, rows ), transform.apply( blocks, cols, rows ) );
+	}
+	
+	/**
+	 * Computes a fingerprint of a grid of letters that is the same for all eight of its transforms, for finding the same
+	 * filled grid published turned or reflected
+	 * @param cols The number of columns in the grid
+	 * @param rows The number of rows in the grid
+	 * @param cells An array of <tt>cols * rows</tt> cell values in row-major order
+	 * @return The fingerprint of the least form of the grid
+	 */
+	public static long canonicalFingerprint( int cols, int rows, char[] cells )
+	{
+		GridTransform transform = canonical( cols, rows, cells );
+		long hash = ( (long) transform.getCols( cols, rows ) << 32 ) | transform.getRows( cols, rows );
+		
+		for ( int target = 0; target < cells.length; ++target )
+		{
+			hash = ( hash ^ cells[ transform.source( target, cols, rows ) ] ) * 0x100000001B3L;
+		}
+		
+		return hash ^ ( hash >>> 29 );
+	}
+	
+}
@@ -23,8 +23,6 @@
 
 package com.epeterso2.jabberwordy.util;
 
-import java.util.EnumMap;
-
 /**
  * Builds a numbered crossword grid based upon conventional grid-numbering rules.
  * <p>
@@ -39,15 +37,11 @@ import java.util.EnumMap;
  */
 public class StandardClueNumberCalculator {
 
-	private enum Direction {
-		UP, DOWN, LEFT, RIGHT;
-	}
-
 	private int rows = 0;
 
 	private int cols = 0;
 
-	private CoordinateMap<Boolean> blocks = new CoordinateMap<Boolean>();
+	private boolean[] blocks = null;
 
 	/**
 	 * Constructs a new clue number calculator.
@@ -57,6 +51,26 @@ public class StandardClueNumberCalculator {
 	 * will be treated as a block (black square) if it has an entry in this map and if the entry is true.
 	 */
 	public StandardClueNumberCalculator( int cols, int rows, CoordinateMap<Boolean> blocks )
+	{
+		this( cols, rows, new boolean[ cols * rows ] );
+
+		for ( Coordinate coord : blocks.keySet() )
+		{
+			if ( coord.getX() >= 1 && coord.getX() <= cols && coord.getY() >= 1 && coord.getY() <= rows && blocks.get( coord ) )
+			{
+				this.blocks[ ( coord.getY() - 1 ) * cols + coord.getX() - 1 ] = true;
+			}
+		}
+	}
+
+	/**
+	 * Constructs a new clue number calculator from a block pattern held in an array.
+	 * @param cols The number of columns in the grid
+	 * @param rows The number of rows in the grid
+	 * @param blocks An array of <tt>cols * rows</tt> values in row-major order. A cell is treated as a block (black square)
+	 * if its entry is true. The array is not copied and must not be changed while this calculator is in use.
+	 */
+	public StandardClueNumberCalculator( int cols, int rows, boolean[] blocks )
 	{
 		this.cols = cols;
 		this.rows = rows;
@@ -71,8 +85,7 @@ public class StandardClueNumberCalculator {
 	public CoordinateMap<StandardClueNumberResult> getNumberedGrid()
 	{
 		CoordinateMap<StandardClueNumberResult> grid = new CoordinateMap<StandardClueNumberResult>();
-
-		int clueNumber = 0;
+		int[] numbers = getNumbers();
 
 		for ( int row = 1; row <= rows; ++row )
 		{
@@ -81,15 +94,11 @@ public class StandardClueNumberCalculator {
 				StandardClueNumberResult clueNumberResult = new StandardClueNumberResult();
 				grid.put( col, row, clueNumberResult );
 
-				boolean isBlock = blocks.containsKey( col, row ) && blocks.get( col, row );
-				boolean isStartOfAcrossEntry = isStartOfAcrossEntry( col, row );
-				boolean isStartOfDownEntry = isStartOfDownEntry( col, row );
-
-				if ( ! isBlock && ( isStartOfAcrossEntry || isStartOfDownEntry ) )
+				if ( numbers[ ( row - 1 ) * cols + col - 1 ] != 0 )
 				{
-					clueNumberResult.setNumber( ++clueNumber );
-					clueNumberResult.setStartOfAcrossClue( isStartOfAcrossEntry );
-					clueNumberResult.setStartOfDownClue( isStartOfDownEntry );
+					clueNumberResult.setNumber( numbers[ ( row - 1 ) * cols + col - 1 ] );
+					clueNumberResult.setStartOfAcrossClue( isStartOfAcrossEntry( col, row ) );
+					clueNumberResult.setStartOfDownClue( isStartOfDownEntry( col, row ) );
 				}
 			}
 		}
@@ -97,30 +106,60 @@ public class StandardClueNumberCalculator {
 		return grid;
 	}
 
-	private boolean isStartOfAcrossEntry( int col, int row )
+	/**
+	 * Numbers the grid according to conventional crossword puzzle rules without building any per-cell objects.
+	 * @return An array of <tt>cols * rows</tt> clue numbers in row-major order; cells without a number have the value zero
+	 */
+	public int[] getNumbers()
 	{
-		EnumMap<Direction, Boolean> isAdjacentCellABlock = getAdjacentBlockMap( col, row );
+		int[] numbers = new int[ cols * rows ];
+		int clueNumber = 0;
+
+		for ( int row = 1; row <= rows; ++row )
+		{
+			for ( int col = 1; col <= cols; ++col )
+			{
+				if ( isStartOfAcrossEntry( col, row ) || isStartOfDownEntry( col, row ) )
+				{
+					numbers[ ( row - 1 ) * cols + col - 1 ] = ++clueNumber;
+				}
+			}
+		}
 
-		return isAdjacentCellABlock.get( Direction.LEFT ) && ! isAdjacentCellABlock.get( Direction.RIGHT ) ? true : false;
+		return numbers;
 	}
 
-	private boolean isStartOfDownEntry( int col, int row ) 
+	/**
+	 * Determines if a cell is the first cell of an across entry
+	 * @param col The column (starting at 1) of the cell
+	 * @param row The row (starting at 1) of the cell
+	 * @return <tt>true</tt> if the cell is not a block, the cell to its left is a block, and the cell to its right is not a block
+	 */
+	public boolean isStartOfAcrossEntry( int col, int row )
 	{
-		EnumMap<Direction, Boolean> isAdjacentCellABlock = getAdjacentBlockMap( col, row );
-
-		return isAdjacentCellABlock.get( Direction.UP ) && ! isAdjacentCellABlock.get( Direction.DOWN ) ? true : false;
+		return ! isBlock( col, row ) && isBlock( col - 1, row ) && ! isBlock( col + 1, row );
 	}
 
-	private EnumMap<Direction, Boolean> getAdjacentBlockMap( int col, int row )
+	/**
+	 * Determines if a cell is the first cell of a down entry
+	 * @param col The column (starting at 1) of the cell
+	 * @param row The row (starting at 1) of the cell
+	 * @return <tt>true</tt> if the cell is not a block, the cell above it is a block, and the cell below it is not a block
+	 */
+	public boolean isStartOfDownEntry( int col, int row )
 	{
-		EnumMap<Direction, Boolean> map = new EnumMap<Direction, Boolean>( Direction.class );
-
-		map.put( Direction.UP,    row == 1    || blocks.containsKey( col, row - 1 ) && blocks.get( col, row - 1 ) );
-		map.put( Direction.DOWN,  row == rows || blocks.containsKey( col, row + 1 ) && blocks.get( col, row + 1 ) );
-		map.put( Direction.LEFT,  col == 1    || blocks.containsKey( col - 1, row ) && blocks.get( col - 1, row ) );
-		map.put( Direction.RIGHT, col == cols || blocks.containsKey( col + 1, row ) && blocks.get( col + 1, row ) );
+		return ! isBlock( col, row ) && isBlock( col, row - 1 ) && ! isBlock( col, row + 1 );
+	}
 
-		return map;
+	/**
+	 * Determines if a cell is a block. Virtual cells outside the borders of the grid are considered blocks.
+	 * @param col The column (starting at 1) of the cell
+	 * @param row The row (starting at 1) of the cell
+	 * @return <tt>true</tt> if the cell is a block or lies outside of the grid
+	 */
+	public boolean isBlock( int col, int row )
+	{
+		return col < 1 || col > cols || row < 1 || row > rows || blocks[ ( row - 1 ) * cols + col - 1 ];
 	}
 
 }
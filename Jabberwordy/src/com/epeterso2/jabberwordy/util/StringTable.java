@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2010 Eric Peterson
+ * For contact information, visit http://www.epeterso2.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.epeterso2.jabberwordy.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An append-only table of interned strings. Each distinct string added to the table is stored once and is
+ * identified by a small integer index, so that a grid can refer to repeated values such as rebus entries or cell shades
+ * with primitive arrays rather than with a reference per cell.
+ * <p>
+ * This class is not synchronized.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+public class StringTable {
+	
+	private String[] strings = new String[ 4 ];
+	
+	private int size = 0;
+	
+	private Map<String, Integer> indexes = null;
+	
+	/**
+	 * Constructs a new, empty table
+	 */
+	public StringTable()
+	{
+		;
+	}
+	
+	/**
+	 * Constructs a copy of another table. Indexes in the copy are identical to those in the original.
+	 * @param table The table to copy
+	 */
+	public StringTable( StringTable table )
+	{
+		this.strings = Arrays.copyOf( table.strings, Math.max( table.size, 4 ) );
+		this.size = table.size;
+	}
+	
+	/**
+	 * Returns the index of a string, adding it to the table if it is not already present
+	 * @param string The string
+	 * @return The index of the string
+	 */
+	public int intern( String string )
+	{
+		int index = indexOf( string );
+		
+		if ( index < 0 )
+		{
+			if ( size == strings.length )
+			{
+				strings = Arrays.copyOf( strings, size * 2 );
+			}
+			
+			index = size++;
+			strings[ index ] = string;
+			getIndexes().put( string, index );
+		}
+		
+		return index;
+	}
+	
+	/**
+	 * Returns the index of a string without adding it to the table
+	 * @param string The string
+	 * @return The index of the string, or -1 if it is not in the table
+	 */
+	public int indexOf( String string )
+	{
+		Integer index = getIndexes().get( string );
+		return index == null ? -1 : index;
+	}
+	
+	/**
+	 * Returns the string at the given index
+	 * @param index The index
+	 * @return The string
+	 * @throws IndexOutOfBoundsException The index is not in the table
+	 */
+	public String get( int index )
+	{
+		if ( index < 0 || index >= size )
+		{
+			throw new IndexOutOfBoundsException( "No string at index " + index );
+		}
+		
+		return strings[ index ];
+	}
+	
+	/**
+	 * Returns the number of strings in the table
+	 * @return The number of strings
+	 */
+	public int size()
+	{
+		return size;
+	}
+	
+	private Map<String, Integer> getIndexes()
+	{
+		// The reverse index is rebuilt on demand, so copies that are only read never pay for it
+		if ( indexes == null )
+		{
+			indexes = new HashMap<String, Integer>();
+			
+			for ( int i = 0; i < size; ++i )
+			{
+				indexes.put( strings[ i ], i );
+			}
+		}
+		
+		return indexes;
+	}
+
+}
@@ -0,0 +1,188 @@
+/**
+ * Copyright (c) 2010 Eric Peterson
+ * For contact information, visit http://www.epeterso2.com
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.epeterso2.jabberwordy.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * A collection of utility methods for reading and writing variable-length integers.
+ * <p>
+ * Unsigned values are written seven bits per byte, least significant group first, with the high bit of each byte set
+ * when more bytes follow, so values below 128 take one byte. Signed values are first mapped to unsigned values by
+ * zig-zag encoding (0, -1, 1, -2, ... become 0, 1, 2, 3, ...), so that small negative values are also short.
+ * @author <a href="http://www.epeterso2.com">Eric Peterson</a>
+ */
+public abstract class VarIntUtil {
+	
+	/**
+	 * The largest number of bytes used by one value
+	 */
+	public static final int MAX_LENGTH = 10;
+	
+	/**
+	 * Writes an unsigned value
+	 * @param out The output stream
+	 * @param value The value, treated as unsigned
+	 * @throws IOException The value could not be written
+	 */
+	public static void writeUnsigned( OutputStream out, long value ) throws IOException
+	{
+		while ( ( value & ~0x7FL ) != 0 )
+		{
+			out.write( (int) ( value & 0x7F ) | 0x80 );
+			value >>>= 7;
+		}
+		
+		out.write( (int) value );
+	}
+	
+	/**
+	 * Writes a signed value
+	 * @param out The output stream
+	 * @param value The value
+	 * @throws IOException The value could not be written
+	 */
+	public static void writeSigned( OutputStream out, long value ) throws IOException
+	{
+		writeUnsigned( out, ( value << 1 ) ^ ( value >> 63 ) );
+	}
+	
+	/**
+	 * Writes an unsigned value into a buffer
+	 * @param buffer The buffer
+	 * @param value The value, treated as unsigned
+	 */
+	public static void putUnsigned( ByteBuffer buffer, long value )
+	{
+		while ( ( value & ~0x7FL ) != 0 )
+		{
+			buffer.put( (byte) ( ( value & 0x7F ) | 0x80 ) );
+			value >>>= 7;
+		}
+		
+		buffer.put( (byte) value );
+	}
+	
+	/**
+	 * Reads an unsigned value
+	 * @param in The input stream
+	 * @return The value
+	 * @throws IOException The stream ended or the value is longer than {@link #MAX_LENGTH} bytes
+	 */
+	public static long readUnsigned( InputStream in ) throws IOException
+	{
+		long value = 0;
+		
+		for ( int shift = 0; shift < 7 * MAX_LENGTH; shift += 7 )
+		{
+			int b = in.read();
+			
+			if ( b < 0 )
+			{
+				throw new EOFException( "Truncated variable-length integer" );
+			}
+			
+			value |= (long) ( b & 0x7F ) << shift;
+			
+			if ( ( b & 0x80 ) == 0 )
+			{
+				return value;
+			}
+		}
+		
+		throw new IOException( "Malformed variable-length integer" );
+	}
+	
+	/**
+	 * Reads a signed value
+	 * @param in The input stream
+	 * @return The value
+	 * @throws IOException The stream ended or the value is malformed
+	 */
+	public static long readSigned( InputStream in ) throws IOException
+	{
+		long value = readUnsigned( in );
+		return ( value >>> 1 ) ^ -( value & 1 );
+	}
+	
+	/**
+	 * Reads an unsigned value from a buffer
+	 * @param buffer The buffer
+	 * @return The value
+	 * @throws BufferUnderflowException The buffer ended before the value
+	 * @throws IllegalArgumentException The value is longer than {@link #MAX_LENGTH} bytes
+	 */
+	public static long getUnsigned( ByteBuffer buffer )
+	{
+		long value = 0;
+		
+		for ( int shift = 0; shift < 7 * MAX_LENGTH; shift += 7 )
+		{
+			int b = buffer.get();
+			value |= (long) ( b & 0x7F ) << shift;
+			
+			if ( ( b & 0x80 ) == 0 )
+			{
+				return value;
+			}
+		}
+		
+		throw new IllegalArgumentException( "Malformed variable-length integer" );
+	}
+	
+	/**
+	 * Reads a signed value from a buffer
+	 * @param buffer The buffer
+	 * @return The value
+	 */
+	public static long getSigned( ByteBuffer buffer )
+	{
+		long value = getUnsigned( buffer );
+		return ( value >>> 1 ) ^ -( value & 1 );
+	}
+	
+	/**
+	 * Returns the number of bytes used to write an unsigned value
+	 * @param value The value, treated as unsigned
+	 * @return The length in bytes
+	 */
+	public static int getLength( long value )
+	{
+		int length = 1;
+		
+		while ( ( value & ~0x7FL ) != 0 )
+		{
+			value >>>= 7;
+			++length;
+		}
+		
+		return length;
+	}
+
+}